@@ -0,0 +1,41 @@
+package bench;
+
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+
+/**
+ * Method handles for the application code under test.
+ * JMH refuses benchmarks in the default package, and a named package cannot
+ * import default-package classes, so the hot paths are reached through
+ * static final method handles, which the JIT inlines like direct calls.
+ */
+final class BenchTargets {
+    static final MethodHandle PARSE_CSV_LINE =
+            find("CSVDataLoader", "parseCSVLine", String.class);
+    static final MethodHandle NORMALIZE_VALUE =
+            find("CSVDataLoader", "normalizeValue", String.class);
+    static final MethodHandle BIND_ROW =
+            find("CSVDataLoader", "bindRow", PreparedStatement.class, String[].class, int.class);
+    static final MethodHandle FORMAT_VALUE =
+            find("ResultFormatter", "formatValue", Object.class);
+    static final MethodHandle WRITE_CELL =
+            find("ResultFormatter", "writeCell", PrintWriter.class, String.class, int.class);
+    static final MethodHandle ROW_SEPARATOR =
+            find("ResultFormatter", "rowSeparator", int[].class);
+
+    private BenchTargets() {
+    }
+
+    private static MethodHandle find(String className, String methodName, Class<?>... parameterTypes) {
+        try {
+            Method method = Class.forName(className).getDeclaredMethod(methodName, parameterTypes);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Benchmark target not found: " + className + "." + methodName, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks CSVDataLoader.bindRow against a stub PreparedStatement, so only the
+ * per-row normalization and binding cost is measured, not the driver or the network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BindBenchmark {
+    private PreparedStatement stub;
+    private String[] productRow;
+    private String[] sparseRow;
+    private long boundParameters;
+
+    @Setup
+    public void setUp() {
+        stub = (PreparedStatement) Proxy.newProxyInstance(
+                BindBenchmark.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class},
+                (proxy, method, args) -> {
+                    boundParameters++;
+                    return null;
+                });
+        productRow = new String[] {"1e9e8ef04dbcff4541ed26657ea517e5", "perfumaria",
+                                   "40", "287", "1", "225", "16", "10", "14"};
+        sparseRow = new String[] {"a41e356c76fab66334f36de622ecbd3a", "", "", " ", "null",
+                                  "650", "17", "14", "12"};
+    }
+
+    @Benchmark
+    public long bindProductRow() throws Throwable {
+        BenchTargets.BIND_ROW.invokeExact(stub, productRow, productRow.length);
+        return boundParameters;
+    }
+
+    @Benchmark
+    public long bindSparseRow() throws Throwable {
+        BenchTargets.BIND_ROW.invokeExact(stub, sparseRow, sparseRow.length);
+        return boundParameters;
+    }
+}
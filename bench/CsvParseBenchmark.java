@@ -0,0 +1,120 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks CSVDataLoader.parseCSVLine and value normalization on real Olist lines.
+ * Lines are taken from the files in data/ when present, otherwise from built-in samples.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvParseBenchmark {
+    private static final String DATA_DIR = "data/";
+
+    /**
+     * quoted:   product row with a quoted id
+     * mixed:    seller row with quoted and unquoted fields
+     * empty:    product row with empty fields
+     * bom:      first line of a file saved with a UTF-8 byte order mark
+     */
+    @Param({"quoted", "mixed", "empty", "bom"})
+    public String lineKind;
+
+    private String line;
+    private String[] values;
+
+    @Setup
+    public void setUp() throws Throwable {
+        switch (lineKind) {
+            case "quoted":
+                line = findLine("olist_products_dataset.csv", false,
+                        "\"1e9e8ef04dbcff4541ed26657ea517e5\",perfumaria,40,287,1,225,16,10,14");
+                break;
+            case "mixed":
+                line = findLine("olist_sellers_dataset.csv", false,
+                        "\"3442f8959a84dea7ee197c632cb2df15\",\"13023\",campinas,SP");
+                break;
+            case "empty":
+                line = findLine("olist_products_dataset.csv", true,
+                        "a41e356c76fab66334f36de622ecbd3a,,,,,650,17,14,12");
+                break;
+            case "bom":
+                line = firstLine("product_category_name_translation.csv",
+                        "﻿product_category_name,product_category_name_english");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown line kind: " + lineKind);
+        }
+        values = (String[]) BenchTargets.PARSE_CSV_LINE.invokeExact(line);
+    }
+
+    @Benchmark
+    public String[] parseLine() throws Throwable {
+        return (String[]) BenchTargets.PARSE_CSV_LINE.invokeExact(line);
+    }
+
+    @Benchmark
+    public void normalizeValues(Blackhole bh) throws Throwable {
+        for (String value : values) {
+            bh.consume((String) BenchTargets.NORMALIZE_VALUE.invokeExact(value));
+        }
+    }
+
+    @Benchmark
+    public void parseAndNormalize(Blackhole bh) throws Throwable {
+        String[] parsed = (String[]) BenchTargets.PARSE_CSV_LINE.invokeExact(line);
+        for (String value : parsed) {
+            bh.consume((String) BenchTargets.NORMALIZE_VALUE.invokeExact(value));
+        }
+    }
+
+    /**
+     * Returns the first data line that does (or does not) contain an empty field
+     */
+    private static String findLine(String file, boolean withEmptyField, String fallback) {
+        try (BufferedReader br = new BufferedReader(new FileReader(DATA_DIR + file))) {
+            br.readLine(); // Skip header
+            String candidate;
+            while ((candidate = br.readLine()) != null) {
+                if (candidate.contains(",,") == withEmptyField) {
+                    return candidate;
+                }
+            }
+        } catch (IOException e) {
+            // Fall back to the built-in sample
+        }
+        return fallback;
+    }
+
+    private static String firstLine(String file, String fallback) {
+        try (BufferedReader br = new BufferedReader(new FileReader(DATA_DIR + file))) {
+            String header = br.readLine();
+            if (header != null) {
+                return header;
+            }
+        } catch (IOException e) {
+            // Fall back to the built-in sample
+        }
+        return fallback;
+    }
+}
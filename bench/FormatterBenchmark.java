@@ -0,0 +1,79 @@
+package bench;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks ResultFormatter cell formatting: number formatting, padded and
+ * truncated cells, and row separators. Output goes to a writer that discards it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatterBenchmark {
+    private static final int COLUMN_WIDTH = 25;
+
+    private Object decimal;
+    private Object integer;
+    private Object text;
+    private String shortCell;
+    private String longCell;
+    private int[] columnWidths;
+    private PrintWriter out;
+
+    @Setup
+    public void setUp() {
+        decimal = 1234567.891;
+        integer = 98765L;
+        text = "cama_mesa_banho";
+        shortCell = "sao paulo";
+        longCell = "informatica_acessorios_e_perifericos";
+        columnWidths = new int[] {32, 25, 12, 12, 18};
+        out = new PrintWriter(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public String formatDecimal() throws Throwable {
+        return (String) BenchTargets.FORMAT_VALUE.invokeExact(decimal);
+    }
+
+    @Benchmark
+    public String formatInteger() throws Throwable {
+        return (String) BenchTargets.FORMAT_VALUE.invokeExact(integer);
+    }
+
+    @Benchmark
+    public String formatText() throws Throwable {
+        return (String) BenchTargets.FORMAT_VALUE.invokeExact(text);
+    }
+
+    @Benchmark
+    public void writePaddedCell() throws Throwable {
+        BenchTargets.WRITE_CELL.invokeExact(out, shortCell, COLUMN_WIDTH);
+    }
+
+    @Benchmark
+    public void writeTruncatedCell() throws Throwable {
+        BenchTargets.WRITE_CELL.invokeExact(out, longCell, COLUMN_WIDTH);
+    }
+
+    @Benchmark
+    public String rowSeparator() throws Throwable {
+        return (String) BenchTargets.ROW_SEPARATOR.invokeExact(columnWidths);
+    }
+}
@@ -3,6 +3,7 @@
 
 
 -- Drop existing tables (in reverse order of dependencies)
+IF OBJECT_ID('ORDER_ITEM_DISTANCES', 'U') IS NOT NULL DROP TABLE ORDER_ITEM_DISTANCES;
 IF OBJECT_ID('ORDER_REVIEWS', 'U') IS NOT NULL DROP TABLE ORDER_REVIEWS;
 IF OBJECT_ID('ORDER_PAYMENTS', 'U') IS NOT NULL DROP TABLE ORDER_PAYMENTS;
 IF OBJECT_ID('ORDER_ITEMS', 'U') IS NOT NULL DROP TABLE ORDER_ITEMS;
@@ -122,6 +123,15 @@ CREATE TABLE ORDER_REVIEWS (
     FOREIGN KEY (order_id) REFERENCES ORDERS(order_id)
 );
 
+-- Create ORDER_ITEM_DISTANCES table (filled by ShippingDistanceJob)
+CREATE TABLE ORDER_ITEM_DISTANCES (
+    order_id VARCHAR(50) NOT NULL,
+    order_item_seq INT NOT NULL,
+    distance_km DECIMAL(8, 2) NOT NULL,  -- Seller to customer zip prefix centroid, great-circle
+    PRIMARY KEY (order_id, order_item_seq),
+    FOREIGN KEY (order_id, order_item_seq) REFERENCES ORDER_ITEMS(order_id, order_item_seq)
+);
+
 -- Create indexes for performance
 CREATE INDEX idx_customer_zip ON CUSTOMERS(customer_zip_code_prefix);
 CREATE INDEX idx_seller_zip ON SELLERS(seller_zip_code_prefix);
@@ -134,5 +144,6 @@ CREATE INDEX idx_order_items_seller ON ORDER_ITEMS(seller_id);
 CREATE INDEX idx_product_category ON PRODUCTS(category_name_portuguese);
 CREATE INDEX idx_review_order ON ORDER_REVIEWS(order_id);
 CREATE INDEX idx_review_score ON ORDER_REVIEWS(review_score);
+CREATE INDEX idx_item_distance ON ORDER_ITEM_DISTANCES(distance_km);
 
 PRINT 'Database schema created successfully.';
@@ -0,0 +1,446 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates many analysts using the reports at once.
+ * Each session runs a mix of menu reports and parameterized REVENUE_BY_STATE_AND_YEAR and
+ * SELLERS_BY_CATEGORY calls with exponentially distributed think time between them,
+ * borrowing a connection from a fixed pool for each query. The run is repeated for an
+ * increasing number of sessions and reports throughput, latency percentiles, connection
+ * wait time and error rates at each level.
+ */
+public class AnalystLoadGenerator {
+    private static final String BENCHMARK_DIR = "benchmarks/";
+
+    private static final String[] STATES = {
+        "AC", "AL", "AP", "AM", "BA", "CE", "DF", "ES", "GO", "MA", "MT", "MS", "MG", "PA",
+        "PB", "PR", "PE", "PI", "RJ", "RN", "RS", "RO", "RR", "SC", "SP", "SE", "TO"
+    };
+    private static final String[] YEARS = {"2016", "2017", "2018"};
+    private static final String[] CATEGORY_TERMS = {
+        "%furniture%", "%health%", "%sports%", "%computers%", "%toys%", "%bed%", "%watches%", "%auto%"
+    };
+
+    /**
+     * Settings for a run, parsed from the command line
+     */
+    private static class LoadOptions {
+        int[] sessionLevels = {1, 2, 4, 8, 16};
+        int durationSeconds = 30;
+        int thinkMillis = 1000;
+        int poolSize = 0; // 0 means one connection per session
+        double parameterizedShare = 0.4;
+        long seed = 42;
+    }
+
+    /**
+     * Results for one concurrency level
+     */
+    private static class LoadStep {
+        final int sessions;
+        final int poolSize;
+        final QueryMetrics.Histogram latencyNanos = new QueryMetrics.Histogram();
+        final QueryMetrics.Histogram waitNanos = new QueryMetrics.Histogram();           // waits that got a connection
+        final QueryMetrics.Histogram notStartedWaitNanos = new QueryMetrics.Histogram(); // cut off by the deadline
+        final QueryMetrics.Histogram connectNanos = new QueryMetrics.Histogram();
+        final LongAdder completed = new LongAdder();  // finished within the level's duration
+        final LongAdder drained = new LongAdder();    // finished after the deadline, while the level drained
+        final LongAdder failed = new LongAdder();
+        final LongAdder notStarted = new LongAdder(); // still waiting for a connection at the deadline
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final int durationSeconds;
+        double drainSeconds;
+
+        LoadStep(int sessions, int poolSize, int durationSeconds) {
+            this.sessions = sessions;
+            this.poolSize = poolSize;
+            this.durationSeconds = durationSeconds;
+        }
+
+        long attempts() {
+            return completed.sum() + drained.sum() + failed.sum();
+        }
+
+        /** Queries finished within the duration per second of it; the drain after the deadline is left out */
+        double throughput() {
+            return completed.sum() / (double) durationSeconds;
+        }
+
+        double errorRate() {
+            long attempts = attempts();
+            return attempts == 0 ? 0 : 100.0 * failed.sum() / attempts;
+        }
+
+        void recordError(String type) {
+            failed.increment();
+            errors.computeIfAbsent(type, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Usage: AnalystLoadGenerator [--sessions 1,2,4,8] [--duration SECONDS] [--think-ms MS]
+     *        [--pool-size N] [--param-share FRACTION] [--seed N]
+     */
+    public static void main(String[] args) {
+        LoadOptions options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: AnalystLoadGenerator [--sessions 1,2,4,8] [--duration SECONDS] [--think-ms MS]");
+            System.out.println("       [--pool-size N] [--param-share FRACTION] [--seed N]");
+            System.exit(2);
+            return;
+        }
+
+        System.out.println("\n╔═════════════════════════════════════════════════════════════════╗");
+        System.out.println("║        CONCURRENT ANALYST LOAD TEST                             ║");
+        System.out.println("╚═════════════════════════════════════════════════════════════════╝");
+        JmxMonitoring.register();
+        System.out.printf("%d second(s) per level, mean think time %d ms, %.0f%% parameterized calls%n",
+                          options.durationSeconds, options.thinkMillis, options.parameterizedShare * 100);
+
+        List<LoadStep> steps = new ArrayList<>();
+        for (int sessions : options.sessionLevels) {
+            int poolSize = options.poolSize > 0 ? options.poolSize : sessions;
+            System.out.printf("%nRunning %d session(s) on %d connection(s)...%n", sessions, poolSize);
+            try {
+                LoadStep step = runStep(sessions, poolSize, options);
+                steps.add(step);
+                System.out.printf("  %,d queries, %.1f queries/s, p95 %.1f ms, %.1f%% errors, %,d not started%n",
+                                  step.completed.sum(), step.throughput(),
+                                  millis(step.latencyNanos.getPercentile(95)), step.errorRate(),
+                                  step.notStarted.sum());
+                if (step.drained.sum() > 0) {
+                    System.out.printf("  %,d more finished in the %.1f s after the deadline%n",
+                                      step.drained.sum(), step.drainSeconds);
+                }
+            } catch (SQLException e) {
+                System.out.println("ERROR: Could not open the connection pool.");
+                System.out.println("Details: " + e.getMessage());
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        printSummary(steps);
+
+        try {
+            String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            File file = new File(BENCHMARK_DIR + "analyst-load-" + timestamp + ".csv");
+            writeCsv(file, steps);
+            System.out.println("\nResults written to " + file.getPath());
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not write load test results.");
+            System.out.println("Details: " + e.getMessage());
+        }
+    }
+
+    private static LoadOptions parseOptions(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--sessions":
+                        String[] levels = value.split(",");
+                        options.sessionLevels = new int[levels.length];
+                        for (int l = 0; l < levels.length; l++) {
+                            options.sessionLevels[l] = Integer.parseInt(levels[l].trim());
+                            if (options.sessionLevels[l] < 1) {
+                                throw new IllegalArgumentException("Session counts must be at least 1");
+                            }
+                        }
+                        break;
+                    case "--duration":
+                        options.durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "--think-ms":
+                        options.thinkMillis = Integer.parseInt(value);
+                        break;
+                    case "--pool-size":
+                        options.poolSize = Integer.parseInt(value);
+                        break;
+                    case "--param-share":
+                        options.parameterizedShare = Double.parseDouble(value);
+                        break;
+                    case "--seed":
+                        options.seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + args[i] + ": " + value);
+            }
+        }
+        if (options.durationSeconds < 1 || options.thinkMillis < 0 || options.poolSize < 0) {
+            throw new IllegalArgumentException("Duration must be positive and think time and pool size non-negative");
+        }
+        return options;
+    }
+
+    /**
+     * Runs one concurrency level for the configured duration.
+     * Sessions run on platform threads, one per session; connections come from a
+     * fixed pool so that a pool smaller than the session count shows up as wait time.
+     */
+    private static LoadStep runStep(int sessions, int poolSize, LoadOptions options)
+            throws SQLException, InterruptedException {
+        LoadStep step = new LoadStep(sessions, poolSize, options.durationSeconds);
+        BlockingQueue<Connection> pool = new ArrayBlockingQueue<>(poolSize);
+        List<Connection> opened = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                long start = System.nanoTime();
+                Connection conn = DatabaseConnection.openConnection();
+                step.connectNanos.record(System.nanoTime() - start);
+                opened.add(conn);
+                pool.add(conn);
+            }
+
+            List<String> reports = new ArrayList<>();
+            for (Map.Entry<String, String> query : QueryManager.getAllQueries().entrySet()) {
+                if (QueryManager.getParameterCount(query.getValue()) == 0) {
+                    reports.add(query.getKey());
+                }
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(sessions, r -> {
+                Thread t = new Thread(r, "analyst-session");
+                t.setDaemon(true);
+                return t;
+            });
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+            for (int s = 0; s < sessions; s++) {
+                long sessionSeed = options.seed * 31 + s;
+                executor.submit(() -> runSession(new SplittableRandom(sessionSeed), reports, pool,
+                                                 deadline, options, step));
+            }
+            executor.shutdown();
+            // Queries running at the deadline may finish; with no timeout there is no bound to cut them off at
+            int timeout = longestTimeout(reports);
+            long wait = timeout == 0 ? Long.MAX_VALUE
+                    : Math.max(0, deadline - System.nanoTime()) + TimeUnit.SECONDS.toNanos(timeout + 5L);
+            if (!executor.awaitTermination(wait, TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+            }
+            step.drainSeconds = Math.max(0, System.nanoTime() - deadline) / 1e9;
+        } finally {
+            for (Connection conn : opened) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    // Already broken; nothing to release
+                }
+            }
+        }
+        return step;
+    }
+
+    /**
+     * The longest server-side timeout any query in the mix can run with
+     * @return Seconds, or 0 if some query has no limit
+     */
+    private static int longestTimeout(List<String> reports) {
+        List<String> queries = new ArrayList<>();
+        queries.add(QueryManager.REVENUE_BY_STATE_AND_YEAR);
+        queries.add(QueryManager.SELLERS_BY_CATEGORY);
+        for (String report : reports) {
+            queries.add(QueryManager.getQuery(report));
+        }
+        int longest = 0;
+        for (String sql : queries) {
+            int timeout = QueryExecutor.getQueryTimeout(sql);
+            if (timeout == 0) {
+                return 0;
+            }
+            longest = Math.max(longest, timeout);
+        }
+        return longest;
+    }
+
+    /**
+     * One simulated analyst: pick a report, run it, think, repeat until the deadline
+     */
+    private static void runSession(SplittableRandom rnd, List<String> reports, BlockingQueue<Connection> pool,
+                                   long deadline, LoadOptions options, LoadStep step) {
+        // Stagger the first request so sessions do not start in lockstep
+        if (!think(rnd, options.thinkMillis, deadline)) {
+            return;
+        }
+
+        while (System.nanoTime() < deadline) {
+            String sql;
+            Object[] params;
+            double u = rnd.nextDouble();
+            if (u < options.parameterizedShare / 2) {
+                sql = QueryManager.REVENUE_BY_STATE_AND_YEAR;
+                params = new Object[] {STATES[rnd.nextInt(STATES.length)], YEARS[rnd.nextInt(YEARS.length)]};
+            } else if (u < options.parameterizedShare) {
+                sql = QueryManager.SELLERS_BY_CATEGORY;
+                params = new Object[] {CATEGORY_TERMS[rnd.nextInt(CATEGORY_TERMS.length)]};
+            } else {
+                sql = QueryManager.getQuery(reports.get(rnd.nextInt(reports.size())));
+                params = new Object[0];
+            }
+
+            long waitStart = System.nanoTime();
+            Connection conn;
+            try {
+                conn = pool.poll(Math.max(0, deadline - waitStart), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (conn == null) {
+                // The run ended while this query queued for a connection: it never reached the server, and
+                // its wait was cut short rather than ended by a connection, so it is kept out of waitNanos
+                step.notStartedWaitNanos.record(System.nanoTime() - waitStart);
+                step.notStarted.increment();
+                return;
+            }
+            step.waitNanos.record(System.nanoTime() - waitStart);
+
+            long queryStart = System.nanoTime();
+            try {
+                runQuery(conn, sql, params);
+                long queryEnd = System.nanoTime();
+                step.latencyNanos.record(queryEnd - queryStart);
+                (queryEnd - deadline <= 0 ? step.completed : step.drained).increment();
+            } catch (SQLException e) {
+                step.recordError(describe(e));
+            } finally {
+                pool.add(conn);
+            }
+
+            if (!think(rnd, options.thinkMillis, deadline)) {
+                return;
+            }
+        }
+    }
+
+    private static void runQuery(Connection conn, String sql, Object[] params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setQueryTimeout(QueryExecutor.getQueryTimeout(sql));
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        rs.getObject(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sleeps for an exponentially distributed think time
+     * @return false if the deadline passed or the session was interrupted
+     */
+    private static boolean think(SplittableRandom rnd, int meanMillis, long deadline) {
+        long pause = (long) (-Math.log(1 - rnd.nextDouble()) * meanMillis);
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        try {
+            Thread.sleep(Math.max(0, Math.min(pause, remaining)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return System.nanoTime() < deadline;
+    }
+
+    private static String describe(SQLException e) {
+        if (e instanceof SQLTimeoutException || "HYT00".equals(e.getSQLState())) {
+            return "query timeout";
+        }
+        if (e.getErrorCode() == 1205) {
+            return "deadlock victim";
+        }
+        return e.getSQLState() != null ? "SQLSTATE " + e.getSQLState() : "error " + e.getErrorCode();
+    }
+
+    private static void printSummary(List<LoadStep> steps) {
+        System.out.println("\n╔══════════╦════════╦═══════════╦═══════════╦═══════════╦═══════════╦════════════╦═════════════╦══════════╗");
+        System.out.println("║ Sessions ║ Conns  ║ Queries   ║ Queries/s ║ p50 ms    ║ p95 ms    ║ p99 ms     ║ Wait p95 ms ║ Errors % ║");
+        System.out.println("╠══════════╬════════╬═══════════╬═══════════╬═══════════╬═══════════╬════════════╬═════════════╬══════════╣");
+        for (LoadStep step : steps) {
+            System.out.printf("║ %8d ║ %6d ║ %,9d ║ %9.1f ║ %9.1f ║ %9.1f ║ %10.1f ║ %11.1f ║ %8.2f ║%n",
+                              step.sessions, step.poolSize, step.completed.sum(), step.throughput(),
+                              millis(step.latencyNanos.getPercentile(50)),
+                              millis(step.latencyNanos.getPercentile(95)),
+                              millis(step.latencyNanos.getPercentile(99)),
+                              millis(step.waitNanos.getPercentile(95)), step.errorRate());
+        }
+        System.out.println("╚══════════╩════════╩═══════════╩═══════════╩═══════════╩═══════════╩════════════╩═════════════╩══════════╝");
+
+        for (LoadStep step : steps) {
+            if (step.errors.isEmpty()) {
+                continue;
+            }
+            System.out.printf("Errors with %d session(s):%n", step.sessions);
+            for (Map.Entry<String, LongAdder> error : new TreeMap<>(step.errors).entrySet()) {
+                System.out.printf("  %-40s %,d%n", error.getKey(), error.getValue().sum());
+            }
+        }
+    }
+
+    private static void writeCsv(File file, List<LoadStep> steps) throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("sessions,connections,queries,errors,queries_per_second,p50_ms,p95_ms,p99_ms,max_ms,"
+                        + "wait_p50_ms,wait_p95_ms,wait_max_ms,connect_p50_ms,error_rate_percent,not_started,"
+                        + "not_started_wait_max_ms,drained_queries,drain_seconds");
+            for (LoadStep s : steps) {
+                out.println(String.format(Locale.ROOT,
+                        "%d,%d,%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f,%.3f,%d,%.2f,%d,%.2f",
+                        s.sessions, s.poolSize, s.completed.sum(), s.failed.sum(), s.throughput(),
+                        millis(s.latencyNanos.getPercentile(50)), millis(s.latencyNanos.getPercentile(95)),
+                        millis(s.latencyNanos.getPercentile(99)), millis(s.latencyNanos.getMax()),
+                        millis(s.waitNanos.getPercentile(50)), millis(s.waitNanos.getPercentile(95)),
+                        millis(s.waitNanos.getMax()), millis(s.connectNanos.getPercentile(50)),
+                        s.errorRate(), s.notStarted.sum(), millis(s.notStartedWaitNanos.getMax()),
+                        s.drained.sum(), s.drainSeconds));
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -17,10 +17,20 @@ public class BrazilianECommerceAnalyzer {
         System.out.println("===============================================================================\n");
 
         System.out.println("Initializing application...");
+        JmxMonitoring.register();
 
         try {
-            // Test database connection
-            DatabaseConnection.getConnection();
+            if (args.length > 0 && args[0].equals("--local")) {
+                // Answer reports from the CSVs in memory; the database is never contacted
+                if (args.length > 1) {
+                    CSVDataLoader.setDataDir(args[1]);
+                }
+                QueryExecutor.setLocalEngine(true);
+                LocalAnalyticsEngine.getStore();
+            } else {
+                // Test database connection
+                DatabaseConnection.getConnection();
+            }
             System.out.println("Application ready.\n");
 
             // Launch menu interface
@@ -3,8 +3,14 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Loads data from CSV files into the database tables.
@@ -14,6 +20,114 @@ public class CSVDataLoader {
     public static final String DATA_DIR = "data/";
     public static final int BATCH_SIZE = 5000; // Batch size for bulk inserts
 
+    private static volatile String dataDir = DATA_DIR;
+
+    // Brazilian states: code, name, region
+    static final String[][] BRAZILIAN_STATES = {
+        {"AC", "Acre", "North"},
+        {"AL", "Alagoas", "Northeast"},
+        {"AP", "Amapá", "North"},
+        {"AM", "Amazonas", "North"},
+        {"BA", "Bahia", "Northeast"},
+        {"CE", "Ceará", "Northeast"},
+        {"DF", "Distrito Federal", "Central-West"},
+        {"ES", "Espírito Santo", "Southeast"},
+        {"GO", "Goiás", "Central-West"},
+        {"MA", "Maranhão", "Northeast"},
+        {"MT", "Mato Grosso", "Central-West"},
+        {"MS", "Mato Grosso do Sul", "Central-West"},
+        {"MG", "Minas Gerais", "Southeast"},
+        {"PA", "Pará", "North"},
+        {"PB", "Paraíba", "Northeast"},
+        {"PR", "Paraná", "South"},
+        {"PE", "Pernambuco", "Northeast"},
+        {"PI", "Piauí", "Northeast"},
+        {"RJ", "Rio de Janeiro", "Southeast"},
+        {"RN", "Rio Grande do Norte", "Northeast"},
+        {"RS", "Rio Grande do Sul", "South"},
+        {"RO", "Rondônia", "North"},
+        {"RR", "Roraima", "North"},
+        {"SC", "Santa Catarina", "South"},
+        {"SP", "São Paulo", "Southeast"},
+        {"SE", "Sergipe", "Northeast"},
+        {"TO", "Tocantins", "North"}
+    };
+
+    // INSERT statement of each table loaded from a CSV, with one parameter per CSV column
+    static final Map<String, String> INSERT_STATEMENTS = new LinkedHashMap<>();
+
+    static {
+        INSERT_STATEMENTS.put("GEOLOCATION", "INSERT INTO GEOLOCATION (zip_code_prefix, geolocation_lat, " +
+                              "geolocation_lng, geolocation_city, geolocation_state) " +
+                              "VALUES (?, ?, ?, ?, ?)");
+        INSERT_STATEMENTS.put("CATEGORIES", "INSERT INTO CATEGORIES (category_name_portuguese, " +
+                              "category_name_english) VALUES (?, ?)");
+        INSERT_STATEMENTS.put("CUSTOMERS", "INSERT INTO CUSTOMERS (customer_id, customer_unique_id, " +
+                              "customer_zip_code_prefix, customer_city, customer_state) " +
+                              "VALUES (?, ?, ?, ?, ?)");
+        INSERT_STATEMENTS.put("SELLERS", "INSERT INTO SELLERS (seller_id, seller_zip_code_prefix, " +
+                              "seller_city, seller_state) VALUES (?, ?, ?, ?)");
+        INSERT_STATEMENTS.put("PRODUCTS", "INSERT INTO PRODUCTS (product_id, category_name_portuguese, " +
+                              "product_name_length, product_description_length, product_photos_qty, " +
+                              "product_weight_g, product_length_cm, product_height_cm, product_width_cm) " +
+                              "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        INSERT_STATEMENTS.put("ORDERS", "INSERT INTO ORDERS (order_id, customer_id, order_status, " +
+                              "order_purchase_timestamp, order_approved_at, order_delivered_carrier_date, " +
+                              "order_delivered_customer_date, order_estimated_delivery_date) " +
+                              "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        INSERT_STATEMENTS.put("ORDER_ITEMS", "INSERT INTO ORDER_ITEMS (order_id, order_item_seq, product_id, " +
+                              "seller_id, shipping_limit_date, price, freight_value) " +
+                              "VALUES (?, ?, ?, ?, ?, ?, ?)");
+        INSERT_STATEMENTS.put("ORDER_PAYMENTS", "INSERT INTO ORDER_PAYMENTS (order_id, payment_sequential, " +
+                              "payment_type, payment_installments, payment_value) " +
+                              "VALUES (?, ?, ?, ?, ?)");
+        INSERT_STATEMENTS.put("ORDER_REVIEWS", "INSERT INTO ORDER_REVIEWS (review_id, order_id, review_score, " +
+                              "review_comment_title, review_comment_message, review_creation_date, " +
+                              "review_answer_timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    // Progress of the current load, published over JMX
+    private static volatile String currentTable = "";
+    private static volatile boolean loading;
+    private static volatile long currentTableRows;
+    private static volatile long currentTableStartNanos;
+    private static volatile long currentTableEndNanos;
+    private static final LongAdder totalRowsLoaded = new LongAdder();
+    private static final LongAdder batchesCommitted = new LongAdder();
+    private static final QueryMetrics.Histogram batchCommitNanos = new QueryMetrics.Histogram();
+
+    /**
+     * Loads from another directory of Olist CSVs, e.g. a synthetic data set
+     */
+    public static void setDataDir(String dir) {
+        dataDir = dir.endsWith("/") ? dir : dir + "/";
+    }
+
+    public static String getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * Receives the rows of one table as they are loaded, one batch at a time
+     */
+    interface BatchListener {
+        /** Adds one row, given as the CSV values */
+        void accept(String[] values);
+
+        /** Applies the rows accepted since the last commit, now that the database has them */
+        void commitBatch();
+
+        /** Called once the whole table is loaded */
+        void finish();
+    }
+
+    /**
+     * Step that loads one table and returns the number of rows loaded
+     */
+    private interface TableLoad {
+        int load() throws SQLException, IOException;
+    }
+
     /**
      * Clears all data from all tables in the correct order (respecting foreign keys)
      */
@@ -35,10 +149,13 @@ public class CSVDataLoader {
         };
 
         try (Statement stmt = conn.createStatement()) {
+            // Derived from ORDER_ITEMS by ShippingDistanceJob, and only there once the job has run
+            stmt.executeUpdate(ShippingDistanceJob.CLEAR_TABLE);
             for (String table : tables) {
                 stmt.executeUpdate("DELETE FROM " + table);
                 System.out.println("[OK] Cleared " + table);
             }
+            resetDerivedData();
             System.out.println("\nAll data cleared successfully.");
         } catch (SQLException e) {
             System.out.println("ERROR: Failed to clear data.");
@@ -46,6 +163,36 @@ public class CSVDataLoader {
         }
     }
 
+    /**
+     * Forgets everything built from the table contents and deletes the files it was saved to:
+     * the sketches, maintained aggregates, zip table, review index and follower offsets. Called
+     * whenever the tables are emptied or recreated, so the next load starts them afresh instead
+     * of adding the same rows a second time.
+     */
+    public static void resetDerivedData() {
+        CategoryDictionary.invalidate();
+        CardinalitySketches.reset();
+        IncrementalAggregates.reset();
+        ZipGeography.reset();
+        SellerLocator.invalidate();
+        ShippingDistanceJob.invalidate();
+        ReviewSearchIndex.reset();
+        CSVFollower.resetOffsets();
+    }
+
+    /**
+     * Checks whether a table has no rows, as after schema.sql recreates it
+     * @return false if the table has rows or cannot be read
+     */
+    static boolean isTableEmpty(String table) {
+        try (Statement stmt = DatabaseConnection.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT TOP 1 1 FROM " + table)) {
+            return !rs.next();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
     /**
      * Populates all tables from CSV files in the correct order
      */
@@ -54,17 +201,7 @@ public class CSVDataLoader {
         long startTime = System.currentTimeMillis();
 
         try {
-            // Load in correct order respecting foreign key dependencies
-            loadStates();
-            loadGeolocation();
-            loadCategories();
-            loadCustomers();
-            loadSellers();
-            loadProducts();
-            loadOrders();
-            loadOrderItems();
-            loadOrderPayments();
-            loadOrderReviews();
+            loadAllTables();
 
             long endTime = System.currentTimeMillis();
             double seconds = (endTime - startTime) / 1000.0;
@@ -77,7 +214,34 @@ public class CSVDataLoader {
         }
     }
 
-    private static void loadStates() throws SQLException, IOException {
+    /**
+     * Loads every table in foreign key order and times each one
+     * @return Table name -> {rows loaded, elapsed nanoseconds}, in load order
+     */
+    public static Map<String, long[]> loadAllTables() throws SQLException, IOException {
+        Map<String, long[]> stats = new LinkedHashMap<>();
+        // Load in correct order respecting foreign key dependencies
+        timed(stats, "STATES", CSVDataLoader::loadStates);
+        timed(stats, "GEOLOCATION", CSVDataLoader::loadGeolocation);
+        timed(stats, "CATEGORIES", CSVDataLoader::loadCategories);
+        timed(stats, "CUSTOMERS", CSVDataLoader::loadCustomers);
+        timed(stats, "SELLERS", CSVDataLoader::loadSellers);
+        timed(stats, "PRODUCTS", CSVDataLoader::loadProducts);
+        timed(stats, "ORDERS", CSVDataLoader::loadOrders);
+        timed(stats, "ORDER_ITEMS", CSVDataLoader::loadOrderItems);
+        timed(stats, "ORDER_PAYMENTS", CSVDataLoader::loadOrderPayments);
+        timed(stats, "ORDER_REVIEWS", CSVDataLoader::loadOrderReviews);
+        return stats;
+    }
+
+    private static void timed(Map<String, long[]> stats, String table, TableLoad step)
+            throws SQLException, IOException {
+        long start = System.nanoTime();
+        int rows = step.load();
+        stats.put(table, new long[] {rows, System.nanoTime() - start});
+    }
+
+    private static int loadStates() throws SQLException, IOException {
         System.out.print("Loading STATES... ");
         Connection conn = DatabaseConnection.getConnection();
         boolean originalAutoCommit = conn.getAutoCommit();
@@ -87,37 +251,7 @@ public class CSVDataLoader {
         try (PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
             conn.setAutoCommit(false);
 
-            String[][] states = {
-                {"AC", "Acre", "North"},
-                {"AL", "Alagoas", "Northeast"},
-                {"AP", "Amapá", "North"},
-                {"AM", "Amazonas", "North"},
-                {"BA", "Bahia", "Northeast"},
-                {"CE", "Ceará", "Northeast"},
-                {"DF", "Distrito Federal", "Central-West"},
-                {"ES", "Espírito Santo", "Southeast"},
-                {"GO", "Goiás", "Central-West"},
-                {"MA", "Maranhão", "Northeast"},
-                {"MT", "Mato Grosso", "Central-West"},
-                {"MS", "Mato Grosso do Sul", "Central-West"},
-                {"MG", "Minas Gerais", "Southeast"},
-                {"PA", "Pará", "North"},
-                {"PB", "Paraíba", "Northeast"},
-                {"PR", "Paraná", "South"},
-                {"PE", "Pernambuco", "Northeast"},
-                {"PI", "Piauí", "Northeast"},
-                {"RJ", "Rio de Janeiro", "Southeast"},
-                {"RN", "Rio Grande do Norte", "Northeast"},
-                {"RS", "Rio Grande do Sul", "South"},
-                {"RO", "Rondônia", "North"},
-                {"RR", "Roraima", "North"},
-                {"SC", "Santa Catarina", "South"},
-                {"SP", "São Paulo", "Southeast"},
-                {"SE", "Sergipe", "Northeast"},
-                {"TO", "Tocantins", "North"}
-            };
-
-            for (String[] state : states) {
+            for (String[] state : BRAZILIAN_STATES) {
                 pstmt.setString(1, state[0]);
                 pstmt.setString(2, state[1]);
                 pstmt.setString(3, state[2]);
@@ -140,124 +274,144 @@ public class CSVDataLoader {
                 System.err.println("Failed to restore auto-commit: " + e.getMessage());
             }
         }
-        System.out.println("Done (27 records)");
+        System.out.println("Done (" + BRAZILIAN_STATES.length + " records)");
+        return BRAZILIAN_STATES.length;
     }
 
-    private static void loadGeolocation() throws SQLException, IOException {
+    private static int loadGeolocation() throws SQLException, IOException {
         System.out.print("Loading GEOLOCATION... ");
-        String file = DATA_DIR + "olist_geolocation_dataset.csv";
+        String file = dataDir + "olist_geolocation_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO GEOLOCATION (zip_code_prefix, geolocation_lat, " +
-                          "geolocation_lng, geolocation_city, geolocation_state) " +
-                          "VALUES (?, ?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("GEOLOCATION");
 
         int count = loadCSV(file, insertSQL, 5);
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadCategories() throws SQLException, IOException {
+    private static int loadCategories() throws SQLException, IOException {
         System.out.print("Loading CATEGORIES... ");
-        String file = DATA_DIR + "product_category_name_translation.csv";
+        String file = dataDir + "product_category_name_translation.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO CATEGORIES (category_name_portuguese, category_name_english) " +
-                          "VALUES (?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("CATEGORIES");
 
         int count = loadCSV(file, insertSQL, 2);
+        CategoryDictionary.invalidate();
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadCustomers() throws SQLException, IOException {
+    private static int loadCustomers() throws SQLException, IOException {
         System.out.print("Loading CUSTOMERS... ");
-        String file = DATA_DIR + "olist_customers_dataset.csv";
+        String file = dataDir + "olist_customers_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO CUSTOMERS (customer_id, customer_unique_id, " +
-                          "customer_zip_code_prefix, customer_city, customer_state) " +
-                          "VALUES (?, ?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("CUSTOMERS");
 
         int count = loadCSV(file, insertSQL, 5);
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadSellers() throws SQLException, IOException {
+    private static int loadSellers() throws SQLException, IOException {
         System.out.print("Loading SELLERS... ");
-        String file = DATA_DIR + "olist_sellers_dataset.csv";
+        String file = dataDir + "olist_sellers_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO SELLERS (seller_id, seller_zip_code_prefix, " +
-                          "seller_city, seller_state) VALUES (?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("SELLERS");
 
         int count = loadCSV(file, insertSQL, 4);
+        SellerLocator.invalidate();
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadProducts() throws SQLException, IOException {
+    private static int loadProducts() throws SQLException, IOException {
         System.out.print("Loading PRODUCTS... ");
-        String file = DATA_DIR + "olist_products_dataset.csv";
+        String file = dataDir + "olist_products_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO PRODUCTS (product_id, category_name_portuguese, " +
-                          "product_name_length, product_description_length, product_photos_qty, " +
-                          "product_weight_g, product_length_cm, product_height_cm, product_width_cm) " +
-                          "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("PRODUCTS");
 
         int count = loadCSV(file, insertSQL, 9);
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadOrders() throws SQLException, IOException {
+    private static int loadOrders() throws SQLException, IOException {
         System.out.print("Loading ORDERS... ");
-        String file = DATA_DIR + "olist_orders_dataset.csv";
+        String file = dataDir + "olist_orders_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO ORDERS (order_id, customer_id, order_status, " +
-                          "order_purchase_timestamp, order_approved_at, order_delivered_carrier_date, " +
-                          "order_delivered_customer_date, order_estimated_delivery_date) " +
-                          "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("ORDERS");
 
         int count = loadCSV(file, insertSQL, 8);
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadOrderItems() throws SQLException, IOException {
+    private static int loadOrderItems() throws SQLException, IOException {
         System.out.print("Loading ORDER_ITEMS... ");
-        String file = DATA_DIR + "olist_order_items_dataset.csv";
+        String file = dataDir + "olist_order_items_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO ORDER_ITEMS (order_id, order_item_seq, product_id, " +
-                          "seller_id, shipping_limit_date, price, freight_value) " +
-                          "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("ORDER_ITEMS");
 
         int count = loadCSV(file, insertSQL, 7);
+        ShippingDistanceJob.invalidate();
+        SellerLocator.invalidate();
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadOrderPayments() throws SQLException, IOException {
+    private static int loadOrderPayments() throws SQLException, IOException {
         System.out.print("Loading ORDER_PAYMENTS... ");
-        String file = DATA_DIR + "olist_order_payments_dataset.csv";
+        String file = dataDir + "olist_order_payments_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO ORDER_PAYMENTS (order_id, payment_sequential, " +
-                          "payment_type, payment_installments, payment_value) " +
-                          "VALUES (?, ?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("ORDER_PAYMENTS");
 
         int count = loadCSV(file, insertSQL, 5);
         System.out.println("Done (" + count + " records)");
+        return count;
     }
 
-    private static void loadOrderReviews() throws SQLException, IOException {
+    private static int loadOrderReviews() throws SQLException, IOException {
         System.out.print("Loading ORDER_REVIEWS... ");
-        String file = DATA_DIR + "olist_order_reviews_dataset.csv";
+        String file = dataDir + "olist_order_reviews_dataset.csv";
         Connection conn = DatabaseConnection.getConnection();
 
-        String insertSQL = "INSERT INTO ORDER_REVIEWS (review_id, order_id, review_score, " +
-                          "review_comment_title, review_comment_message, review_creation_date, " +
-                          "review_answer_timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String insertSQL = INSERT_STATEMENTS.get("ORDER_REVIEWS");
 
         int count = loadCSV(file, insertSQL, 7);
         System.out.println("Done (" + count + " records)");
+        return count;
+    }
+
+    /**
+     * Listeners fed with the committed rows of a table: the cardinality sketches and the maintained aggregates
+     */
+    static List<BatchListener> batchListeners(String table) {
+        List<BatchListener> listeners = new ArrayList<>(4);
+        BatchListener sketches = CardinalitySketches.collectorFor(table);
+        if (sketches != null) {
+            listeners.add(sketches);
+        }
+        BatchListener aggregates = IncrementalAggregates.listenerFor(table);
+        if (aggregates != null) {
+            listeners.add(aggregates);
+        }
+        BatchListener geography = ZipGeography.listenerFor(table);
+        if (geography != null) {
+            listeners.add(geography);
+        }
+        BatchListener reviews = ReviewSearchIndex.listenerFor(table);
+        if (reviews != null) {
+            listeners.add(reviews);
+        }
+        return listeners;
     }
 
     /**
@@ -270,6 +424,7 @@ public class CSVDataLoader {
         int count = 0;
         long startTime = System.currentTimeMillis();
         boolean originalAutoCommit = conn.getAutoCommit();
+        startProgress(insertSQL);
 
         try (BufferedReader br = new BufferedReader(new FileReader(filename));
              PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
@@ -277,29 +432,32 @@ public class CSVDataLoader {
             // Disable auto-commit for transaction optimization
             conn.setAutoCommit(false);
 
+            String table = currentTable;
+            List<BatchListener> listeners = batchListeners(table);
+            long batchCharacters = 0;
             String line = br.readLine(); // Skip header
             while ((line = br.readLine()) != null) {
                 String[] values = parseCSVLine(line);
 
                 if (values.length >= columnCount) {
-                    for (int i = 0; i < columnCount; i++) {
-                        String value = values[i].trim();
-                        if (value.isEmpty() || value.equalsIgnoreCase("null")) {
-                            pstmt.setNull(i + 1, java.sql.Types.VARCHAR);
-                        } else {
-                            pstmt.setString(i + 1, value);
-                        }
-                    }
+                    batchCharacters += line.length() + 1;
+                    bindRow(pstmt, values, columnCount);
 
                     // Add to batch instead of executing immediately
                     pstmt.addBatch();
+                    for (BatchListener listener : listeners) {
+                        listener.accept(values);
+                    }
                     count++;
 
                     // Execute batch every BATCH_SIZE records
                     if (count % BATCH_SIZE == 0) {
-                        pstmt.executeBatch();
-                        pstmt.clearBatch();
-                        conn.commit();
+                        commitBatch(pstmt, conn, table, BATCH_SIZE, batchCharacters);
+                        for (BatchListener listener : listeners) {
+                            listener.commitBatch();
+                        }
+                        batchCharacters = 0;
+                        currentTableRows = count;
 
                         // Progress indicator
                         long elapsed = System.currentTimeMillis() - startTime;
@@ -309,14 +467,16 @@ public class CSVDataLoader {
                 }
             }
 
-            // Execute remaining batch
+            // Execute and commit the remaining partial batch
             if (count % BATCH_SIZE != 0) {
-                pstmt.executeBatch();
-                pstmt.clearBatch();
+                commitBatch(pstmt, conn, table, count % BATCH_SIZE, batchCharacters);
+            }
+            currentTableRows = count;
+            // Only committed batches reach the listeners, so a rolled back batch is never counted
+            for (BatchListener listener : listeners) {
+                listener.commitBatch();
+                listener.finish();
             }
-
-            // Final commit
-            conn.commit();
 
         } catch (SQLException | IOException e) {
             // Rollback on error
@@ -327,6 +487,8 @@ public class CSVDataLoader {
             }
             throw e;
         } finally {
+            currentTableEndNanos = System.nanoTime();
+            loading = false;
             // Restore original auto-commit setting
             try {
                 conn.setAutoCommit(originalAutoCommit);
@@ -338,6 +500,124 @@ public class CSVDataLoader {
         return count;
     }
 
+    /**
+     * Sends the pending batch and commits it, timing the round trip
+     * @param batchCharacters Characters of the CSV lines in this batch, for the JFR event
+     */
+    private static void commitBatch(PreparedStatement pstmt, Connection conn, String table,
+                                    int batchRows, long batchCharacters) throws SQLException {
+        JfrEvents.CsvBatchCommit event = new JfrEvents.CsvBatchCommit();
+        event.begin();
+        long start = System.nanoTime();
+        pstmt.executeBatch();
+        pstmt.clearBatch();
+        long executed = System.nanoTime();
+        conn.commit();
+        long committed = System.nanoTime();
+        event.end();
+
+        batchCommitNanos.record(committed - start);
+        batchesCommitted.increment();
+        totalRowsLoaded.add(batchRows);
+
+        if (event.shouldCommit()) {
+            event.table = table;
+            event.rows = batchRows;
+            event.characters = batchCharacters;
+            event.executeBatchNanos = executed - start;
+            event.commitNanos = committed - executed;
+            event.commit();
+        }
+    }
+
+    private static void startProgress(String insertSQL) {
+        currentTable = tableName(insertSQL);
+        currentTableRows = 0;
+        currentTableStartNanos = System.nanoTime();
+        loading = true;
+    }
+
+    /**
+     * Extracts the table name from "INSERT INTO TABLE (...)"
+     */
+    static String tableName(String insertSQL) {
+        String sql = insertSQL.trim();
+        if (!sql.regionMatches(true, 0, "INSERT INTO", 0, "INSERT INTO".length())) {
+            return "";
+        }
+        String rest = sql.substring("INSERT INTO".length()).trim();
+        int end = 0;
+        while (end < rest.length() && !Character.isWhitespace(rest.charAt(end)) && rest.charAt(end) != '(') {
+            end++;
+        }
+        return rest.substring(0, end);
+    }
+
+    /**
+     * Table being loaded, or the last table loaded if no load is running
+     */
+    public static String getCurrentTable() {
+        return currentTable;
+    }
+
+    public static boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Rows committed so far for the current (or last) table
+     */
+    public static long getCurrentTableRows() {
+        return currentTableRows;
+    }
+
+    /**
+     * Commit rate for the current (or last) table
+     */
+    public static double getCurrentRowsPerSecond() {
+        long end = loading ? System.nanoTime() : currentTableEndNanos;
+        double seconds = (end - currentTableStartNanos) / 1e9;
+        return seconds <= 0 ? 0 : currentTableRows / seconds;
+    }
+
+    public static long getTotalRowsLoaded() {
+        return totalRowsLoaded.sum();
+    }
+
+    public static long getBatchesCommitted() {
+        return batchesCommitted.sum();
+    }
+
+    public static QueryMetrics.Histogram getBatchCommitTimes() {
+        return batchCommitNanos;
+    }
+
+    /**
+     * Binds the first columnCount CSV values to the statement parameters
+     */
+    static void bindRow(PreparedStatement pstmt, String[] values, int columnCount) throws SQLException {
+        for (int i = 0; i < columnCount; i++) {
+            String value = normalizeValue(values[i]);
+            if (value == null) {
+                pstmt.setNull(i + 1, java.sql.Types.VARCHAR);
+            } else {
+                pstmt.setString(i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * Trims a CSV value
+     * @return The trimmed value, or null if it is empty or the literal "null"
+     */
+    static String normalizeValue(String raw) {
+        String value = raw.trim();
+        if (value.isEmpty() || value.equalsIgnoreCase("null")) {
+            return null;
+        }
+        return value;
+    }
+
     /**
      * Parses a CSV line handling quoted fields
      */
@@ -0,0 +1,776 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Follows growing Olist CSV files, like tail -f, and inserts new records as they appear.
+ * Each cycle reads only the complete lines appended since the last cycle; a line still being
+ * written stays in the file until its newline arrives. The new rows of all files are inserted
+ * in one transaction, in foreign key order: CUSTOMERS, ORDERS, then ORDER_ITEMS, ORDER_PAYMENTS
+ * and ORDER_REVIEWS. A row whose customer or order has not arrived yet waits in a holding buffer
+ * and is retried every cycle until its parent shows up or the hold time runs out.
+ *
+ * Committed rows are passed to the same batch listeners as the loader, so the maintained
+ * aggregates and cardinality sketches stay current. Reports that run on the database see
+ * each cycle's rows as soon as it commits.
+ */
+public class CSVFollower implements Runnable {
+    public static final int DEFAULT_INTERVAL_MILLIS = 1000;
+    public static final int DEFAULT_HOLD_SECONDS = 60;
+    public static final String DEFAULT_OFFSETS_FILE = "ingest/offsets.properties";
+
+    private static final long CHECKPOINT_NANOS = 30_000_000_000L;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+    private static final char KEY_SEPARATOR = '|';
+    private static final DateTimeFormatter CLOCK = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static volatile CSVFollower running;
+
+    private final String dataDir;
+    private final int intervalMillis;
+    private final long holdNanos;
+    private final boolean verbose;
+    private final List<FollowedFile> files = new ArrayList<>();
+    private final Map<String, Set<String>> knownKeys = new HashMap<>();
+    private final QueryMetrics.Histogram readToCommitNanos = new QueryMetrics.Histogram();
+
+    private volatile boolean stopRequested;
+    private volatile long caughtUpNanos = System.nanoTime();
+    private volatile long cycles;
+    private volatile String lastError;
+    private Thread thread;
+    private Connection conn;
+    private long lastCheckpointNanos = System.nanoTime();
+    private long retryDelayMillis;      // Pause after a failed cycle, doubling while cycles keep failing
+    private boolean insertFailing;      // The last insert failed: retry the held rows before reading more
+
+    /**
+     * One followed CSV and the rows read from it that are not committed yet
+     */
+    private static final class FollowedFile {
+        final String table;
+        final File file;
+        final int columnCount;
+        final int[] keyColumns;     // Columns whose values identify a row already inserted, or none
+        final String parentTable;   // Followed table the parent key must exist in, or null
+        final int parentColumn;
+        List<CSVDataLoader.BatchListener> listeners;
+        final List<HeldRow> held = new ArrayList<>();
+
+        long offset;                // Byte offset just past the last complete line read
+        volatile long rowsIngested;
+        volatile long rowsOrphaned;
+        volatile long rowsRejected;
+        volatile long rowsDuplicate;
+
+        FollowedFile(String dataDir, String table, String fileName, int columnCount, int[] keyColumns,
+                     String parentTable, int parentColumn) {
+            this.table = table;
+            this.file = new File(dataDir + fileName);
+            this.columnCount = columnCount;
+            this.keyColumns = keyColumns;
+            this.parentTable = parentTable;
+            this.parentColumn = parentColumn;
+        }
+
+        /** The row's key as kept in knownKeys, or null if the file has none or a key column is empty */
+        String keyOf(String[] values) {
+            if (keyColumns.length == 0) {
+                return null;
+            }
+            StringBuilder key = new StringBuilder();
+            for (int column : keyColumns) {
+                if (values[column] == null) {
+                    return null;
+                }
+                if (key.length() > 0) {
+                    key.append(KEY_SEPARATOR);
+                }
+                key.append(values[column]);
+            }
+            return key.toString();
+        }
+
+        /** Offset to resume from after a restart: the start of the oldest line still held */
+        long resumeOffset() {
+            long resume = offset;
+            for (HeldRow row : held) {
+                resume = Math.min(resume, row.lineOffset);
+            }
+            return resume;
+        }
+    }
+
+    /**
+     * A parsed row and where it came from
+     */
+    private static final class HeldRow {
+        final String[] values;
+        final long lineOffset;
+        final long readNanos;
+
+        HeldRow(String[] values, long lineOffset, long readNanos) {
+            this.values = values;
+            this.lineOffset = lineOffset;
+            this.readNanos = readNanos;
+        }
+    }
+
+    /**
+     * @param dataDir Directory holding the growing CSVs
+     * @param intervalMillis Pause between cycles that found nothing new
+     * @param holdSeconds How long a row may wait for its parent before it is dropped
+     * @param verbose Print a line for every cycle that inserted rows
+     */
+    public CSVFollower(String dataDir, int intervalMillis, int holdSeconds, boolean verbose) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        if (holdSeconds < 0) {
+            throw new IllegalArgumentException("Hold time cannot be negative: " + holdSeconds);
+        }
+        this.dataDir = dataDir.endsWith("/") ? dataDir : dataDir + "/";
+        this.intervalMillis = intervalMillis;
+        this.holdNanos = holdSeconds * 1_000_000_000L;
+        this.verbose = verbose;
+        files.add(new FollowedFile(this.dataDir, "CUSTOMERS", "olist_customers_dataset.csv", 5, new int[] {0},
+                                   null, -1));
+        files.add(new FollowedFile(this.dataDir, "ORDERS", "olist_orders_dataset.csv", 8, new int[] {0},
+                                   "CUSTOMERS", 1));
+        // Items and payments are rejected by their primary keys if read twice
+        files.add(new FollowedFile(this.dataDir, "ORDER_ITEMS", "olist_order_items_dataset.csv", 7, new int[0],
+                                   "ORDERS", 0));
+        files.add(new FollowedFile(this.dataDir, "ORDER_PAYMENTS", "olist_order_payments_dataset.csv", 5, new int[0],
+                                   "ORDERS", 0));
+        // ORDER_REVIEWS has a generated key, so a review read twice would go in twice: match on review and order
+        files.add(new FollowedFile(this.dataDir, "ORDER_REVIEWS", "olist_order_reviews_dataset.csv", 7,
+                                   new int[] {0, 1}, "ORDERS", 1));
+    }
+
+    // ==================== LIFECYCLE ====================
+
+    /**
+     * Starts following in a background thread; only one follower runs at a time
+     */
+    public static synchronized CSVFollower start(String dataDir, int intervalMillis, int holdSeconds)
+            throws SQLException, IOException {
+        if (running != null) {
+            throw new IllegalStateException("Already following " + running.dataDir);
+        }
+        CSVFollower follower = new CSVFollower(dataDir, intervalMillis, holdSeconds, false);
+        follower.open();
+        follower.thread = new Thread(follower, "csv-follower");
+        follower.thread.setDaemon(true);
+        follower.thread.start();
+        running = follower;
+        return follower;
+    }
+
+    /**
+     * The follower started from the menu, or null if none is running
+     */
+    public static CSVFollower getRunning() {
+        return running;
+    }
+
+    /**
+     * Stops the background follower after its current cycle and saves its offsets
+     */
+    public static synchronized void stopRunning() {
+        CSVFollower follower = running;
+        if (follower == null) {
+            return;
+        }
+        follower.stopRequested = true;
+        follower.thread.interrupt();
+        try {
+            follower.thread.join(30_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = null;
+    }
+
+    /**
+     * Opens the follower's own connection, reads the keys already loaded and positions every file.
+     * Files start where the saved offsets left off, or at their current end the first time.
+     */
+    void open() throws SQLException, IOException {
+        for (FollowedFile f : files) {
+            if (!f.file.isFile()) {
+                throw new IOException("No such file: " + f.file);
+            }
+        }
+        connect();
+
+        Properties saved = readOffsets();
+        for (FollowedFile f : files) {
+            String offset = saved.getProperty(f.file.getAbsolutePath());
+            f.offset = offset != null ? Long.parseLong(offset) : f.file.length();
+            f.listeners = CSVDataLoader.batchListeners(f.table);
+        }
+    }
+
+    /**
+     * Opens the follower's connection and reads the keys already in the tables, and the product
+     * categories the sketches need for new items. Also used to reconnect after a failed cycle,
+     * when rows may have been committed without the follower knowing.
+     */
+    private void connect() throws SQLException {
+        conn = DatabaseConnection.openConnection();
+        try {
+            knownKeys.put("CUSTOMERS", readKeys("SELECT customer_id FROM CUSTOMERS"));
+            knownKeys.put("ORDERS", readKeys("SELECT order_id FROM ORDERS"));
+            knownKeys.put("ORDER_REVIEWS", readKeys("SELECT review_id, order_id FROM ORDER_REVIEWS"));
+            CardinalitySketches.readCategoryLookup(conn);
+        } catch (SQLException e) {
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    private Set<String> readKeys(String sql) throws SQLException {
+        Set<String> keys = new HashSet<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                String key = rs.getString(1);
+                for (int i = 2; i <= columns; i++) {
+                    key += KEY_SEPARATOR + rs.getString(i);
+                }
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!stopRequested) {
+                int inserted = 0;
+                try {
+                    if (conn == null) {
+                        connect();
+                    }
+                    inserted = cycle();
+                    lastError = null;
+                    retryDelayMillis = 0;
+                } catch (SQLException | IOException e) {
+                    lastError = e.getMessage();
+                    if (e instanceof SQLException) {
+                        // The connection may be gone; the next cycle opens a new one
+                        closeQuietly();
+                        conn = null;
+                    }
+                    retryDelayMillis = retryDelayMillis == 0 ? intervalMillis
+                            : Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+                    if (verbose) {
+                        System.out.println("ERROR: Follow cycle failed; retrying in "
+                                           + retryDelayMillis / 1000.0 + " s.");
+                        System.out.println("Details: " + e.getMessage());
+                    }
+                }
+                if (System.nanoTime() - lastCheckpointNanos >= CHECKPOINT_NANOS) {
+                    checkpoint();
+                }
+                if (inserted == 0) {
+                    try {
+                        Thread.sleep(Math.max(intervalMillis, retryDelayMillis));
+                    } catch (InterruptedException e) {
+                        if (stopRequested) {
+                            break;
+                        }
+                    }
+                }
+            }
+        } finally {
+            checkpoint();
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Saves the file offsets and lets the listeners persist what they have
+     */
+    private void checkpoint() {
+        for (FollowedFile f : files) {
+            for (CSVDataLoader.BatchListener listener : f.listeners) {
+                listener.finish();
+            }
+        }
+        try {
+            writeOffsets();
+        } catch (IOException e) {
+            lastError = "Failed to save offsets: " + e.getMessage();
+        }
+        lastCheckpointNanos = System.nanoTime();
+    }
+
+    private void closeQuietly() {
+        try {
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            // Already broken; nothing to release
+        }
+    }
+
+    // ==================== ONE CYCLE ====================
+
+    /**
+     * Reads the new complete lines of every file and inserts the rows whose parents exist
+     * @return Number of rows inserted
+     */
+    int cycle() throws SQLException, IOException {
+        long cycleStart = System.nanoTime();
+        boolean drained = true;
+        if (insertFailing) {
+            // Retry what is already held first, so rows do not pile up in memory while the database is away
+            drained = false;
+        } else {
+            for (FollowedFile f : files) {
+                drained &= readNewLines(f, cycleStart);
+            }
+        }
+
+        // Pick the rows whose parent is loaded, or arrives in this same cycle, in FK order
+        Map<String, Set<String>> staged = new HashMap<>();
+        Map<FollowedFile, List<HeldRow>> ready = new LinkedHashMap<>();
+        for (FollowedFile f : files) {
+            List<HeldRow> rows = new ArrayList<>();
+            Set<String> stagedKeys = new HashSet<>();
+            Iterator<HeldRow> it = f.held.iterator();
+            while (it.hasNext()) {
+                HeldRow row = it.next();
+                String key = f.keyOf(row.values);
+                if (key != null && (knownKeys.get(f.table).contains(key) || !stagedKeys.add(key))) {
+                    f.rowsDuplicate++;
+                    it.remove();
+                    continue;
+                }
+                String parent = f.parentTable == null ? null : row.values[f.parentColumn];
+                if (parent != null && !knownKeys.get(f.parentTable).contains(parent)
+                        && !staged.getOrDefault(f.parentTable, Set.of()).contains(parent)) {
+                    if (cycleStart - row.readNanos > holdNanos) {
+                        f.rowsOrphaned++;
+                        it.remove();
+                    } else if (key != null) {
+                        stagedKeys.remove(key);
+                    }
+                    continue;
+                }
+                rows.add(row);
+                it.remove();
+            }
+            staged.put(f.table, stagedKeys);
+            if (!rows.isEmpty()) {
+                ready.put(f, rows);
+            }
+        }
+
+        long[] ingestedBefore = new long[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            ingestedBefore[i] = files.get(i).rowsIngested;
+        }
+        int inserted = 0;
+        if (!ready.isEmpty()) {
+            try {
+                inserted = insert(ready);
+            } catch (SQLException e) {
+                // Lost the connection midway: hold the rows again; any that did go in come back as duplicates
+                for (Map.Entry<FollowedFile, List<HeldRow>> entry : ready.entrySet()) {
+                    entry.getKey().held.addAll(0, entry.getValue());
+                }
+                insertFailing = true;
+                throw e;
+            }
+            long committed = System.nanoTime();
+            for (List<HeldRow> rows : ready.values()) {
+                for (HeldRow row : rows) {
+                    readToCommitNanos.record(committed - row.readNanos);
+                }
+            }
+        }
+        insertFailing = false;
+        boolean holding = false;
+        for (FollowedFile f : files) {
+            holding |= !f.held.isEmpty();
+        }
+        if (drained && !holding) {
+            caughtUpNanos = cycleStart;
+        }
+        cycles++;
+        if (verbose && inserted > 0) {
+            printCycle(ingestedBefore);
+        }
+        return inserted;
+    }
+
+    /**
+     * Parses the complete lines appended since the last read into the file's holding buffer
+     * @return True if every complete line present when the cycle started was read
+     */
+    private boolean readNewLines(FollowedFile f, long now) throws IOException {
+        long length = f.file.length();
+        if (length < f.offset) {
+            // Truncated or replaced: start over from the new file's first record
+            lastError = f.file.getName() + " shrank; reading it again from the start";
+            f.offset = 0;
+        }
+        if (length == f.offset) {
+            return true;
+        }
+        long from = f.offset;
+        int chunk = (int) Math.min(length - f.offset, 8L << 20);
+        byte[] bytes = new byte[chunk];
+        try (RandomAccessFile raf = new RandomAccessFile(f.file, "r")) {
+            raf.seek(from);
+            raf.readFully(bytes);
+        }
+
+        int start = 0;
+        for (int i = 0; i < chunk; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+            long lineOffset = from + start;
+            String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            if (lineOffset == 0) {
+                continue; // Header
+            }
+            String[] values = CSVDataLoader.parseCSVLine(line);
+            if (values.length < f.columnCount) {
+                continue;
+            }
+            String[] normalized = new String[f.columnCount];
+            for (int c = 0; c < f.columnCount; c++) {
+                normalized[c] = CSVDataLoader.normalizeValue(values[c]);
+            }
+            f.held.add(new HeldRow(normalized, lineOffset, now));
+        }
+        // A trailing line without its newline is still being written; it is read next cycle
+        f.offset = from + start;
+        return from + chunk == length;
+    }
+
+    /**
+     * Inserts the ready rows of every table in one transaction. If the batch fails, the rows
+     * are retried one at a time so a single bad row (a duplicate item, an unknown product)
+     * only costs itself.
+     * @return Number of rows inserted
+     */
+    private int insert(Map<FollowedFile, List<HeldRow>> ready) throws SQLException {
+        Map<FollowedFile, List<HeldRow>> committed = new LinkedHashMap<>();
+        conn.setAutoCommit(false);
+        try {
+            for (Map.Entry<FollowedFile, List<HeldRow>> entry : ready.entrySet()) {
+                FollowedFile f = entry.getKey();
+                try (PreparedStatement pstmt = conn.prepareStatement(CSVDataLoader.INSERT_STATEMENTS.get(f.table))) {
+                    for (HeldRow row : entry.getValue()) {
+                        CSVDataLoader.bindRow(pstmt, nullsAsText(row.values), f.columnCount);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+            }
+            conn.commit();
+            committed.putAll(ready);
+        } catch (SQLException e) {
+            conn.rollback();
+            conn.setAutoCommit(true);
+            for (Map.Entry<FollowedFile, List<HeldRow>> entry : ready.entrySet()) {
+                FollowedFile f = entry.getKey();
+                List<HeldRow> kept = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(CSVDataLoader.INSERT_STATEMENTS.get(f.table))) {
+                    for (HeldRow row : entry.getValue()) {
+                        try {
+                            CSVDataLoader.bindRow(pstmt, nullsAsText(row.values), f.columnCount);
+                            pstmt.executeUpdate();
+                            kept.add(row);
+                        } catch (SQLException rowFailure) {
+                            f.rowsRejected++;
+                            lastError = f.table + ": " + rowFailure.getMessage();
+                        }
+                    }
+                }
+                committed.put(f, kept);
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        int inserted = 0;
+        for (Map.Entry<FollowedFile, List<HeldRow>> entry : committed.entrySet()) {
+            FollowedFile f = entry.getKey();
+            Set<String> keys = knownKeys.get(f.table);
+            for (HeldRow row : entry.getValue()) {
+                String key = f.keyOf(row.values);
+                if (key != null) {
+                    keys.add(key);
+                }
+                for (CSVDataLoader.BatchListener listener : f.listeners) {
+                    listener.accept(nullsAsText(row.values));
+                }
+            }
+            for (CSVDataLoader.BatchListener listener : f.listeners) {
+                listener.commitBatch();
+            }
+            f.rowsIngested += entry.getValue().size();
+            inserted += entry.getValue().size();
+        }
+        return inserted;
+    }
+
+    /**
+     * Rows are kept normalized, with null for NULL; bindRow and the listeners take raw CSV text
+     */
+    private static String[] nullsAsText(String[] values) {
+        String[] raw = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            raw[i] = values[i] == null ? "" : values[i];
+        }
+        return raw;
+    }
+
+    private void printCycle(long[] ingestedBefore) {
+        StringBuilder line = new StringBuilder("[" + LocalTime.now().format(CLOCK) + "]");
+        for (int i = 0; i < files.size(); i++) {
+            long added = files.get(i).rowsIngested - ingestedBefore[i];
+            if (added > 0) {
+                line.append(String.format(" +%,d %s", added, files.get(i).table));
+            }
+        }
+        line.append(String.format(" | lag %.1f s, %,d held, %,d bytes behind", getLagMillis() / 1000.0,
+                                  getHeldRows(), getBytesBehind()));
+        System.out.println(line);
+    }
+
+    // ==================== OFFSETS ====================
+
+    private static File offsetsFile() {
+        return new File(DEFAULT_OFFSETS_FILE);
+    }
+
+    private Properties readOffsets() throws IOException {
+        Properties saved = new Properties();
+        File source = offsetsFile();
+        if (source.isFile()) {
+            try (InputStream in = new FileInputStream(source)) {
+                saved.load(in);
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Saves where each file should be resumed. Rows still held are read again after a restart;
+     * rows already committed past that point are then skipped as known keys (customers, orders and
+     * reviews) or rejected by the primary key (items and payments).
+     */
+    private synchronized void writeOffsets() throws IOException {
+        Properties saved = readOffsets();
+        for (FollowedFile f : files) {
+            saved.setProperty(f.file.getAbsolutePath(), Long.toString(f.resumeOffset()));
+        }
+        File target = offsetsFile();
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (OutputStream out = new FileOutputStream(target)) {
+            saved.store(out, "CSVFollower resume offsets");
+        }
+    }
+
+    /**
+     * Forgets the saved offsets, e.g. after the tables are cleared
+     */
+    public static void resetOffsets() {
+        offsetsFile().delete();
+    }
+
+    // ==================== STATUS ====================
+
+    /**
+     * Ingestion lag: time since the follower last had every complete record in the files committed.
+     * Stays below the polling interval while the follower keeps up.
+     */
+    public long getLagMillis() {
+        return (System.nanoTime() - caughtUpNanos) / 1_000_000;
+    }
+
+    /**
+     * Bytes appended to the files that have not been read yet
+     */
+    public long getBytesBehind() {
+        long behind = 0;
+        for (FollowedFile f : files) {
+            behind += Math.max(0, f.file.length() - f.offset);
+        }
+        return behind;
+    }
+
+    public int getHeldRows() {
+        int held = 0;
+        for (FollowedFile f : files) {
+            held += f.held.size();
+        }
+        return held;
+    }
+
+    public long getRowsIngested() {
+        long rows = 0;
+        for (FollowedFile f : files) {
+            rows += f.rowsIngested;
+        }
+        return rows;
+    }
+
+    public long getRowsOrphaned() {
+        long rows = 0;
+        for (FollowedFile f : files) {
+            rows += f.rowsOrphaned;
+        }
+        return rows;
+    }
+
+    public long getRowsRejected() {
+        long rows = 0;
+        for (FollowedFile f : files) {
+            rows += f.rowsRejected;
+        }
+        return rows;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * Time from reading a row to committing it
+     */
+    public QueryMetrics.Histogram getReadToCommitTimes() {
+        return readToCommitNanos;
+    }
+
+    /**
+     * Last error from a cycle, or null if the last cycle went through
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Prints rows ingested, held and rejected per followed file, and the ingestion lag
+     */
+    public void displayStatus() {
+        System.out.println("\nFollowing " + dataDir + String.format(" (%,d cycles)", cycles));
+        System.out.println("+----------------+------------+--------+----------+----------+-----------+--------------+");
+        System.out.println("| Table          |   Ingested |   Held | Orphaned | Rejected | Duplicate | Bytes behind |");
+        System.out.println("+----------------+------------+--------+----------+----------+-----------+--------------+");
+        for (FollowedFile f : files) {
+            System.out.println(String.format("| %-14s | %,10d | %,6d | %,8d | %,8d | %,9d | %,12d |", f.table,
+                                             f.rowsIngested, f.held.size(), f.rowsOrphaned, f.rowsRejected,
+                                             f.rowsDuplicate, Math.max(0, f.file.length() - f.offset)));
+        }
+        System.out.println("+----------------+------------+--------+----------+----------+-----------+--------------+");
+        System.out.println(String.format("Ingestion lag: %.1f s; read to commit p50 %.0f ms, p95 %.0f ms",
+                                         getLagMillis() / 1000.0, readToCommitNanos.getPercentile(50) / 1e6,
+                                         readToCommitNanos.getPercentile(95) / 1e6));
+        if (lastError != null) {
+            System.out.println("Last error: " + lastError);
+        }
+    }
+
+    /**
+     * Follows the CSVs in the foreground until Ctrl-C:
+     *   java CSVFollower [--data DIR] [--interval MS] [--hold SECONDS] [--from-start]
+     */
+    public static void main(String[] args) {
+        String dir = CSVDataLoader.getDataDir();
+        int interval = DEFAULT_INTERVAL_MILLIS;
+        int hold = DEFAULT_HOLD_SECONDS;
+        boolean fromStart = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data":
+                        dir = args[++i];
+                        break;
+                    case "--interval":
+                        interval = Integer.parseInt(args[++i]);
+                        break;
+                    case "--hold":
+                        hold = Integer.parseInt(args[++i]);
+                        break;
+                    case "--from-start":
+                        fromStart = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: CSVFollower [--data DIR] [--interval MS] [--hold SECONDS] [--from-start]");
+            System.exit(1);
+        }
+
+        CSVFollower follower = new CSVFollower(dir, interval, hold, true);
+        try {
+            follower.open();
+        } catch (SQLException | IOException e) {
+            System.out.println("ERROR: Could not start following " + dir);
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        }
+        if (fromStart) {
+            for (FollowedFile f : follower.files) {
+                f.offset = 0;
+            }
+        }
+        follower.thread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            follower.stopRequested = true;
+            follower.thread.interrupt();
+            try {
+                follower.thread.join(30_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            follower.displayStatus();
+        }));
+        System.out.println("Following " + follower.dataDir + " every " + interval + " ms. Press Ctrl-C to stop.");
+        follower.run();
+    }
+}
@@ -0,0 +1,651 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Approximate distinct counts per seller and per category, kept as HyperLogLog sketches.
+ * The sketches are filled in one streaming pass over ORDER_ITEMS: while the CSVs are
+ * loaded, each committed batch is sketched on its own and merged into the running
+ * totals, which are saved to a file after the table is loaded. The same pass can be
+ * replayed from the CSVs or from the database to rebuild the file, and sketch files
+ * from separate loads merge into one. Reading the counts back costs O(groups)
+ * instead of the distinct sorts COUNT(DISTINCT) needs in SQL Server.
+ */
+public class CardinalitySketches {
+    public static final String DEFAULT_FILE = "sketches/cardinality.hll";
+
+    private static final int MAGIC = 0x4F484C4C; // "OHLL"
+    private static final int VERSION = 1;
+
+    // Distinct counts sketched for every group
+    private static final int ORDERS = 0;
+    private static final int PRODUCTS = 1;
+    private static final int SELLERS = 2;
+
+    private static final String ITEM_SCAN =
+            "SELECT oi.order_id, oi.product_id, oi.seller_id, " +
+            "    COALESCE(c.category_name_english, p.category_name_portuguese) " +
+            "FROM ORDER_ITEMS oi " +
+            "LEFT JOIN PRODUCTS p ON p.product_id = oi.product_id " +
+            "LEFT JOIN CATEGORIES c ON c.category_name_portuguese = p.category_name_portuguese";
+
+    private static final String PRODUCT_CATEGORY_SCAN =
+            "SELECT p.product_id, COALESCE(c.category_name_english, p.category_name_portuguese) " +
+            "FROM PRODUCTS p " +
+            "LEFT JOIN CATEGORIES c ON c.category_name_portuguese = p.category_name_portuguese";
+
+    private static volatile String file = DEFAULT_FILE;
+    private static volatile CardinalitySketches instance;
+
+    // Lookups built from CATEGORIES and PRODUCTS rows during a load, or read from the database by
+    // the CSV follower, used to sketch ORDER_ITEMS
+    private static final Map<String, String> loadCategoryNames = new HashMap<>();
+    private static final Map<String, String> loadProductCategories = new HashMap<>();
+
+    private final Map<String, HyperLogLog[]> sellers = new HashMap<>();
+    private final Map<String, HyperLogLog[]> categories = new HashMap<>();
+    private final HyperLogLog[] total = newGroup(3);
+    private long itemRows;
+    private int batches;
+
+    /**
+     * Collector for a table the CSV loader is about to load, or null if the table is not sketched
+     */
+    static CSVDataLoader.BatchListener collectorFor(String table) {
+        switch (table) {
+            case "CATEGORIES":
+                return new LookupCollector(loadCategoryNames);
+            case "PRODUCTS":
+                return new LookupCollector(loadProductCategories);
+            case "ORDER_ITEMS":
+                return new ItemCollector(currentFor(table), true);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Fills the product category lookup from the loaded tables, for sketching ORDER_ITEMS rows that
+     * arrive without a CATEGORIES and PRODUCTS load before them
+     */
+    static synchronized void readCategoryLookup(Connection conn) throws SQLException {
+        Map<String, String> productCategories = new HashMap<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(PRODUCT_CATEGORY_SCAN)) {
+            while (rs.next()) {
+                String category = rs.getString(2);
+                if (category != null) {
+                    productCategories.put(rs.getString(1), category);
+                }
+            }
+        }
+        loadProductCategories.clear();
+        loadProductCategories.putAll(productCategories);
+    }
+
+    /**
+     * Remembers column 0 -> column 1 of each row; product categories resolve to the English name
+     */
+    private static final class LookupCollector implements CSVDataLoader.BatchListener {
+        private final Map<String, String> lookup;
+
+        LookupCollector(Map<String, String> lookup) {
+            this.lookup = lookup;
+        }
+
+        @Override
+        public void accept(String[] values) {
+            String key = CSVDataLoader.normalizeValue(values[0]);
+            String value = CSVDataLoader.normalizeValue(values[1]);
+            if (key != null && value != null) {
+                if (lookup == loadProductCategories) {
+                    value = loadCategoryNames.getOrDefault(value, value);
+                }
+                lookup.put(key, value);
+            }
+        }
+
+        @Override
+        public void commitBatch() {
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * Sketches ORDER_ITEMS rows into a batch of their own, merged into the target on commit
+     */
+    private static final class ItemCollector implements CSVDataLoader.BatchListener {
+        private final CardinalitySketches target;
+        private final boolean save;
+        private CardinalitySketches batch = new CardinalitySketches();
+
+        ItemCollector(CardinalitySketches target, boolean save) {
+            this.target = target;
+            this.save = save;
+        }
+
+        @Override
+        public void accept(String[] values) {
+            String productId = CSVDataLoader.normalizeValue(values[2]);
+            batch.add(CSVDataLoader.normalizeValue(values[0]), productId, CSVDataLoader.normalizeValue(values[3]),
+                      productId != null ? loadProductCategories.get(productId) : null);
+        }
+
+        void accept(String orderId, String productId, String sellerId, String category) {
+            batch.add(orderId, productId, sellerId, category);
+        }
+
+        @Override
+        public void commitBatch() {
+            if (batch.itemRows > 0) {
+                target.merge(batch);
+                target.batches++;
+                batch = new CardinalitySketches();
+            }
+        }
+
+        @Override
+        public void finish() {
+            instance = target;
+            if (!save) {
+                return;
+            }
+            try {
+                target.save(new File(file));
+            } catch (IOException e) {
+                System.err.println("Failed to save cardinality sketches: " + e.getMessage());
+            }
+        }
+    }
+
+    private static HyperLogLog[] newGroup(int metrics) {
+        HyperLogLog[] group = new HyperLogLog[metrics];
+        for (int i = 0; i < metrics; i++) {
+            group[i] = new HyperLogLog();
+        }
+        return group;
+    }
+
+    /**
+     * Sketches one ORDER_ITEMS row; a null category only counts towards the totals
+     */
+    public void add(String orderId, String productId, String sellerId, String category) {
+        long order = orderId != null ? HyperLogLog.hash(orderId) : 0;
+        long product = productId != null ? HyperLogLog.hash(productId) : 0;
+        long seller = sellerId != null ? HyperLogLog.hash(sellerId) : 0;
+
+        addAll(total, orderId, order, productId, product, sellerId, seller);
+        if (sellerId != null) {
+            addAll(sellers.computeIfAbsent(sellerId, k -> newGroup(2)), orderId, order, productId, product, null, 0);
+        }
+        if (category != null) {
+            addAll(categories.computeIfAbsent(category, k -> newGroup(3)), orderId, order, productId, product,
+                   sellerId, seller);
+        }
+        itemRows++;
+    }
+
+    private static void addAll(HyperLogLog[] group, String orderId, long order, String productId, long product,
+                               String sellerId, long seller) {
+        if (orderId != null) {
+            group[ORDERS].addHash(order);
+        }
+        if (productId != null) {
+            group[PRODUCTS].addHash(product);
+        }
+        if (sellerId != null && group.length > SELLERS) {
+            group[SELLERS].addHash(seller);
+        }
+    }
+
+    /**
+     * Folds another set of sketches into this one, group by group
+     */
+    public void merge(CardinalitySketches other) {
+        mergeGroup(total, other.total);
+        for (Map.Entry<String, HyperLogLog[]> entry : other.sellers.entrySet()) {
+            mergeGroup(sellers.computeIfAbsent(entry.getKey(), k -> newGroup(2)), entry.getValue());
+        }
+        for (Map.Entry<String, HyperLogLog[]> entry : other.categories.entrySet()) {
+            mergeGroup(categories.computeIfAbsent(entry.getKey(), k -> newGroup(3)), entry.getValue());
+        }
+        itemRows += other.itemRows;
+        batches += other.batches;
+    }
+
+    private static void mergeGroup(HyperLogLog[] into, HyperLogLog[] from) {
+        for (int i = 0; i < into.length; i++) {
+            into[i].merge(from[i]);
+        }
+    }
+
+    /**
+     * Returns the sketches, reading the saved file or rebuilding it on first use.
+     * Rebuilding streams ORDER_ITEMS from the database, or from the CSVs when the
+     * local engine is in use.
+     */
+    public static CardinalitySketches get() throws IOException, SQLException {
+        CardinalitySketches sketches = instance;
+        if (sketches == null) {
+            synchronized (CardinalitySketches.class) {
+                sketches = instance;
+                if (sketches == null) {
+                    File saved = new File(file);
+                    if (saved.exists()) {
+                        sketches = read(saved);
+                    } else {
+                        sketches = QueryExecutor.isLocalEngine()
+                                ? rebuildFromCsv(CSVDataLoader.getDataDir())
+                                : rebuildFromDatabase();
+                        sketches.save(saved);
+                    }
+                    instance = sketches;
+                }
+            }
+        }
+        return sketches;
+    }
+
+    /**
+     * Forgets the sketches and deletes the saved file, e.g. after the tables are cleared
+     */
+    public static synchronized void reset() {
+        instance = null;
+        loadCategoryNames.clear();
+        loadProductCategories.clear();
+        new File(file).delete();
+    }
+
+    public static void setFile(String path) {
+        file = path;
+        instance = null;
+    }
+
+    public static String getFile() {
+        return file;
+    }
+
+    /**
+     * The sketches a load of ORDER_ITEMS should merge into. Sketches of items while the table is empty
+     * were built from a table since recreated, e.g. by running schema.sql outside the program, and
+     * are started afresh; the category lookups from this load are kept.
+     */
+    private static synchronized CardinalitySketches currentFor(String table) {
+        CardinalitySketches sketches = loadedOrEmpty();
+        if (sketches.itemRows > 0 && CSVDataLoader.isTableEmpty(table)) {
+            System.err.println("Discarding cardinality sketches built from an earlier " + table + " table");
+            instance = null;
+            new File(file).delete();
+            sketches = new CardinalitySketches();
+        }
+        return sketches;
+    }
+
+    private static CardinalitySketches loadedOrEmpty() {
+        try {
+            File saved = new File(file);
+            CardinalitySketches sketches = instance;
+            if (sketches == null && saved.exists()) {
+                sketches = read(saved);
+            }
+            return sketches != null ? sketches : new CardinalitySketches();
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable cardinality sketches: " + e.getMessage());
+            return new CardinalitySketches();
+        }
+    }
+
+    /**
+     * Replays the load-time pass over the CSVs in a directory
+     */
+    public static CardinalitySketches rebuildFromCsv(String dataDir) throws IOException {
+        String dir = dataDir.endsWith("/") ? dataDir : dataDir + "/";
+        synchronized (CardinalitySketches.class) {
+            loadCategoryNames.clear();
+            loadProductCategories.clear();
+        }
+        replay(dir + "product_category_name_translation.csv", new LookupCollector(loadCategoryNames));
+        replay(dir + "olist_products_dataset.csv", new LookupCollector(loadProductCategories));
+        ItemCollector items = new ItemCollector(new CardinalitySketches(), false);
+        replay(dir + "olist_order_items_dataset.csv", items);
+        return items.target;
+    }
+
+    private static void replay(String csv, CSVDataLoader.BatchListener collector) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(csv))) {
+            String line = br.readLine(); // Skip header
+            int count = 0;
+            while ((line = br.readLine()) != null) {
+                String[] values = CSVDataLoader.parseCSVLine(line);
+                if (values.length < 2) {
+                    continue;
+                }
+                collector.accept(values);
+                if (++count % CSVDataLoader.BATCH_SIZE == 0) {
+                    collector.commitBatch();
+                }
+            }
+            collector.commitBatch();
+        }
+    }
+
+    /**
+     * Streams ORDER_ITEMS joined to its category from the database, one batch at a time
+     */
+    public static CardinalitySketches rebuildFromDatabase() throws SQLException {
+        ItemCollector items = new ItemCollector(new CardinalitySketches(), false);
+        Connection conn = DatabaseConnection.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(CSVDataLoader.BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(ITEM_SCAN)) {
+                int count = 0;
+                while (rs.next()) {
+                    items.accept(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4));
+                    if (++count % CSVDataLoader.BATCH_SIZE == 0) {
+                        items.commitBatch();
+                    }
+                }
+            }
+        }
+        items.commitBatch();
+        return items.target;
+    }
+
+    /**
+     * Writes every sketch to a gzip file, creating its directory if needed
+     */
+    public void save(File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(target))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(itemRows);
+            out.writeInt(batches);
+            writeGroup(out, total);
+            writeGroups(out, sellers);
+            writeGroups(out, categories);
+        }
+    }
+
+    private static void writeGroups(DataOutputStream out, Map<String, HyperLogLog[]> groups) throws IOException {
+        out.writeInt(groups.size());
+        for (Map.Entry<String, HyperLogLog[]> entry : groups.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeGroup(out, entry.getValue());
+        }
+    }
+
+    private static void writeGroup(DataOutputStream out, HyperLogLog[] group) throws IOException {
+        for (HyperLogLog sketch : group) {
+            sketch.write(out);
+        }
+    }
+
+    /**
+     * Reads a file written by save()
+     */
+    public static CardinalitySketches read(File source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(source))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(source + " is not a cardinality sketch file");
+            }
+            CardinalitySketches sketches = new CardinalitySketches();
+            sketches.itemRows = in.readLong();
+            sketches.batches = in.readInt();
+            readGroup(in, sketches.total);
+            readGroups(in, sketches.sellers, 2);
+            readGroups(in, sketches.categories, 3);
+            return sketches;
+        }
+    }
+
+    private static void readGroups(DataInputStream in, Map<String, HyperLogLog[]> groups, int metrics)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            HyperLogLog[] group = new HyperLogLog[metrics];
+            readGroup(in, group);
+            groups.put(key, group);
+        }
+    }
+
+    private static void readGroup(DataInputStream in, HyperLogLog[] group) throws IOException {
+        for (int i = 0; i < group.length; i++) {
+            group[i] = HyperLogLog.read(in);
+        }
+    }
+
+    public long getItemRows() {
+        return itemRows;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Approximate heap footprint of all the sketches
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Map<String, HyperLogLog[]> groups : List.of(sellers, categories, Map.of("", total))) {
+            for (HyperLogLog[] group : groups.values()) {
+                for (HyperLogLog sketch : group) {
+                    bytes += sketch.sizeInBytes();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public static final String[] SELLER_COLUMNS = {
+        "seller_id", "approx_orders", "orders_95ci", "approx_products", "products_95ci"
+    };
+
+    public static final String[] CATEGORY_COLUMNS = {
+        "category_name_english", "approx_orders", "orders_95ci", "approx_products", "products_95ci",
+        "approx_sellers", "sellers_95ci"
+    };
+
+    public static final String[] SUMMARY_COLUMNS = {"measure", "approx_distinct", "distinct_95ci"};
+
+    /**
+     * Sellers by estimated distinct orders, highest first
+     * @param limit Maximum number of sellers to return
+     */
+    public List<Object[]> sellerRows(int limit) {
+        List<Object[]> rows = groupRows(sellers);
+        return rows.subList(0, Math.min(limit, rows.size()));
+    }
+
+    /**
+     * Categories by estimated distinct orders, highest first
+     */
+    public List<Object[]> categoryRows() {
+        return groupRows(categories);
+    }
+
+    /**
+     * Distinct orders, products and sellers over all ORDER_ITEMS rows sketched
+     */
+    public List<Object[]> summaryRows() {
+        List<Object[]> rows = new ArrayList<>();
+        String[] names = {"orders", "products", "sellers"};
+        for (int i = 0; i < total.length; i++) {
+            rows.add(new Object[] {names[i], total[i].estimate(), bound(total[i])});
+        }
+        return rows;
+    }
+
+    private static List<Object[]> groupRows(Map<String, HyperLogLog[]> groups) {
+        List<Object[]> rows = new ArrayList<>(groups.size());
+        for (Map.Entry<String, HyperLogLog[]> entry : groups.entrySet()) {
+            HyperLogLog[] group = entry.getValue();
+            Object[] row = new Object[1 + group.length * 2];
+            row[0] = entry.getKey();
+            for (int i = 0; i < group.length; i++) {
+                row[1 + i * 2] = group[i].estimate();
+                row[2 + i * 2] = bound(group[i]);
+            }
+            rows.add(row);
+        }
+        rows.sort((a, b) -> {
+            int byOrders = Long.compare((Long) b[1], (Long) a[1]);
+            return byOrders != 0 ? byOrders : ((String) a[0]).compareTo((String) b[0]);
+        });
+        return rows;
+    }
+
+    private static String bound(HyperLogLog sketch) {
+        return String.format("+/- %.1f", sketch.errorBound95());
+    }
+
+    /**
+     * Shows one of the approximate reports: "sellers", "categories" or "summary"
+     * @param limit Maximum number of sellers shown
+     */
+    public static void displayReport(String report, int limit) {
+        try {
+            long start = System.nanoTime();
+            CardinalitySketches sketches = get();
+            long loaded = System.nanoTime();
+            List<Object[]> rows;
+            String[] columns;
+            String title;
+            switch (report) {
+                case "sellers":
+                    rows = sketches.sellerRows(limit);
+                    columns = SELLER_COLUMNS;
+                    title = "Approximate Seller Cardinality (top " + limit + " by orders)";
+                    break;
+                case "categories":
+                    rows = sketches.categoryRows();
+                    columns = CATEGORY_COLUMNS;
+                    title = "Approximate Category Cardinality";
+                    break;
+                case "summary":
+                    rows = sketches.summaryRows();
+                    columns = SUMMARY_COLUMNS;
+                    title = "Approximate Distinct Counts over ORDER_ITEMS";
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown report: " + report);
+            }
+            long computed = System.nanoTime();
+            ResultFormatter.displayRows(columns, rows, title, null);
+            System.out.println(String.format("Estimated from %,d ORDER_ITEMS rows in %,d batches "
+                                             + "(%s, %,d KB of sketches).", sketches.itemRows, sketches.batches,
+                                             file, sketches.sizeInBytes() / 1024));
+            System.out.println(String.format("Sketches ready in %.1f ms, report computed in %.1f ms. "
+                                             + "Bounds are 95%% confidence intervals.",
+                                             (loaded - start) / 1e6, (computed - loaded) / 1e6));
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not build the cardinality sketches.");
+            System.out.println("Details: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds, merges or queries the sketch file:
+     *   java CardinalitySketches [--file F] [--rebuild DIR | --rebuild-db] [--merge F...]
+     *                            [sellers [N] | categories | summary]
+     */
+    public static void main(String[] args) {
+        String report = "summary";
+        int limit = 20;
+        String rebuildDir = null;
+        boolean rebuildDatabase = false;
+        List<String> merges = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--file":
+                        setFile(args[++i]);
+                        break;
+                    case "--rebuild":
+                        rebuildDir = args[++i];
+                        break;
+                    case "--rebuild-db":
+                        rebuildDatabase = true;
+                        break;
+                    case "--merge":
+                        while (i + 1 < args.length && !args[i + 1].startsWith("--")
+                               && !List.of("sellers", "categories", "summary").contains(args[i + 1])) {
+                            merges.add(args[++i]);
+                        }
+                        break;
+                    case "sellers":
+                        report = args[i];
+                        if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                            limit = Integer.parseInt(args[++i]);
+                        }
+                        break;
+                    case "categories":
+                    case "summary":
+                        report = args[i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: CardinalitySketches [--file F] [--rebuild DIR | --rebuild-db] "
+                               + "[--merge F...] [sellers [N] | categories | summary]");
+            System.exit(1);
+        }
+
+        try {
+            if (rebuildDir != null || rebuildDatabase) {
+                long start = System.nanoTime();
+                CardinalitySketches sketches = rebuildDir != null
+                        ? rebuildFromCsv(rebuildDir)
+                        : rebuildFromDatabase();
+                sketches.save(new File(file));
+                instance = sketches;
+                System.out.println(String.format("Sketched %,d ORDER_ITEMS rows into %s in %.1f s.",
+                                                 sketches.itemRows, file, (System.nanoTime() - start) / 1e9));
+            }
+            if (!merges.isEmpty()) {
+                CardinalitySketches merged = loadedOrEmpty();
+                for (String path : merges) {
+                    merged.merge(read(new File(path)));
+                }
+                merged.save(new File(file));
+                instance = merged;
+                System.out.println("Merged " + merges.size() + " sketch file(s) into " + file + ".");
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not build the cardinality sketches.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        }
+        displayReport(report, limit);
+    }
+}
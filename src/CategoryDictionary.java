@@ -0,0 +1,238 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory dictionary of the product categories, loaded once from CATEGORIES.
+ * Resolves the analyst's text to a set of categories without a leading-wildcard LIKE:
+ * substring matches go through a trigram index over the English and Portuguese
+ * names, and a trie over whole names and their words provides prefix completion.
+ */
+public class CategoryDictionary {
+    private static volatile CategoryDictionary instance;
+
+    private final List<Category> categories;
+    private final TrieNode root = new TrieNode();
+    private final Map<String, BitSet> trigrams = new HashMap<>();
+
+    /**
+     * One row of CATEGORIES
+     */
+    public static class Category {
+        public final int id;
+        public final String portuguese;
+        public final String english;
+
+        public Category(int id, String portuguese, String english) {
+            this.id = id;
+            this.portuguese = portuguese;
+            this.english = english;
+        }
+
+        @Override
+        public String toString() {
+            return english + " (" + portuguese + ")";
+        }
+    }
+
+    private static class TrieNode {
+        final TreeMap<Character, TrieNode> children = new TreeMap<>();
+        final BitSet categories = new BitSet();
+    }
+
+    /**
+     * Builds the dictionary from a list of categories
+     */
+    CategoryDictionary(List<Category> categories) {
+        this.categories = categories;
+        for (int i = 0; i < categories.size(); i++) {
+            Category category = categories.get(i);
+            for (String name : new String[] {category.english, category.portuguese}) {
+                String key = normalize(name);
+                addToTrie(key, i);
+                for (String word : key.split("_")) {
+                    addToTrie(word, i);
+                }
+                for (int t = 0; t + 3 <= key.length(); t++) {
+                    trigrams.computeIfAbsent(key.substring(t, t + 3), k -> new BitSet()).set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the dictionary, loading it from the database on first use
+     */
+    public static CategoryDictionary get() throws SQLException {
+        CategoryDictionary dictionary = instance;
+        if (dictionary == null) {
+            synchronized (CategoryDictionary.class) {
+                dictionary = instance;
+                if (dictionary == null) {
+                    dictionary = load();
+                    instance = dictionary;
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Forgets the loaded dictionary so the next lookup rereads CATEGORIES
+     */
+    public static void invalidate() {
+        instance = null;
+    }
+
+    private static CategoryDictionary load() throws SQLException {
+        List<Category> categories = new ArrayList<>();
+        Connection conn = DatabaseConnection.getConnection();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                "SELECT category_id, category_name_portuguese, category_name_english FROM CATEGORIES " +
+                "WHERE category_name_portuguese IS NOT NULL ORDER BY category_name_english")) {
+            while (rs.next()) {
+                String english = rs.getString(3);
+                String portuguese = rs.getString(2);
+                categories.add(new Category(rs.getInt(1), portuguese, english != null ? english : portuguese));
+            }
+        }
+        return new CategoryDictionary(categories);
+    }
+
+    /**
+     * Builds the dictionary from the local engine's copy of CATEGORIES, for use without a database
+     */
+    static CategoryDictionary fromColumnStore(ColumnStore store) {
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < store.categoryEnglish.length; i++) {
+            if (store.categoryEnglish[i] == ColumnStore.NOT_IN_CATEGORIES) {
+                continue;
+            }
+            String portuguese = store.categoryNames.get(i);
+            String english = store.englishNames.get(store.categoryEnglish[i]);
+            categories.add(new Category(i + 1, portuguese, english != null ? english : portuguese));
+        }
+        categories.sort((a, b) -> a.english.compareToIgnoreCase(b.english));
+        return new CategoryDictionary(categories);
+    }
+
+    public int size() {
+        return categories.size();
+    }
+
+    /**
+     * Finds the categories whose English or Portuguese name contains the text.
+     * A '%' in the text is a wildcard with LIKE semantics over the whole name.
+     * @return Matching categories in English name order
+     */
+    public List<Category> resolve(String text) {
+        String key = normalize(text);
+        BitSet matches = new BitSet();
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        if (key.indexOf('%') >= 0) {
+            Pattern pattern = likePattern(key);
+            for (int i = 0; i < categories.size(); i++) {
+                Category category = categories.get(i);
+                if (pattern.matcher(normalize(category.english)).matches()
+                        || pattern.matcher(normalize(category.portuguese)).matches()) {
+                    matches.set(i);
+                }
+            }
+        } else {
+            // Narrow to categories sharing every trigram of the text, then confirm the substring
+            BitSet candidates = new BitSet();
+            candidates.set(0, categories.size());
+            for (int t = 0; t + 3 <= key.length(); t++) {
+                BitSet posting = trigrams.get(key.substring(t, t + 3));
+                if (posting == null) {
+                    return new ArrayList<>();
+                }
+                candidates.and(posting);
+            }
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                Category category = categories.get(i);
+                if (normalize(category.english).contains(key) || normalize(category.portuguese).contains(key)) {
+                    matches.set(i);
+                }
+            }
+        }
+        return toList(matches, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists categories with a name, or a word in a name, starting with the prefix
+     * @param limit Maximum number of categories to return
+     */
+    public List<Category> complete(String prefix, int limit) {
+        TrieNode node = root;
+        for (char c : normalize(prefix).toCharArray()) {
+            node = node.children.get(c);
+            if (node == null) {
+                return new ArrayList<>();
+            }
+        }
+        return toList(node.categories, limit);
+    }
+
+    /**
+     * Portuguese names of the categories, the key PRODUCTS is indexed on
+     */
+    public static List<String> portugueseNames(List<Category> categories) {
+        List<String> names = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            names.add(category.portuguese);
+        }
+        return names;
+    }
+
+    private void addToTrie(String key, int category) {
+        TrieNode node = root;
+        node.categories.set(category);
+        for (char c : key.toCharArray()) {
+            node = node.children.computeIfAbsent(c, k -> new TrieNode());
+            node.categories.set(category);
+        }
+    }
+
+    private List<Category> toList(BitSet set, int limit) {
+        List<Category> list = new ArrayList<>();
+        for (int i = set.nextSetBit(0); i >= 0 && list.size() < limit; i = set.nextSetBit(i + 1)) {
+            list.add(categories.get(i));
+        }
+        return list;
+    }
+
+    private static Pattern likePattern(String key) {
+        StringBuilder regex = new StringBuilder();
+        String[] parts = key.split("%", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            if (!parts[i].isEmpty()) {
+                regex.append(Pattern.quote(parts[i]));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Lower case with spaces folded to underscores, as the names are stored
+     */
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+}
@@ -0,0 +1,774 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * The Olist tables held in memory as primitive-array columns.
+ * Strings are dictionary-encoded to int ids, money is stored as long cents and
+ * timestamps as epoch seconds. Rows are read from the CSVs exactly as
+ * CSVDataLoader reads them, so the columns hold what the database would hold,
+ * or streamed once from the database itself.
+ * Geolocation is kept as the distinct (state, city) pairs of each zip prefix with
+ * their row counts, which is all the reports need to reproduce the SQL joins.
+ */
+public class ColumnStore {
+    public static final int NULL_INT = Integer.MIN_VALUE;
+    public static final long NULL_LONG = Long.MIN_VALUE;
+    /** categoryEnglish value for product categories that have no CATEGORIES row */
+    public static final int NOT_IN_CATEGORIES = -2;
+
+    /**
+     * Maps distinct strings to dense int ids
+     */
+    public static final class Dictionary implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        /** Returns the id of the value, adding it if new; null maps to -1 */
+        public int intern(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        /** Returns the id of the value, or -1 if it was never added */
+        public int lookup(String value) {
+            Integer id = value == null ? null : ids.get(value);
+            return id == null ? -1 : id;
+        }
+
+        public String get(int id) {
+            return id < 0 ? null : values.get(id);
+        }
+
+        public int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * Growable int column used while loading
+     */
+    static final class IntColumn {
+        private int[] data = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Growable long column used while loading
+     */
+    static final class LongColumn {
+        private long[] data = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Open-addressing set of longs, used for COUNT(DISTINCT) over (group, value) pairs
+     */
+    public static final class LongHashSet implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final long EMPTY = Long.MIN_VALUE;
+        private long[] slots;
+        private int size;
+
+        public LongHashSet(int expected) {
+            slots = new long[Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1];
+            Arrays.fill(slots, EMPTY);
+        }
+
+        /** Packs two non-negative ints into one key */
+        public static long pair(int a, int b) {
+            return ((long) a << 32) | (b & 0xffffffffL);
+        }
+
+        /** Adds the value; returns false if it was already present */
+        public boolean add(long value) {
+            if (size * 2 >= slots.length) {
+                grow();
+            }
+            int mask = slots.length - 1;
+            int i = (int) mix(value) & mask;
+            while (slots[i] != EMPTY) {
+                if (slots[i] == value) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = value;
+            size++;
+            return true;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Adds every value of the other set */
+        public void addAll(LongHashSet other) {
+            for (long value : other.slots) {
+                if (value != EMPTY) {
+                    add(value);
+                }
+            }
+        }
+
+        public void forEach(LongConsumer action) {
+            for (long value : slots) {
+                if (value != EMPTY) {
+                    action.accept(value);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            Arrays.fill(slots, EMPTY);
+            size = 0;
+            for (long value : old) {
+                if (value != EMPTY) {
+                    add(value);
+                }
+            }
+        }
+
+        private static long mix(long value) {
+            value *= 0x9E3779B97F4A7C15L;
+            return value ^ (value >>> 29);
+        }
+    }
+
+    /**
+     * Row ids grouped by a key column, in compressed sparse row form:
+     * the rows for key k are rows[start[k]] to rows[start[k + 1] - 1]
+     */
+    public static final class Index {
+        public final int[] start;
+        public final int[] rows;
+
+        Index(int[] keys, int keyCount) {
+            start = new int[keyCount + 1];
+            for (int key : keys) {
+                if (key >= 0) {
+                    start[key + 1]++;
+                }
+            }
+            for (int k = 0; k < keyCount; k++) {
+                start[k + 1] += start[k];
+            }
+            rows = new int[start[keyCount]];
+            int[] next = Arrays.copyOf(start, keyCount);
+            for (int row = 0; row < keys.length; row++) {
+                if (keys[row] >= 0) {
+                    rows[next[keys[row]]++] = row;
+                }
+            }
+        }
+    }
+
+    // STATES: ids 0..26 follow CSVDataLoader.BRAZILIAN_STATES; other codes seen in GEOLOCATION follow
+    public final Dictionary states = new Dictionary();
+    public final int stateTableSize;
+
+    // GEOLOCATION, per zip prefix: distinct (state, city) pairs and how many rows each had.
+    // A five-digit prefix's zip id is its ZipGeography slot; zips only holds other text, at ids past the slots.
+    public ZipGeography geography;
+    public final Dictionary zips = new Dictionary();
+    public final Dictionary cities = new Dictionary();
+    public int[] zipGeoStart;
+    public int[] geoState;
+    public int[] geoCity;
+    public int[] geoRows;
+    // The same per zip, reduced to states with a STATES row: what "JOIN STATES" leaves of a zip
+    public int[] zipStateStart;
+    public int[] zipState;
+    public int[] zipStateRows;
+
+    // CATEGORIES, keyed by Portuguese name; categoryEnglish is -1 for a NULL English name
+    // and NOT_IN_CATEGORIES for product categories with no CATEGORIES row
+    public final Dictionary categoryNames = new Dictionary();
+    public final Dictionary englishNames = new Dictionary();
+    public int[] categoryEnglish;
+
+    // CUSTOMERS
+    public final Dictionary customerIds = new Dictionary();
+    public final Dictionary customerUniqueIds = new Dictionary();
+    public int[] customerUnique;
+    public int[] customerZip;
+
+    // SELLERS
+    public final Dictionary sellerIds = new Dictionary();
+    public int[] sellerZip;
+
+    // PRODUCTS
+    public final Dictionary productIds = new Dictionary();
+    public int[] productCategory;
+    public int[] productWeight;
+    public int[] productPhotos;
+
+    // ORDERS
+    public final Dictionary orderIds = new Dictionary();
+    public int[] orderCustomer;
+    public long[] orderPurchase;
+    public long[] orderDelivered;
+    public long[] orderEstimated;
+
+    // ORDER_ITEMS
+    public int[] itemOrder;
+    public int[] itemProduct;
+    public int[] itemSeller;
+    public long[] itemPrice;
+    public long[] itemFreight;
+
+    // ORDER_PAYMENTS
+    public final Dictionary paymentTypes = new Dictionary();
+    public int[] paymentOrder;
+    public int[] paymentType;
+    public int[] paymentInstallments;
+    public long[] paymentValue;
+
+    // ORDER_REVIEWS
+    public final Dictionary reviewIds = new Dictionary();
+    public int[] reviewId;
+    public int[] reviewOrder;
+    public int[] reviewScore;
+
+    // Rows dropped because a foreign key did not match, as the database would reject them
+    public final Map<String, Integer> rejectedRows = new HashMap<>();
+    public final Map<String, Integer> tableRows = new HashMap<>();
+
+    // Columns read from each table when loading from the database, in the CSV's column order.
+    // Columns no report uses are selected as NULL to keep the wide text off the wire.
+    static final Map<String, String> DATABASE_COLUMNS = new HashMap<>();
+
+    static {
+        DATABASE_COLUMNS.put("GEOLOCATION", "zip_code_prefix, geolocation_lat, geolocation_lng, geolocation_city, "
+                                         + "geolocation_state");
+        DATABASE_COLUMNS.put("CATEGORIES", "category_name_portuguese, category_name_english");
+        DATABASE_COLUMNS.put("CUSTOMERS", "customer_id, customer_unique_id, customer_zip_code_prefix, NULL, NULL");
+        DATABASE_COLUMNS.put("SELLERS", "seller_id, seller_zip_code_prefix, NULL, NULL");
+        DATABASE_COLUMNS.put("PRODUCTS", "product_id, category_name_portuguese, NULL, NULL, product_photos_qty, "
+                                         + "product_weight_g, NULL, NULL, NULL");
+        DATABASE_COLUMNS.put("ORDERS", "order_id, customer_id, NULL, order_purchase_timestamp, NULL, NULL, "
+                                       + "order_delivered_customer_date, order_estimated_delivery_date");
+        DATABASE_COLUMNS.put("ORDER_ITEMS", "order_id, NULL, product_id, seller_id, NULL, price, freight_value");
+        DATABASE_COLUMNS.put("ORDER_PAYMENTS", "order_id, NULL, payment_type, payment_installments, payment_value");
+        DATABASE_COLUMNS.put("ORDER_REVIEWS", "review_id, order_id, review_score, NULL, NULL, NULL, NULL");
+    }
+
+    private static final int DATABASE_FETCH_SIZE = 10_000;
+
+    private final String dataDir;
+    private final Connection source;
+    private Index itemsByOrder;
+    private Index ordersByCustomer;
+    private Index reviewsByOrder;
+
+    /**
+     * @param dataDir CSV directory, or null when reading from source
+     * @param source Database connection, or null when reading CSVs
+     */
+    private ColumnStore(String dataDir, Connection source) {
+        this.dataDir = dataDir == null || dataDir.endsWith("/") ? dataDir : dataDir + "/";
+        this.source = source;
+        for (String[] state : CSVDataLoader.BRAZILIAN_STATES) {
+            states.intern(state[0]);
+        }
+        stateTableSize = states.size();
+    }
+
+    /**
+     * Loads every table from the Olist CSVs in a directory
+     */
+    public static ColumnStore load(String dataDir) throws IOException {
+        try {
+            return new ColumnStore(dataDir, null).loadTables();
+        } catch (SQLException e) {
+            // Not reachable: CSV loading never touches the database
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads every table from the database, streaming each one once over a separate connection
+     */
+    public static ColumnStore loadFromDatabase() throws SQLException {
+        try (Connection conn = DatabaseConnection.openConnection()) {
+            return new ColumnStore(null, conn).loadTables();
+        } catch (IOException e) {
+            // Not reachable: database loading never opens a file
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private ColumnStore loadTables() throws IOException, SQLException {
+        loadGeolocation();
+        loadCategories();
+        loadCustomers();
+        loadSellers();
+        loadProducts();
+        loadOrders();
+        loadOrderItems();
+        loadOrderPayments();
+        loadOrderReviews();
+        return this;
+    }
+
+    /**
+     * Where the tables were read from: the CSV directory, or "database"
+     */
+    public String getDataDir() {
+        return dataDir != null ? dataDir : "database";
+    }
+
+    public String stateName(int state) {
+        return state < stateTableSize ? CSVDataLoader.BRAZILIAN_STATES[state][1] : null;
+    }
+
+    public int orderCount() {
+        return orderCustomer.length;
+    }
+
+    public int itemCount() {
+        return itemOrder.length;
+    }
+
+    /** ORDER_ITEMS rows of each order */
+    public synchronized Index itemsByOrder() {
+        if (itemsByOrder == null) {
+            itemsByOrder = new Index(itemOrder, orderCount());
+        }
+        return itemsByOrder;
+    }
+
+    /** ORDERS rows of each customer */
+    public synchronized Index ordersByCustomer() {
+        if (ordersByCustomer == null) {
+            ordersByCustomer = new Index(orderCustomer, customerZip.length);
+        }
+        return ordersByCustomer;
+    }
+
+    /** ORDER_REVIEWS rows of each order */
+    public synchronized Index reviewsByOrder() {
+        if (reviewsByOrder == null) {
+            reviewsByOrder = new Index(reviewOrder, orderCount());
+        }
+        return reviewsByOrder;
+    }
+
+    /**
+     * Receives the parsed, normalized values of one row
+     */
+    private interface RowHandler {
+        void row(String[] values);
+    }
+
+    /**
+     * Feeds every row of a table to the handler, from the CSV or from the database
+     */
+    private void readTable(String table, String fileName, int columnCount, RowHandler handler)
+            throws IOException, SQLException {
+        if (source != null) {
+            readQuery(table, columnCount, handler);
+        } else {
+            readCsv(table, fileName, columnCount, handler);
+        }
+    }
+
+    /**
+     * Reads a CSV the way CSVDataLoader.loadCSV does: one record per line, header skipped,
+     * short rows dropped, values trimmed and empty or "null" values read as NULL
+     */
+    private void readCsv(String table, String fileName, int columnCount, RowHandler handler) throws IOException {
+        File file = new File(dataDir + fileName);
+        int rows = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line = br.readLine(); // Skip header
+            while ((line = br.readLine()) != null) {
+                String[] values = CSVDataLoader.parseCSVLine(line);
+                if (values.length >= columnCount) {
+                    for (int i = 0; i < columnCount; i++) {
+                        values[i] = CSVDataLoader.normalizeValue(values[i]);
+                    }
+                    handler.row(values);
+                    rows++;
+                }
+            }
+        }
+        tableRows.put(table, rows);
+    }
+
+    /**
+     * Streams a table from the database as strings, so both sources go through the same parsing
+     */
+    private void readQuery(String table, int columnCount, RowHandler handler) throws SQLException {
+        int rows = 0;
+        try (Statement stmt = source.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(DATABASE_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery("SELECT " + DATABASE_COLUMNS.get(table) + " FROM " + table)) {
+                while (rs.next()) {
+                    String[] values = new String[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        String value = rs.getString(i + 1);
+                        values[i] = value == null ? null : CSVDataLoader.normalizeValue(value);
+                    }
+                    handler.row(values);
+                    rows++;
+                }
+            }
+        }
+        tableRows.put(table, rows);
+    }
+
+    private void reject(String table) {
+        rejectedRows.merge(table, 1, Integer::sum);
+    }
+
+    private void loadGeolocation() throws IOException, SQLException {
+        // zip id -> (state << 32 | city) -> rows
+        Map<Integer, Map<Long, Integer>> pairs = new HashMap<>();
+        ZipGeography.Builder builder = new ZipGeography.Builder(states, cities);
+        readTable("GEOLOCATION", "olist_geolocation_dataset.csv", 5, v -> {
+            if (v[0] == null) {
+                reject("GEOLOCATION");
+                return;
+            }
+            builder.add(v[0], v[1], v[2], v[3], v[4]);
+            int zip = ZipGeography.slot(v[0]);
+            if (zip < 0) {
+                zip = ZipGeography.SLOTS + zips.intern(v[0]);
+            }
+            long key = ((long) states.intern(v[4]) << 32) | (cities.intern(v[3]) & 0xffffffffL);
+            pairs.computeIfAbsent(zip, z -> new HashMap<>(4)).merge(key, 1, Integer::sum);
+        });
+        geography = builder.build();
+
+        int zipCount = ZipGeography.SLOTS + zips.size();
+        zipGeoStart = new int[zipCount + 1];
+        IntColumn state = new IntColumn();
+        IntColumn city = new IntColumn();
+        IntColumn rows = new IntColumn();
+        for (int zip = 0; zip < zipCount; zip++) {
+            Map<Long, Integer> places = pairs.getOrDefault(zip, Collections.emptyMap());
+            for (Map.Entry<Long, Integer> pair : places.entrySet()) {
+                state.add((int) (pair.getKey() >> 32));
+                city.add((int) (long) pair.getKey());
+                rows.add(pair.getValue());
+            }
+            zipGeoStart[zip + 1] = zipGeoStart[zip] + places.size();
+        }
+        geoState = state.toArray();
+        geoCity = city.toArray();
+        geoRows = rows.toArray();
+
+        zipStateStart = new int[zipCount + 1];
+        IntColumn joinState = new IntColumn();
+        IntColumn joinRows = new IntColumn();
+        for (int zip = 0; zip < zipCount; zip++) {
+            int first = joinState.size;
+            for (int g = zipGeoStart[zip]; g < zipGeoStart[zip + 1]; g++) {
+                if (geoState[g] < 0 || geoState[g] >= stateTableSize) {
+                    continue;
+                }
+                int k = first;
+                while (k < joinState.size && joinState.data[k] != geoState[g]) {
+                    k++;
+                }
+                if (k == joinState.size) {
+                    joinState.add(geoState[g]);
+                    joinRows.add(geoRows[g]);
+                } else {
+                    joinRows.data[k] += geoRows[g];
+                }
+            }
+            zipStateStart[zip + 1] = joinState.size;
+        }
+        zipState = joinState.toArray();
+        zipStateRows = joinRows.toArray();
+    }
+
+    /**
+     * Zip id of a customer or seller prefix: its slot in the geography, or past the slots for
+     * text that is not five digits; -1 if GEOLOCATION has no row for it
+     */
+    private int zipId(String prefix) {
+        int slot = geography.resolve(prefix);
+        if (slot >= 0 || ZipGeography.slot(prefix) >= 0) {
+            return slot;
+        }
+        int id = zips.lookup(prefix);
+        return id < 0 ? -1 : ZipGeography.SLOTS + id;
+    }
+
+    private void loadCategories() throws IOException, SQLException {
+        IntColumn english = new IntColumn();
+        readTable("CATEGORIES", "product_category_name_translation.csv", 2, v -> {
+            int category = categoryNames.intern(v[0]);
+            if (category < 0) {
+                return;
+            }
+            if (category == english.size) {
+                english.add(englishNames.intern(v[1]));
+            }
+        });
+        categoryEnglish = english.toArray();
+    }
+
+    private void loadCustomers() throws IOException, SQLException {
+        IntColumn unique = new IntColumn();
+        IntColumn zip = new IntColumn();
+        readTable("CUSTOMERS", "olist_customers_dataset.csv", 5, v -> {
+            if (v[0] == null || customerIds.lookup(v[0]) >= 0) {
+                reject("CUSTOMERS");
+                return;
+            }
+            customerIds.intern(v[0]);
+            unique.add(customerUniqueIds.intern(v[1]));
+            zip.add(zipId(v[2]));
+        });
+        customerUnique = unique.toArray();
+        customerZip = zip.toArray();
+    }
+
+    private void loadSellers() throws IOException, SQLException {
+        IntColumn zip = new IntColumn();
+        readTable("SELLERS", "olist_sellers_dataset.csv", 4, v -> {
+            if (v[0] == null || sellerIds.lookup(v[0]) >= 0) {
+                reject("SELLERS");
+                return;
+            }
+            sellerIds.intern(v[0]);
+            zip.add(zipId(v[1]));
+        });
+        sellerZip = zip.toArray();
+    }
+
+    private void loadProducts() throws IOException, SQLException {
+        IntColumn category = new IntColumn();
+        IntColumn weight = new IntColumn();
+        IntColumn photos = new IntColumn();
+        readTable("PRODUCTS", "olist_products_dataset.csv", 9, v -> {
+            if (v[0] == null || productIds.lookup(v[0]) >= 0) {
+                reject("PRODUCTS");
+                return;
+            }
+            productIds.intern(v[0]);
+            // Product categories missing from CATEGORIES still get a name id for COALESCE
+            category.add(categoryNames.intern(v[1]));
+            photos.add(parseInt(v[4]));
+            weight.add(parseInt(v[5]));
+        });
+        productCategory = category.toArray();
+        productWeight = weight.toArray();
+        productPhotos = photos.toArray();
+        if (categoryEnglish.length < categoryNames.size()) {
+            int known = categoryEnglish.length;
+            categoryEnglish = Arrays.copyOf(categoryEnglish, categoryNames.size());
+            Arrays.fill(categoryEnglish, known, categoryEnglish.length, NOT_IN_CATEGORIES);
+        }
+    }
+
+    private void loadOrders() throws IOException, SQLException {
+        IntColumn customer = new IntColumn();
+        LongColumn purchase = new LongColumn();
+        LongColumn delivered = new LongColumn();
+        LongColumn estimated = new LongColumn();
+        readTable("ORDERS", "olist_orders_dataset.csv", 8, v -> {
+            int c = customerIds.lookup(v[1]);
+            if (v[0] == null || orderIds.lookup(v[0]) >= 0 || (v[1] != null && c < 0)) {
+                reject("ORDERS");
+                return;
+            }
+            orderIds.intern(v[0]);
+            customer.add(c);
+            purchase.add(parseTimestamp(v[3]));
+            delivered.add(parseTimestamp(v[6]));
+            estimated.add(parseTimestamp(v[7]));
+        });
+        orderCustomer = customer.toArray();
+        orderPurchase = purchase.toArray();
+        orderDelivered = delivered.toArray();
+        orderEstimated = estimated.toArray();
+    }
+
+    private void loadOrderItems() throws IOException, SQLException {
+        IntColumn order = new IntColumn();
+        IntColumn product = new IntColumn();
+        IntColumn seller = new IntColumn();
+        LongColumn price = new LongColumn();
+        LongColumn freight = new LongColumn();
+        readTable("ORDER_ITEMS", "olist_order_items_dataset.csv", 7, v -> {
+            int o = orderIds.lookup(v[0]);
+            int p = productIds.lookup(v[2]);
+            int s = sellerIds.lookup(v[3]);
+            if (o < 0 || (v[2] != null && p < 0) || (v[3] != null && s < 0)) {
+                reject("ORDER_ITEMS");
+                return;
+            }
+            order.add(o);
+            product.add(p);
+            seller.add(s);
+            price.add(parseCents(v[5]));
+            freight.add(parseCents(v[6]));
+        });
+        itemOrder = order.toArray();
+        itemProduct = product.toArray();
+        itemSeller = seller.toArray();
+        itemPrice = price.toArray();
+        itemFreight = freight.toArray();
+    }
+
+    private void loadOrderPayments() throws IOException, SQLException {
+        IntColumn order = new IntColumn();
+        IntColumn type = new IntColumn();
+        IntColumn installments = new IntColumn();
+        LongColumn value = new LongColumn();
+        readTable("ORDER_PAYMENTS", "olist_order_payments_dataset.csv", 5, v -> {
+            int o = orderIds.lookup(v[0]);
+            if (o < 0) {
+                reject("ORDER_PAYMENTS");
+                return;
+            }
+            order.add(o);
+            type.add(paymentTypes.intern(v[2]));
+            installments.add(parseInt(v[3]));
+            value.add(parseCents(v[4]));
+        });
+        paymentOrder = order.toArray();
+        paymentType = type.toArray();
+        paymentInstallments = installments.toArray();
+        paymentValue = value.toArray();
+    }
+
+    private void loadOrderReviews() throws IOException, SQLException {
+        IntColumn id = new IntColumn();
+        IntColumn order = new IntColumn();
+        IntColumn score = new IntColumn();
+        readTable("ORDER_REVIEWS", "olist_order_reviews_dataset.csv", 7, v -> {
+            int o = orderIds.lookup(v[1]);
+            if (v[1] != null && o < 0) {
+                reject("ORDER_REVIEWS");
+                return;
+            }
+            id.add(reviewIds.intern(v[0]));
+            order.add(o);
+            score.add(parseInt(v[2]));
+        });
+        reviewId = id.toArray();
+        reviewOrder = order.toArray();
+        reviewScore = score.toArray();
+    }
+
+    static int parseInt(String value) {
+        if (value == null) {
+            return NULL_INT;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (int) Double.parseDouble(value);
+            } catch (NumberFormatException e2) {
+                return NULL_INT;
+            }
+        }
+    }
+
+    /**
+     * Parses a DECIMAL(10, 2) value into cents, rounding like SQL Server does on insert
+     */
+    static long parseCents(String value) {
+        if (value == null) {
+            return NULL_LONG;
+        }
+        try {
+            return new BigDecimal(value).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return NULL_LONG;
+        }
+    }
+
+    /**
+     * Parses "yyyy-MM-dd HH:mm:ss" into epoch seconds, treating the value as UTC
+     */
+    static long parseTimestamp(String value) {
+        if (value == null) {
+            return NULL_LONG;
+        }
+        try {
+            // "yyyy-MM-dd HH:mm:ss", optionally with the ".0" the driver appends to DATETIME values
+            if (value.length() >= 19 && value.charAt(4) == '-' && value.charAt(10) == ' '
+                    && (value.length() == 19 || value.charAt(19) == '.')) {
+                long day = LocalDate.of(digits(value, 0, 4), digits(value, 5, 7), digits(value, 8, 10)).toEpochDay();
+                return day * 86400 + digits(value, 11, 13) * 3600L + digits(value, 14, 16) * 60L
+                        + digits(value, 17, 19);
+            }
+            String iso = value.length() == 10 ? value + "T00:00:00" : value.replace(' ', 'T');
+            return LocalDateTime.parse(iso).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeException | NumberFormatException e) {
+            return NULL_LONG;
+        }
+    }
+
+    private static int digits(String value, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(value);
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+}
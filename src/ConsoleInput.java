@@ -0,0 +1,109 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.CharBuffer;
+import java.util.Scanner;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * The single reader of standard input. A daemon thread reads whole lines into a queue; the menu's
+ * Scanner takes them from there, and a running query checks the same queue for an Enter press, so
+ * no keystroke is read by one and lost to the other. Only a line typed after the query started
+ * cancels it: lines already waiting are type-ahead for the menu and stay queued.
+ */
+public final class ConsoleInput {
+    private static final Line END = new Line(null, 0);
+
+    private static final LinkedBlockingDeque<Line> lines = new LinkedBlockingDeque<>();
+    private static Scanner scanner;
+    private static Thread reader;
+
+    private ConsoleInput() {
+    }
+
+    /**
+     * One line of input and when it arrived
+     */
+    private static final class Line {
+        final String text;
+        final long arrivedNanos;
+
+        Line(String text, long arrivedNanos) {
+            this.text = text;
+            this.arrivedNanos = arrivedNanos;
+        }
+    }
+
+    /**
+     * Returns the shared Scanner every prompt should read from
+     */
+    public static synchronized Scanner scanner() {
+        if (scanner == null) {
+            startReader();
+            scanner = new Scanner(ConsoleInput::read);
+        }
+        return scanner;
+    }
+
+    /**
+     * Removes and reports a line typed after the given time, without blocking
+     * @param sinceNanos System.nanoTime() when the wait began
+     * @return true if the analyst pressed Enter since then
+     */
+    static boolean pollLineSince(long sinceNanos) {
+        startReader();
+        Line head = lines.peek();
+        if (head == null || head == END || head.arrivedNanos - sinceNanos < 0) {
+            return false;
+        }
+        // Only the menu thread takes lines, so the head is still the one just checked
+        lines.poll();
+        return true;
+    }
+
+    private static synchronized void startReader() {
+        if (reader != null) {
+            return;
+        }
+        reader = new Thread(() -> {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            try {
+                String text;
+                while ((text = in.readLine()) != null) {
+                    lines.add(new Line(text, System.nanoTime()));
+                }
+            } catch (IOException e) {
+                // Treated as end of input
+            }
+            lines.add(END);
+        }, "console-input");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Hands the Scanner one queued line at a time, blocking until one arrives
+     */
+    private static int read(CharBuffer target) throws IOException {
+        Line line;
+        try {
+            line = lines.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for input", e);
+        }
+        if (line == END) {
+            lines.addFirst(END);
+            return -1;
+        }
+        String text = line.text + "\n";
+        if (text.length() > target.remaining()) {
+            // Return what fits and put the rest back at the head of the queue
+            String rest = text.substring(target.remaining(), text.length() - 1);
+            text = text.substring(0, target.remaining());
+            lines.addFirst(new Line(rest, line.arrivedNanos));
+        }
+        target.put(text);
+        return text.length();
+    }
+}
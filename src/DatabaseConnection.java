@@ -5,6 +5,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages database connections with credentials loaded from auth.cfg file.
@@ -17,6 +20,13 @@ public class DatabaseConnection {
     private static final String DATABASE_NAME = "cs3380";
     private static final String SERVER_URL = "uranium.cs.umanitoba.ca:1433";
 
+    // Connection counters published over JMX
+    private static final Set<Connection> openConnections = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong connectionsOpened = new AtomicLong();
+    private static final AtomicLong connectFailures = new AtomicLong();
+    private static final QueryMetrics.Histogram connectNanos = new QueryMetrics.Histogram();
+    private static volatile long lastConnectNanos;
+
     /**
      * Loads database credentials from auth.cfg file
      */
@@ -67,17 +77,8 @@ public class DatabaseConnection {
             }
         }
 
-        String connectionUrl =
-                "jdbc:sqlserver://" + SERVER_URL + ";"
-                + "database=" + DATABASE_NAME + ";"
-                + "user=" + username + ";"
-                + "password=" + password + ";"
-                + "encrypt=false;"
-                + "trustServerCertificate=false;"
-                + "loginTimeout=30;";
-
         try {
-            connection = DriverManager.getConnection(connectionUrl);
+            connection = connect();
             System.out.println("[OK] Connected to database successfully.");
             return connection;
         } catch (SQLException e) {
@@ -88,6 +89,40 @@ public class DatabaseConnection {
         }
     }
 
+    /**
+     * Opens a new connection separate from the shared one, for tools that simulate
+     * several sessions at once. The caller is responsible for closing it.
+     */
+    public static Connection openConnection() throws SQLException {
+        loadCredentials();
+        return connect();
+    }
+
+    private static Connection connect() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Connection conn = DriverManager.getConnection(connectionUrl());
+            lastConnectNanos = System.nanoTime() - start;
+            connectNanos.record(lastConnectNanos);
+            connectionsOpened.incrementAndGet();
+            openConnections.add(conn);
+            return conn;
+        } catch (SQLException e) {
+            connectFailures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private static String connectionUrl() {
+        return "jdbc:sqlserver://" + SERVER_URL + ";"
+                + "database=" + DATABASE_NAME + ";"
+                + "user=" + username + ";"
+                + "password=" + password + ";"
+                + "encrypt=false;"
+                + "trustServerCertificate=false;"
+                + "loginTimeout=30;";
+    }
+
     /**
      * Closes the database connection
      */
@@ -101,4 +136,43 @@ public class DatabaseConnection {
             }
         }
     }
+
+    /**
+     * Counts connections opened by this process that have not been closed yet
+     */
+    public static int getOpenConnectionCount() {
+        openConnections.removeIf(DatabaseConnection::isClosed);
+        return openConnections.size();
+    }
+
+    private static boolean isClosed(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Whether the shared connection used by the menu is currently open
+     */
+    public static boolean isSharedConnectionOpen() {
+        return connection != null && !isClosed(connection);
+    }
+
+    public static long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public static long getConnectFailures() {
+        return connectFailures.get();
+    }
+
+    public static long getLastConnectNanos() {
+        return lastConnectNanos;
+    }
+
+    public static QueryMetrics.Histogram getConnectTimes() {
+        return connectNanos;
+    }
 }
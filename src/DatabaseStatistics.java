@@ -45,6 +45,9 @@ public class DatabaseStatistics {
 
         // Show data completeness
         showDataCompleteness(tableCounts);
+
+        // Show query activity for this session
+        showQuerySessionStats();
     }
 
     /**
@@ -183,6 +186,22 @@ public class DatabaseStatistics {
         System.out.println("└────────────────────────────────────────────────────────────────┘");
     }
 
+    /**
+     * Show query execution counters collected by QueryExecutor during this session
+     */
+    public static void showQuerySessionStats() {
+        System.out.println("\n┌────────────────────────────────────────────────────────────────┐");
+        System.out.println("│  QUERY SESSION STATISTICS                                      │");
+        System.out.println("├─────────────────────────────────┬──────────────────────────────┤");
+        System.out.printf("│ %-31s │ %,26d │%n", "Queries Executed", QueryExecutor.getExecutionCount());
+        System.out.printf("│ %-31s │ %,26d │%n", "Failed", QueryExecutor.getFailureCount());
+        System.out.printf("│ %-31s │ %,26d │%n", "Cancelled by Analyst", QueryExecutor.getCancellationCount());
+        System.out.printf("│ %-31s │ %,26d │%n", "Timed Out", QueryExecutor.getTimeoutCount());
+        System.out.printf("│ %-31s │ %26s │%n", "Default Timeout (seconds)",
+                          QueryExecutor.getDefaultTimeout() == 0 ? "none" : String.valueOf(QueryExecutor.getDefaultTimeout()));
+        System.out.println("└─────────────────────────────────┴──────────────────────────────┘");
+    }
+
     /**
      * Quick row count display (compact format)
      */
@@ -0,0 +1,315 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch for approximate COUNT(DISTINCT).
+ * Values are hashed to 64 bits; the top p bits pick one of 2^p registers and each
+ * register keeps the longest run of leading zeros seen in the remaining bits.
+ * Small sketches stay sparse (a list of register updates) until that list would
+ * cost more than a quarter of the dense registers. Two sketches of the same
+ * precision merge by taking the register-wise maximum, so a sketch of a union is
+ * the merge of the sketches of its parts and duplicates across parts cost nothing.
+ */
+public class HyperLogLog {
+    /** 2^14 registers: 16 KB dense, about 0.81% relative standard error */
+    public static final int DEFAULT_PRECISION = 14;
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+
+    private final int precision;
+    private final int registerCount;
+    private byte[] registers;       // Dense registers, or null while sparse
+    private int[] sparse;           // (index << 6) | rank entries while sparse
+    private int sparseSize;
+    private int sparseSorted;       // Leading entries already sorted and deduplicated
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and "
+                                               + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.sparse = new int[8];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds a value; null is ignored, as COUNT(DISTINCT) ignores NULLs
+     */
+    public void add(String value) {
+        if (value != null) {
+            addHash(hash(value));
+        }
+    }
+
+    /**
+     * Adds an already hashed value; the hash must be uniformly distributed over 64 bits
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        int rank = rest == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        if (registers != null) {
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+        } else {
+            appendSparse((index << 6) | rank);
+        }
+    }
+
+    /**
+     * Folds another sketch of the same precision into this one
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + other.precision
+                                               + " into precision " + precision);
+        }
+        if (other.registers == null) {
+            for (int i = 0; i < other.sparseSize; i++) {
+                if (registers != null) {
+                    int entry = other.sparse[i];
+                    if (registers[entry >>> 6] < (entry & 0x3F)) {
+                        registers[entry >>> 6] = (byte) (entry & 0x3F);
+                    }
+                } else {
+                    appendSparse(other.sparse[i]);
+                }
+            }
+            return;
+        }
+        if (registers == null) {
+            toDense();
+        }
+        for (int i = 0; i < registerCount; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimated number of distinct values added
+     */
+    public long estimate() {
+        int[] histogram = rankHistogram();
+        return Math.round(estimate(histogram, harmonicEstimate(histogram)));
+    }
+
+    /**
+     * Standard error of the estimate, in distinct values.
+     * Uses the linear counting variance while that estimator is in use, and
+     * 1.04 / sqrt(m) relative error once the harmonic mean takes over.
+     */
+    public double standardError() {
+        int[] histogram = rankHistogram();
+        double harmonic = harmonicEstimate(histogram);
+        if (usesLinearCounting(histogram, harmonic)) {
+            double load = estimate(histogram, harmonic) / registerCount;
+            return Math.sqrt(registerCount * (Math.exp(load) - load - 1));
+        }
+        return harmonic * 1.04 / Math.sqrt(registerCount);
+    }
+
+    /**
+     * Half-width of the 95% confidence interval around the estimate
+     */
+    public double errorBound95() {
+        return 1.96 * standardError();
+    }
+
+    public boolean isSparse() {
+        return registers == null;
+    }
+
+    /**
+     * Approximate heap footprint of the sketch
+     */
+    public int sizeInBytes() {
+        return registers != null ? registerCount : sparse.length * 4;
+    }
+
+    private double estimate(int[] histogram, double harmonic) {
+        if (usesLinearCounting(histogram, harmonic)) {
+            return registerCount * Math.log((double) registerCount / histogram[0]);
+        }
+        return harmonic;
+    }
+
+    /**
+     * Small-range correction: below 2.5m, with empty registers left, count the empty ones instead
+     */
+    private boolean usesLinearCounting(int[] histogram, double harmonic) {
+        return histogram[0] > 0 && harmonic <= 2.5 * registerCount;
+    }
+
+    private double harmonicEstimate(int[] histogram) {
+        double sum = 0;
+        for (int rank = histogram.length - 1; rank >= 0; rank--) {
+            sum = sum * 0.5 + histogram[rank];
+        }
+        return alpha() * registerCount * registerCount / sum;
+    }
+
+    /**
+     * Number of registers holding each rank, rank 0 being empty registers
+     */
+    private int[] rankHistogram() {
+        int[] histogram = new int[64 - precision + 2];
+        if (registers != null) {
+            for (byte rank : registers) {
+                histogram[rank]++;
+            }
+        } else {
+            compact();
+            histogram[0] = registerCount - sparseSize;
+            for (int i = 0; i < sparseSize; i++) {
+                histogram[sparse[i] & 0x3F]++;
+            }
+        }
+        return histogram;
+    }
+
+    private double alpha() {
+        switch (registerCount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+
+    private void appendSparse(int entry) {
+        if (sparseSize == sparse.length) {
+            compact();
+            if (sparseSize > registerCount / 16) {
+                toDense();
+                registers[entry >>> 6] = (byte) Math.max(registers[entry >>> 6], entry & 0x3F);
+                return;
+            }
+            if (sparseSize * 2 > sparse.length) {
+                sparse = Arrays.copyOf(sparse, sparse.length * 2);
+            }
+        }
+        sparse[sparseSize++] = entry;
+    }
+
+    /**
+     * Sorts the sparse entries and keeps the highest rank per register
+     */
+    private void compact() {
+        if (sparseSorted == sparseSize) {
+            return;
+        }
+        Arrays.sort(sparse, 0, sparseSize);
+        int kept = 0;
+        for (int i = 0; i < sparseSize; i++) {
+            // Sorted by index then rank, so the last entry of each index has the highest rank
+            if (i + 1 < sparseSize && sparse[i + 1] >>> 6 == sparse[i] >>> 6) {
+                continue;
+            }
+            sparse[kept++] = sparse[i];
+        }
+        sparseSize = kept;
+        sparseSorted = kept;
+    }
+
+    private void toDense() {
+        registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            int entry = sparse[i];
+            if (registers[entry >>> 6] < (entry & 0x3F)) {
+                registers[entry >>> 6] = (byte) (entry & 0x3F);
+            }
+        }
+        sparse = null;
+        sparseSize = 0;
+        sparseSorted = 0;
+    }
+
+    /**
+     * Writes the sketch in its current (sparse or dense) form
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeByte(precision);
+        if (registers != null) {
+            out.writeByte(DENSE);
+            out.write(registers);
+        } else {
+            compact();
+            out.writeByte(SPARSE);
+            out.writeInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++) {
+                out.writeInt(sparse[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a sketch written by write()
+     */
+    public static HyperLogLog read(DataInputStream in) throws IOException {
+        HyperLogLog sketch;
+        try {
+            sketch = new HyperLogLog(in.readByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt sketch: " + e.getMessage());
+        }
+        byte format = in.readByte();
+        if (format == DENSE) {
+            sketch.registers = new byte[sketch.registerCount];
+            in.readFully(sketch.registers);
+            sketch.sparse = null;
+        } else if (format == SPARSE) {
+            int size = in.readInt();
+            if (size < 0 || size > sketch.registerCount) {
+                throw new IOException("Corrupt sketch: " + size + " sparse entries");
+            }
+            sketch.sparse = new int[Math.max(size, 8)];
+            for (int i = 0; i < size; i++) {
+                sketch.sparse[i] = in.readInt();
+            }
+            sketch.sparseSize = size;
+            sketch.sparseSorted = size;
+        } else {
+            throw new IOException("Corrupt sketch: unknown format " + format);
+        }
+        return sketch;
+    }
+
+    /**
+     * 64-bit hash of a string: FNV-1a over the characters, then the MurmurHash3
+     * finalizer so every input bit reaches the high bits used for the register index
+     */
+    public static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,1021 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Report aggregates kept up to date from the rows the CSV loader inserts, instead of
+ * being recomputed from every row on each run. Each committed batch of ORDERS,
+ * ORDER_ITEMS, ORDER_PAYMENTS or ORDER_REVIEWS is applied as a delta to per-state,
+ * per-seller, per-category, per-category-and-quarter and per-payment-type sums and
+ * counts, and the state is saved to a file after every table. The matching reports
+ * are then built from the groups alone.
+ *
+ * The dimension tables (GEOLOCATION, CATEGORIES, CUSTOMERS, SELLERS, PRODUCTS) are
+ * remembered as they load, so each fact row can be joined when it arrives, with the
+ * same GEOLOCATION fan-out and NULL rules as LocalAnalyticsEngine. Dimension rows are
+ * expected before the facts that reference them, which is the loader's foreign key
+ * order; a fact whose parent row is missing is dropped, as the database would reject it.
+ * To keep COUNT(DISTINCT) exact under appends, the (group, order) pairs already
+ * counted are kept alongside the sums.
+ */
+public class IncrementalAggregates implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String DEFAULT_FILE = "aggregates/maintained.ser.gz";
+
+    // Tables in loader order, with their CSV files
+    private static final String[][] TABLES = {
+        {"GEOLOCATION", "olist_geolocation_dataset.csv"},
+        {"CATEGORIES", "product_category_name_translation.csv"},
+        {"CUSTOMERS", "olist_customers_dataset.csv"},
+        {"SELLERS", "olist_sellers_dataset.csv"},
+        {"PRODUCTS", "olist_products_dataset.csv"},
+        {"ORDERS", "olist_orders_dataset.csv"},
+        {"ORDER_ITEMS", "olist_order_items_dataset.csv"},
+        {"ORDER_PAYMENTS", "olist_order_payments_dataset.csv"},
+        {"ORDER_REVIEWS", "olist_order_reviews_dataset.csv"}
+    };
+
+    private static final Map<String, Report> REPORTS = new HashMap<>();
+
+    static {
+        REPORTS.put(QueryManager.HIGH_VALUE_CUSTOMER_STATES, IncrementalAggregates::highValueCustomerStates);
+        REPORTS.put(QueryManager.HIGHEST_SALES_GEOLOCATION, IncrementalAggregates::highestSalesGeolocation);
+        REPORTS.put(QueryManager.TOP_SELLING_CATEGORIES, IncrementalAggregates::topSellingCategories);
+        REPORTS.put(QueryManager.CATEGORY_PERFORMANCE_BY_QUARTER, IncrementalAggregates::categoryPerformanceByQuarter);
+        REPORTS.put(QueryManager.SELLER_SUCCESS_RATE, IncrementalAggregates::sellerSuccessRate);
+        REPORTS.put(QueryManager.MOST_COMMON_PAYMENT_TYPE_BY_STATE, IncrementalAggregates::mostCommonPaymentTypeByState);
+        REPORTS.put(QueryManager.AVG_INSTALLMENTS_BY_PAYMENT_TYPE, IncrementalAggregates::avgInstallmentsByPaymentType);
+    }
+
+    private interface Report {
+        LocalAnalyticsEngine.Result run(IncrementalAggregates aggregates);
+    }
+
+    private static volatile String file = DEFAULT_FILE;
+    private static volatile IncrementalAggregates instance;
+
+    // ---- Dimensions ----
+
+    // STATES: ids below stateTableSize follow CSVDataLoader.BRAZILIAN_STATES
+    private final ColumnStore.Dictionary states = new ColumnStore.Dictionary();
+    private final int stateTableSize;
+    private final ColumnStore.Dictionary cities = new ColumnStore.Dictionary();
+    private final ColumnStore.Dictionary zips = new ColumnStore.Dictionary();
+    // zip -> (state << 32 | city) -> GEOLOCATION rows
+    private final List<HashMap<Long, Integer>> zipPlaces = new ArrayList<>();
+    private final ColumnStore.Dictionary categoryNames = new ColumnStore.Dictionary();
+    private final ColumnStore.Dictionary englishNames = new ColumnStore.Dictionary();
+    private final IntList categoryEnglish = new IntList();   // English name id, -1 NULL, NOT_IN_CATEGORIES
+    private final ColumnStore.Dictionary customers = new ColumnStore.Dictionary();
+    private final IntList customerZip = new IntList();
+    private final ColumnStore.Dictionary sellers = new ColumnStore.Dictionary();
+    private final IntList sellerZip = new IntList();
+    private final ColumnStore.Dictionary products = new ColumnStore.Dictionary();
+    private final IntList productCategory = new IntList();
+    private final ColumnStore.Dictionary orders = new ColumnStore.Dictionary();
+    private final IntList orderCustomer = new IntList();
+    private final IntList orderQuarter = new IntList();      // year * 4 + quarter - 1, or -1 when NULL
+    private final ColumnStore.Dictionary paymentTypes = new ColumnStore.Dictionary();
+    private final ColumnStore.Dictionary reviewIds = new ColumnStore.Dictionary();
+
+    // ---- Per-order state the deltas are joined against ----
+
+    private final BitSet orderHasItems = new BitSet();
+    private final BitSet customerHasItems = new BitSet();
+    private final List<int[]> orderSellers = new ArrayList<>();  // (seller, items) pairs per order
+    private final List<int[]> orderReviews = new ArrayList<>();  // (review id, score) pairs per order
+
+    // ---- Aggregates ----
+
+    // Per state, over CUSTOMERS x GEOLOCATION x STATES x ORDERS x ORDER_ITEMS
+    private final LongArray stateOrders = new LongArray();
+    private final LongArray stateCustomers = new LongArray();
+    private final LongArray stateCents = new LongArray();
+    private final LongArray stateRows = new LongArray();
+
+    // Per English category group (englishGroup), over PRODUCTS x ORDER_ITEMS
+    private final LongArray categoryOrders = new LongArray();
+    private final LongArray categoryProducts = new LongArray();
+    private final LongArray categoryCents = new LongArray();
+    private final LongArray categoryPriced = new LongArray();
+    private final ColumnStore.LongHashSet categoryOrderPairs = new ColumnStore.LongHashSet(1 << 16);
+    private final ColumnStore.LongHashSet categoryProductPairs = new ColumnStore.LongHashSet(1 << 14);
+
+    // Per (category group, quarter), keyed by pair(group, quarter + 1)
+    private final HashMap<Long, long[]> quarters = new HashMap<>();   // {orders, cents, priced, group id}
+    private final ColumnStore.LongHashSet quarterOrderPairs = new ColumnStore.LongHashSet(1 << 16);
+
+    // Per seller, over ORDER_ITEMS x ORDER_REVIEWS
+    private final LongArray sellerOrders = new LongArray();
+    private final LongArray sellerReviews = new LongArray();
+    private final LongArray sellerScoreSum = new LongArray();
+    private final LongArray sellerScored = new LongArray();
+    private final ColumnStore.LongHashSet sellerReviewPairs = new ColumnStore.LongHashSet(1 << 14);
+
+    // Per (state, payment type id + 1), keyed by pair(state, type + 1)
+    private final HashMap<Long, Long> statePayments = new HashMap<>();
+
+    // Per payment type id + 1 (0 is a NULL type)
+    private final LongArray typePayments = new LongArray();
+    private final LongArray typeInstallmentSum = new LongArray();
+    private final LongArray typeInstallmentRows = new LongArray();
+    private final LongArray typeMinInstallments = new LongArray();
+    private final LongArray typeMaxInstallments = new LongArray();
+    private final LongArray typeValueCents = new LongArray();
+    private final LongArray typeValueRows = new LongArray();
+
+    private final HashMap<String, Long> appliedRows = new HashMap<>();
+    private final HashMap<String, Long> rejectedRows = new HashMap<>();
+    private long batchesApplied;
+
+    /**
+     * Growable int list that survives serialization
+     */
+    private static final class IntList implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private int[] data = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+
+        void set(int index, int value) {
+            data[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Long counters indexed by group id, growing as new groups appear; absent groups read as 0
+     */
+    private static final class LongArray implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private long[] data = new long[64];
+
+        void add(int index, long delta) {
+            ensure(index);
+            data[index] += delta;
+        }
+
+        void set(int index, long value) {
+            ensure(index);
+            data[index] = value;
+        }
+
+        long get(int index) {
+            return index < data.length ? data[index] : 0;
+        }
+
+        int length() {
+            return data.length;
+        }
+
+        private void ensure(int index) {
+            if (index >= data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, index + 1));
+            }
+        }
+    }
+
+    public IncrementalAggregates() {
+        for (String[] state : CSVDataLoader.BRAZILIAN_STATES) {
+            states.intern(state[0]);
+        }
+        stateTableSize = states.size();
+    }
+
+    // ==================== APPLYING DELTAS ====================
+
+    /**
+     * Listener for a table the CSV loader is about to load, or null if the table feeds no aggregate
+     */
+    static CSVDataLoader.BatchListener listenerFor(String table) {
+        for (String[] known : TABLES) {
+            if (known[0].equals(table)) {
+                return new BatchApplier(currentFor(table), table, true);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Buffers the rows of the current batch and applies them once the batch is committed
+     */
+    private static final class BatchApplier implements CSVDataLoader.BatchListener {
+        private final IncrementalAggregates target;
+        private final String table;
+        private final boolean save;
+        private final List<String[]> pending = new ArrayList<>(CSVDataLoader.BATCH_SIZE);
+
+        BatchApplier(IncrementalAggregates target, String table, boolean save) {
+            this.target = target;
+            this.table = table;
+            this.save = save;
+        }
+
+        @Override
+        public void accept(String[] values) {
+            String[] row = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                row[i] = values[i] == null ? null : CSVDataLoader.normalizeValue(values[i]);
+            }
+            pending.add(row);
+        }
+
+        @Override
+        public void commitBatch() {
+            if (!pending.isEmpty()) {
+                target.applyBatch(table, pending);
+                pending.clear();
+            }
+        }
+
+        @Override
+        public void finish() {
+            instance = target;
+            if (!save) {
+                return;
+            }
+            try {
+                target.save(new File(file));
+            } catch (IOException e) {
+                System.err.println("Failed to save maintained aggregates: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies one committed batch of a table's rows, given as normalized CSV values
+     */
+    public synchronized void applyBatch(String table, List<String[]> rows) {
+        long applied = 0;
+        for (String[] v : rows) {
+            boolean accepted;
+            switch (table) {
+                case "GEOLOCATION":
+                    accepted = addGeolocation(v);
+                    break;
+                case "CATEGORIES":
+                    accepted = addCategory(v);
+                    break;
+                case "CUSTOMERS":
+                    accepted = addKeyed(customers, customerZip, v[0], zips.lookup(v[2]));
+                    break;
+                case "SELLERS":
+                    accepted = addKeyed(sellers, sellerZip, v[0], zips.lookup(v[1]));
+                    break;
+                case "PRODUCTS":
+                    accepted = addProduct(v);
+                    break;
+                case "ORDERS":
+                    accepted = addOrder(v);
+                    break;
+                case "ORDER_ITEMS":
+                    accepted = addItem(v);
+                    break;
+                case "ORDER_PAYMENTS":
+                    accepted = addPayment(v);
+                    break;
+                case "ORDER_REVIEWS":
+                    accepted = addReview(v);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown table: " + table);
+            }
+            if (accepted) {
+                applied++;
+            } else {
+                rejectedRows.merge(table, 1L, Long::sum);
+            }
+        }
+        appliedRows.merge(table, applied, Long::sum);
+        batchesApplied++;
+    }
+
+    private boolean addGeolocation(String[] v) {
+        if (v[0] == null) {
+            return false;
+        }
+        int zip = zips.intern(v[0]);
+        if (zip == zipPlaces.size()) {
+            zipPlaces.add(new HashMap<>(4));
+        }
+        long key = ((long) states.intern(v[4]) << 32) | (cities.intern(v[3]) & 0xffffffffL);
+        zipPlaces.get(zip).merge(key, 1, Integer::sum);
+        return true;
+    }
+
+    private boolean addCategory(String[] v) {
+        int category = categoryNames.intern(v[0]);
+        if (category < 0) {
+            return true;
+        }
+        while (categoryEnglish.size() <= category) {
+            categoryEnglish.add(ColumnStore.NOT_IN_CATEGORIES);
+        }
+        if (categoryEnglish.get(category) == ColumnStore.NOT_IN_CATEGORIES) {
+            categoryEnglish.set(category, englishNames.intern(v[1]));
+        }
+        return true;
+    }
+
+    private static boolean addKeyed(ColumnStore.Dictionary keys, IntList column, String key, int value) {
+        if (key == null || keys.lookup(key) >= 0) {
+            return false;
+        }
+        keys.intern(key);
+        column.add(value);
+        return true;
+    }
+
+    private boolean addProduct(String[] v) {
+        int category = categoryNames.intern(v[1]);
+        while (categoryEnglish.size() < categoryNames.size()) {
+            categoryEnglish.add(ColumnStore.NOT_IN_CATEGORIES);
+        }
+        return addKeyed(products, productCategory, v[0], category);
+    }
+
+    private boolean addOrder(String[] v) {
+        int customer = customers.lookup(v[1]);
+        if (v[1] != null && customer < 0) {
+            return false;
+        }
+        if (!addKeyed(orders, orderCustomer, v[0], customer)) {
+            return false;
+        }
+        long purchase = ColumnStore.parseTimestamp(v[3]);
+        int quarter = -1;
+        if (purchase != ColumnStore.NULL_LONG) {
+            LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(purchase, 86400));
+            quarter = date.getYear() * 4 + (date.getMonthValue() - 1) / 3;
+        }
+        orderQuarter.add(quarter);
+        orderSellers.add(null);
+        orderReviews.add(null);
+        return true;
+    }
+
+    private boolean addItem(String[] v) {
+        int order = orders.lookup(v[0]);
+        int product = products.lookup(v[2]);
+        int seller = sellers.lookup(v[3]);
+        if (order < 0 || (v[2] != null && product < 0) || (v[3] != null && seller < 0)) {
+            return false;
+        }
+        long price = ColumnStore.parseCents(v[5]);
+        long freight = ColumnStore.parseCents(v[6]);
+
+        // Per state: the customer's zip fans out to one row per GEOLOCATION row in a STATES state
+        int customer = orderCustomer.get(order);
+        int zip = customer < 0 ? -1 : customerZip.get(customer);
+        boolean firstItemOfOrder = !orderHasItems.get(order);
+        boolean firstItemOfCustomer = customer >= 0 && !customerHasItems.get(customer);
+        orderHasItems.set(order);
+        if (customer >= 0) {
+            customerHasItems.set(customer);
+        }
+        if (zip >= 0) {
+            for (Map.Entry<Integer, Long> state : joinStates(zip).entrySet()) {
+                int id = state.getKey();
+                long fanOut = state.getValue();
+                if (firstItemOfOrder) {
+                    stateOrders.add(id, 1);
+                }
+                if (firstItemOfCustomer) {
+                    stateCustomers.add(id, 1);
+                }
+                if (price != ColumnStore.NULL_LONG && freight != ColumnStore.NULL_LONG) {
+                    stateCents.add(id, (price + freight) * fanOut);
+                    stateRows.add(id, fanOut);
+                }
+            }
+        }
+
+        // Per category and per category and quarter
+        int group = englishGroup(product);
+        if (group >= 0) {
+            if (categoryOrderPairs.add(ColumnStore.LongHashSet.pair(group, order))) {
+                categoryOrders.add(group, 1);
+            }
+            if (categoryProductPairs.add(ColumnStore.LongHashSet.pair(group, product))) {
+                categoryProducts.add(group, 1);
+            }
+            long[] quarter = quarters.computeIfAbsent(ColumnStore.LongHashSet.pair(group, orderQuarter.get(order) + 1),
+                                                      k -> new long[] {0, 0, 0, quarters.size()});
+            if (quarterOrderPairs.add(ColumnStore.LongHashSet.pair((int) quarter[3], order))) {
+                quarter[0]++;
+            }
+            if (price != ColumnStore.NULL_LONG) {
+                categoryCents.add(group, price);
+                categoryPriced.add(group, 1);
+                quarter[1] += price;
+                quarter[2]++;
+            }
+        }
+
+        // Per seller: join the item to the order's reviews that already arrived
+        if (seller >= 0) {
+            int[] pairs = orderSellers.get(order);
+            int slot = findPair(pairs, seller);
+            if (slot < 0) {
+                pairs = pairs == null ? new int[2] : Arrays.copyOf(pairs, pairs.length + 2);
+                slot = pairs.length - 2;
+                pairs[slot] = seller;
+                orderSellers.set(order, pairs);
+                sellerOrders.add(seller, 1);
+            }
+            pairs[slot + 1]++;
+            int[] reviews = orderReviews.get(order);
+            for (int k = 0; reviews != null && k < reviews.length; k += 2) {
+                addSellerReview(seller, reviews[k], reviews[k + 1], 1);
+            }
+        }
+        return true;
+    }
+
+    private boolean addPayment(String[] v) {
+        int order = orders.lookup(v[0]);
+        if (order < 0) {
+            return false;
+        }
+        int type = paymentTypes.intern(v[2]) + 1;
+        int installments = ColumnStore.parseInt(v[3]);
+        long value = ColumnStore.parseCents(v[4]);
+
+        if (typePayments.get(type) == 0) {
+            typeMinInstallments.set(type, Long.MAX_VALUE);
+            typeMaxInstallments.set(type, Long.MIN_VALUE);
+        }
+        typePayments.add(type, 1);
+        if (installments != ColumnStore.NULL_INT) {
+            typeInstallmentSum.add(type, installments);
+            typeInstallmentRows.add(type, 1);
+            typeMinInstallments.set(type, Math.min(typeMinInstallments.get(type), installments));
+            typeMaxInstallments.set(type, Math.max(typeMaxInstallments.get(type), installments));
+        }
+        if (value != ColumnStore.NULL_LONG) {
+            typeValueCents.add(type, value);
+            typeValueRows.add(type, 1);
+        }
+
+        int customer = orderCustomer.get(order);
+        int zip = customer < 0 ? -1 : customerZip.get(customer);
+        if (zip >= 0) {
+            for (Map.Entry<Integer, Long> state : joinStates(zip).entrySet()) {
+                statePayments.merge(ColumnStore.LongHashSet.pair(state.getKey(), type), state.getValue(), Long::sum);
+            }
+        }
+        return true;
+    }
+
+    private boolean addReview(String[] v) {
+        int order = orders.lookup(v[1]);
+        if (v[1] != null && order < 0) {
+            return false;
+        }
+        int review = reviewIds.intern(v[0]);
+        int score = ColumnStore.parseInt(v[2]);
+        if (order < 0) {
+            return true;
+        }
+        int[] reviews = orderReviews.get(order);
+        reviews = reviews == null ? new int[2] : Arrays.copyOf(reviews, reviews.length + 2);
+        reviews[reviews.length - 2] = review;
+        reviews[reviews.length - 1] = score;
+        orderReviews.set(order, reviews);
+
+        // Join the review to the order's items that already arrived, once per item
+        int[] pairs = orderSellers.get(order);
+        for (int k = 0; pairs != null && k < pairs.length; k += 2) {
+            addSellerReview(pairs[k], review, score, pairs[k + 1]);
+        }
+        return true;
+    }
+
+    /**
+     * Counts the joined (item, review) rows of a seller
+     * @param items Number of the seller's items in the order the review joins to
+     */
+    private void addSellerReview(int seller, int review, int score, int items) {
+        if (review >= 0 && sellerReviewPairs.add(ColumnStore.LongHashSet.pair(seller, review))) {
+            sellerReviews.add(seller, 1);
+        }
+        if (score != ColumnStore.NULL_INT) {
+            sellerScoreSum.add(seller, (long) score * items);
+            sellerScored.add(seller, items);
+        }
+    }
+
+    private static int findPair(int[] pairs, int key) {
+        for (int k = 0; pairs != null && k < pairs.length; k += 2) {
+            if (pairs[k] == key) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * States a zip joins to through GEOLOCATION and STATES, with the rows it fans out to in each
+     */
+    private Map<Integer, Long> joinStates(int zip) {
+        Map<Integer, Long> joined = new HashMap<>(4);
+        if (zip < zipPlaces.size()) {
+            for (Map.Entry<Long, Integer> place : zipPlaces.get(zip).entrySet()) {
+                int state = (int) (place.getKey() >> 32);
+                if (state >= 0 && state < stateTableSize) {
+                    joined.merge(state, (long) place.getValue(), Long::sum);
+                }
+            }
+        }
+        return joined;
+    }
+
+    /**
+     * English name group of a product, shifted by one so a NULL English name is group 0
+     * @return The group, or -1 if the product has no CATEGORIES row to join
+     */
+    private int englishGroup(int product) {
+        if (product < 0) {
+            return -1;
+        }
+        int category = productCategory.get(product);
+        if (category < 0 || categoryEnglish.get(category) == ColumnStore.NOT_IN_CATEGORIES) {
+            return -1;
+        }
+        return categoryEnglish.get(category) + 1;
+    }
+
+    // ==================== REPORTS ====================
+
+    public static boolean supports(String query) {
+        return REPORTS.containsKey(query);
+    }
+
+    /**
+     * Builds a report from the maintained groups
+     */
+    public synchronized LocalAnalyticsEngine.Result report(String query) {
+        Report report = REPORTS.get(query);
+        if (report == null) {
+            throw new IllegalArgumentException("Report is not maintained incrementally");
+        }
+        return report.run(this);
+    }
+
+    private String stateName(int state) {
+        return state < stateTableSize ? CSVDataLoader.BRAZILIAN_STATES[state][1] : null;
+    }
+
+    private static LocalAnalyticsEngine.Result highValueCustomerStates(IncrementalAggregates a) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int state = 0; state < a.stateTableSize; state++) {
+            if (a.stateOrders.get(state) > 0) {
+                rows.add(new Object[] {
+                    a.states.get(state), a.stateName(state), (int) a.stateOrders.get(state),
+                    LocalAnalyticsEngine.avgMoney(a.stateCents.get(state), a.stateRows.get(state))
+                });
+            }
+        }
+        LocalAnalyticsEngine.sort(rows, LocalAnalyticsEngine.desc(3));
+        return new LocalAnalyticsEngine.Result(new String[] {"state", "state_name", "total_orders",
+                                                             "avg_order_value"}, rows);
+    }
+
+    private static LocalAnalyticsEngine.Result highestSalesGeolocation(IncrementalAggregates a) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int state = 0; state < a.stateTableSize; state++) {
+            if (a.stateOrders.get(state) > 0) {
+                rows.add(new Object[] {
+                    a.states.get(state), a.stateName(state), (int) a.stateOrders.get(state),
+                    (int) a.stateCustomers.get(state),
+                    LocalAnalyticsEngine.sumMoney(a.stateCents.get(state), a.stateRows.get(state)),
+                    LocalAnalyticsEngine.avgMoney(a.stateCents.get(state), a.stateRows.get(state))
+                });
+            }
+        }
+        LocalAnalyticsEngine.sort(rows, LocalAnalyticsEngine.desc(4));
+        return new LocalAnalyticsEngine.Result(new String[] {"geolocation_state", "state_name", "total_orders",
+                                                             "unique_customers", "total_revenue",
+                                                             "avg_order_value"}, rows);
+    }
+
+    private static LocalAnalyticsEngine.Result topSellingCategories(IncrementalAggregates a) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int group = 0; group < a.categoryOrders.length(); group++) {
+            if (a.categoryOrders.get(group) > 0) {
+                long cents = a.categoryCents.get(group);
+                long priced = a.categoryPriced.get(group);
+                rows.add(new Object[] {
+                    a.englishNames.get(group - 1), (int) a.categoryOrders.get(group),
+                    (int) a.categoryProducts.get(group), LocalAnalyticsEngine.sumMoney(cents, priced),
+                    LocalAnalyticsEngine.avgMoney(cents, priced)
+                });
+            }
+        }
+        LocalAnalyticsEngine.sort(rows, LocalAnalyticsEngine.desc(3));
+        return new LocalAnalyticsEngine.Result(new String[] {"category_name_english", "orders_count",
+                                                             "products_count", "total_revenue",
+                                                             "avg_product_price"}, rows);
+    }
+
+    private static LocalAnalyticsEngine.Result categoryPerformanceByQuarter(IncrementalAggregates a) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : a.quarters.entrySet()) {
+            int group = (int) (entry.getKey() >>> 32);
+            int quarter = (int) (long) entry.getKey() - 1;
+            long[] totals = entry.getValue();
+            boolean dated = quarter >= 0;
+            rows.add(new Object[] {
+                a.englishNames.get(group - 1), dated ? quarter / 4 : null, dated ? quarter % 4 + 1 : null,
+                (int) totals[0], LocalAnalyticsEngine.sumMoney(totals[1], totals[2]),
+                LocalAnalyticsEngine.avgMoney(totals[1], totals[2])
+            });
+        }
+        LocalAnalyticsEngine.sort(rows, LocalAnalyticsEngine.asc(0), LocalAnalyticsEngine.asc(1),
+                                  LocalAnalyticsEngine.asc(2));
+        return new LocalAnalyticsEngine.Result(new String[] {"category_name_english", "order_year", "order_quarter",
+                                                             "orders", "revenue", "avg_item_price"}, rows);
+    }
+
+    private static LocalAnalyticsEngine.Result sellerSuccessRate(IncrementalAggregates a) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int seller = 0; seller < a.sellers.size(); seller++) {
+            int orders = (int) a.sellerOrders.get(seller);
+            int zip = a.sellerZip.get(seller);
+            if (orders == 0 || zip < 0 || zip >= a.zipPlaces.size()) {
+                continue;
+            }
+            int reviews = (int) a.sellerReviews.get(seller);
+            long scored = a.sellerScored.get(seller);
+            Integer avgScore = scored == 0 ? 0 : (int) (a.sellerScoreSum.get(seller) / scored);
+            BigDecimal reviewRate = LocalAnalyticsEngine.roundRatio(reviews, orders, LocalAnalyticsEngine.HUNDRED);
+            for (long place : a.zipPlaces.get(zip).keySet()) {
+                rows.add(new Object[] {
+                    a.sellers.get(seller), a.cities.get((int) place), a.states.get((int) (place >> 32)),
+                    orders, reviews, avgScore, reviewRate
+                });
+            }
+        }
+        LocalAnalyticsEngine.sort(rows, LocalAnalyticsEngine.desc(5), LocalAnalyticsEngine.desc(3));
+        return new LocalAnalyticsEngine.Result(new String[] {"seller_id", "seller_city", "seller_state",
+                                                             "orders_fulfilled", "reviews_received",
+                                                             "avg_review_score", "review_rate_percentage"}, rows);
+    }
+
+    private static LocalAnalyticsEngine.Result mostCommonPaymentTypeByState(IncrementalAggregates a) {
+        int types = a.paymentTypes.size() + 1;
+        List<Object[]> rows = new ArrayList<>();
+        for (int state = 0; state < a.stateTableSize; state++) {
+            int best = -1;
+            long bestCount = 0;
+            for (int type = 0; type < types; type++) {
+                long count = a.statePayments.getOrDefault(ColumnStore.LongHashSet.pair(state, type), 0L);
+                if (count > bestCount) {
+                    best = type;
+                    bestCount = count;
+                }
+            }
+            if (best >= 0) {
+                rows.add(new Object[] {
+                    a.states.get(state), a.stateName(state), a.paymentTypes.get(best - 1), (int) bestCount
+                });
+            }
+        }
+        LocalAnalyticsEngine.sort(rows, LocalAnalyticsEngine.asc(0));
+        return new LocalAnalyticsEngine.Result(new String[] {"geolocation_state", "state_name",
+                                                             "most_common_payment_type", "payment_count"}, rows);
+    }
+
+    private static LocalAnalyticsEngine.Result avgInstallmentsByPaymentType(IncrementalAggregates a) {
+        int types = a.paymentTypes.size() + 1;
+        List<Object[]> rows = new ArrayList<>();
+        for (int type = 0; type < types; type++) {
+            long payments = a.typePayments.get(type);
+            if (payments == 0) {
+                continue;
+            }
+            boolean hasInstallments = a.typeInstallmentRows.get(type) > 0;
+            BigDecimal avgValue = LocalAnalyticsEngine.avgMoney(a.typeValueCents.get(type), a.typeValueRows.get(type));
+            rows.add(new Object[] {
+                a.paymentTypes.get(type - 1), (int) payments,
+                LocalAnalyticsEngine.avgInt(a.typeInstallmentSum.get(type), a.typeInstallmentRows.get(type)),
+                hasInstallments ? (int) a.typeMinInstallments.get(type) : null,
+                hasInstallments ? (int) a.typeMaxInstallments.get(type) : null,
+                avgValue == null ? null : avgValue.setScale(2, RoundingMode.HALF_UP).setScale(6)
+            });
+        }
+        LocalAnalyticsEngine.sort(rows, LocalAnalyticsEngine.desc(2));
+        return new LocalAnalyticsEngine.Result(new String[] {"payment_type", "total_payments", "avg_installments",
+                                                             "min_installments", "max_installments",
+                                                             "avg_payment_value"}, rows);
+    }
+
+    /**
+     * Number of groups the reports are built from
+     */
+    public synchronized int groupCount() {
+        int count = quarters.size() + statePayments.size() + sellers.size() + stateTableSize
+                    + paymentTypes.size() + 1;
+        for (int group = 0; group < categoryOrders.length(); group++) {
+            if (categoryOrders.get(group) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized long getBatchesApplied() {
+        return batchesApplied;
+    }
+
+    /**
+     * Rows applied so far, per table
+     */
+    public synchronized Map<String, Long> getAppliedRows() {
+        return new HashMap<>(appliedRows);
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    /**
+     * Returns the maintained aggregates, reading the saved file on first use
+     * @return The aggregates, or null if the loader has not built any yet
+     */
+    public static IncrementalAggregates get() throws IOException {
+        IncrementalAggregates aggregates = instance;
+        if (aggregates == null) {
+            synchronized (IncrementalAggregates.class) {
+                aggregates = instance;
+                if (aggregates == null && new File(file).exists()) {
+                    aggregates = read(new File(file));
+                    instance = aggregates;
+                }
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * Forgets the aggregates and deletes the saved file, e.g. after the tables are cleared
+     */
+    public static synchronized void reset() {
+        instance = null;
+        new File(file).delete();
+    }
+
+    public static void setFile(String path) {
+        file = path;
+        instance = null;
+    }
+
+    public static String getFile() {
+        return file;
+    }
+
+    /**
+     * The aggregates a load of the table should be applied to. Saved aggregates holding rows of a
+     * table the database has none of were built from tables since recreated, e.g. by running
+     * schema.sql outside the program, and are started afresh instead of being added to.
+     */
+    private static synchronized IncrementalAggregates currentFor(String table) {
+        IncrementalAggregates aggregates = loadedOrEmpty();
+        if (aggregates.getAppliedRows().getOrDefault(table, 0L) > 0 && CSVDataLoader.isTableEmpty(table)) {
+            System.err.println("Discarding maintained aggregates built from an earlier " + table + " table");
+            reset();
+            aggregates = loadedOrEmpty();
+        }
+        return aggregates;
+    }
+
+    private static synchronized IncrementalAggregates loadedOrEmpty() {
+        try {
+            IncrementalAggregates aggregates = get();
+            if (aggregates == null) {
+                aggregates = new IncrementalAggregates();
+                instance = aggregates;
+            }
+            return aggregates;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable maintained aggregates: " + e.getMessage());
+            instance = new IncrementalAggregates();
+            return instance;
+        }
+    }
+
+    /**
+     * Writes the aggregates, with everything needed to keep applying deltas, to a gzip file
+     */
+    public synchronized void save(File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File temp = new File(target.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeObject(this);
+        }
+        if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target))) {
+            throw new IOException("Cannot replace " + target);
+        }
+    }
+
+    /**
+     * Reads a file written by save()
+     */
+    public static IncrementalAggregates read(File source) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(source))))) {
+            return (IncrementalAggregates) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(source + " does not hold maintained aggregates");
+        }
+    }
+
+    /**
+     * Rebuilds the aggregates by feeding every CSV of a directory through the loader's batches
+     */
+    public static IncrementalAggregates rebuildFromCsv(String dataDir) throws IOException {
+        String dir = dataDir.endsWith("/") ? dataDir : dataDir + "/";
+        IncrementalAggregates aggregates = new IncrementalAggregates();
+        for (String[] table : TABLES) {
+            BatchApplier applier = new BatchApplier(aggregates, table[0], false);
+            try (BufferedReader br = new BufferedReader(new FileReader(dir + table[1]))) {
+                String line = br.readLine(); // Skip header
+                int count = 0;
+                while ((line = br.readLine()) != null) {
+                    String[] values = CSVDataLoader.parseCSVLine(line);
+                    if (values.length < columnCount(table[0])) {
+                        continue;
+                    }
+                    applier.accept(values);
+                    if (++count % CSVDataLoader.BATCH_SIZE == 0) {
+                        applier.commitBatch();
+                    }
+                }
+            }
+            applier.commitBatch();
+        }
+        return aggregates;
+    }
+
+    /**
+     * Rebuilds the aggregates by streaming every table from the database in batches
+     */
+    public static IncrementalAggregates rebuildFromDatabase() throws SQLException {
+        IncrementalAggregates aggregates = new IncrementalAggregates();
+        Connection conn = DatabaseConnection.getConnection();
+        for (String[] table : TABLES) {
+            BatchApplier applier = new BatchApplier(aggregates, table[0], false);
+            int columns = columnCount(table[0]);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(CSVDataLoader.BATCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery("SELECT " + ColumnStore.DATABASE_COLUMNS.get(table[0])
+                                                      + " FROM " + table[0])) {
+                    int count = 0;
+                    while (rs.next()) {
+                        String[] values = new String[columns];
+                        for (int i = 0; i < columns; i++) {
+                            values[i] = rs.getString(i + 1);
+                        }
+                        applier.accept(values);
+                        if (++count % CSVDataLoader.BATCH_SIZE == 0) {
+                            applier.commitBatch();
+                        }
+                    }
+                }
+            }
+            applier.commitBatch();
+        }
+        return aggregates;
+    }
+
+    private static int columnCount(String table) {
+        return ColumnStore.DATABASE_COLUMNS.get(table).split(",").length;
+    }
+
+    /**
+     * Rebuilds the saved aggregates, or times the maintained reports against the local engine:
+     *   java IncrementalAggregates [--file F] [--rebuild DIR | --rebuild-db] [REPORT_NAME | all]
+     */
+    public static void main(String[] args) {
+        String name = "all";
+        String rebuildDir = null;
+        boolean rebuildDatabase = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--file":
+                        setFile(args[++i]);
+                        break;
+                    case "--rebuild":
+                        rebuildDir = args[++i];
+                        break;
+                    case "--rebuild-db":
+                        rebuildDatabase = true;
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        name = args[i];
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: IncrementalAggregates [--file F] [--rebuild DIR | --rebuild-db] "
+                               + "[REPORT_NAME | all]");
+            System.exit(1);
+        }
+
+        IncrementalAggregates aggregates;
+        try {
+            if (rebuildDir != null || rebuildDatabase) {
+                long start = System.nanoTime();
+                aggregates = rebuildDir != null ? rebuildFromCsv(rebuildDir) : rebuildFromDatabase();
+                aggregates.save(new File(file));
+                instance = aggregates;
+                System.out.println(String.format("Rebuilt %s in %.1f s from %s.", file,
+                                                 (System.nanoTime() - start) / 1e9,
+                                                 rebuildDir != null ? rebuildDir : "the database"));
+            } else {
+                aggregates = get();
+                if (aggregates == null) {
+                    System.out.println("ERROR: No maintained aggregates in " + file + ".");
+                    System.out.println("Details: Load the tables from the menu, or rebuild with --rebuild DIR.");
+                    System.exit(1);
+                }
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not build the maintained aggregates.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        if (!name.equalsIgnoreCase("all")) {
+            String sql = QueryManager.getQuery(name);
+            if (sql == null || !supports(sql)) {
+                System.out.println("ERROR: Report is not maintained incrementally: " + name);
+                System.exit(1);
+            }
+            LocalAnalyticsEngine.Result result = aggregates.report(sql);
+            ResultFormatter.displayRows(result.columns, result.rows, name + " (maintained)", null);
+            return;
+        }
+
+        System.out.println(String.format("%,d batches applied, %,d groups.", aggregates.getBatchesApplied(),
+                                         aggregates.groupCount()));
+        System.out.println("\n+-----------------------------------+--------+--------------+");
+        System.out.println("| Report                            |   Rows | Serve (ms)   |");
+        System.out.println("+-----------------------------------+--------+--------------+");
+        for (Map.Entry<String, String> entry : QueryManager.getAllQueries().entrySet()) {
+            if (!supports(entry.getValue())) {
+                continue;
+            }
+            long start = System.nanoTime();
+            LocalAnalyticsEngine.Result result = aggregates.report(entry.getValue());
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.println(String.format("| %-33s | %6d | %12.2f |", entry.getKey(), result.rows.size(), millis));
+        }
+        System.out.println("+-----------------------------------+--------+--------------+");
+    }
+}
@@ -0,0 +1,108 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Java Flight Recorder events for JDBC work.
+ * They show up in JDK Mission Control under "Brazilian E-Commerce Analyzer" and
+ * line up with the GC, CPU and socket events in the same recording. The events
+ * are disabled unless a recording enables them, so they are cheap enough to
+ * leave in place for continuous recording:
+ *   java -XX:StartFlightRecording=settings=profile,filename=analyzer.jfr ...
+ */
+public class JfrEvents {
+
+    /**
+     * One statement executed through QueryExecutor
+     */
+    @Name("BrazilianECommerceAnalyzer.QueryExecution")
+    @Label("Query Execution")
+    @Category({"Brazilian E-Commerce Analyzer", "JDBC"})
+    @Description("SQL statement executed through QueryExecutor")
+    @StackTrace(false)
+    public static class QueryExecution extends Event {
+        @Label("Query Name")
+        @Description("QueryManager constant name, or the first line of the SQL for ad hoc statements")
+        String queryName;
+
+        @Label("Operation")
+        @Description("query, update or display")
+        String operation;
+
+        @Label("Parameter Count")
+        int parameterCount;
+
+        @Label("Rows")
+        @Description("Rows displayed or affected; -1 when the caller reads the result set itself")
+        long rows = -1;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        /**
+         * Begins timing a statement
+         */
+        static QueryExecution start(String query, String operation, int parameterCount) {
+            QueryExecution event = new QueryExecution();
+            if (event.isEnabled()) {
+                String name = QueryManager.getQueryName(query);
+                event.queryName = name != null ? name : firstLine(query);
+                event.operation = operation;
+                event.parameterCount = parameterCount;
+                event.begin();
+            }
+            return event;
+        }
+
+        /**
+         * Ends timing and writes the event if the recording wants it
+         */
+        void finish(long rows, boolean succeeded) {
+            end();
+            if (shouldCommit()) {
+                this.rows = rows;
+                this.succeeded = succeeded;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * One batch sent and committed by CSVDataLoader.loadCSV
+     */
+    @Name("BrazilianECommerceAnalyzer.CsvBatchCommit")
+    @Label("CSV Batch Commit")
+    @Category({"Brazilian E-Commerce Analyzer", "Data Loading"})
+    @Description("Batch of CSV rows inserted and committed")
+    @StackTrace(false)
+    public static class CsvBatchCommit extends Event {
+        @Label("Table")
+        String table;
+
+        @Label("Rows")
+        int rows;
+
+        @Label("Characters")
+        @Description("Characters of the CSV lines added to the batch, including one line break each")
+        long characters;
+
+        @Label("Execute Batch Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long executeBatchNanos;
+
+        @Label("Commit Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long commitNanos;
+    }
+
+    private static String firstLine(String query) {
+        String trimmed = query.trim();
+        int newline = trimmed.indexOf('\n');
+        String line = newline < 0 ? trimmed : trimmed.substring(0, newline).trim();
+        return line.length() > 80 ? line.substring(0, 80) : line;
+    }
+}
@@ -0,0 +1,349 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes connection, query, loader and formatter counters as JMX MXBeans.
+ * Connect with JConsole or VisualVM and browse the "BrazilianECommerceAnalyzer"
+ * domain to watch a long load or a slow report while it runs. The beans read
+ * the counters the other classes already keep, so registering them adds no
+ * cost to the code being observed.
+ */
+public class JmxMonitoring {
+    public static final String DOMAIN = "BrazilianECommerceAnalyzer";
+
+    private static boolean registered;
+
+    /**
+     * Connection layer: connections opened by this process and how long they took
+     */
+    public interface ConnectionsMXBean {
+        int getOpenConnections();
+        boolean isSharedConnectionOpen();
+        long getConnectionsOpened();
+        long getConnectFailures();
+        double getLastConnectMillis();
+        double getMeanConnectMillis();
+        double getMaxConnectMillis();
+    }
+
+    /**
+     * QueryExecutor totals since startup
+     */
+    public interface QueryExecutorMXBean {
+        long getExecutions();
+        long getFailures();
+        long getCancellations();
+        long getTimeouts();
+        int getActiveQueries();
+        int getDefaultTimeoutSeconds();
+        boolean isServerPaging();
+    }
+
+    /**
+     * Latency aggregates for one named query
+     */
+    public interface QueryMXBean {
+        String getQueryName();
+        long getExecutions();
+        long getFailures();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP95Millis();
+        double getP99Millis();
+        double getMaxMillis();
+        double getFirstRowP95Millis();
+        long getRowsP95();
+    }
+
+    /**
+     * CSVDataLoader progress
+     */
+    public interface CsvLoaderMXBean {
+        String getCurrentTable();
+        boolean isLoading();
+        long getCurrentTableRows();
+        double getRowsPerSecond();
+        long getTotalRowsLoaded();
+        long getBatchesCommitted();
+        int getBatchSize();
+        double getMeanBatchCommitMillis();
+        double getP95BatchCommitMillis();
+        double getMaxBatchCommitMillis();
+    }
+
+    /**
+     * CSVFollower ingestion lag and counters; zeros while no follower runs
+     */
+    public interface CsvFollowerMXBean {
+        boolean isFollowing();
+        double getLagSeconds();
+        long getBytesBehind();
+        int getHeldRows();
+        long getRowsIngested();
+        long getRowsOrphaned();
+        long getRowsRejected();
+        double getP95ReadToCommitMillis();
+    }
+
+    /**
+     * ResultFormatter totals since startup
+     */
+    public interface ResultFormatterMXBean {
+        long getResultsDisplayed();
+        long getRowsRendered();
+        long getCharactersFormatted();
+    }
+
+    /**
+     * Registers all beans with the platform MBean server; safe to call more than once.
+     * Failure to register is reported but never stops the application.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            registerBean(server, "type=Connections", new Connections());
+            registerBean(server, "type=QueryExecutor", new QueryExecutorBean());
+            registerBean(server, "type=CsvLoader", new CsvLoader());
+            registerBean(server, "type=CsvFollower", new CsvFollowerBean());
+            registerBean(server, "type=ResultFormatter", new ResultFormatterBean());
+            for (Map.Entry<String, String> query : QueryManager.getAllQueries().entrySet()) {
+                registerBean(server, "type=Query,name=" + query.getKey(),
+                             new Query(query.getKey()));
+            }
+            registered = true;
+        } catch (JMException e) {
+            System.out.println("WARNING: Could not register JMX monitoring beans.");
+            System.out.println("Details: " + e.getMessage());
+        }
+    }
+
+    private static void registerBean(MBeanServer server, String properties, Object bean) throws JMException {
+        try {
+            server.registerMBean(bean, new ObjectName(DOMAIN + ":" + properties));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by an earlier run in the same JVM
+        }
+    }
+
+    private static class Connections implements ConnectionsMXBean {
+        public int getOpenConnections() {
+            return DatabaseConnection.getOpenConnectionCount();
+        }
+
+        public boolean isSharedConnectionOpen() {
+            return DatabaseConnection.isSharedConnectionOpen();
+        }
+
+        public long getConnectionsOpened() {
+            return DatabaseConnection.getConnectionsOpened();
+        }
+
+        public long getConnectFailures() {
+            return DatabaseConnection.getConnectFailures();
+        }
+
+        public double getLastConnectMillis() {
+            return millis(DatabaseConnection.getLastConnectNanos());
+        }
+
+        public double getMeanConnectMillis() {
+            return DatabaseConnection.getConnectTimes().getMean() / 1_000_000.0;
+        }
+
+        public double getMaxConnectMillis() {
+            return millis(DatabaseConnection.getConnectTimes().getMax());
+        }
+    }
+
+    private static class QueryExecutorBean implements QueryExecutorMXBean {
+        public long getExecutions() {
+            return QueryExecutor.getExecutionCount();
+        }
+
+        public long getFailures() {
+            return QueryExecutor.getFailureCount();
+        }
+
+        public long getCancellations() {
+            return QueryExecutor.getCancellationCount();
+        }
+
+        public long getTimeouts() {
+            return QueryExecutor.getTimeoutCount();
+        }
+
+        public int getActiveQueries() {
+            return QueryExecutor.getActiveCount();
+        }
+
+        public int getDefaultTimeoutSeconds() {
+            return QueryExecutor.getDefaultTimeout();
+        }
+
+        public boolean isServerPaging() {
+            return QueryExecutor.isServerPaging();
+        }
+    }
+
+    private static class Query implements QueryMXBean {
+        private static final QueryMetrics.QueryStats EMPTY = new QueryMetrics.QueryStats();
+        private final String name;
+
+        Query(String name) {
+            this.name = name;
+        }
+
+        private QueryMetrics.QueryStats stats() {
+            QueryMetrics.QueryStats stats = QueryMetrics.getStats(name);
+            return stats != null ? stats : EMPTY;
+        }
+
+        public String getQueryName() {
+            return name;
+        }
+
+        public long getExecutions() {
+            return stats().executionNanos.getCount();
+        }
+
+        public long getFailures() {
+            return stats().failures.sum();
+        }
+
+        public double getMeanMillis() {
+            return stats().executionNanos.getMean() / 1_000_000.0;
+        }
+
+        public double getP50Millis() {
+            return millis(stats().executionNanos.getPercentile(50));
+        }
+
+        public double getP95Millis() {
+            return millis(stats().executionNanos.getPercentile(95));
+        }
+
+        public double getP99Millis() {
+            return millis(stats().executionNanos.getPercentile(99));
+        }
+
+        public double getMaxMillis() {
+            return millis(stats().executionNanos.getMax());
+        }
+
+        public double getFirstRowP95Millis() {
+            return millis(stats().firstRowNanos.getPercentile(95));
+        }
+
+        public long getRowsP95() {
+            return stats().rows.getPercentile(95);
+        }
+    }
+
+    private static class CsvLoader implements CsvLoaderMXBean {
+        public String getCurrentTable() {
+            return CSVDataLoader.getCurrentTable();
+        }
+
+        public boolean isLoading() {
+            return CSVDataLoader.isLoading();
+        }
+
+        public long getCurrentTableRows() {
+            return CSVDataLoader.getCurrentTableRows();
+        }
+
+        public double getRowsPerSecond() {
+            return CSVDataLoader.getCurrentRowsPerSecond();
+        }
+
+        public long getTotalRowsLoaded() {
+            return CSVDataLoader.getTotalRowsLoaded();
+        }
+
+        public long getBatchesCommitted() {
+            return CSVDataLoader.getBatchesCommitted();
+        }
+
+        public int getBatchSize() {
+            return CSVDataLoader.BATCH_SIZE;
+        }
+
+        public double getMeanBatchCommitMillis() {
+            return CSVDataLoader.getBatchCommitTimes().getMean() / 1_000_000.0;
+        }
+
+        public double getP95BatchCommitMillis() {
+            return millis(CSVDataLoader.getBatchCommitTimes().getPercentile(95));
+        }
+
+        public double getMaxBatchCommitMillis() {
+            return millis(CSVDataLoader.getBatchCommitTimes().getMax());
+        }
+    }
+
+    private static class CsvFollowerBean implements CsvFollowerMXBean {
+        public boolean isFollowing() {
+            return CSVFollower.getRunning() != null;
+        }
+
+        public double getLagSeconds() {
+            CSVFollower follower = CSVFollower.getRunning();
+            return follower == null ? 0 : follower.getLagMillis() / 1000.0;
+        }
+
+        public long getBytesBehind() {
+            CSVFollower follower = CSVFollower.getRunning();
+            return follower == null ? 0 : follower.getBytesBehind();
+        }
+
+        public int getHeldRows() {
+            CSVFollower follower = CSVFollower.getRunning();
+            return follower == null ? 0 : follower.getHeldRows();
+        }
+
+        public long getRowsIngested() {
+            CSVFollower follower = CSVFollower.getRunning();
+            return follower == null ? 0 : follower.getRowsIngested();
+        }
+
+        public long getRowsOrphaned() {
+            CSVFollower follower = CSVFollower.getRunning();
+            return follower == null ? 0 : follower.getRowsOrphaned();
+        }
+
+        public long getRowsRejected() {
+            CSVFollower follower = CSVFollower.getRunning();
+            return follower == null ? 0 : follower.getRowsRejected();
+        }
+
+        public double getP95ReadToCommitMillis() {
+            CSVFollower follower = CSVFollower.getRunning();
+            return follower == null ? 0 : millis(follower.getReadToCommitTimes().getPercentile(95));
+        }
+    }
+
+    private static class ResultFormatterBean implements ResultFormatterMXBean {
+        public long getResultsDisplayed() {
+            return ResultFormatter.getResultsDisplayed();
+        }
+
+        public long getRowsRendered() {
+            return ResultFormatter.getRowsRendered();
+        }
+
+        public long getCharactersFormatted() {
+            return ResultFormatter.getCharactersFormatted();
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
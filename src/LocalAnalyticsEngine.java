@@ -0,0 +1,1252 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Answers the QueryManager reports from a ColumnStore, with no database.
+ * Each report is written out as loops over the primitive columns and reproduces
+ * what SQL Server returns for the same data: the GEOLOCATION joins multiply rows
+ * the same way, AVG over INT truncates, AVG over DECIMAL keeps six decimals,
+ * DATEDIFF counts day boundaries and NULLs sort first ascending and last descending.
+ * Rows that tie on the ORDER BY columns may come out in a different order.
+ */
+public class LocalAnalyticsEngine {
+    static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private static volatile ColumnStore store;
+    private static final Map<String, Report> REPORTS = new HashMap<>();
+
+    /**
+     * Rows produced by a report, with the same column labels as the SQL
+     */
+    public static class Result {
+        public final String[] columns;
+        public final List<Object[]> rows;
+
+        Result(String[] columns, List<Object[]> rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+    }
+
+    private interface Report {
+        Result run(ColumnStore store, Object[] params);
+    }
+
+    static {
+        REPORTS.put(QueryManager.HIGH_VALUE_CUSTOMER_STATES, LocalAnalyticsEngine::highValueCustomerStates);
+        REPORTS.put(QueryManager.TOP_SELLING_CATEGORIES, LocalAnalyticsEngine::topSellingCategories);
+        REPORTS.put(QueryManager.STATES_WITH_CUSTOMERS_NO_ORDERS, LocalAnalyticsEngine::statesWithCustomersNoOrders);
+        REPORTS.put(QueryManager.HIGHEST_SALES_GEOLOCATION, LocalAnalyticsEngine::highestSalesGeolocation);
+        REPORTS.put(QueryManager.SELLER_SUCCESS_RATE, LocalAnalyticsEngine::sellerSuccessRate);
+        REPORTS.put(QueryManager.UNUSED_PRODUCT_CATALOG, LocalAnalyticsEngine::unusedProductCatalog);
+        REPORTS.put(QueryManager.STATES_WITH_CUSTOMERS_NO_SELLERS, LocalAnalyticsEngine::statesWithCustomersNoSellers);
+        REPORTS.put(QueryManager.SINGLE_PRODUCT_SELLERS, LocalAnalyticsEngine::singleProductSellers);
+        REPORTS.put(QueryManager.ORDER_REVIEW_RATE, LocalAnalyticsEngine::orderReviewRate);
+        REPORTS.put(QueryManager.WORST_RATED_CATEGORY, LocalAnalyticsEngine::worstRatedCategory);
+        REPORTS.put(QueryManager.ORDERS_PAID_IN_FULL, LocalAnalyticsEngine::ordersPaidInFull);
+        REPORTS.put(QueryManager.REVIEW_SCORE_EXTREMES, LocalAnalyticsEngine::reviewScoreExtremes);
+        REPORTS.put(QueryManager.MOST_COMMON_PAYMENT_TYPE_BY_STATE, LocalAnalyticsEngine::mostCommonPaymentTypeByState);
+        REPORTS.put(QueryManager.AVG_INSTALLMENTS_BY_PAYMENT_TYPE, LocalAnalyticsEngine::avgInstallmentsByPaymentType);
+        REPORTS.put(QueryManager.REPEAT_PURCHASE_CUSTOMERS, LocalAnalyticsEngine::repeatPurchaseCustomers);
+        REPORTS.put(QueryManager.AVG_TIME_BETWEEN_ORDERS, LocalAnalyticsEngine::avgTimeBetweenOrders);
+        REPORTS.put(QueryManager.DELIVERY_PERFORMANCE_BY_STATE, LocalAnalyticsEngine::deliveryPerformanceByState);
+        REPORTS.put(QueryManager.CATEGORY_PERFORMANCE_BY_QUARTER, LocalAnalyticsEngine::categoryPerformanceByQuarter);
+        REPORTS.put(QueryManager.REVENUE_BY_STATE_AND_YEAR, LocalAnalyticsEngine::revenueByStateAndYear);
+        REPORTS.put(QueryManager.SELLERS_BY_CATEGORY, LocalAnalyticsEngine::sellersByCategory);
+        REPORTS.put(QueryManager.SELLERS_IN_CATEGORIES, LocalAnalyticsEngine::sellersInCategories);
+        REPORTS.put(QueryManager.SELLERS_BY_CATEGORY_NAME, LocalAnalyticsEngine::sellersByCategoryName);
+    }
+
+    /**
+     * Returns true if the query is a report this engine can answer
+     */
+    public static boolean supports(String sql) {
+        return REPORTS.containsKey(sql);
+    }
+
+    /**
+     * Runs a report against the in-memory tables, loading them on first use
+     * @param sql QueryManager constant
+     * @param params The parameters the SQL would be bound with
+     */
+    public static Result execute(String sql, Object... params) throws IOException {
+        Report report = REPORTS.get(sql);
+        if (report == null) {
+            throw new IllegalArgumentException("Report not available in the local engine: "
+                                               + QueryManager.getQueryName(sql));
+        }
+        return report.run(getStore(), params);
+    }
+
+    /**
+     * Returns the in-memory tables, reading the CSVs in CSVDataLoader's data directory on first use
+     */
+    public static ColumnStore getStore() throws IOException {
+        ColumnStore loaded = store;
+        if (loaded == null) {
+            synchronized (LocalAnalyticsEngine.class) {
+                loaded = store;
+                if (loaded == null) {
+                    System.out.println("Loading " + CSVDataLoader.getDataDir() + " into the local engine...");
+                    long start = System.nanoTime();
+                    loaded = ColumnStore.load(CSVDataLoader.getDataDir());
+                    System.out.println(String.format("Local engine ready: %,d orders, %,d items in %.2f seconds.",
+                                                     loaded.orderCount(), loaded.itemCount(),
+                                                     (System.nanoTime() - start) / 1e9));
+                    if (!loaded.rejectedRows.isEmpty()) {
+                        System.out.println("Skipped rows with no matching parent: " + loaded.rejectedRows);
+                    }
+                    store = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Answers reports from tables loaded elsewhere, such as ColumnStore.loadFromDatabase()
+     */
+    public static void setStore(ColumnStore loaded) {
+        store = loaded;
+    }
+
+    /**
+     * Drops the loaded tables so the next report rereads the CSVs
+     */
+    public static void invalidate() {
+        store = null;
+    }
+
+    public static boolean isLoaded() {
+        return store != null;
+    }
+
+    // ==================== MARKET AND SALES ANALYSIS ====================
+
+    /**
+     * Per-state totals over CUSTOMERS, GEOLOCATION, STATES, ORDERS and ORDER_ITEMS, keyed by state id.
+     * Partitioned by customer, so each order and customer is counted in exactly one partition.
+     */
+    private static class StateSales {
+        final ParallelAggregator.IntLongHashMap orders = new ParallelAggregator.IntLongHashMap(32);
+        final ParallelAggregator.IntLongHashMap customers = new ParallelAggregator.IntLongHashMap(32);
+        final ParallelAggregator.IntLongHashMap revenueCents = new ParallelAggregator.IntLongHashMap(32);
+        final ParallelAggregator.IntLongHashMap revenueRows = new ParallelAggregator.IntLongHashMap(32);
+    }
+
+    /**
+     * @param year Only orders purchased in this year, or null for all
+     */
+    private static StateSales stateSales(ColumnStore s, Integer year) {
+        ColumnStore.Index customerOrders = s.ordersByCustomer();
+        ColumnStore.Index orderItems = s.itemsByOrder();
+
+        return ParallelAggregator.aggregate(s.customerZip.length, new ParallelAggregator.Aggregation<StateSales>() {
+            public StateSales newPartial() {
+                return new StateSales();
+            }
+
+            public void accumulate(StateSales sales, int c) {
+                int zip = s.customerZip[c];
+                if (zip < 0 || s.zipStateStart[zip] == s.zipStateStart[zip + 1]) {
+                    return;
+                }
+                boolean customerHasItems = false;
+                for (int k = customerOrders.start[c]; k < customerOrders.start[c + 1]; k++) {
+                    int o = customerOrders.rows[k];
+                    if (year != null && yearOf(s.orderPurchase[o]) != year) {
+                        continue;
+                    }
+                    int first = orderItems.start[o];
+                    int last = orderItems.start[o + 1];
+                    if (first == last) {
+                        continue;
+                    }
+                    customerHasItems = true;
+                    long cents = 0;
+                    long rows = 0;
+                    for (int i = first; i < last; i++) {
+                        int item = orderItems.rows[i];
+                        if (s.itemPrice[item] != ColumnStore.NULL_LONG
+                                && s.itemFreight[item] != ColumnStore.NULL_LONG) {
+                            cents += s.itemPrice[item] + s.itemFreight[item];
+                            rows++;
+                        }
+                    }
+                    for (int g = s.zipStateStart[zip]; g < s.zipStateStart[zip + 1]; g++) {
+                        int state = s.zipState[g];
+                        sales.orders.add(state, 1);
+                        sales.revenueCents.add(state, cents * s.zipStateRows[g]);
+                        sales.revenueRows.add(state, rows * s.zipStateRows[g]);
+                    }
+                }
+                if (customerHasItems) {
+                    for (int g = s.zipStateStart[zip]; g < s.zipStateStart[zip + 1]; g++) {
+                        sales.customers.add(s.zipState[g], 1);
+                    }
+                }
+            }
+
+            public StateSales merge(StateSales left, StateSales right) {
+                left.orders.addAll(right.orders);
+                left.customers.addAll(right.customers);
+                left.revenueCents.addAll(right.revenueCents);
+                left.revenueRows.addAll(right.revenueRows);
+                return left;
+            }
+        });
+    }
+
+    private static Result highValueCustomerStates(ColumnStore s, Object[] params) {
+        StateSales sales = stateSales(s, null);
+        List<Object[]> rows = new ArrayList<>();
+        for (int state : sales.orders.keys()) {
+            rows.add(new Object[] {
+                s.states.get(state), s.stateName(state), (int) sales.orders.get(state),
+                avgMoney(sales.revenueCents.get(state), sales.revenueRows.get(state))
+            });
+        }
+        sort(rows, desc(3));
+        return new Result(new String[] {"state", "state_name", "total_orders", "avg_order_value"}, rows);
+    }
+
+    /**
+     * Per-category totals over ORDER_ITEMS, keyed by englishGroup
+     */
+    private static class CategorySales {
+        final ParallelAggregator.IntLongHashMap orders = new ParallelAggregator.IntLongHashMap(128);
+        final ParallelAggregator.IntLongHashMap cents = new ParallelAggregator.IntLongHashMap(128);
+        final ParallelAggregator.IntLongHashMap priced = new ParallelAggregator.IntLongHashMap(128);
+        // (group, product) pairs; products span orders, so partitions are unioned rather than added
+        ColumnStore.LongHashSet products = new ColumnStore.LongHashSet(1024);
+    }
+
+    private static Result topSellingCategories(ColumnStore s, Object[] params) {
+        ColumnStore.Index orderItems = s.itemsByOrder();
+        CategorySales sales = ParallelAggregator.aggregate(s.orderCount(),
+                new ParallelAggregator.Aggregation<CategorySales>() {
+            public CategorySales newPartial() {
+                return new CategorySales();
+            }
+
+            public void accumulate(CategorySales partial, int o) {
+                int first = orderItems.start[o];
+                for (int i = first; i < orderItems.start[o + 1]; i++) {
+                    int item = orderItems.rows[i];
+                    int g = englishGroup(s, s.itemProduct[item]);
+                    if (g < 0) {
+                        continue;
+                    }
+                    if (!earlierItemInGroup(s, orderItems, first, i, g)) {
+                        partial.orders.add(g, 1);
+                    }
+                    partial.products.add(ColumnStore.LongHashSet.pair(g, s.itemProduct[item]));
+                    if (s.itemPrice[item] != ColumnStore.NULL_LONG) {
+                        partial.cents.add(g, s.itemPrice[item]);
+                        partial.priced.add(g, 1);
+                    }
+                }
+            }
+
+            public CategorySales merge(CategorySales left, CategorySales right) {
+                left.orders.addAll(right.orders);
+                left.cents.addAll(right.cents);
+                left.priced.addAll(right.priced);
+                left.products = union(left.products, right.products);
+                return left;
+            }
+        });
+
+        ParallelAggregator.IntLongHashMap products = countPairs(sales.products);
+        List<Object[]> rows = new ArrayList<>();
+        for (int g : sales.orders.keys()) {
+            rows.add(new Object[] {
+                s.englishNames.get(g - 1), (int) sales.orders.get(g), (int) products.get(g),
+                sumMoney(sales.cents.get(g), sales.priced.get(g)), avgMoney(sales.cents.get(g), sales.priced.get(g))
+            });
+        }
+        sort(rows, desc(3));
+        return new Result(new String[] {"category_name_english", "orders_count", "products_count",
+                                        "total_revenue", "avg_product_price"}, rows);
+    }
+
+    /**
+     * Whether an earlier item of the same order fell in the same category group
+     */
+    private static boolean earlierItemInGroup(ColumnStore s, ColumnStore.Index orderItems, int first, int i, int g) {
+        for (int j = first; j < i; j++) {
+            if (englishGroup(s, s.itemProduct[orderItems.rows[j]]) == g) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Result statesWithCustomersNoOrders(ColumnStore s, Object[] params) {
+        int[] customers = new int[s.stateTableSize];
+        int[] orders = new int[s.stateTableSize];
+        ColumnStore.Index customerOrders = s.ordersByCustomer();
+        for (int c = 0; c < s.customerZip.length; c++) {
+            int zip = s.customerZip[c];
+            if (zip < 0) {
+                continue;
+            }
+            int orderCount = customerOrders.start[c + 1] - customerOrders.start[c];
+            for (int g = s.zipStateStart[zip]; g < s.zipStateStart[zip + 1]; g++) {
+                customers[s.zipState[g]]++;
+                orders[s.zipState[g]] += orderCount;
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int state = 0; state < s.stateTableSize; state++) {
+            if (customers[state] > 0) {
+                rows.add(new Object[] {
+                    s.states.get(state), s.stateName(state), customers[state], orders[state],
+                    roundRatio(orders[state], customers[state], BigDecimal.ONE)
+                });
+            }
+        }
+        sort(rows, desc(4));
+        return new Result(new String[] {"state_code", "state_name", "total_customers", "total_orders",
+                                        "orders_per_customer"}, rows);
+    }
+
+    private static Result highestSalesGeolocation(ColumnStore s, Object[] params) {
+        StateSales sales = stateSales(s, null);
+        List<Object[]> rows = new ArrayList<>();
+        for (int state : sales.orders.keys()) {
+            rows.add(new Object[] {
+                s.states.get(state), s.stateName(state), (int) sales.orders.get(state),
+                (int) sales.customers.get(state),
+                sumMoney(sales.revenueCents.get(state), sales.revenueRows.get(state)),
+                avgMoney(sales.revenueCents.get(state), sales.revenueRows.get(state))
+            });
+        }
+        sort(rows, desc(4));
+        return new Result(new String[] {"geolocation_state", "state_name", "total_orders", "unique_customers",
+                                        "total_revenue", "avg_order_value"}, rows);
+    }
+
+    // ==================== SELLER PERFORMANCE ====================
+
+    /**
+     * Per-seller order and review totals, keyed by seller id
+     */
+    private static class SellerReviews {
+        final ParallelAggregator.IntLongHashMap orders = new ParallelAggregator.IntLongHashMap(1024);
+        final ParallelAggregator.IntLongHashMap scoreSum = new ParallelAggregator.IntLongHashMap(1024);
+        final ParallelAggregator.IntLongHashMap scored = new ParallelAggregator.IntLongHashMap(1024);
+        // (seller, review_id) pairs; review ids repeat across orders, so partitions are unioned
+        ColumnStore.LongHashSet reviews = new ColumnStore.LongHashSet(1024);
+    }
+
+    private static Result sellerSuccessRate(ColumnStore s, Object[] params) {
+        ColumnStore.Index orderItems = s.itemsByOrder();
+        ColumnStore.Index orderReviews = s.reviewsByOrder();
+        SellerReviews totals = ParallelAggregator.aggregate(s.orderCount(),
+                new ParallelAggregator.Aggregation<SellerReviews>() {
+            public SellerReviews newPartial() {
+                return new SellerReviews();
+            }
+
+            public void accumulate(SellerReviews partial, int o) {
+                int first = orderItems.start[o];
+                for (int i = first; i < orderItems.start[o + 1]; i++) {
+                    int seller = s.itemSeller[orderItems.rows[i]];
+                    if (seller < 0 || !hasGeolocation(s, s.sellerZip[seller])) {
+                        continue;
+                    }
+                    boolean firstOfSeller = true;
+                    for (int j = first; j < i && firstOfSeller; j++) {
+                        firstOfSeller = s.itemSeller[orderItems.rows[j]] != seller;
+                    }
+                    if (firstOfSeller) {
+                        partial.orders.add(seller, 1);
+                    }
+                    for (int k = orderReviews.start[o]; k < orderReviews.start[o + 1]; k++) {
+                        int r = orderReviews.rows[k];
+                        if (firstOfSeller && s.reviewId[r] >= 0) {
+                            partial.reviews.add(ColumnStore.LongHashSet.pair(seller, s.reviewId[r]));
+                        }
+                        if (s.reviewScore[r] != ColumnStore.NULL_INT) {
+                            partial.scoreSum.add(seller, s.reviewScore[r]);
+                            partial.scored.add(seller, 1);
+                        }
+                    }
+                }
+            }
+
+            public SellerReviews merge(SellerReviews left, SellerReviews right) {
+                left.orders.addAll(right.orders);
+                left.scoreSum.addAll(right.scoreSum);
+                left.scored.addAll(right.scored);
+                left.reviews = union(left.reviews, right.reviews);
+                return left;
+            }
+        });
+
+        ParallelAggregator.IntLongHashMap reviews = countPairs(totals.reviews);
+        List<Object[]> rows = new ArrayList<>();
+        int[] sellers = totals.orders.keys();
+        Arrays.sort(sellers);
+        for (int seller : sellers) {
+            int zip = s.sellerZip[seller];
+            int orders = (int) totals.orders.get(seller);
+            int reviewCount = (int) reviews.get(seller);
+            long scored = totals.scored.get(seller);
+            Integer avgScore = scored == 0 ? 0 : (int) (totals.scoreSum.get(seller) / scored);
+            BigDecimal reviewRate = roundRatio(reviewCount, orders, HUNDRED);
+            for (int g = s.zipGeoStart[zip]; g < s.zipGeoStart[zip + 1]; g++) {
+                rows.add(new Object[] {
+                    s.sellerIds.get(seller), s.cities.get(s.geoCity[g]), s.states.get(s.geoState[g]),
+                    orders, reviewCount, avgScore, reviewRate
+                });
+            }
+        }
+        sort(rows, desc(5), desc(3));
+        return new Result(new String[] {"seller_id", "seller_city", "seller_state", "orders_fulfilled",
+                                        "reviews_received", "avg_review_score", "review_rate_percentage"}, rows);
+    }
+
+    private static Result unusedProductCatalog(ColumnStore s, Object[] params) {
+        int products = s.productIds.size();
+        int[] orders = new int[products];
+        long[] cents = new long[products];
+        long[] priced = new long[products];
+        boolean[] ordered = new boolean[products];
+        ColumnStore.LongHashSet orderSet = new ColumnStore.LongHashSet(s.itemCount());
+
+        for (int item = 0; item < s.itemCount(); item++) {
+            int p = s.itemProduct[item];
+            if (p < 0) {
+                continue;
+            }
+            ordered[p] = true;
+            if (orderSet.add(ColumnStore.LongHashSet.pair(p, s.itemOrder[item]))) {
+                orders[p]++;
+            }
+            if (s.itemPrice[item] != ColumnStore.NULL_LONG) {
+                cents[p] += s.itemPrice[item];
+                priced[p]++;
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int p = 0; p < products; p++) {
+            if (!ordered[p]) {
+                continue;
+            }
+            int category = s.productCategory[p];
+            String name = "Unknown";
+            if (category >= 0) {
+                int english = s.categoryEnglish[category];
+                name = english >= 0 ? s.englishNames.get(english) : s.categoryNames.get(category);
+            }
+            rows.add(new Object[] {
+                s.productIds.get(p), name, orders[p], sumMoney(cents[p], priced[p]), avgMoney(cents[p], priced[p]),
+                nullableInt(s.productWeight[p]), nullableInt(s.productPhotos[p])
+            });
+        }
+        sort(rows, asc(2), asc(3));
+        return new Result(new String[] {"product_id", "category", "times_ordered", "total_revenue", "avg_price",
+                                        "product_weight_g", "product_photos_qty"}, top(rows, 100));
+    }
+
+    private static Result statesWithCustomersNoSellers(ColumnStore s, Object[] params) {
+        boolean[] hasSeller = new boolean[s.stateTableSize];
+        for (int zip : s.sellerZip) {
+            if (zip >= 0) {
+                for (int g = s.zipStateStart[zip]; g < s.zipStateStart[zip + 1]; g++) {
+                    hasSeller[s.zipState[g]] = true;
+                }
+            }
+        }
+        int[] customers = new int[s.stateTableSize];
+        for (int zip : s.customerZip) {
+            if (zip >= 0) {
+                for (int g = s.zipStateStart[zip]; g < s.zipStateStart[zip + 1]; g++) {
+                    customers[s.zipState[g]]++;
+                }
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int state = 0; state < s.stateTableSize; state++) {
+            if (customers[state] > 0 && !hasSeller[state]) {
+                rows.add(new Object[] {s.states.get(state), s.stateName(state), customers[state]});
+            }
+        }
+        sort(rows, desc(2));
+        return new Result(new String[] {"state_code", "state_name", "customer_count"}, rows);
+    }
+
+    private static Result singleProductSellers(ColumnStore s, Object[] params) {
+        // Group 0 collects items with a NULL seller, as GROUP BY does
+        int groups = s.sellerZip.length + 1;
+        int[] products = new int[groups];
+        boolean[] present = new boolean[groups];
+        ColumnStore.LongHashSet productSet = new ColumnStore.LongHashSet(s.itemCount());
+        for (int item = 0; item < s.itemCount(); item++) {
+            int g = s.itemSeller[item] + 1;
+            present[g] = true;
+            int p = s.itemProduct[item];
+            if (p >= 0 && productSet.add(ColumnStore.LongHashSet.pair(g, p))) {
+                products[g]++;
+            }
+        }
+        int count = 0;
+        for (int g = 0; g < groups; g++) {
+            if (present[g] && products[g] == 1) {
+                count++;
+            }
+        }
+        return single(new String[] {"single_product_seller_count"}, count);
+    }
+
+    // ==================== ORDER AND REVIEW QUALITY ====================
+
+    private static Result orderReviewRate(ColumnStore s, Object[] params) {
+        ColumnStore.Index orderReviews = s.reviewsByOrder();
+        int total = s.orderCount();
+        int reviewed = 0;
+        for (int o = 0; o < total; o++) {
+            if (orderReviews.start[o + 1] > orderReviews.start[o]) {
+                reviewed++;
+            }
+        }
+        return single(new String[] {"total_orders", "reviewed_orders", "review_rate_percentage"},
+                      total, reviewed, roundRatio(reviewed, total, HUNDRED));
+    }
+
+    private static Result worstRatedCategory(ColumnStore s, Object[] params) {
+        int groups = s.englishNames.size() + 1;
+        int[] products = new int[groups];
+        int[] reviews = new int[groups];
+        long[] scoreSum = new long[groups];
+        long[] scored = new long[groups];
+        int[] negative = new int[groups];
+        int[] positive = new int[groups];
+        boolean[] present = new boolean[groups];
+        ColumnStore.LongHashSet productSet = new ColumnStore.LongHashSet(s.productIds.size());
+        ColumnStore.LongHashSet reviewSet = new ColumnStore.LongHashSet(s.reviewId.length);
+        ColumnStore.Index orderReviews = s.reviewsByOrder();
+
+        for (int item = 0; item < s.itemCount(); item++) {
+            int g = englishGroup(s, s.itemProduct[item]);
+            if (g < 0) {
+                continue;
+            }
+            int o = s.itemOrder[item];
+            for (int k = orderReviews.start[o]; k < orderReviews.start[o + 1]; k++) {
+                int r = orderReviews.rows[k];
+                if (s.reviewId[r] < 0) {
+                    continue;
+                }
+                present[g] = true;
+                if (productSet.add(ColumnStore.LongHashSet.pair(g, s.itemProduct[item]))) {
+                    products[g]++;
+                }
+                if (reviewSet.add(ColumnStore.LongHashSet.pair(g, s.reviewId[r]))) {
+                    reviews[g]++;
+                }
+                int score = s.reviewScore[r];
+                if (score != ColumnStore.NULL_INT) {
+                    scoreSum[g] += score;
+                    scored[g]++;
+                    if (score <= 2) {
+                        negative[g]++;
+                    } else if (score >= 4) {
+                        positive[g]++;
+                    }
+                }
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            if (present[g]) {
+                rows.add(new Object[] {
+                    s.englishNames.get(g - 1), products[g], reviews[g], avgInt(scoreSum[g], scored[g]),
+                    negative[g], positive[g]
+                });
+            }
+        }
+        sort(rows, asc(3));
+        return new Result(new String[] {"category", "products_in_category", "total_reviews", "avg_review_score",
+                                        "negative_reviews", "positive_reviews"}, rows);
+    }
+
+    private static Result ordersPaidInFull(ColumnStore s, Object[] params) {
+        int[] payments = new int[s.orderCount()];
+        for (int o : s.paymentOrder) {
+            payments[o]++;
+        }
+        int count = 0;
+        for (int n : payments) {
+            if (n == 1) {
+                count++;
+            }
+        }
+        return single(new String[] {"single_payment_orders"}, count);
+    }
+
+    private static Result reviewScoreExtremes(ColumnStore s, Object[] params) {
+        int total = s.reviewScore.length;
+        int oneStar = 0;
+        int fiveStar = 0;
+        for (int score : s.reviewScore) {
+            if (score == 1) {
+                oneStar++;
+            } else if (score == 5) {
+                fiveStar++;
+            }
+        }
+        String[] columns = {"one_star_reviews", "five_star_reviews", "one_star_percentage",
+                            "five_star_percentage", "total_reviews"};
+        if (total == 0) {
+            return single(columns, null, null, null, null, 0);
+        }
+        return single(columns, oneStar, fiveStar, roundRatio(oneStar, total, HUNDRED),
+                      roundRatio(fiveStar, total, HUNDRED), total);
+    }
+
+    // ==================== PAYMENT AND TRANSACTION ANALYSIS ====================
+
+    private static Result mostCommonPaymentTypeByState(ColumnStore s, Object[] params) {
+        // Column 0 counts NULL payment types
+        int types = s.paymentTypes.size() + 1;
+        long[][] counts = new long[s.stateTableSize][types];
+        for (int p = 0; p < s.paymentOrder.length; p++) {
+            int c = s.orderCustomer[s.paymentOrder[p]];
+            int zip = c < 0 ? -1 : s.customerZip[c];
+            if (zip < 0) {
+                continue;
+            }
+            for (int g = s.zipStateStart[zip]; g < s.zipStateStart[zip + 1]; g++) {
+                counts[s.zipState[g]][s.paymentType[p] + 1] += s.zipStateRows[g];
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int state = 0; state < s.stateTableSize; state++) {
+            int best = -1;
+            for (int t = 0; t < types; t++) {
+                if (counts[state][t] > 0 && (best < 0 || counts[state][t] > counts[state][best])) {
+                    best = t;
+                }
+            }
+            if (best >= 0) {
+                rows.add(new Object[] {
+                    s.states.get(state), s.stateName(state), s.paymentTypes.get(best - 1), (int) counts[state][best]
+                });
+            }
+        }
+        sort(rows, asc(0));
+        return new Result(new String[] {"geolocation_state", "state_name", "most_common_payment_type",
+                                        "payment_count"}, rows);
+    }
+
+    private static Result avgInstallmentsByPaymentType(ColumnStore s, Object[] params) {
+        int types = s.paymentTypes.size() + 1;
+        int[] payments = new int[types];
+        long[] installmentSum = new long[types];
+        long[] installmentRows = new long[types];
+        int[] minInstallments = new int[types];
+        int[] maxInstallments = new int[types];
+        long[] valueCents = new long[types];
+        long[] valueRows = new long[types];
+        Arrays.fill(minInstallments, Integer.MAX_VALUE);
+        Arrays.fill(maxInstallments, Integer.MIN_VALUE);
+
+        for (int p = 0; p < s.paymentOrder.length; p++) {
+            int t = s.paymentType[p] + 1;
+            payments[t]++;
+            int installments = s.paymentInstallments[p];
+            if (installments != ColumnStore.NULL_INT) {
+                installmentSum[t] += installments;
+                installmentRows[t]++;
+                minInstallments[t] = Math.min(minInstallments[t], installments);
+                maxInstallments[t] = Math.max(maxInstallments[t], installments);
+            }
+            if (s.paymentValue[p] != ColumnStore.NULL_LONG) {
+                valueCents[t] += s.paymentValue[p];
+                valueRows[t]++;
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int t = 0; t < types; t++) {
+            if (payments[t] == 0) {
+                continue;
+            }
+            boolean hasInstallments = installmentRows[t] > 0;
+            BigDecimal avgValue = avgMoney(valueCents[t], valueRows[t]);
+            rows.add(new Object[] {
+                s.paymentTypes.get(t - 1), payments[t], avgInt(installmentSum[t], installmentRows[t]),
+                hasInstallments ? minInstallments[t] : null, hasInstallments ? maxInstallments[t] : null,
+                avgValue == null ? null : avgValue.setScale(2, RoundingMode.HALF_UP).setScale(6)
+            });
+        }
+        sort(rows, desc(2));
+        return new Result(new String[] {"payment_type", "total_payments", "avg_installments", "min_installments",
+                                        "max_installments", "avg_payment_value"}, rows);
+    }
+
+    // ==================== CUSTOMER BEHAVIOR AND LOYALTY ====================
+
+    private static Result repeatPurchaseCustomers(ColumnStore s, Object[] params) {
+        ColumnStore.Index customerOrders = s.ordersByCustomer();
+        ColumnStore.Index orderItems = s.itemsByOrder();
+        List<Object[]> rows = new ArrayList<>();
+
+        for (int c = 0; c < s.customerZip.length; c++) {
+            if (!hasGeolocation(s, s.customerZip[c])) {
+                continue;
+            }
+            int orders = 0;
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            long cents = 0;
+            long valued = 0;
+            for (int k = customerOrders.start[c]; k < customerOrders.start[c + 1]; k++) {
+                int o = customerOrders.rows[k];
+                if (orderItems.start[o] == orderItems.start[o + 1]) {
+                    continue;
+                }
+                orders++;
+                long purchase = s.orderPurchase[o];
+                if (purchase != ColumnStore.NULL_LONG) {
+                    first = Math.min(first, purchase);
+                    last = Math.max(last, purchase);
+                }
+                for (int i = orderItems.start[o]; i < orderItems.start[o + 1]; i++) {
+                    int item = orderItems.rows[i];
+                    if (s.itemPrice[item] != ColumnStore.NULL_LONG && s.itemFreight[item] != ColumnStore.NULL_LONG) {
+                        cents += s.itemPrice[item] + s.itemFreight[item];
+                        valued++;
+                    }
+                }
+            }
+            if (orders == 0) {
+                continue;
+            }
+            int zip = s.customerZip[c];
+            for (int g = s.zipGeoStart[zip]; g < s.zipGeoStart[zip + 1]; g++) {
+                rows.add(new Object[] {
+                    s.customerIds.get(c), s.customerUniqueIds.get(s.customerUnique[c]),
+                    s.cities.get(s.geoCity[g]), s.states.get(s.geoState[g]), orders,
+                    first == Long.MAX_VALUE ? null : timestamp(first), last == Long.MIN_VALUE ? null : timestamp(last),
+                    sumMoney(cents * s.geoRows[g], valued)
+                });
+            }
+        }
+        sort(rows, desc(7), desc(4));
+        return new Result(new String[] {"customer_id", "customer_unique_id", "geolocation_city",
+                                        "geolocation_state", "total_orders", "first_order_date",
+                                        "last_order_date", "total_lifetime_value"}, top(rows, 100));
+    }
+
+    private static Result avgTimeBetweenOrders(ColumnStore s, Object[] params) {
+        ColumnStore.Index customerOrders = s.ordersByCustomer();
+        int returning = 0;
+        long daySum = 0;
+        long dayRows = 0;
+        long minDays = Long.MAX_VALUE;
+        long maxDays = Long.MIN_VALUE;
+
+        // One partition per customer plus one for orders with a NULL customer, which has no
+        // customer to count but still contributes its gaps
+        int nullCustomerOrders = 0;
+        for (int c : s.orderCustomer) {
+            if (c < 0) {
+                nullCustomerOrders++;
+            }
+        }
+        long[] partition = new long[Math.max(nullCustomerOrders, 16)];
+        for (int c = -1; c < s.customerZip.length; c++) {
+            int size = 0;
+            if (c < 0) {
+                for (int o = 0; o < s.orderCount(); o++) {
+                    if (s.orderCustomer[o] < 0) {
+                        partition[size++] = s.orderPurchase[o];
+                    }
+                }
+            } else {
+                for (int k = customerOrders.start[c]; k < customerOrders.start[c + 1]; k++) {
+                    if (size == partition.length) {
+                        partition = Arrays.copyOf(partition, size * 2);
+                    }
+                    partition[size++] = s.orderPurchase[customerOrders.rows[k]];
+                }
+            }
+            if (size < 2) {
+                continue;
+            }
+            // NULL_LONG is the smallest long, so NULL timestamps sort first as in SQL Server
+            Arrays.sort(partition, 0, size);
+            boolean counted = false;
+            for (int i = 1; i < size; i++) {
+                long previous = partition[i - 1];
+                if (previous == ColumnStore.NULL_LONG) {
+                    continue;
+                }
+                if (c >= 0 && !counted) {
+                    returning++;
+                    counted = true;
+                }
+                long days = daysBetween(previous, partition[i]);
+                if (days != ColumnStore.NULL_LONG) {
+                    daySum += days;
+                    dayRows++;
+                    minDays = Math.min(minDays, days);
+                    maxDays = Math.max(maxDays, days);
+                }
+            }
+        }
+
+        return single(new String[] {"returning_customers", "avg_days_between_orders", "min_days_between_orders",
+                                    "max_days_between_orders"},
+                      returning, avgInt(daySum, dayRows),
+                      dayRows == 0 ? null : (int) minDays, dayRows == 0 ? null : (int) maxDays);
+    }
+
+    // ==================== ADDITIONAL QUERIES ====================
+
+    private static Result deliveryPerformanceByState(ColumnStore s, Object[] params) {
+        int states = s.stateTableSize;
+        int[] orders = new int[states];
+        long[] joinedRows = new long[states];
+        long[] lateRows = new long[states];
+        long[][] daySums = new long[3][states];
+        long[][] dayRows = new long[3][states];
+
+        for (int o = 0; o < s.orderCount(); o++) {
+            long delivered = s.orderDelivered[o];
+            int c = s.orderCustomer[o];
+            if (delivered == ColumnStore.NULL_LONG || c < 0 || s.customerZip[c] < 0) {
+                continue;
+            }
+            long purchase = s.orderPurchase[o];
+            long estimated = s.orderEstimated[o];
+            long[] days = {
+                daysBetween(purchase, delivered), daysBetween(purchase, estimated), daysBetween(estimated, delivered)
+            };
+            boolean late = estimated != ColumnStore.NULL_LONG && delivered > estimated;
+            int zip = s.customerZip[c];
+            for (int g = s.zipStateStart[zip]; g < s.zipStateStart[zip + 1]; g++) {
+                int state = s.zipState[g];
+                long m = s.zipStateRows[g];
+                orders[state]++;
+                joinedRows[state] += m;
+                if (late) {
+                    lateRows[state] += m;
+                }
+                for (int d = 0; d < 3; d++) {
+                    if (days[d] != ColumnStore.NULL_LONG) {
+                        daySums[d][state] += days[d] * m;
+                        dayRows[d][state] += m;
+                    }
+                }
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int state = 0; state < states; state++) {
+            if (orders[state] > 0) {
+                rows.add(new Object[] {
+                    s.states.get(state), s.stateName(state), orders[state],
+                    avgInt(daySums[0][state], dayRows[0][state]), avgInt(daySums[1][state], dayRows[1][state]),
+                    avgInt(daySums[2][state], dayRows[2][state]), (int) lateRows[state],
+                    roundRatio(lateRows[state], joinedRows[state], HUNDRED)
+                });
+            }
+        }
+        sort(rows, desc(5));
+        return new Result(new String[] {"geolocation_state", "state_name", "total_delivered_orders",
+                                        "avg_actual_delivery_days", "avg_estimated_delivery_days", "avg_delay_days",
+                                        "late_deliveries", "late_delivery_percentage"}, rows);
+    }
+
+    /**
+     * Running totals for one (category, quarter) group
+     */
+    private static class QuarterGroup {
+        final int english;
+        final int quarterIndex;
+        final ColumnStore.LongHashSet orders = new ColumnStore.LongHashSet(64);
+        long cents;
+        long priced;
+
+        QuarterGroup(int english, int quarterIndex) {
+            this.english = english;
+            this.quarterIndex = quarterIndex;
+        }
+    }
+
+    private static Result categoryPerformanceByQuarter(ColumnStore s, Object[] params) {
+        Map<Long, QuarterGroup> groups = new HashMap<>();
+        for (int item = 0; item < s.itemCount(); item++) {
+            int g = englishGroup(s, s.itemProduct[item]);
+            if (g < 0) {
+                continue;
+            }
+            int o = s.itemOrder[item];
+            long purchase = s.orderPurchase[o];
+            // year * 4 + quarter - 1, or -1 when the purchase timestamp is NULL
+            int quarterIndex = -1;
+            if (purchase != ColumnStore.NULL_LONG) {
+                LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(purchase, 86400));
+                quarterIndex = date.getYear() * 4 + (date.getMonthValue() - 1) / 3;
+            }
+            int key = quarterIndex;
+            QuarterGroup group = groups.computeIfAbsent(ColumnStore.LongHashSet.pair(g, quarterIndex),
+                                                        k -> new QuarterGroup(g - 1, key));
+            group.orders.add(o);
+            if (s.itemPrice[item] != ColumnStore.NULL_LONG) {
+                group.cents += s.itemPrice[item];
+                group.priced++;
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (QuarterGroup group : groups.values()) {
+            boolean dated = group.quarterIndex >= 0;
+            rows.add(new Object[] {
+                s.englishNames.get(group.english),
+                dated ? group.quarterIndex / 4 : null, dated ? group.quarterIndex % 4 + 1 : null,
+                group.orders.size(), sumMoney(group.cents, group.priced), avgMoney(group.cents, group.priced)
+            });
+        }
+        sort(rows, asc(0), asc(1), asc(2));
+        return new Result(new String[] {"category_name_english", "order_year", "order_quarter", "orders",
+                                        "revenue", "avg_item_price"}, rows);
+    }
+
+    private static Result revenueByStateAndYear(ColumnStore s, Object[] params) {
+        String code = params[0] == null ? null : params[0].toString().trim().toUpperCase(Locale.ROOT);
+        int state = s.states.lookup(code);
+        Integer year;
+        try {
+            year = params[1] == null ? null : Integer.valueOf(params[1].toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Conversion failed when converting '" + params[1] + "' to int");
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        if (state >= 0 && state < s.stateTableSize && year != null) {
+            StateSales sales = stateSales(s, year);
+            if (sales.orders.containsKey(state)) {
+                rows.add(new Object[] {
+                    s.states.get(state), s.stateName(state), (int) sales.orders.get(state),
+                    sumMoney(sales.revenueCents.get(state), sales.revenueRows.get(state))
+                });
+            }
+        }
+        return new Result(new String[] {"state", "state_name", "total_orders", "total_revenue"}, rows);
+    }
+
+    private static Result sellersByCategory(ColumnStore s, Object[] params) {
+        boolean[] matched = new boolean[s.categoryNames.size()];
+        if (params[0] != null) {
+            Pattern like = likePattern(params[0].toString());
+            for (int category = 0; category < matched.length; category++) {
+                int english = s.categoryEnglish[category];
+                matched[category] = english >= 0 && like.matcher(s.englishNames.get(english)).matches();
+            }
+        }
+        return sellersForCategories(s, matched, true);
+    }
+
+    private static Result sellersByCategoryName(ColumnStore s, Object[] params) {
+        boolean[] matched = new boolean[s.categoryNames.size()];
+        if (params[0] != null) {
+            Pattern like = likePattern(params[0].toString());
+            for (int category = 0; category < matched.length; category++) {
+                int english = s.categoryEnglish[category];
+                matched[category] = like.matcher(s.categoryNames.get(category)).matches()
+                        || (english >= 0 && like.matcher(s.englishNames.get(english)).matches());
+            }
+        }
+        return sellersForCategories(s, matched, false);
+    }
+
+    private static Result sellersInCategories(ColumnStore s, Object[] params) {
+        Set<String> names = new HashSet<>();
+        for (Object param : params) {
+            if (param != null) {
+                names.add(param.toString().toLowerCase(Locale.ROOT));
+            }
+        }
+        boolean[] matched = new boolean[s.categoryNames.size()];
+        for (int category = 0; category < matched.length; category++) {
+            matched[category] = names.contains(s.categoryNames.get(category).toLowerCase(Locale.ROOT));
+        }
+        return sellersForCategories(s, matched, false);
+    }
+
+    /**
+     * Sellers with their order counts over the items whose product category is matched
+     * @param needsCategoryRow Whether the query joins CATEGORIES, dropping unknown categories
+     */
+    private static Result sellersForCategories(ColumnStore s, boolean[] matched, boolean needsCategoryRow) {
+        int[] orders = new int[s.sellerZip.length];
+        ColumnStore.LongHashSet orderSet = new ColumnStore.LongHashSet(1024);
+        for (int item = 0; item < s.itemCount(); item++) {
+            int p = s.itemProduct[item];
+            int seller = s.itemSeller[item];
+            if (p < 0 || seller < 0) {
+                continue;
+            }
+            int category = s.productCategory[p];
+            if (category < 0 || !matched[category]
+                    || (needsCategoryRow && s.categoryEnglish[category] == ColumnStore.NOT_IN_CATEGORIES)) {
+                continue;
+            }
+            if (orderSet.add(ColumnStore.LongHashSet.pair(seller, s.itemOrder[item]))) {
+                orders[seller]++;
+            }
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int seller = 0; seller < orders.length; seller++) {
+            int zip = s.sellerZip[seller];
+            if (orders[seller] == 0 || zip < 0) {
+                continue;
+            }
+            for (int g = s.zipGeoStart[zip]; g < s.zipGeoStart[zip + 1]; g++) {
+                rows.add(new Object[] {
+                    s.sellerIds.get(seller), s.cities.get(s.geoCity[g]), s.states.get(s.geoState[g]), orders[seller]
+                });
+            }
+        }
+        sort(rows, desc(3));
+        return new Result(new String[] {"seller_id", "seller_city", "seller_state", "total_orders"}, rows);
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * English name group of a product, shifted by one so a NULL English name is group 0
+     * @return The group, or -1 if the product has no CATEGORIES row to join
+     */
+    private static int englishGroup(ColumnStore s, int product) {
+        if (product < 0) {
+            return -1;
+        }
+        int category = s.productCategory[product];
+        if (category < 0 || s.categoryEnglish[category] == ColumnStore.NOT_IN_CATEGORIES) {
+            return -1;
+        }
+        return s.categoryEnglish[category] + 1;
+    }
+
+    /**
+     * Folds the smaller set into the larger one
+     */
+    private static ColumnStore.LongHashSet union(ColumnStore.LongHashSet left, ColumnStore.LongHashSet right) {
+        if (left.size() < right.size()) {
+            right.addAll(left);
+            return right;
+        }
+        left.addAll(right);
+        return left;
+    }
+
+    /**
+     * Number of distinct values per group in a set of LongHashSet.pair(group, value) keys
+     */
+    private static ParallelAggregator.IntLongHashMap countPairs(ColumnStore.LongHashSet pairs) {
+        ParallelAggregator.IntLongHashMap counts = new ParallelAggregator.IntLongHashMap();
+        pairs.forEach(pair -> counts.add((int) (pair >>> 32), 1));
+        return counts;
+    }
+
+    private static boolean hasGeolocation(ColumnStore s, int zip) {
+        return zip >= 0 && s.zipGeoStart[zip] < s.zipGeoStart[zip + 1];
+    }
+
+    /** SUM over DECIMAL(10, 2): scale 2, NULL when no row had a value */
+    static BigDecimal sumMoney(long cents, long rows) {
+        return rows == 0 ? null : BigDecimal.valueOf(cents, 2);
+    }
+
+    /** AVG over DECIMAL(10, 2): SQL Server returns six decimals, truncated */
+    static BigDecimal avgMoney(long cents, long rows) {
+        return rows == 0 ? null : BigDecimal.valueOf(cents, 2).divide(BigDecimal.valueOf(rows), 6, RoundingMode.DOWN);
+    }
+
+    /** AVG over INT: integer division truncating toward zero */
+    static Integer avgInt(long sum, long rows) {
+        return rows == 0 ? null : (int) (sum / rows);
+    }
+
+    /** ROUND(numerator * factor / denominator, 2) where factor is 1.0 or 100.0 */
+    static BigDecimal roundRatio(long numerator, long denominator, BigDecimal factor) {
+        if (denominator == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(numerator).multiply(factor)
+                .divide(BigDecimal.valueOf(denominator), 12, RoundingMode.DOWN)
+                .setScale(2, RoundingMode.HALF_UP).setScale(12);
+    }
+
+    private static Integer nullableInt(int value) {
+        return value == ColumnStore.NULL_INT ? null : value;
+    }
+
+    private static Timestamp timestamp(long epochSecond) {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+    }
+
+    private static int yearOf(long epochSecond) {
+        return epochSecond == ColumnStore.NULL_LONG ? Integer.MIN_VALUE
+                : LocalDate.ofEpochDay(Math.floorDiv(epochSecond, 86400)).getYear();
+    }
+
+    /** DATEDIFF(day, from, to): midnights crossed, NULL if either side is NULL */
+    private static long daysBetween(long from, long to) {
+        if (from == ColumnStore.NULL_LONG || to == ColumnStore.NULL_LONG) {
+            return ColumnStore.NULL_LONG;
+        }
+        return Math.floorDiv(to, 86400) - Math.floorDiv(from, 86400);
+    }
+
+    /**
+     * LIKE pattern as a case-insensitive regex, matching the default SQL Server collation
+     */
+    static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : like.toCharArray()) {
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    private static Result single(String[] columns, Object... values) {
+        List<Object[]> rows = new ArrayList<>(1);
+        rows.add(values);
+        return new Result(columns, rows);
+    }
+
+    private static List<Object[]> top(List<Object[]> rows, int limit) {
+        return rows.size() <= limit ? rows : new ArrayList<>(rows.subList(0, limit));
+    }
+
+    static Comparator<Object[]> asc(int column) {
+        return (a, b) -> compareValues(a[column], b[column]);
+    }
+
+    static Comparator<Object[]> desc(int column) {
+        return (a, b) -> compareValues(b[column], a[column]);
+    }
+
+    @SafeVarargs
+    static void sort(List<Object[]> rows, Comparator<Object[]>... keys) {
+        Comparator<Object[]> order = keys[0];
+        for (int i = 1; i < keys.length; i++) {
+            order = order.thenComparing(keys[i]);
+        }
+        rows.sort(order);
+    }
+
+    /**
+     * NULL is the smallest value and text compares case-insensitively, as in SQL Server
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof String) {
+            return String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b);
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    /**
+     * Runs reports headlessly and prints their timings, or displays one report:
+     *   java LocalAnalyticsEngine [--data DIR] [REPORT_NAME [PARAM...] | all]
+     */
+    public static void main(String[] args) {
+        List<String> rest = new ArrayList<>(Arrays.asList(args));
+        if (rest.size() >= 2 && rest.get(0).equals("--data")) {
+            CSVDataLoader.setDataDir(rest.get(1));
+            rest = rest.subList(2, rest.size());
+        }
+        String name = rest.isEmpty() ? "all" : rest.get(0);
+
+        try {
+            getStore();
+            if (!name.equalsIgnoreCase("all")) {
+                String sql = name.equalsIgnoreCase("SELLERS_IN_CATEGORIES") ? QueryManager.SELLERS_IN_CATEGORIES
+                        : QueryManager.getQuery(name);
+                if (sql == null || !supports(sql)) {
+                    System.out.println("ERROR: Unknown report: " + name);
+                    System.exit(1);
+                }
+                Object[] params = rest.subList(1, rest.size()).toArray();
+                if (params.length == 0) {
+                    params = QueryManager.getSampleParameterSets(name.toUpperCase(Locale.ROOT)).get(0);
+                }
+                if (sql.equals(QueryManager.SELLERS_IN_CATEGORIES)) {
+                    List<String> categories = new ArrayList<>();
+                    for (Object param : params) {
+                        categories.add(param.toString());
+                    }
+                    params = QueryManager.categoryParameters(categories);
+                }
+                long start = System.nanoTime();
+                Result result = execute(sql, params);
+                double millis = (System.nanoTime() - start) / 1e6;
+                ResultFormatter.displayRows(result.columns, result.rows, name.toUpperCase(Locale.ROOT), null);
+                System.out.println(String.format("Report computed in %.1f ms (local engine).", millis));
+                return;
+            }
+
+            System.out.println("\n+-----------------------------------+---------+------------+");
+            System.out.println("| Report                            |    Rows |    Time ms |");
+            System.out.println("+-----------------------------------+---------+------------+");
+            for (Map.Entry<String, String> query : QueryManager.getAllQueries().entrySet()) {
+                Object[] params = QueryManager.getSampleParameterSets(query.getKey()).get(0);
+                long start = System.nanoTime();
+                Result result = execute(query.getValue(), params);
+                double millis = (System.nanoTime() - start) / 1e6;
+                System.out.println(String.format("| %-33s | %7d | %10.1f |", query.getKey(),
+                                                 result.rows.size(), millis));
+            }
+            System.out.println("+-----------------------------------+---------+------------+");
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not load the CSV files.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -8,7 +11,8 @@ public class MenuInterface {
     private Scanner scanner;
 
     public MenuInterface() {
-        this.scanner = new Scanner(System.in);
+        this.scanner = ConsoleInput.scanner();
+        ResultFormatter.setInput(scanner);
     }
 
     /**
@@ -140,9 +144,15 @@ public class MenuInterface {
         System.out.println("4. Single-Product Sellers Count");
         System.out.println("   -> Counts sellers offering only one product");
         System.out.println();
-        System.out.println("5. Back to Main Menu");
+        System.out.println("5. Approximate Seller and Category Cardinality");
+        System.out.println("   -> Distinct orders, products and sellers from HyperLogLog sketches");
         System.out.println();
-        System.out.print("Enter your choice (1-5): ");
+        System.out.println("6. Nearest Sellers to a Customer Zip Prefix (Parameterized)");
+        System.out.println("   -> Closest sellers with recent orders, and the freight they charged");
+        System.out.println();
+        System.out.println("7. Back to Main Menu");
+        System.out.println();
+        System.out.print("Enter your choice (1-7): ");
 
         String choice = scanner.nextLine().trim();
 
@@ -168,6 +178,14 @@ public class MenuInterface {
                 pause();
                 break;
             case "5":
+                executeApproximateCardinality();
+                pause();
+                break;
+            case "6":
+                executeNearestSellers();
+                pause();
+                break;
+            case "7":
                 return;
             default:
                 System.out.println("\nInvalid choice.");
@@ -230,9 +248,12 @@ public class MenuInterface {
         System.out.println("4. Review Score Extremes (1-Star vs. 5-Star)");
         System.out.println("   -> Distribution of extreme ratings");
         System.out.println();
-        System.out.println("5. Back to Main Menu");
+        System.out.println("5. Search Review Comments (Parameterized)");
+        System.out.println("   -> Reviews whose title or comment contains the given words");
         System.out.println();
-        System.out.print("Enter your choice (1-5): ");
+        System.out.println("6. Back to Main Menu");
+        System.out.println();
+        System.out.print("Enter your choice (1-6): ");
 
         String choice = scanner.nextLine().trim();
 
@@ -258,6 +279,10 @@ public class MenuInterface {
                 pause();
                 break;
             case "5":
+                executeReviewSearch();
+                pause();
+                break;
+            case "6":
                 return;
             default:
                 System.out.println("\nInvalid choice.");
@@ -320,9 +345,12 @@ public class MenuInterface {
         System.out.println("4. Find Sellers by Category (Parameterized)");
         System.out.println("   -> Find sellers who sell products in a specific category");
         System.out.println();
-        System.out.println("5. Back to Main Menu");
+        System.out.println("5. Freight per Km by Shipping Distance");
+        System.out.println("   -> Seller to customer distance per order item, by state pair or seller");
         System.out.println();
-        System.out.print("Enter your choice (1-5): ");
+        System.out.println("6. Back to Main Menu");
+        System.out.println();
+        System.out.print("Enter your choice (1-6): ");
 
         String choice = scanner.nextLine().trim();
 
@@ -346,6 +374,10 @@ public class MenuInterface {
                 pause();
                 break;
             case "5":
+                executeFreightPerKm();
+                pause();
+                break;
+            case "6":
                 return;
             default:
                 System.out.println("\nInvalid choice.");
@@ -371,9 +403,24 @@ public class MenuInterface {
         System.out.println("4. Populate Database by Phases");
         System.out.println("   -> Load data in 4 phases (Reference, Entity, Transaction, Relationship)");
         System.out.println();
-        System.out.println("5. Back to Main Menu");
+        System.out.println("5. Query Execution Settings");
+        System.out.println("   -> Query timeout, server-side result paging and execution engine");
         System.out.println();
-        System.out.print("Enter your choice (1-5): ");
+        System.out.println("6. Export Query Results or Table");
+        System.out.println("   -> Streams a report or a whole table to CSV, JSON Lines or columnar binary");
+        System.out.println();
+        System.out.println("7. Query Plans and Statistics");
+        System.out.println("   -> Captures execution plans with IO/CPU statistics for any report");
+        System.out.println();
+        System.out.println("8. Live Query Metrics");
+        System.out.println("   -> Latency percentiles per query since startup");
+        System.out.println();
+        System.out.println("9. Follow Growing CSV Files");
+        System.out.println("   -> Insert records as they are appended to the order files, like tail -f");
+        System.out.println();
+        System.out.println("10. Back to Main Menu");
+        System.out.println();
+        System.out.print("Enter your choice (1-10): ");
 
         String choice = scanner.nextLine().trim();
 
@@ -394,6 +441,74 @@ public class MenuInterface {
                 showPhasePopulationMenu();
                 break;
             case "5":
+                showQuerySettingsMenu();
+                break;
+            case "6":
+                exportResults();
+                pause();
+                break;
+            case "7":
+                showQueryPlanMenu();
+                break;
+            case "8":
+                showQueryMetricsView();
+                break;
+            case "9":
+                showFollowMenu();
+                break;
+            case "10":
+                return;
+            default:
+                System.out.println("\nInvalid choice.");
+                pause();
+        }
+    }
+
+    private void showFollowMenu() {
+        printSeparator();
+        System.out.println("Main Menu > 7. Database Management > 9. Follow Growing CSV Files");
+        printSeparator();
+        CSVFollower follower = CSVFollower.getRunning();
+        System.out.println("\nNew complete lines in the customer, order, item, payment and review files are");
+        System.out.println("inserted every second, parents first. Rows whose order has not arrived yet are held");
+        System.out.println("for up to " + CSVFollower.DEFAULT_HOLD_SECONDS + " seconds.");
+        if (follower != null) {
+            follower.displayStatus();
+        } else {
+            System.out.println("\nNot following.");
+        }
+        System.out.println();
+        System.out.println(follower == null ? "1. Start Following " + CSVDataLoader.getDataDir() : "1. Stop Following");
+        System.out.println("2. Refresh Status");
+        System.out.println("3. Back to Database Management Menu");
+        System.out.println();
+        System.out.print("Enter your choice (1-3): ");
+
+        String choice = scanner.nextLine().trim();
+
+        switch (choice) {
+            case "1":
+                if (follower != null) {
+                    CSVFollower.stopRunning();
+                    System.out.println("\nStopped following. Offsets saved to "
+                                       + CSVFollower.DEFAULT_OFFSETS_FILE + ".");
+                } else {
+                    try {
+                        CSVFollower.start(CSVDataLoader.getDataDir(), CSVFollower.DEFAULT_INTERVAL_MILLIS,
+                                          CSVFollower.DEFAULT_HOLD_SECONDS);
+                        System.out.println("\nFollowing " + CSVDataLoader.getDataDir()
+                                           + " in the background. Reports see new rows as they commit.");
+                    } catch (SQLException | IOException e) {
+                        System.out.println("\nERROR: Could not start following.");
+                        System.out.println("Details: " + e.getMessage());
+                    }
+                }
+                pause();
+                break;
+            case "2":
+                showFollowMenu();
+                break;
+            case "3":
                 return;
             default:
                 System.out.println("\nInvalid choice.");
@@ -541,35 +656,631 @@ public class MenuInterface {
                                        stateCode, year);
     }
 
+    private void executeReviewSearch() {
+        printSeparator();
+        System.out.println("Search Review Comments - Parameterized Query");
+        printSeparator();
+        System.out.println("\nThis query searches review titles and comments through an in-memory word index.");
+        System.out.println("Accents and case are ignored, so 'nao' also finds 'Não'. All words must appear;");
+        System.out.println("put OR between alternatives (e.g., 'nao recebi OR atraso').");
+        System.out.println();
+
+        System.out.print("Enter search words: ");
+        String query = scanner.nextLine().trim();
+        if (query.isEmpty() || query.length() > 200) {
+            System.out.println("\nError: Please enter between 1 and 200 characters of search words.");
+            return;
+        }
+
+        System.out.println("Order results by: 1. Highest score  2. Lowest score  3. Newest");
+        System.out.print("Enter your choice (1-3, default 1): ");
+        String order = scanner.nextLine().trim();
+        ReviewSearchIndex.Ranking ranking;
+        switch (order) {
+            case "":
+            case "1":
+                ranking = ReviewSearchIndex.Ranking.BEST;
+                break;
+            case "2":
+                ranking = ReviewSearchIndex.Ranking.WORST;
+                break;
+            case "3":
+                ranking = ReviewSearchIndex.Ranking.NEWEST;
+                break;
+            default:
+                System.out.println("\nError: Please enter 1, 2 or 3.");
+                return;
+        }
+
+        System.out.print("How many reviews to show (default " + ReviewSearchIndex.DEFAULT_LIMIT + "): ");
+        String limit = scanner.nextLine().trim();
+        if (!limit.isEmpty() && (!limit.matches("\\d{1,4}") || Integer.parseInt(limit) == 0)) {
+            System.out.println("\nError: Please enter a whole number of reviews (1-9999).");
+            return;
+        }
+
+        ReviewSearchIndex.displaySearch(query, ranking,
+                                        limit.isEmpty() ? ReviewSearchIndex.DEFAULT_LIMIT : Integer.parseInt(limit));
+    }
+
+    private void executeFreightPerKm() {
+        printSeparator();
+        System.out.println("Freight per Km by Shipping Distance");
+        printSeparator();
+        System.out.println("\nEach order item gets the great-circle distance between its seller's and its");
+        System.out.println("customer's zip prefix centroids. The first report runs the job, which also");
+        System.out.println("writes the distances to ORDER_ITEM_DISTANCES when the database is in use.");
+        System.out.println();
+        System.out.println("1. By seller state and customer state");
+        System.out.println("2. By seller (highest freight per km first)");
+        System.out.println("3. Recompute the distances, then show the state pairs");
+        System.out.println();
+        System.out.print("Enter your choice (1-3): ");
+
+        String choice = scanner.nextLine().trim();
+
+        switch (choice) {
+            case "1":
+                ShippingDistanceJob.displayReport("pairs", 0, false);
+                break;
+            case "2":
+                System.out.print("How many sellers to show (default " + ShippingDistanceJob.DEFAULT_SELLER_LIMIT + "): ");
+                String limit = scanner.nextLine().trim();
+                if (!limit.isEmpty() && (!limit.matches("\\d{1,6}") || Integer.parseInt(limit) == 0)) {
+                    System.out.println("\nError: Please enter a whole number of sellers (1-999999).");
+                    return;
+                }
+                ShippingDistanceJob.displayReport("sellers", limit.isEmpty()
+                        ? ShippingDistanceJob.DEFAULT_SELLER_LIMIT : Integer.parseInt(limit), false);
+                break;
+            case "3":
+                ShippingDistanceJob.displayReport("pairs", 0, true);
+                break;
+            default:
+                System.out.println("\nInvalid choice.");
+        }
+    }
+
+    private void executeApproximateCardinality() {
+        printSeparator();
+        System.out.println("Approximate Seller and Category Cardinality");
+        printSeparator();
+        System.out.println("\nDistinct counts are estimated from sketches kept while ORDER_ITEMS is loaded,");
+        System.out.println("so no COUNT(DISTINCT) runs on the server. Each count has a 95% error bound.");
+        System.out.println();
+        System.out.println("1. Sellers by distinct orders");
+        System.out.println("2. Categories by distinct orders");
+        System.out.println("3. Totals over all order items");
+        System.out.println();
+        System.out.print("Enter your choice (1-3): ");
+
+        String choice = scanner.nextLine().trim();
+
+        switch (choice) {
+            case "1":
+                System.out.print("How many sellers to show (e.g., 20): ");
+                String limit = scanner.nextLine().trim();
+                if (!limit.matches("\\d{1,6}") || Integer.parseInt(limit) == 0) {
+                    System.out.println("\nError: Please enter a whole number of sellers (1-999999).");
+                    return;
+                }
+                CardinalitySketches.displayReport("sellers", Integer.parseInt(limit));
+                break;
+            case "2":
+                CardinalitySketches.displayReport("categories", 0);
+                break;
+            case "3":
+                CardinalitySketches.displayReport("summary", 0);
+                break;
+            default:
+                System.out.println("\nInvalid choice.");
+        }
+    }
+
+    private void executeNearestSellers() {
+        printSeparator();
+        System.out.println("Nearest Sellers to a Customer Zip Prefix - Parameterized Query");
+        printSeparator();
+        System.out.println("\nThis query finds the sellers closest to a customer's zip prefix, by great-circle");
+        System.out.println("distance between prefix centroids, from an in-memory grid over the sellers.");
+        System.out.println();
+
+        System.out.print("Enter customer zip prefix (5 digits, e.g., 01037, 22041): ");
+        String prefix = scanner.nextLine().trim();
+        if (!prefix.matches("\\d{5}")) {
+            System.out.println("\nError: Invalid zip prefix. Please enter exactly 5 digits (e.g., 01037).");
+            return;
+        }
+
+        System.out.print("How many sellers to show (default " + SellerLocator.DEFAULT_NEIGHBORS + "): ");
+        String count = scanner.nextLine().trim();
+        if (!count.isEmpty() && (!count.matches("\\d{1,4}") || Integer.parseInt(count) == 0)) {
+            System.out.println("\nError: Please enter a whole number of sellers (1-9999).");
+            return;
+        }
+
+        System.out.print("Only sellers with orders in the last N days of data (default "
+                         + SellerLocator.DEFAULT_RECENT_DAYS + ", 0 for any time): ");
+        String days = scanner.nextLine().trim();
+        if (!days.isEmpty() && !days.matches("\\d{1,5}")) {
+            System.out.println("\nError: Please enter a whole number of days (0-99999).");
+            return;
+        }
+
+        System.out.print("Maximum distance in km (blank for no limit): ");
+        String radius = scanner.nextLine().trim();
+        if (!radius.isEmpty() && !radius.matches("\\d{1,5}(\\.\\d+)?")) {
+            System.out.println("\nError: Please enter a distance in km (e.g., 50 or 12.5).");
+            return;
+        }
+
+        SellerLocator.displayNearest(prefix,
+                                     count.isEmpty() ? SellerLocator.DEFAULT_NEIGHBORS : Integer.parseInt(count),
+                                     days.isEmpty() ? SellerLocator.DEFAULT_RECENT_DAYS : Integer.parseInt(days),
+                                     radius.isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(radius));
+    }
+
     private void executeSellerInventoryCheck() {
         printSeparator();
         System.out.println("Find Sellers by Category - Parameterized Query");
         printSeparator();
         System.out.println("\nThis query finds sellers who sell products in a specific category.");
-        System.out.println("You can use '%' as a wildcard (e.g., 'health%' finds health_beauty, healthcare, etc.)");
+        System.out.println("Enter part of an English or Portuguese category name, or '%' as a wildcard.");
+        System.out.println("End the text with '?' to list matching categories (e.g. 'furn?').");
         System.out.println();
 
-        System.out.print("Enter category name (e.g., electronics, furniture, toys): ");
-        String categoryName = scanner.nextLine().trim();
+        CategoryDictionary dictionary;
+        try {
+            dictionary = QueryExecutor.isLocalEngine()
+                    ? CategoryDictionary.fromColumnStore(LocalAnalyticsEngine.getStore())
+                    : CategoryDictionary.get();
+        } catch (SQLException | IOException e) {
+            System.out.println("WARNING: Could not load the category list; falling back to a name search.");
+            System.out.println("Details: " + e.getMessage());
+            dictionary = null;
+        }
+
+        String categoryName = "";
+        while (categoryName.isEmpty()) {
+            System.out.print("Enter category name (e.g., electronics, furniture, toys): ");
+            categoryName = scanner.nextLine().trim();
+
+            // Validate category name (should not be empty and contain only letters, spaces, underscores, and %)
+            if (categoryName.isEmpty()) {
+                System.out.println("\nError: Category name cannot be empty.");
+                return;
+            }
+
+            if (!categoryName.matches("[a-zA-Z0-9_% ]+\\??")) {
+                System.out.println("\nError: Invalid category name. Use only letters, numbers, spaces, underscores, and % for wildcards.");
+                return;
+            }
+
+            if (categoryName.endsWith("?")) {
+                String prefix = categoryName.substring(0, categoryName.length() - 1);
+                if (dictionary == null) {
+                    System.out.println("\nCategory suggestions are unavailable.");
+                } else {
+                    printCategorySuggestions(dictionary.complete(prefix, 20), dictionary.size());
+                }
+                categoryName = "";
+            }
+        }
 
-        // Validate category name (should not be empty and contain only letters, spaces, underscores, and %)
-        if (categoryName.isEmpty()) {
-            System.out.println("\nError: Category name cannot be empty.");
+        if (dictionary == null) {
+            // Add wildcard for partial matching if not already present
+            String searchPattern = categoryName.contains("%") ? categoryName : "%" + categoryName + "%";
+            System.out.println("\nExecuting query for category: " + categoryName);
+            QueryExecutor.executeAndDisplay(QueryManager.SELLERS_BY_CATEGORY,
+                                           "Sellers by Category",
+                                           searchPattern);
             return;
         }
 
-        if (!categoryName.matches("[a-zA-Z0-9_% ]+")) {
-            System.out.println("\nError: Invalid category name. Use only letters, numbers, spaces, underscores, and % for wildcards.");
+        List<CategoryDictionary.Category> matches = dictionary.resolve(categoryName);
+        if (matches.isEmpty()) {
+            System.out.println("\nNo category matches '" + categoryName + "'.");
+            String prefix = categoryName.replace("%", "");
+            printCategorySuggestions(dictionary.complete(prefix.substring(0, Math.min(3, prefix.length())), 10),
+                                     dictionary.size());
             return;
         }
 
-        // Add wildcard for partial matching if not already present
-        String searchPattern = categoryName.contains("%") ? categoryName : "%" + categoryName + "%";
+        if (matches.size() > 1) {
+            System.out.println("\n'" + categoryName + "' matches " + matches.size() + " categories:");
+            for (int i = 0; i < matches.size(); i++) {
+                System.out.printf("  %2d. %s%n", i + 1, matches.get(i));
+            }
+            System.out.print("Enter a number to pick one, or press Enter for all of them: ");
+            String pick = scanner.nextLine().trim();
+            if (pick.matches("\\d{1,2}") && Integer.parseInt(pick) >= 1 && Integer.parseInt(pick) <= matches.size()) {
+                matches = matches.subList(Integer.parseInt(pick) - 1, Integer.parseInt(pick));
+            } else if (!pick.isEmpty()) {
+                System.out.println("\nInvalid choice.");
+                return;
+            }
+        }
 
-        System.out.println("\nExecuting query for category: " + categoryName);
-        QueryExecutor.executeAndDisplay(QueryManager.SELLERS_BY_CATEGORY,
+        if (matches.size() > QueryManager.CATEGORY_SLOTS) {
+            // More categories than IN slots: search both names in one statement, as the dictionary did.
+            // The dictionary treats spaces as underscores; '_' matches either in LIKE.
+            String name = categoryName.trim().replace(' ', '_');
+            String searchPattern = name.contains("%") ? name : "%" + name + "%";
+            System.out.println("\nExecuting name search for " + matches.size() + " categories matching: "
+                               + categoryName);
+            QueryExecutor.executeAndDisplay(QueryManager.SELLERS_BY_CATEGORY_NAME,
+                                           "Sellers by Category",
+                                           searchPattern, searchPattern);
+            return;
+        }
+
+        System.out.println("\nExecuting query for " + (matches.size() == 1 ? "category: " + matches.get(0)
+                                                                      : matches.size() + " categories"));
+        QueryExecutor.executeAndDisplay(QueryManager.SELLERS_IN_CATEGORIES,
                                        "Sellers by Category",
-                                       searchPattern);
+                                       QueryManager.categoryParameters(CategoryDictionary.portugueseNames(matches)));
+    }
+
+    private void printCategorySuggestions(List<CategoryDictionary.Category> suggestions, int total) {
+        if (suggestions.isEmpty()) {
+            System.out.println("No categories start with that text.");
+            return;
+        }
+        System.out.println("\nMatching categories (" + suggestions.size() + " of " + total + "):");
+        for (CategoryDictionary.Category category : suggestions) {
+            System.out.println("  " + category);
+        }
+        System.out.println();
+    }
+
+    private void showQuerySettingsMenu() {
+        printSeparator();
+        System.out.println("Main Menu > 7. Database Management > 5. Query Execution Settings");
+        printSeparator();
+        int timeout = QueryExecutor.getDefaultTimeout();
+        System.out.println("\nCurrent Settings:");
+        System.out.println("-----------------");
+        System.out.println("Query timeout:       " + (timeout == 0 ? "none" : timeout + " seconds"));
+        System.out.println("Server-side paging:  " + (QueryExecutor.isServerPaging() ? "ON" : "OFF"));
+        long slowThreshold = SlowQueryLog.getThresholdMillis();
+        System.out.println("Slow-query log:      " + (slowThreshold == 0 ? "OFF" : "over " + slowThreshold + " ms"
+                           + (SlowQueryLog.isCapturePlans() ? ", with plans" : "")
+                           + " (" + SlowQueryLog.getLoggedCount() + " logged)"));
+        System.out.println("Execution engine:    " + (QueryExecutor.isLocalEngine()
+                           ? "Local in-memory (" + CSVDataLoader.getDataDir() + ")" : "SQL Server"));
+        System.out.println("Preview mode:        " + (QueryExecutor.isPreviewMode()
+                           ? String.format("ON (%.1f%% sample)", ProgressivePreview.getSamplePercent()) : "OFF"));
+        System.out.println("Maintained reports:  " + (QueryExecutor.isMaintainedAggregates()
+                           ? "ON (" + IncrementalAggregates.getFile() + ")" : "OFF"));
+        System.out.println();
+        System.out.println("1. Configure Query Timeout");
+        System.out.println("   -> Sets how long a report may run before it is cancelled");
+        System.out.println();
+        System.out.println("2. Toggle Server-Side Paging");
+        System.out.println("   -> Fetch ordered reports one page at a time instead of all rows at once");
+        System.out.println();
+        System.out.println("3. Configure Slow-Query Log");
+        System.out.println("   -> Log queries over a threshold to " + SlowQueryLog.LOG_FILE);
+        System.out.println();
+        System.out.println("4. Toggle Execution Engine");
+        System.out.println("   -> Answer reports from the CSV files in memory instead of SQL Server");
+        System.out.println();
+        System.out.println("5. Configure Preview Mode");
+        System.out.println("   -> Show heavy reports from a sample of orders first, then refine to exact");
+        System.out.println();
+        System.out.println("6. Toggle Maintained Aggregates");
+        System.out.println("   -> Serve sales, category, seller and payment reports from totals kept by the loader");
+        System.out.println();
+        System.out.println("7. Back to Database Management Menu");
+        System.out.println();
+        System.out.print("Enter your choice (1-7): ");
+
+        String choice = scanner.nextLine().trim();
+
+        switch (choice) {
+            case "1":
+                configureQueryTimeout();
+                pause();
+                break;
+            case "2":
+                QueryExecutor.setServerPaging(!QueryExecutor.isServerPaging());
+                System.out.println("\nServer-side paging is now " + (QueryExecutor.isServerPaging() ? "ON." : "OFF."));
+                pause();
+                break;
+            case "3":
+                configureSlowQueryLog();
+                pause();
+                break;
+            case "4":
+                QueryExecutor.setLocalEngine(!QueryExecutor.isLocalEngine());
+                System.out.println("\nExecution engine is now " + (QueryExecutor.isLocalEngine()
+                                   ? "the local in-memory engine. Reports read " + CSVDataLoader.getDataDir()
+                                     + " and ignore changes made to the database."
+                                   : "SQL Server."));
+                pause();
+                break;
+            case "5":
+                configurePreviewMode();
+                pause();
+                break;
+            case "6":
+                QueryExecutor.setMaintainedAggregates(!QueryExecutor.isMaintainedAggregates());
+                System.out.println("\nMaintained aggregates are now " + (QueryExecutor.isMaintainedAggregates()
+                                   ? "ON. Supported reports reflect the rows loaded through the CSV loader."
+                                   : "OFF."));
+                pause();
+                break;
+            case "7":
+                return;
+            default:
+                System.out.println("\nInvalid choice.");
+                pause();
+        }
+    }
+
+    private void configureSlowQueryLog() {
+        printSeparator();
+        System.out.println("Configure Slow-Query Log");
+        printSeparator();
+        long current = SlowQueryLog.getThresholdMillis();
+        System.out.println("\nCurrent threshold: " + (current == 0 ? "off" : current + " ms"));
+        System.out.println("Queries slower than the threshold are appended to " + SlowQueryLog.LOG_FILE);
+        System.out.println("with their parameters, rows and elapsed time.");
+        System.out.println();
+        System.out.print("Enter new threshold in milliseconds (0 = off, blank = keep): ");
+
+        String input = scanner.nextLine().trim();
+        if (!input.isEmpty()) {
+            if (!input.matches("\\d{1,7}")) {
+                System.out.println("\nError: Please enter a whole number of milliseconds (0-9999999).");
+                return;
+            }
+            SlowQueryLog.setThresholdMillis(Long.parseLong(input));
+        }
+
+        System.out.print("Also capture the cached plan from the DMVs? Needs VIEW SERVER STATE (y/n, blank = keep): ");
+        String plans = scanner.nextLine().trim();
+        if (plans.equalsIgnoreCase("y") || plans.equalsIgnoreCase("yes")) {
+            SlowQueryLog.setCapturePlans(true);
+        } else if (plans.equalsIgnoreCase("n") || plans.equalsIgnoreCase("no")) {
+            SlowQueryLog.setCapturePlans(false);
+        }
+
+        long threshold = SlowQueryLog.getThresholdMillis();
+        System.out.println("\nSlow-query log is " + (threshold == 0 ? "off." : "logging queries over " + threshold + " ms"
+                           + (SlowQueryLog.isCapturePlans() ? " with plans." : ".")));
+    }
+
+    private void configurePreviewMode() {
+        printSeparator();
+        System.out.println("Configure Preview Mode");
+        printSeparator();
+        System.out.println("\nIn preview mode, Category Performance by Quarter first runs over a hash sample of");
+        System.out.println("orders and shows scaled estimates with 95% confidence intervals. The exact report");
+        System.out.println("runs in the background and replaces the preview when it finishes.");
+        System.out.println("\nCurrent setting: " + (QueryExecutor.isPreviewMode()
+                           ? String.format("ON, %.1f%% sample", ProgressivePreview.getSamplePercent()) : "OFF"));
+        System.out.println();
+        System.out.print("Enter sample percent (e.g., 5), or 0 to turn preview mode off: ");
+
+        String input = scanner.nextLine().trim();
+
+        if (!input.matches("\\d{1,3}(\\.\\d{1,2})?") || Double.parseDouble(input) > 100) {
+            System.out.println("\nError: Please enter a percentage between 0 and 100.");
+            return;
+        }
+
+        double percent = Double.parseDouble(input);
+        if (percent == 0) {
+            QueryExecutor.setPreviewMode(false);
+            System.out.println("\nPreview mode is now OFF.");
+            return;
+        }
+        ProgressivePreview.setSamplePercent(percent);
+        QueryExecutor.setPreviewMode(true);
+        System.out.println(String.format("\nPreview mode is now ON with a %.1f%% sample.", percent));
+    }
+
+    private void configureQueryTimeout() {
+        printSeparator();
+        System.out.println("Configure Query Timeout");
+        printSeparator();
+        int current = QueryExecutor.getDefaultTimeout();
+        System.out.println("\nCurrent timeout: " + (current == 0 ? "none" : current + " seconds"));
+        System.out.println("Queries exceeding the timeout are cancelled on the server.");
+        System.out.println("A running query can also be cancelled at any time with Enter or Ctrl-C.");
+        System.out.println();
+        System.out.print("Enter new timeout in seconds (0 = no limit): ");
+
+        String input = scanner.nextLine().trim();
+
+        if (!input.matches("\\d{1,5}")) {
+            System.out.println("\nError: Please enter a whole number of seconds (0-99999).");
+            return;
+        }
+
+        QueryExecutor.setDefaultTimeout(Integer.parseInt(input));
+        System.out.println("\nQuery timeout set to " + (input.equals("0") ? "no limit." : input + " seconds."));
+    }
+
+    private void exportResults() {
+        printSeparator();
+        System.out.println("Export Query Results or Table");
+        printSeparator();
+
+        String name = chooseQueryName(true);
+        if (name == null) {
+            return;
+        }
+        String sql = QueryManager.getQuery(name);
+
+        System.out.print("Format - 1. CSV  2. JSON Lines  3. Columnar binary (1-3): ");
+        String formatChoice = scanner.nextLine().trim();
+        ResultExporter.Format format;
+        switch (formatChoice) {
+            case "1":
+                format = ResultExporter.Format.CSV;
+                break;
+            case "2":
+                format = ResultExporter.Format.JSONL;
+                break;
+            case "3":
+                format = ResultExporter.Format.COLUMNAR;
+                break;
+            default:
+                System.out.println("\nInvalid format.");
+                return;
+        }
+
+        System.out.print("Compress with gzip? (yes/no): ");
+        String gzipAnswer = scanner.nextLine().trim().toLowerCase();
+        boolean gzip = gzipAnswer.equals("yes") || gzipAnswer.equals("y");
+
+        Object[] params = sql == null ? new Object[0] : readQueryParameters(sql);
+
+        String file = ResultExporter.EXPORT_DIR + name.toLowerCase() + "." + format.getExtension()
+                      + (gzip ? ".gz" : "");
+        System.out.print("\nExporting " + name + " to " + file + "...");
+
+        try {
+            ResultExporter.ExportResult result = sql == null
+                    ? ResultExporter.exportTable(name, format, file, gzip)
+                    : ResultExporter.exportQuery(sql, format, file, gzip, params);
+            ResultExporter.printSummary(result, file);
+        } catch (Exception e) {
+            System.out.println("\nERROR: Export failed.");
+            System.out.println("Details: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the QueryManager queries (and optionally tables) and reads a selection
+     * @param allowTable Whether "T" may be entered to pick a whole table
+     * @return The query constant name or table name, or null if the choice was invalid
+     */
+    private String chooseQueryName(boolean allowTable) {
+        System.out.println("\nAvailable Queries:");
+        String[] queryNames = QueryManager.getAllQueries().keySet().toArray(new String[0]);
+        for (int i = 0; i < queryNames.length; i++) {
+            System.out.printf("%2d. %s%n", i + 1, queryNames[i]);
+        }
+        if (allowTable) {
+            System.out.println(" T. Export a whole table");
+        }
+        System.out.println();
+        System.out.print("Enter your choice: ");
+        String choice = scanner.nextLine().trim();
+
+        if (allowTable && choice.equalsIgnoreCase("t")) {
+            System.out.println("\nTables: " + String.join(", ", ResultExporter.TABLES));
+            System.out.print("Enter table name: ");
+            String table = scanner.nextLine().trim().toUpperCase();
+            if (!java.util.Arrays.asList(ResultExporter.TABLES).contains(table)) {
+                System.out.println("\nError: Unknown table name.");
+                return null;
+            }
+            return table;
+        }
+        if (choice.matches("\\d{1,2}") && Integer.parseInt(choice) >= 1
+                && Integer.parseInt(choice) <= queryNames.length) {
+            return queryNames[Integer.parseInt(choice) - 1];
+        }
+        System.out.println("\nInvalid choice.");
+        return null;
+    }
+
+    /**
+     * Prompts for each ? placeholder in a query
+     */
+    private Object[] readQueryParameters(String sql) {
+        Object[] params = new Object[QueryManager.getParameterCount(sql)];
+        for (int i = 0; i < params.length; i++) {
+            System.out.print("Enter value for parameter " + (i + 1) + ": ");
+            params[i] = scanner.nextLine().trim();
+        }
+        return params;
+    }
+
+    private void showQueryPlanMenu() {
+        printSeparator();
+        System.out.println("Main Menu > 7. Database Management > 7. Query Plans and Statistics");
+        printSeparator();
+        System.out.println("\nQuery Plans and Statistics:");
+        System.out.println("---------------------------");
+        System.out.println("1. Explain a Query");
+        System.out.println("   -> Runs a query and captures its actual plan, logical reads and CPU time");
+        System.out.println();
+        System.out.println("2. View Captured Plan Summary");
+        System.out.println("   -> Lists every saved capture so regressions can be compared");
+        System.out.println();
+        System.out.println("3. Back to Database Management Menu");
+        System.out.println();
+        System.out.print("Enter your choice (1-3): ");
+
+        String choice = scanner.nextLine().trim();
+
+        switch (choice) {
+            case "1":
+                explainQuery();
+                pause();
+                break;
+            case "2":
+                try {
+                    QueryPlanCapture.printSummaryView();
+                } catch (java.io.IOException e) {
+                    System.out.println("ERROR: Could not read saved plans: " + e.getMessage());
+                }
+                pause();
+                break;
+            case "3":
+                return;
+            default:
+                System.out.println("\nInvalid choice.");
+                pause();
+        }
+    }
+
+    private void showQueryMetricsView() {
+        while (true) {
+            printSeparator();
+            System.out.println("Main Menu > 7. Database Management > 8. Live Query Metrics");
+            printSeparator();
+            QueryMetrics.printMetricsView();
+            System.out.println();
+            System.out.println("[Enter] Refresh | [J] Dump metrics as JSON | [Q] Back");
+            System.out.print("> ");
+
+            String choice = scanner.nextLine().trim();
+
+            if (choice.equalsIgnoreCase("q")) {
+                return;
+            } else if (choice.equalsIgnoreCase("j")) {
+                try {
+                    System.out.println("\n[OK] Metrics written to " + QueryMetrics.dumpJson());
+                } catch (java.io.IOException e) {
+                    System.out.println("\nERROR: Could not write metrics: " + e.getMessage());
+                }
+                pause();
+            }
+        }
+    }
+
+    private void explainQuery() {
+        String name = chooseQueryName(false);
+        if (name == null) {
+            return;
+        }
+        String sql = QueryManager.getQuery(name);
+        Object[] params = readQueryParameters(sql);
+
+        System.out.println("\nCapturing execution plan for " + name + "... Please wait.");
+        try {
+            QueryPlanCapture.PlanCapture capture = QueryPlanCapture.capture(name, sql, params);
+            QueryPlanCapture.printCapture(capture);
+        } catch (Exception e) {
+            System.out.println("ERROR: Plan capture failed.");
+            System.out.println("Details: " + e.getMessage());
+        }
     }
 
     private void clearDatabaseWithConfirmation() {
@@ -606,6 +1317,7 @@ public class MenuInterface {
         System.out.println("- For parameterized queries, enter requested information when prompted");
         System.out.println("- Results display in formatted tables (max 25 rows per page)");
         System.out.println("- Press Enter to view next page, or 'q' to return to menu");
+        System.out.println("- Press Enter or Ctrl-C while a query runs to cancel it");
         System.out.println();
         System.out.println("SECURITY:");
         System.out.println("- All queries use prepared statements (SQL injection safe)");
@@ -619,11 +1331,11 @@ public class MenuInterface {
         System.out.println();
         System.out.println("QUERY CATEGORIES:");
         System.out.println("1. Market Analysis - Geographic trends, category performance, sales patterns");
-        System.out.println("2. Seller Performance - Ratings, inventory, fulfillment gaps");
+        System.out.println("2. Seller Performance - Ratings, inventory, fulfillment gaps, nearest sellers");
         System.out.println("3. Customer Behavior - Repeat purchases, loyalty metrics, lifetime value");
-        System.out.println("4. Order Quality - Review rates, delivery performance, sentiment analysis");
+        System.out.println("4. Order Quality - Review rates, delivery performance, review comment search");
         System.out.println("5. Payment Analysis - Payment methods, installment behavior, state preferences");
-        System.out.println("6. Additional Analysis - Delivery metrics, quarterly trends, parameterized queries");
+        System.out.println("6. Additional Analysis - Delivery metrics, quarterly trends, freight per km, parameterized queries");
         System.out.println("7. Database Management - Clear data, repopulate, verify integrity");
         System.out.println();
         System.out.println("RESULT INTERPRETATION:");
@@ -0,0 +1,417 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches query results from the server one page at a time.
+ * The first page is selected with OFFSET/FETCH appended to the query's final ORDER BY, so the
+ * time to the first page does not depend on the size of the full result. The rest come from one
+ * continuation statement that skips the first page and is read a page at a time, prefetched in
+ * the background while the current page is shown; the query is therefore run at most twice, not
+ * once per page. OFFSET only pages reliably over a unique order, so the outer GROUP BY keys are
+ * appended to the ORDER BY as tie-breakers, and queries without one are not paged.
+ */
+public class PagedQuery implements AutoCloseable {
+    private static final Pattern ORDER_BY = Pattern.compile("\\bORDER\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TOP = Pattern.compile("\\bTOP\\s*\\(?\\s*\\d", Pattern.CASE_INSENSITIVE);
+    private static final Pattern OFFSET = Pattern.compile("\\bOFFSET\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern GROUP_BY = Pattern.compile("\\bGROUP\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HAVING = Pattern.compile("\\bHAVING\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SELECT = Pattern.compile("\\bSELECT(\\s+DISTINCT)?\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FROM = Pattern.compile("\\bFROM\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ALIASED = Pattern.compile("(?is)(.*\\S)\\s+AS\\s+(\\w+)");
+    private static final Pattern DIRECTION = Pattern.compile("(?i)\\s+(ASC|DESC)$");
+
+    // One background thread shared by all paged queries; pages are fetched in order
+    private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "page-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * A single page of formatted rows
+     */
+    public static class Page {
+        final int index;
+        final List<String[]> rows;
+        final boolean hasMore;
+
+        Page(int index, List<String[]> rows, boolean hasMore) {
+            this.index = index;
+            this.rows = rows;
+            this.hasMore = hasMore;
+        }
+    }
+
+    private final String firstPageSql;
+    private final String continuationSql;
+    private final Object[] params;
+    private final int pageSize;
+    private final int timeoutSeconds;
+    private final AtomicBoolean cancelRequested;
+
+    private volatile String[] columnNames;
+    private volatile PreparedStatement currentStatement;
+    private volatile boolean cancelled = false;
+    private int pendingIndex = -1;
+    private Future<Page> pendingPage;
+
+    // Continuation statement for pages after the first; only touched on the prefetch thread
+    private PreparedStatement continuation;
+    private ResultSet continuationRows;
+    private String[] lookahead;
+
+    /**
+     * @param query Query ending in an ORDER BY clause (see {@link #supportsPaging(String)})
+     * @param pageSize Rows per page
+     * @param timeoutSeconds Server-side timeout applied to each page fetch
+     * @param cancelRequested Flag set when the analyst asks to cancel
+     * @param params Query parameters
+     */
+    public PagedQuery(String query, int pageSize, int timeoutSeconds,
+                      AtomicBoolean cancelRequested, Object... params) {
+        if (!supportsPaging(query)) {
+            throw new IllegalArgumentException("Query has no final ORDER BY or already limits its rows");
+        }
+        String ordered = query + tieBreakers(query);
+        this.firstPageSql = ordered + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+        this.continuationSql = ordered + " OFFSET ? ROWS";
+        this.params = params;
+        this.pageSize = pageSize;
+        this.timeoutSeconds = timeoutSeconds;
+        this.cancelRequested = cancelRequested;
+    }
+
+    /**
+     * Checks whether a query can be paged on the server.
+     * The query must end with an ORDER BY that belongs to the outer SELECT
+     * (not a window function or subquery), must not use TOP or OFFSET itself, and must
+     * group its outer SELECT so the order can be made unique.
+     */
+    public static boolean supportsPaging(String query) {
+        Matcher m = ORDER_BY.matcher(query);
+        int lastOrderBy = -1;
+        while (m.find()) {
+            lastOrderBy = m.start();
+        }
+        if (lastOrderBy < 0) {
+            return false;
+        }
+
+        String orderByClause = query.substring(lastOrderBy);
+        if (orderByClause.indexOf(')') >= 0) {
+            return false; // ORDER BY closes inside OVER(...) or a subquery
+        }
+        return !TOP.matcher(query).find() && !OFFSET.matcher(orderByClause).find()
+               && tieBreakers(query) != null;
+    }
+
+    /**
+     * Finds the outer GROUP BY keys missing from the final ORDER BY. Each group is one row, so
+     * ordering by those keys last makes the order unique and OFFSET pages neither repeat nor skip
+     * rows. A key the SELECT list names with AS is added by its alias, which SELECT DISTINCT accepts.
+     * @return Text to append to the ORDER BY (empty if already unique), or null without an outer GROUP BY
+     */
+    static String tieBreakers(String query) {
+        String outer = maskNested(query);
+        int orderBy = lastMatch(ORDER_BY, outer, 0, outer.length());
+        int groupBy = orderBy < 0 ? -1 : lastMatch(GROUP_BY, outer, 0, orderBy);
+        int select = groupBy < 0 ? -1 : lastMatch(SELECT, outer, 0, groupBy);
+        if (select < 0) {
+            return null;
+        }
+        Matcher selectKeyword = SELECT.matcher(outer);
+        selectKeyword.find(select);
+        Matcher from = FROM.matcher(outer);
+        if (!from.find(selectKeyword.end()) || from.start() > groupBy) {
+            return null;
+        }
+        Matcher groupKeyword = GROUP_BY.matcher(outer);
+        groupKeyword.find(groupBy);
+        int having = lastMatch(HAVING, outer, groupBy, orderBy);
+        Matcher orderKeyword = ORDER_BY.matcher(outer);
+        orderKeyword.find(orderBy);
+
+        Map<String, String> aliases = new HashMap<>();
+        for (String item : splitTopLevel(query, outer, selectKeyword.end(), from.start())) {
+            Matcher aliased = ALIASED.matcher(item);
+            if (aliased.matches()) {
+                aliases.put(normalize(aliased.group(1)), aliased.group(2));
+            }
+        }
+        Set<String> ordered = new HashSet<>();
+        for (String item : splitTopLevel(query, outer, orderKeyword.end(), outer.length())) {
+            ordered.add(normalize(DIRECTION.matcher(item).replaceFirst("")));
+        }
+
+        StringBuilder suffix = new StringBuilder();
+        for (String key : splitTopLevel(query, outer, groupKeyword.end(), having >= 0 ? having : orderBy)) {
+            String alias = aliases.get(normalize(key));
+            if (ordered.contains(normalize(key)) || (alias != null && ordered.contains(normalize(alias)))) {
+                continue;
+            }
+            suffix.append(", ").append(alias != null ? alias : key);
+        }
+        return suffix.toString();
+    }
+
+    /**
+     * Blanks out parenthesised text and string literals, keeping positions, so only the outer query is matched
+     */
+    private static String maskNested(String query) {
+        char[] masked = query.toCharArray();
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = 0; i < masked.length; i++) {
+            char c = masked[i];
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')') {
+                depth--;
+                masked[i] = ' ';
+                continue;
+            }
+            if (quoted || depth > 0 || c == '\'') {
+                masked[i] = ' ';
+            }
+        }
+        return new String(masked);
+    }
+
+    private static int lastMatch(Pattern pattern, String text, int from, int to) {
+        Matcher m = pattern.matcher(text).region(from, to);
+        int last = -1;
+        while (m.find()) {
+            last = m.start();
+        }
+        return last;
+    }
+
+    /**
+     * Splits query[from, to) at the commas that are outside parentheses
+     */
+    private static List<String> splitTopLevel(String query, String outer, int from, int to) {
+        List<String> items = new ArrayList<>();
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || outer.charAt(i) == ',') {
+                String item = query.substring(start, i).trim();
+                if (!item.isEmpty()) {
+                    items.add(item);
+                }
+                start = i + 1;
+            }
+        }
+        return items;
+    }
+
+    private static String normalize(String expression) {
+        return expression.replaceAll("\\s+", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Starts fetching a page in the background if it is not already pending
+     */
+    public synchronized void prefetch(int index) {
+        if (pendingIndex == index && pendingPage != null) {
+            return;
+        }
+        pendingIndex = index;
+        pendingPage = prefetcher.submit(() -> fetch(index));
+    }
+
+    /**
+     * Waits for a page, fetching it now if it was not prefetched.
+     * Enter or Ctrl-C while waiting cancels the statement on the server.
+     */
+    public Page awaitPage(int index) throws SQLException {
+        Future<Page> future;
+        synchronized (this) {
+            prefetch(index);
+            future = pendingPage;
+        }
+        return QueryExecutor.awaitCancellable(future, this::cancel, cancelRequested);
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    private Page fetch(int index) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query was cancelled", "HY008");
+        }
+        return index == 0 ? fetchFirstPage() : fetchContinued(index);
+    }
+
+    /**
+     * Fetches the first page with OFFSET/FETCH, plus one extra row so we know whether another page exists
+     */
+    private Page fetchFirstPage() throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        try (PreparedStatement stmt = conn.prepareStatement(firstPageSql)) {
+            currentStatement = stmt;
+            stmt.setQueryTimeout(timeoutSeconds);
+
+            int p = bindParams(stmt);
+            stmt.setInt(p++, 0);
+            stmt.setInt(p, pageSize + 1);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                readColumnNames(rs);
+                List<String[]> rows = new ArrayList<>(pageSize);
+                boolean hasMore = false;
+                String[] row;
+                while ((row = readRow(rs)) != null) {
+                    if (rows.size() == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    rows.add(row);
+                }
+                return new Page(0, rows, hasMore);
+            }
+        } finally {
+            currentStatement = null;
+        }
+    }
+
+    /**
+     * Reads the next page from the continuation statement, opening it past the first page on first use
+     */
+    private Page fetchContinued(int index) throws SQLException {
+        if (continuationRows == null) {
+            PreparedStatement stmt = DatabaseConnection.getConnection().prepareStatement(continuationSql);
+            continuation = stmt;
+            stmt.setQueryTimeout(timeoutSeconds);
+            stmt.setFetchSize(pageSize + 1);
+            int p = bindParams(stmt);
+            stmt.setInt(p, index * pageSize);
+            currentStatement = stmt;
+            continuationRows = stmt.executeQuery();
+            readColumnNames(continuationRows);
+            lookahead = readRow(continuationRows);
+        }
+        currentStatement = continuation;
+        try {
+            List<String[]> rows = new ArrayList<>(pageSize);
+            while (lookahead != null && rows.size() < pageSize) {
+                rows.add(lookahead);
+                lookahead = readRow(continuationRows);
+            }
+            return new Page(index, rows, lookahead != null);
+        } finally {
+            currentStatement = null;
+        }
+    }
+
+    private int bindParams(PreparedStatement stmt) throws SQLException {
+        int p = 1;
+        for (Object param : params) {
+            stmt.setObject(p++, param);
+        }
+        return p;
+    }
+
+    private void readColumnNames(ResultSet rs) throws SQLException {
+        if (columnNames != null) {
+            return;
+        }
+        ResultSetMetaData metaData = rs.getMetaData();
+        String[] names = new String[metaData.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = metaData.getColumnLabel(i + 1);
+        }
+        columnNames = names;
+    }
+
+    private String[] readRow(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return null;
+        }
+        String[] row = new String[columnNames.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = ResultFormatter.formatValue(rs.getObject(i + 1));
+        }
+        return row;
+    }
+
+    /**
+     * Releases the continuation statement; runs on the prefetch thread after any fetch in progress
+     */
+    private void closeContinuation() {
+        try {
+            if (continuationRows != null) {
+                continuationRows.close();
+            }
+            if (continuation != null) {
+                continuation.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to release paged statement: " + e.getMessage());
+        } finally {
+            continuationRows = null;
+            continuation = null;
+            lookahead = null;
+        }
+    }
+
+    /**
+     * Cancels any page fetch that is running on the server
+     */
+    public void cancel() throws SQLException {
+        cancelled = true;
+        PreparedStatement stmt = currentStatement;
+        if (stmt != null) {
+            stmt.cancel();
+        }
+    }
+
+    /**
+     * Stops any outstanding prefetch when the analyst leaves the results and closes the
+     * continuation statement so the shared connection is free for the next query
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (pendingPage != null && !pendingPage.isDone()) {
+                try {
+                    cancel();
+                } catch (SQLException e) {
+                    System.err.println("Failed to cancel page prefetch: " + e.getMessage());
+                }
+                pendingPage.cancel(false);
+            }
+        }
+        try {
+            prefetcher.submit(this::closeContinuation).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Failed to release paged statement: " + e.getCause());
+        }
+    }
+}
@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join group-by over the ORDER_ITEMS columns of a ColumnStore.
+ * The driving rows (orders, or customers for the state reports) are split into
+ * ranges; each leaf task aggregates its range into its own primitive hash maps,
+ * and partial results are merged pairwise as the tasks join. Because every
+ * ORDER_ITEMS row belongs to exactly one order and one customer, counts that are
+ * distinct per order or per customer add up across partitions without sharing state.
+ */
+public class ParallelAggregator {
+    /** Driving rows handled by one leaf task before it stops splitting */
+    public static final int DEFAULT_LEAF_SIZE = 2048;
+
+    private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+    private static volatile int leafSize = DEFAULT_LEAF_SIZE;
+
+    /**
+     * One parallel group-by: how to start, fill and combine a partial result
+     * @param <P> Partial result type, owned by a single task until it is merged
+     */
+    public interface Aggregation<P> {
+        P newPartial();
+
+        /** Adds one driving row (an order or customer id) to the partial */
+        void accumulate(P partial, int row);
+
+        /** Combines two partials, returning either one with the other folded in */
+        P merge(P left, P right);
+    }
+
+    /**
+     * Open-addressing map from int keys to long values, used as a group-by accumulator.
+     * Keys may be any int except Integer.MIN_VALUE.
+     */
+    public static final class IntLongHashMap {
+        private static final int EMPTY = Integer.MIN_VALUE;
+        private int[] keys;
+        private long[] values;
+        private int size;
+
+        public IntLongHashMap() {
+            this(16);
+        }
+
+        public IntLongHashMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+            keys = new int[capacity];
+            values = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /** Adds delta to the key's value, inserting the key with 0 first if absent */
+        public void add(int key, long delta) {
+            int slot = slot(key); // May grow the arrays, so resolve it before indexing
+            values[slot] += delta;
+        }
+
+        public long get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return 0;
+        }
+
+        public boolean containsKey(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Adds every value of the other map into this one */
+        public void addAll(IntLongHashMap other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != EMPTY) {
+                    add(other.keys[i], other.values[i]);
+                }
+            }
+        }
+
+        /** Keys present in the map, in no particular order */
+        public int[] keys() {
+            int[] present = new int[size];
+            int n = 0;
+            for (int key : keys) {
+                if (key != EMPTY) {
+                    present[n++] = key;
+                }
+            }
+            return present;
+        }
+
+        private int slot(int key) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != EMPTY) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            size++;
+            return i;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(oldKeys[i]);
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Runs the aggregation over driving rows 0 to rows - 1 on the current pool
+     */
+    public static <P> P aggregate(int rows, Aggregation<P> aggregation) {
+        return pool.invoke(new RangeTask<>(aggregation, 0, rows, leafSize));
+    }
+
+    /**
+     * Runs the aggregation with leaves of at least the given size, for partials that are costly to start
+     */
+    public static <P> P aggregate(int rows, int minLeafSize, Aggregation<P> aggregation) {
+        return pool.invoke(new RangeTask<>(aggregation, 0, rows, Math.max(leafSize, minLeafSize)));
+    }
+
+    private static final class RangeTask<P> extends RecursiveTask<P> {
+        private static final long serialVersionUID = 1L;
+        private final Aggregation<P> aggregation;
+        private final int from;
+        private final int to;
+        private final int leaf;
+
+        RangeTask(Aggregation<P> aggregation, int from, int to, int leaf) {
+            this.aggregation = aggregation;
+            this.from = from;
+            this.to = to;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected P compute() {
+            if (to - from <= leaf) {
+                P partial = aggregation.newPartial();
+                for (int row = from; row < to; row++) {
+                    aggregation.accumulate(partial, row);
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask<P> right = new RangeTask<>(aggregation, middle, to, leaf);
+            right.fork();
+            P left = new RangeTask<>(aggregation, from, middle, leaf).compute();
+            return aggregation.merge(left, right.join());
+        }
+    }
+
+    /**
+     * Uses a dedicated pool of the given size; 0 returns to the common pool
+     */
+    public static synchronized void setParallelism(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Parallelism cannot be negative: " + threads);
+        }
+        ForkJoinPool previous = pool;
+        pool = threads == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(threads);
+        if (previous != ForkJoinPool.commonPool()) {
+            previous.shutdown();
+        }
+    }
+
+    public static int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Sets how many driving rows a leaf task aggregates on its own
+     */
+    public static void setLeafSize(int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("Leaf size must be positive: " + rows);
+        }
+        leafSize = rows;
+    }
+
+    /**
+     * Times the parallel reports at increasing thread counts and prints the speedup:
+     *   java ParallelAggregator [--data DIR | --from-db] [--threads 1,2,4,8] [--iterations N]
+     */
+    public static void main(String[] args) {
+        List<Integer> threadCounts = new ArrayList<>();
+        int iterations = 5;
+        boolean fromDatabase = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data":
+                        CSVDataLoader.setDataDir(args[++i]);
+                        break;
+                    case "--from-db":
+                        fromDatabase = true;
+                        break;
+                    case "--threads":
+                        for (String n : args[++i].split(",")) {
+                            threadCounts.add(Integer.parseInt(n.trim()));
+                        }
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(args[++i]);
+                        if (iterations < 1) {
+                            throw new IllegalArgumentException("--iterations must be at least 1");
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: ParallelAggregator [--data DIR | --from-db] [--threads 1,2,4,8] "
+                               + "[--iterations N]");
+            System.exit(1);
+        }
+        if (threadCounts.isEmpty()) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int n = 1; n < cores; n *= 2) {
+                threadCounts.add(n);
+            }
+            threadCounts.add(cores);
+        }
+
+        try {
+            if (fromDatabase) {
+                System.out.println("Streaming tables from the database...");
+                LocalAnalyticsEngine.setStore(ColumnStore.loadFromDatabase());
+            }
+            ColumnStore store = LocalAnalyticsEngine.getStore();
+            System.out.println(String.format("%,d ORDER_ITEMS rows from %s, %d cores", store.itemCount(),
+                                             store.getDataDir(), Runtime.getRuntime().availableProcessors()));
+
+            String[] reports = {"TOP_SELLING_CATEGORIES", "HIGHEST_SALES_GEOLOCATION", "SELLER_SUCCESS_RATE"};
+            System.out.println("\n+-----------------------------+---------+------------+---------+");
+            System.out.println("| Report                      | Threads |  Median ms | Speedup |");
+            System.out.println("+-----------------------------+---------+------------+---------+");
+            for (String report : reports) {
+                String sql = QueryManager.getQuery(report);
+                double baseline = 0;
+                for (int threads : threadCounts) {
+                    setParallelism(threads);
+                    LocalAnalyticsEngine.execute(sql); // Warm-up
+                    double[] millis = new double[iterations];
+                    for (int i = 0; i < iterations; i++) {
+                        long start = System.nanoTime();
+                        LocalAnalyticsEngine.execute(sql);
+                        millis[i] = (System.nanoTime() - start) / 1e6;
+                    }
+                    Arrays.sort(millis);
+                    double median = millis[iterations / 2];
+                    if (baseline == 0) {
+                        baseline = median;
+                    }
+                    System.out.println(String.format("| %-27s | %7d | %10.1f | %6.2fx |", report, threads, median,
+                                                     baseline / median));
+                }
+            }
+            System.out.println("+-----------------------------+---------+------------+---------+");
+            setParallelism(0);
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not load the tables.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -121,6 +121,7 @@ public class Phase1PopulateReferenceTables {
                           "VALUES (?, ?)";
 
         int count = CSVDataLoader.loadCSV(file, insertSQL, 2);
+        CategoryDictionary.invalidate();
         System.out.println("Done (" + count + " records)");
     }
 
@@ -0,0 +1,308 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Preview execution for heavy reports: the report first runs over a hash sample of
+ * orders and is shown as scaled estimates with 95% confidence intervals, while the
+ * exact query runs on its own connection in the background and replaces the preview
+ * when it finishes.
+ *
+ * Whole orders are sampled (an order is in when a hash of its id falls under the
+ * sampling rate), so each order's items stay together and the distinct order count,
+ * sums and averages of a group can be scaled up with the usual Horvitz-Thompson
+ * estimators. The variances come from per-order totals returned by the sample query.
+ */
+public class ProgressivePreview {
+    public static final double DEFAULT_SAMPLE_PERCENT = 5.0;
+    private static final int HASH_BUCKETS = 10000;
+    private static final double Z_95 = 1.96;
+
+    private static volatile double samplePercent = DEFAULT_SAMPLE_PERCENT;
+
+    // Exact runs happen here, so the menu thread can show the preview meanwhile
+    private static final ExecutorService refiner = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "preview-refiner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * How a report is previewed. The sample query returns the report's group columns
+     * followed by, per group: sampled orders, sum and sum of squares of the per-order
+     * value, sum and sum of squares of the per-order item count, and the sum of their
+     * product. Its last parameter is the hash bucket threshold.
+     */
+    private static final class Spec {
+        final String sampleQuery;
+        final int groupColumns;
+        final String[] columns;
+
+        Spec(String sampleQuery, int groupColumns, String... columns) {
+            this.sampleQuery = sampleQuery;
+            this.groupColumns = groupColumns;
+            this.columns = columns;
+        }
+    }
+
+    private static final Map<String, Spec> SPECS = Map.of(
+        QueryManager.CATEGORY_PERFORMANCE_BY_QUARTER, new Spec(
+            "SELECT category_name_english, order_year, order_quarter, " +
+            "    COUNT(*), SUM(order_value), SUM(order_value * order_value), " +
+            "    SUM(order_items), SUM(order_items * order_items), SUM(order_value * order_items) " +
+            "FROM ( " +
+            "    SELECT " +
+            "        c.category_name_english, " +
+            "        YEAR(o.order_purchase_timestamp) AS order_year, " +
+            "        DATEPART(QUARTER, o.order_purchase_timestamp) AS order_quarter, " +
+            "        oi.order_id, " +
+            "        CAST(SUM(oi.price) AS FLOAT) AS order_value, " +
+            "        CAST(COUNT(*) AS FLOAT) AS order_items " +
+            "    FROM CATEGORIES c " +
+            "    JOIN PRODUCTS p ON c.category_name_portuguese = p.category_name_portuguese " +
+            "    JOIN ORDER_ITEMS oi ON p.product_id = oi.product_id " +
+            "    JOIN ORDERS o ON oi.order_id = o.order_id " +
+            "    WHERE (CHECKSUM(oi.order_id) & 2147483647) % " + HASH_BUCKETS + " < ? " +
+            "    GROUP BY c.category_name_english, YEAR(o.order_purchase_timestamp), " +
+            "             DATEPART(QUARTER, o.order_purchase_timestamp), oi.order_id " +
+            ") sampled " +
+            "GROUP BY category_name_english, order_year, order_quarter " +
+            "ORDER BY category_name_english, order_year, order_quarter",
+            3, "category_name_english", "order_year", "order_quarter", "orders", "revenue", "avg_item_price",
+            "sampled_orders")
+    );
+
+    /**
+     * Rows of a finished exact run
+     */
+    private static final class Exact {
+        final String[] columns;
+        final List<Object[]> rows;
+        final long nanos;
+
+        Exact(String[] columns, List<Object[]> rows, long nanos) {
+            this.columns = columns;
+            this.rows = rows;
+            this.nanos = nanos;
+        }
+    }
+
+    public static boolean supports(String query) {
+        return SPECS.containsKey(query);
+    }
+
+    /**
+     * Sets the share of orders read by previews
+     * @param percent Between 0 (exclusive) and 100
+     */
+    public static void setSamplePercent(double percent) {
+        if (!(percent > 0 && percent <= 100)) {
+            throw new IllegalArgumentException("Sample percent must be above 0 and at most 100: " + percent);
+        }
+        samplePercent = percent;
+    }
+
+    public static double getSamplePercent() {
+        return samplePercent;
+    }
+
+    /**
+     * Shows the sampled preview of a report, then the exact result once the
+     * background run finishes. Enter or Ctrl-C while waiting keeps the preview.
+     * @param cancelRequested Set when the analyst cancels the exact run
+     * @return Number of exact rows displayed
+     * @throws SQLException If the exact run failed, timed out or was cancelled; the preview stays on screen
+     */
+    public static int executeAndDisplay(String query, String title, int timeoutSeconds,
+                                        AtomicBoolean cancelRequested, Object... params) throws SQLException {
+        Spec spec = SPECS.get(query);
+        int buckets = Math.max(1, (int) Math.round(samplePercent / 100 * HASH_BUCKETS));
+        double fraction = (double) buckets / HASH_BUCKETS;
+        AtomicReference<PreparedStatement> exactStatement = new AtomicReference<>();
+        Future<Exact> exact = refiner.submit(() -> runExact(query, timeoutSeconds, exactStatement, cancelRequested,
+                                                            params));
+
+        System.out.println(String.format("Previewing on a %.1f%% sample of orders; the exact report runs "
+                                         + "in the background.", fraction * 100));
+        JfrEvents.QueryExecution event = JfrEvents.QueryExecution.start(spec.sampleQuery, "preview",
+                                                                       params.length + 1);
+        int previewRows = -1;
+        try {
+            long start = System.nanoTime();
+            List<Object[]> rows = new ArrayList<>();
+            long sampledOrders = runPreview(spec, buckets, fraction, timeoutSeconds, rows, params);
+            double millis = (System.nanoTime() - start) / 1e6;
+            previewRows = rows.size();
+
+            if (!succeeded(exact)) {
+                ResultFormatter.displayRows(spec.columns, rows,
+                                            title + String.format(" (preview, %.1f%% sample)", fraction * 100),
+                                            null);
+                System.out.println(String.format("Preview computed in %.1f ms from %,d sampled order groups.",
+                                                 millis, sampledOrders));
+                System.out.println("Values are scaled estimates +/- a 95% confidence interval; intervals from "
+                                   + "fewer than\n30 sampled orders are rough. Groups with no sampled orders "
+                                   + "are missing until the\nexact report arrives.\n");
+            }
+        } catch (SQLException e) {
+            System.out.println("ERROR: Preview query failed; waiting for the exact report.");
+            System.out.println("Details: " + e.getMessage());
+        } finally {
+            event.finish(previewRows, previewRows >= 0);
+        }
+
+        if (!exact.isDone()) {
+            System.out.println("Refining to the exact report... (Press Enter or Ctrl-C to keep the preview)");
+        }
+        Exact result = QueryExecutor.awaitCancellable(exact, () -> {
+            PreparedStatement stmt = exactStatement.get();
+            if (stmt != null) {
+                stmt.cancel();
+            } else {
+                exact.cancel(true);
+            }
+        }, cancelRequested);
+
+        int rowCount = ResultFormatter.displayRows(result.columns, result.rows, title + " (exact)", null);
+        System.out.println(String.format("Exact report computed in %.2f seconds; it replaces the preview.\n",
+                                         result.nanos / 1e9));
+        return rowCount;
+    }
+
+    /**
+     * True if the exact run already finished without error, making the preview pointless
+     */
+    private static boolean succeeded(Future<Exact> exact) {
+        if (!exact.isDone() || exact.isCancelled()) {
+            return false;
+        }
+        try {
+            exact.get();
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the sample query and turns each group into scaled estimates
+     * @param rows Receives one display row per sampled group
+     * @return Number of order groups in the sample, counting an order once per group it falls in
+     */
+    private static long runPreview(Spec spec, int buckets, double fraction, int timeoutSeconds,
+                                   List<Object[]> rows, Object... params) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        long sampled = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(spec.sampleQuery)) {
+            stmt.setQueryTimeout(timeoutSeconds);
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            stmt.setInt(params.length + 1, buckets);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = new Object[spec.groupColumns + 4];
+                    for (int i = 0; i < spec.groupColumns; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    int c = spec.groupColumns;
+                    long orders = rs.getLong(c + 1);
+                    double value = rs.getDouble(c + 2);
+                    double valueSquares = rs.getDouble(c + 3);
+                    double items = rs.getDouble(c + 4);
+                    double itemSquares = rs.getDouble(c + 5);
+                    double valueItems = rs.getDouble(c + 6);
+                    sampled += orders;
+
+                    // Bernoulli sample of orders: Var(sum / f) = (1 - f) / f^2 * sum of squares
+                    double scale = Math.sqrt(1 - fraction) / fraction;
+                    row[c] = new ResultFormatter.Estimate(orders / fraction, Z_95 * scale * Math.sqrt(orders), true);
+                    row[c + 1] = new ResultFormatter.Estimate(value / fraction, Z_95 * scale * Math.sqrt(valueSquares),
+                                                              false);
+                    // Average per item is a ratio estimate; its variance comes from the residuals value - R * items
+                    double ratio = value / items;
+                    double residuals = Math.max(0, valueSquares - 2 * ratio * valueItems + ratio * ratio * itemSquares);
+                    double ratioError = Z_95 * Math.sqrt((1 - fraction) * residuals) / items;
+                    row[c + 2] = new ResultFormatter.Estimate(ratio, ratioError, false);
+                    row[c + 3] = orders;
+                    rows.add(row);
+                }
+            }
+        }
+        return sampled;
+    }
+
+    /**
+     * Runs the report itself on a separate connection and buffers its rows
+     * @param cancelRequested Checked once the statement is published, so a cancel that arrived while the
+     *        connection was opening stops the run before it reaches the server
+     */
+    private static Exact runExact(String query, int timeoutSeconds, AtomicReference<PreparedStatement> statement,
+                                  AtomicBoolean cancelRequested, Object... params) throws SQLException {
+        JfrEvents.QueryExecution event = JfrEvents.QueryExecution.start(query, "refine", params.length);
+        String queryName = QueryManager.getQueryName(query);
+        QueryMetrics.Sample sample = QueryMetrics.start(queryName != null ? queryName : "preview refine");
+        long start = System.nanoTime();
+        int rowCount = -1;
+        String outcome = "error";
+        try (Connection conn = DatabaseConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            statement.set(stmt);
+            if (cancelRequested.get()) {
+                // Cancelled before there was a statement to cancel; the interrupt alone does not stop JDBC
+                throw new SQLException("Query was cancelled", "HY008");
+            }
+            stmt.setQueryTimeout(timeoutSeconds);
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                sample.executed();
+                ResultSetMetaData metaData = rs.getMetaData();
+                String[] columns = new String[metaData.getColumnCount()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = metaData.getColumnLabel(i + 1);
+                }
+                List<Object[]> rows = new ArrayList<>();
+                while (rs.next()) {
+                    if (rows.isEmpty()) {
+                        sample.firstRow();
+                    }
+                    Object[] row = new Object[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rows.add(row);
+                }
+                sample.addRows(rows.size(), 0);
+                QueryMetrics.record(sample);
+                rowCount = rows.size();
+                outcome = "ok";
+                return new Exact(columns, rows, System.nanoTime() - start);
+            }
+        } catch (SQLException e) {
+            if ("HY008".equals(e.getSQLState())) {
+                outcome = "cancelled";
+            } else if (e instanceof SQLTimeoutException || "HYT00".equals(e.getSQLState())) {
+                outcome = "timeout";
+            }
+            QueryMetrics.recordFailure(sample);
+            throw e;
+        } finally {
+            event.finish(rowCount, rowCount >= 0);
+            SlowQueryLog.record(query, "refine", outcome, params, rowCount, System.nanoTime() - start);
+        }
+    }
+}
@@ -1,12 +1,54 @@
+import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Handles execution of SQL queries using prepared statements for security
  */
 public class QueryExecutor {
+    public static final int DEFAULT_QUERY_TIMEOUT_SECONDS = 120;
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    // SQLSTATE values reported by the SQL Server driver for timeouts and cancellations
+    private static final String SQLSTATE_TIMEOUT = "HYT00";
+    private static final String SQLSTATE_CANCELLED = "HY008";
+
+    private static volatile int defaultTimeoutSeconds = DEFAULT_QUERY_TIMEOUT_SECONDS;
+    private static volatile boolean serverPaging = true;
+    private static volatile boolean localEngine;
+    private static volatile boolean previewMode;
+    private static volatile boolean maintainedAggregates;
+    private static final Map<String, Integer> queryTimeouts = new ConcurrentHashMap<>();
+
+    // Session counters shown in Database Statistics
+    private static final AtomicLong executionCount = new AtomicLong();
+    private static final AtomicLong failureCount = new AtomicLong();
+    private static final AtomicLong cancellationCount = new AtomicLong();
+    private static final AtomicLong timeoutCount = new AtomicLong();
+    private static final AtomicInteger activeCount = new AtomicInteger();
+
+    // Single daemon worker so the menu thread stays free to watch for a cancel request
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "query-worker");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Executes a SELECT query and returns the ResultSet
@@ -15,17 +57,18 @@ public class QueryExecutor {
      * @return ResultSet containing query results
      */
     public static ResultSet executeQuery(String query, Object... params) throws SQLException {
-        Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement stmt = conn.prepareStatement(query,
-                                                       ResultSet.TYPE_SCROLL_INSENSITIVE,
-                                                       ResultSet.CONCUR_READ_ONLY);
-
-        // Bind parameters
-        for (int i = 0; i < params.length; i++) {
-            stmt.setObject(i + 1, params[i]);
+        JfrEvents.QueryExecution event = JfrEvents.QueryExecution.start(query, "query", params.length);
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            PreparedStatement stmt = prepareQuery(query, params);
+            ResultSet rs = stmt.executeQuery();
+            succeeded = true;
+            return rs;
+        } finally {
+            event.finish(-1, succeeded);
+            SlowQueryLog.record(query, "query", succeeded ? "ok" : "error", params, -1, System.nanoTime() - start);
         }
-
-        return stmt.executeQuery();
     }
 
     /**
@@ -36,31 +79,90 @@ public class QueryExecutor {
      */
     public static int executeUpdate(String query, Object... params) throws SQLException {
         Connection conn = DatabaseConnection.getConnection();
+        JfrEvents.QueryExecution event = JfrEvents.QueryExecution.start(query, "update", params.length);
+        long start = System.nanoTime();
+        int affected = -1;
 
         try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setQueryTimeout(getQueryTimeout(query));
+
             // Bind parameters
             for (int i = 0; i < params.length; i++) {
                 stmt.setObject(i + 1, params[i]);
             }
 
-            return stmt.executeUpdate();
+            affected = stmt.executeUpdate();
+            return affected;
+        } finally {
+            event.finish(affected, affected >= 0);
+            SlowQueryLog.record(query, "update", affected >= 0 ? "ok" : "error", params, affected,
+                                System.nanoTime() - start);
         }
     }
 
     /**
-     * Executes a query and displays results using ResultFormatter
+     * Executes a query and displays results using ResultFormatter.
+     * The query runs on a worker thread; pressing Enter or Ctrl-C while it runs
+     * cancels the statement on the server and returns to the menu.
      * @param query SQL query string
      * @param title Title for the results display
      * @param params Query parameters
-     * @return Number of rows returned
+     * @return Number of rows returned, or -1 if the query failed, timed out or was cancelled
      */
     public static int executeAndDisplay(String query, String title, Object... params) {
+        return executeAndDisplay(query, title, getQueryTimeout(query), params);
+    }
+
+    /**
+     * Executes a query with an explicit timeout and displays the results
+     * @param query SQL query string
+     * @param title Title for the results display
+     * @param timeoutSeconds Server-side timeout in seconds (0 = no limit)
+     * @param params Query parameters
+     * @return Number of rows returned, or -1 if the query failed, timed out or was cancelled
+     */
+    public static int executeAndDisplay(String query, String title, int timeoutSeconds, Object... params) {
+        if (localEngine && LocalAnalyticsEngine.supports(query)) {
+            return executeLocally(query, title, params);
+        }
+        if (maintainedAggregates && IncrementalAggregates.supports(query)) {
+            IncrementalAggregates aggregates = maintainedAggregates();
+            if (aggregates != null) {
+                return executeMaintained(aggregates, query, title);
+            }
+        }
+        if (previewMode && ProgressivePreview.supports(query)) {
+            return executePreview(query, title, timeoutSeconds, params);
+        }
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        AtomicBoolean cancelRequested = new AtomicBoolean(false);
+        String queryName = QueryManager.getQueryName(query);
+        QueryMetrics.Sample sample = QueryMetrics.start(queryName != null ? queryName : title);
+        JfrEvents.QueryExecution event = JfrEvents.QueryExecution.start(query, "display", params.length);
+        int rowCount = -1;
+        String outcome = "ok";
+        activeCount.incrementAndGet();
+
         try {
-            System.out.println("Processing query... Please wait.");
+            System.out.println("Processing query... Please wait. (Press Enter or Ctrl-C to cancel)");
             long startTime = System.currentTimeMillis();
+            executionCount.incrementAndGet();
 
-            ResultSet rs = executeQuery(query, params);
-            int rowCount = ResultFormatter.displayResults(rs, title);
+            if (serverPaging && PagedQuery.supportsPaging(query)) {
+                try (PagedQuery paged = new PagedQuery(query, ResultFormatter.ROWS_PER_PAGE,
+                                                       timeoutSeconds, cancelRequested, params)) {
+                    rowCount = ResultFormatter.displayPagedResults(paged, title, sample);
+                }
+            } else {
+                stmt = prepareQuery(query, params);
+                stmt.setQueryTimeout(timeoutSeconds);
+
+                rs = awaitResult(stmt, cancelRequested);
+                sample.executed();
+                rowCount = ResultFormatter.displayResults(rs, title, sample);
+            }
+            QueryMetrics.record(sample);
 
             long endTime = System.currentTimeMillis();
             double seconds = (endTime - startTime) / 1000.0;
@@ -68,11 +170,368 @@ public class QueryExecutor {
 
             return rowCount;
         } catch (SQLException e) {
+            if (cancelRequested.get() || SQLSTATE_CANCELLED.equals(e.getSQLState())) {
+                cancellationCount.incrementAndGet();
+                outcome = "cancelled";
+                System.out.println("\nQuery cancelled. Returning to menu.");
+            } else if (e instanceof SQLTimeoutException || SQLSTATE_TIMEOUT.equals(e.getSQLState())) {
+                timeoutCount.incrementAndGet();
+                outcome = "timeout";
+                System.out.println("\nQuery timed out after " + timeoutSeconds + " seconds. Returning to menu.");
+            } else {
+                failureCount.incrementAndGet();
+                outcome = "error";
+                System.out.println("ERROR: Query execution failed.");
+                System.out.println("Details: " + e.getMessage());
+                e.printStackTrace();
+            }
+            QueryMetrics.recordFailure(sample);
+            return -1;
+        } finally {
+            event.finish(rowCount, rowCount >= 0);
+            SlowQueryLog.record(query, "display", outcome, params, rowCount, sample.getExecutionNanos());
+            activeCount.decrementAndGet();
+            closeQuietly(rs, stmt);
+        }
+    }
+
+    /**
+     * Shows a sampled preview of a heavy report, then the exact result, counting the exact run
+     * in the active, failure, cancellation and timeout figures like any other execution
+     * @return Number of exact rows displayed, or -1 if only the preview (or nothing) was shown
+     */
+    private static int executePreview(String query, String title, int timeoutSeconds, Object... params) {
+        AtomicBoolean cancelRequested = new AtomicBoolean(false);
+        activeCount.incrementAndGet();
+        try {
+            executionCount.incrementAndGet();
+            return ProgressivePreview.executeAndDisplay(query, title, timeoutSeconds, cancelRequested, params);
+        } catch (SQLException e) {
+            if (cancelRequested.get() || SQLSTATE_CANCELLED.equals(e.getSQLState())) {
+                cancellationCount.incrementAndGet();
+                System.out.println("\nExact run cancelled. The preview above stands.");
+            } else if (e instanceof SQLTimeoutException || SQLSTATE_TIMEOUT.equals(e.getSQLState())) {
+                timeoutCount.incrementAndGet();
+                System.out.println("\nExact run timed out after " + timeoutSeconds
+                                   + " seconds. The preview above stands.");
+            } else {
+                failureCount.incrementAndGet();
+                System.out.println("ERROR: Exact query failed. The preview above stands.");
+                System.out.println("Details: " + e.getMessage());
+            }
+            return -1;
+        } finally {
+            activeCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Answers a report from the in-memory tables instead of the database
+     * @return Number of rows returned, or -1 if the CSVs could not be read or the parameters are invalid
+     */
+    private static int executeLocally(String query, String title, Object... params) {
+        JfrEvents.QueryExecution event = JfrEvents.QueryExecution.start(query, "local", params.length);
+        int rowCount = -1;
+        try {
+            long start = System.nanoTime();
+            LocalAnalyticsEngine.Result result = LocalAnalyticsEngine.execute(query, params);
+            double millis = (System.nanoTime() - start) / 1e6;
+            rowCount = ResultFormatter.displayRows(result.columns, result.rows, title, null);
+            System.out.println("Report computed in " + String.format("%.1f", millis) + " ms (local engine).\n");
+            return rowCount;
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not load the CSV files into the local engine.");
+            System.out.println("Details: " + e.getMessage());
+            return -1;
+        } catch (IllegalArgumentException e) {
             System.out.println("ERROR: Query execution failed.");
             System.out.println("Details: " + e.getMessage());
-            e.printStackTrace();
             return -1;
+        } finally {
+            event.finish(rowCount, rowCount >= 0);
+        }
+    }
+
+    /**
+     * Returns the aggregates the loader maintains, or null after saying why the database is used instead
+     */
+    private static IncrementalAggregates maintainedAggregates() {
+        try {
+            IncrementalAggregates aggregates = IncrementalAggregates.get();
+            if (aggregates == null) {
+                System.out.println("No maintained aggregates in " + IncrementalAggregates.getFile()
+                                   + " yet; running the report against the database.");
+            }
+            return aggregates;
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not read the maintained aggregates; using the database instead.");
+            System.out.println("Details: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Answers a report from the aggregates the loader keeps up to date, touching only the groups
+     * @return Number of rows returned
+     */
+    private static int executeMaintained(IncrementalAggregates aggregates, String query, String title) {
+        JfrEvents.QueryExecution event = JfrEvents.QueryExecution.start(query, "maintained", 0);
+        int rowCount = -1;
+        try {
+            long start = System.nanoTime();
+            LocalAnalyticsEngine.Result result = aggregates.report(query);
+            double millis = (System.nanoTime() - start) / 1e6;
+            rowCount = ResultFormatter.displayRows(result.columns, result.rows, title, null);
+            System.out.println("Report served from maintained aggregates in " + String.format("%.1f", millis)
+                               + " ms.\n");
+            return rowCount;
+        } finally {
+            event.finish(rowCount, rowCount >= 0);
+        }
+    }
+
+    /**
+     * Runs the statement on the worker thread and waits for it, cancelling the
+     * server-side statement if the analyst presses Enter or Ctrl-C meanwhile
+     */
+    private static ResultSet awaitResult(PreparedStatement stmt, AtomicBoolean cancelRequested)
+            throws SQLException {
+        Future<ResultSet> future = worker.submit(() -> stmt.executeQuery());
+        return awaitCancellable(future, stmt::cancel, cancelRequested);
+    }
+
+    /**
+     * Action that cancels work running on the server
+     */
+    interface Cancellable {
+        void cancel() throws SQLException;
+    }
+
+    /**
+     * Waits for a background database task, invoking the cancel action if the
+     * analyst presses Enter or Ctrl-C before it completes
+     * @param future Task running on a background thread
+     * @param cancelAction Cancels the task's statement on the server
+     * @param cancelRequested Set when the analyst asks to cancel
+     * @return The task's result
+     */
+    static <T> T awaitCancellable(Future<T> future, Cancellable cancelAction,
+                                  AtomicBoolean cancelRequested) throws SQLException {
+        long waitStart = System.nanoTime();
+        Object previousHandler = installInterruptHandler(cancelRequested);
+
+        try {
+            while (true) {
+                try {
+                    return future.get(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (!cancelRequested.get() && ConsoleInput.pollLineSince(waitStart)) {
+                        cancelRequested.set(true);
+                    }
+                    if (cancelRequested.get()) {
+                        cancelAction.cancel();
+                        // Wait for the driver to acknowledge; it surfaces as an SQLException
+                        return future.get();
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Query execution failed: " + cause, cause);
+        } catch (CancellationException e) {
+            throw new SQLException("Query was cancelled", SQLSTATE_CANCELLED, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelRequested.set(true);
+            cancelAction.cancel();
+            throw new SQLException("Query interrupted", SQLSTATE_CANCELLED, e);
+        } finally {
+            restoreInterruptHandler(previousHandler);
+        }
+    }
+
+    /**
+     * Installs a Ctrl-C handler that flags the running query for cancellation. sun.misc.Signal is
+     * reached by reflection so the build does not depend on the proprietary API.
+     * @return The previous handler, or null if signals are unavailable
+     */
+    private static Object installInterruptHandler(AtomicBoolean cancelRequested) {
+        try {
+            Class<?> handlerType = Class.forName("sun.misc.SignalHandler");
+            Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[] {handlerType},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "handle":
+                            cancelRequested.set(true);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return "query-cancel-handler";
+                    }
+                });
+            return handleInterrupt(handlerType, handler);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // Signal not supported on this platform or runtime
+        }
+    }
+
+    private static void restoreInterruptHandler(Object previousHandler) {
+        if (previousHandler == null) {
+            return;
+        }
+        try {
+            handleInterrupt(Class.forName("sun.misc.SignalHandler"), previousHandler);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Leave the query handler in place; it only sets a flag nobody reads any more
+        }
+    }
+
+    /**
+     * Calls sun.misc.Signal.handle(new Signal("INT"), handler)
+     * @return The handler it replaced
+     */
+    private static Object handleInterrupt(Class<?> handlerType, Object handler) throws ReflectiveOperationException {
+        Class<?> signalType = Class.forName("sun.misc.Signal");
+        Object signal = signalType.getConstructor(String.class).newInstance("INT");
+        return signalType.getMethod("handle", signalType, handlerType).invoke(null, signal, handler);
+    }
+
+    private static PreparedStatement prepareQuery(String query, Object... params) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        PreparedStatement stmt = conn.prepareStatement(query,
+                                                       ResultSet.TYPE_FORWARD_ONLY,
+                                                       ResultSet.CONCUR_READ_ONLY);
+        stmt.setQueryTimeout(getQueryTimeout(query));
+
+        // Bind parameters
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
+        return stmt;
+    }
+
+    private static void closeQuietly(ResultSet rs, PreparedStatement stmt) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to release statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the timeout used by queries that have no specific override
+     * @param seconds Timeout in seconds (0 = no limit)
+     */
+    public static void setDefaultTimeout(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative: " + seconds);
+        }
+        defaultTimeoutSeconds = seconds;
+    }
+
+    public static int getDefaultTimeout() {
+        return defaultTimeoutSeconds;
+    }
+
+    /**
+     * Overrides the timeout for a single query
+     * @param query SQL query string (e.g. a QueryManager constant)
+     * @param seconds Timeout in seconds (0 = no limit)
+     */
+    public static void setQueryTimeout(String query, int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative: " + seconds);
         }
+        queryTimeouts.put(query, seconds);
+    }
+
+    /**
+     * Removes a per-query timeout so the query falls back to the default
+     */
+    public static void clearQueryTimeout(String query) {
+        queryTimeouts.remove(query);
+    }
+
+    public static int getQueryTimeout(String query) {
+        return queryTimeouts.getOrDefault(query, defaultTimeoutSeconds);
+    }
+
+    /**
+     * Enables or disables fetching ordered results one page at a time from the server
+     */
+    public static void setServerPaging(boolean enabled) {
+        serverPaging = enabled;
+    }
+
+    public static boolean isServerPaging() {
+        return serverPaging;
+    }
+
+    /**
+     * Routes reports to LocalAnalyticsEngine, which answers them from the CSVs in memory
+     */
+    public static void setLocalEngine(boolean enabled) {
+        localEngine = enabled;
+    }
+
+    public static boolean isLocalEngine() {
+        return localEngine;
+    }
+
+    /**
+     * Shows heavy reports as a sampled preview first, refined to exact results in the background
+     */
+    public static void setPreviewMode(boolean enabled) {
+        previewMode = enabled;
+    }
+
+    public static boolean isPreviewMode() {
+        return previewMode;
+    }
+
+    /**
+     * Serves the reports IncrementalAggregates maintains from its groups instead of the database
+     */
+    public static void setMaintainedAggregates(boolean enabled) {
+        maintainedAggregates = enabled;
+    }
+
+    public static boolean isMaintainedAggregates() {
+        return maintainedAggregates;
+    }
+
+    public static long getExecutionCount() {
+        return executionCount.get();
+    }
+
+    public static long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public static long getCancellationCount() {
+        return cancellationCount.get();
+    }
+
+    public static long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Number of queries currently running through executeAndDisplay
+     */
+    public static int getActiveCount() {
+        return activeCount.get();
     }
 
     /**
@@ -1,3 +1,10 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Manages all SQL queries for the Brazilian E-Commerce Database Analyzer.
  * All queries use prepared statements for security.
@@ -343,4 +350,145 @@ public class QueryManager {
             "WHERE c.category_name_english LIKE ? " +
             "GROUP BY s.seller_id, g.geolocation_city, g.geolocation_state " +
             "ORDER BY total_orders DESC";
+
+    /** Number of category slots in SELLERS_IN_CATEGORIES */
+    public static final int CATEGORY_SLOTS = 16;
+
+    // Equality lookup on the indexed PRODUCTS.category_name_portuguese, fed by CategoryDictionary.
+    // Unused slots repeat the last category so the statement text, and its cached plan, never changes.
+    public static final String SELLERS_IN_CATEGORIES =
+            "SELECT DISTINCT " +
+            "    s.seller_id, " +
+            "    g.geolocation_city AS seller_city, " +
+            "    g.geolocation_state AS seller_state, " +
+            "    COUNT(DISTINCT oi.order_id) AS total_orders " +
+            "FROM PRODUCTS p " +
+            "JOIN ORDER_ITEMS oi ON oi.product_id = p.product_id " +
+            "JOIN SELLERS s ON s.seller_id = oi.seller_id " +
+            "JOIN GEOLOCATION g ON s.seller_zip_code_prefix = g.zip_code_prefix " +
+            "WHERE p.category_name_portuguese IN (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "GROUP BY s.seller_id, g.geolocation_city, g.geolocation_state " +
+            "ORDER BY total_orders DESC";
+
+    // Name search over both category names, for more matches than SELLERS_IN_CATEGORIES has slots.
+    // Bind the same LIKE pattern to both parameters.
+    public static final String SELLERS_BY_CATEGORY_NAME =
+            "SELECT DISTINCT " +
+            "    s.seller_id, " +
+            "    g.geolocation_city AS seller_city, " +
+            "    g.geolocation_state AS seller_state, " +
+            "    COUNT(DISTINCT oi.order_id) AS total_orders " +
+            "FROM PRODUCTS p " +
+            "JOIN ORDER_ITEMS oi ON oi.product_id = p.product_id " +
+            "JOIN SELLERS s ON s.seller_id = oi.seller_id " +
+            "JOIN GEOLOCATION g ON s.seller_zip_code_prefix = g.zip_code_prefix " +
+            "LEFT JOIN CATEGORIES c ON p.category_name_portuguese = c.category_name_portuguese " +
+            "WHERE p.category_name_portuguese LIKE ? OR c.category_name_english LIKE ? " +
+            "GROUP BY s.seller_id, g.geolocation_city, g.geolocation_state " +
+            "ORDER BY total_orders DESC";
+
+    // ==================== QUERY REGISTRY ====================
+
+    private static final Map<String, String> ALL_QUERIES = new LinkedHashMap<>();
+    private static final Map<String, String> QUERY_NAMES = new HashMap<>();
+    private static final Map<String, List<Object[]>> SAMPLE_PARAMETERS = new HashMap<>();
+
+    static {
+        ALL_QUERIES.put("HIGH_VALUE_CUSTOMER_STATES", HIGH_VALUE_CUSTOMER_STATES);
+        ALL_QUERIES.put("TOP_SELLING_CATEGORIES", TOP_SELLING_CATEGORIES);
+        ALL_QUERIES.put("STATES_WITH_CUSTOMERS_NO_ORDERS", STATES_WITH_CUSTOMERS_NO_ORDERS);
+        ALL_QUERIES.put("HIGHEST_SALES_GEOLOCATION", HIGHEST_SALES_GEOLOCATION);
+        ALL_QUERIES.put("SELLER_SUCCESS_RATE", SELLER_SUCCESS_RATE);
+        ALL_QUERIES.put("UNUSED_PRODUCT_CATALOG", UNUSED_PRODUCT_CATALOG);
+        ALL_QUERIES.put("STATES_WITH_CUSTOMERS_NO_SELLERS", STATES_WITH_CUSTOMERS_NO_SELLERS);
+        ALL_QUERIES.put("SINGLE_PRODUCT_SELLERS", SINGLE_PRODUCT_SELLERS);
+        ALL_QUERIES.put("ORDER_REVIEW_RATE", ORDER_REVIEW_RATE);
+        ALL_QUERIES.put("WORST_RATED_CATEGORY", WORST_RATED_CATEGORY);
+        ALL_QUERIES.put("ORDERS_PAID_IN_FULL", ORDERS_PAID_IN_FULL);
+        ALL_QUERIES.put("REVIEW_SCORE_EXTREMES", REVIEW_SCORE_EXTREMES);
+        ALL_QUERIES.put("MOST_COMMON_PAYMENT_TYPE_BY_STATE", MOST_COMMON_PAYMENT_TYPE_BY_STATE);
+        ALL_QUERIES.put("AVG_INSTALLMENTS_BY_PAYMENT_TYPE", AVG_INSTALLMENTS_BY_PAYMENT_TYPE);
+        ALL_QUERIES.put("REPEAT_PURCHASE_CUSTOMERS", REPEAT_PURCHASE_CUSTOMERS);
+        ALL_QUERIES.put("AVG_TIME_BETWEEN_ORDERS", AVG_TIME_BETWEEN_ORDERS);
+        ALL_QUERIES.put("DELIVERY_PERFORMANCE_BY_STATE", DELIVERY_PERFORMANCE_BY_STATE);
+        ALL_QUERIES.put("CATEGORY_PERFORMANCE_BY_QUARTER", CATEGORY_PERFORMANCE_BY_QUARTER);
+        ALL_QUERIES.put("REVENUE_BY_STATE_AND_YEAR", REVENUE_BY_STATE_AND_YEAR);
+        ALL_QUERIES.put("SELLERS_BY_CATEGORY", SELLERS_BY_CATEGORY);
+
+        for (Map.Entry<String, String> entry : ALL_QUERIES.entrySet()) {
+            QUERY_NAMES.put(entry.getValue(), entry.getKey());
+        }
+        // Reached through the category dictionary rather than listed as a report
+        QUERY_NAMES.put(SELLERS_IN_CATEGORIES, "SELLERS_IN_CATEGORIES");
+        QUERY_NAMES.put(SELLERS_BY_CATEGORY_NAME, "SELLERS_BY_CATEGORY_NAME");
+
+        SAMPLE_PARAMETERS.put("REVENUE_BY_STATE_AND_YEAR", Arrays.asList(
+                new Object[] {"SP", "2017"},
+                new Object[] {"RJ", "2018"},
+                new Object[] {"MG", "2016"}));
+        SAMPLE_PARAMETERS.put("SELLERS_BY_CATEGORY", Arrays.asList(
+                new Object[] {"%furniture%"},
+                new Object[] {"%health%"},
+                new Object[] {"%sports%"}));
+    }
+
+    /**
+     * Returns every report query keyed by its constant name, in menu order
+     */
+    public static Map<String, String> getAllQueries() {
+        return Collections.unmodifiableMap(ALL_QUERIES);
+    }
+
+    /**
+     * Looks up a query by its constant name (case-insensitive)
+     * @return The SQL, or null if no query has that name
+     */
+    public static String getQuery(String name) {
+        return name == null ? null : ALL_QUERIES.get(name.trim().toUpperCase());
+    }
+
+    /**
+     * Returns the constant name of a query, or null if it is not a QueryManager query
+     */
+    public static String getQueryName(String sql) {
+        return sql == null ? null : QUERY_NAMES.get(sql);
+    }
+
+    /**
+     * Returns representative parameter sets for a parameterized query, used by the
+     * test and benchmark tools. Queries without parameters get a single empty set.
+     */
+    public static List<Object[]> getSampleParameterSets(String name) {
+        List<Object[]> sets = SAMPLE_PARAMETERS.get(name);
+        return sets != null ? sets : Collections.singletonList(new Object[0]);
+    }
+
+    /**
+     * Binds category names to the SELLERS_IN_CATEGORIES slots, repeating the last one
+     * @param portugueseNames Between 1 and CATEGORY_SLOTS category names
+     */
+    public static Object[] categoryParameters(List<String> portugueseNames) {
+        if (portugueseNames.isEmpty() || portugueseNames.size() > CATEGORY_SLOTS) {
+            throw new IllegalArgumentException("Expected 1 to " + CATEGORY_SLOTS + " categories, got "
+                                               + portugueseNames.size());
+        }
+        Object[] params = new Object[CATEGORY_SLOTS];
+        for (int i = 0; i < CATEGORY_SLOTS; i++) {
+            params[i] = portugueseNames.get(Math.min(i, portugueseNames.size() - 1));
+        }
+        return params;
+    }
+
+    /**
+     * Counts the ? placeholders a query expects
+     */
+    public static int getParameterCount(String sql) {
+        int count = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
 }
@@ -0,0 +1,312 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records per-query latency history since startup.
+ * Each query name gets histograms of execution time, time to first row,
+ * rows returned and bytes formatted. Recording is lock-free: buckets are
+ * LongAdders, so concurrent executions never contend on a shared counter.
+ */
+public class QueryMetrics {
+    public static final String METRICS_DIR = "metrics/";
+
+    private static final Map<String, QueryStats> STATS = new ConcurrentHashMap<>();
+    private static final long STARTED_AT = System.currentTimeMillis();
+
+    /**
+     * Log-linear histogram in the style of HdrHistogram: values below 16 are exact,
+     * larger values fall into 16 sub-buckets per power of two (at most 6.25% error).
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        // Buckets are created on first use so idle histograms stay small
+        private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<>(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        public void record(long value) {
+            long v = Math.max(value, 0);
+            int index = bucketIndex(v);
+            LongAdder bucket = buckets.get(index);
+            if (bucket == null) {
+                buckets.compareAndSet(index, null, new LongAdder());
+                bucket = buckets.get(index);
+            }
+            bucket.increment();
+            count.increment();
+            sum.add(v);
+            max.accumulate(v);
+        }
+
+        static int bucketIndex(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+            return (shift + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long bucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            int subBucket = index % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1L) << shift) - 1;
+        }
+
+        /**
+         * @param percentile Percentile between 0 and 100
+         * @return Upper bound of the bucket holding that percentile, capped at the maximum
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                LongAdder bucket = buckets.get(i);
+                if (bucket != null) {
+                    counts[i] = bucket.sum();
+                    total += counts[i];
+                }
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(bucketUpperBound(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+    }
+
+    /**
+     * Histograms for one query
+     */
+    public static class QueryStats {
+        public final Histogram executionNanos = new Histogram();
+        public final Histogram firstRowNanos = new Histogram();
+        public final Histogram rows = new Histogram();
+        public final Histogram bytesFormatted = new Histogram();
+        public final LongAdder failures = new LongAdder();
+    }
+
+    /**
+     * Measurements for one execution, filled in as the query runs and is displayed
+     */
+    public static class Sample {
+        final String queryName;
+        final long startNanos = System.nanoTime();
+        long executedNanos = -1;
+        long firstRowNanos = -1;
+        long rows;
+        long bytes;
+
+        Sample(String queryName) {
+            this.queryName = queryName;
+        }
+
+        /** The statement has returned from the server */
+        public void executed() {
+            if (executedNanos < 0) {
+                executedNanos = System.nanoTime() - startNanos;
+            }
+        }
+
+        /** The first row is ready to display */
+        public void firstRow() {
+            if (firstRowNanos < 0) {
+                firstRowNanos = System.nanoTime() - startNanos;
+            }
+        }
+
+        public void addRows(long count, long formattedBytes) {
+            rows += count;
+            bytes += formattedBytes;
+        }
+
+        /** Time until the server returned results, or the time so far if it has not */
+        public long getExecutionNanos() {
+            return executedNanos >= 0 ? executedNanos : System.nanoTime() - startNanos;
+        }
+    }
+
+    /**
+     * Starts measuring an execution
+     * @param queryName QueryManager constant name or report title
+     */
+    public static Sample start(String queryName) {
+        return new Sample(queryName);
+    }
+
+    /**
+     * Records a completed execution
+     */
+    public static void record(Sample sample) {
+        QueryStats stats = STATS.computeIfAbsent(sample.queryName, k -> new QueryStats());
+        long elapsed = System.nanoTime() - sample.startNanos;
+        stats.executionNanos.record(sample.executedNanos >= 0 ? sample.executedNanos : elapsed);
+        if (sample.firstRowNanos >= 0) {
+            stats.firstRowNanos.record(sample.firstRowNanos);
+        }
+        stats.rows.record(sample.rows);
+        stats.bytesFormatted.record(sample.bytes);
+    }
+
+    /**
+     * Records an execution that failed, timed out or was cancelled
+     */
+    public static void recordFailure(Sample sample) {
+        STATS.computeIfAbsent(sample.queryName, k -> new QueryStats()).failures.increment();
+    }
+
+    /**
+     * Returns the stats for one query, or null if it has not run since startup
+     */
+    public static QueryStats getStats(String queryName) {
+        return STATS.get(queryName);
+    }
+
+    /**
+     * Returns the stats for every query that has run, in QueryManager order then by name
+     */
+    public static Map<String, QueryStats> getStats() {
+        Map<String, QueryStats> ordered = new LinkedHashMap<>();
+        for (String name : QueryManager.getAllQueries().keySet()) {
+            QueryStats stats = STATS.get(name);
+            if (stats != null) {
+                ordered.put(name, stats);
+            }
+        }
+        List<String> others = new ArrayList<>(STATS.keySet());
+        others.removeAll(ordered.keySet());
+        Collections.sort(others);
+        for (String name : others) {
+            ordered.put(name, STATS.get(name));
+        }
+        return ordered;
+    }
+
+    /**
+     * Prints p50/p95/p99/max per query since startup
+     */
+    public static void printMetricsView() {
+        Map<String, QueryStats> stats = getStats();
+
+        System.out.println("\n╔══════════════════════════════════╦═══════╦══════════════════════════════════════════╦══════════╦══════════════╗");
+        System.out.println("║                                  ║       ║ Execution Time (ms)                      ║ 1st Row  ║ Rows         ║");
+        System.out.println("║ Query                            ║ Runs  ║      p50       p95       p99       max   ║ p95 (ms) ║ p95 / max    ║");
+        System.out.println("╠══════════════════════════════════╬═══════╬══════════════════════════════════════════╬══════════╬══════════════╣");
+
+        if (stats.isEmpty()) {
+            System.out.println("║ No queries executed since startup.                                                                           ║");
+        }
+        for (Map.Entry<String, QueryStats> entry : stats.entrySet()) {
+            QueryStats s = entry.getValue();
+            System.out.printf("║ %-32.32s ║ %,5d ║ %9.2f %9.2f %9.2f %9.2f  ║ %8.2f ║ %,6d/%,-6d ║%n",
+                              entry.getKey(), s.executionNanos.getCount(),
+                              millis(s.executionNanos.getPercentile(50)),
+                              millis(s.executionNanos.getPercentile(95)),
+                              millis(s.executionNanos.getPercentile(99)),
+                              millis(s.executionNanos.getMax()),
+                              millis(s.firstRowNanos.getPercentile(95)),
+                              s.rows.getPercentile(95), s.rows.getMax());
+        }
+        System.out.println("╚══════════════════════════════════╩═══════╩══════════════════════════════════════════╩══════════╩══════════════╝");
+        long uptimeSeconds = (System.currentTimeMillis() - STARTED_AT) / 1000;
+        System.out.println("Collected over " + uptimeSeconds + " seconds since startup.");
+    }
+
+    /**
+     * Writes all histograms as JSON for trending
+     * @return Path of the file written
+     */
+    public static String dumpJson() throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        File dir = new File(METRICS_DIR);
+        dir.mkdirs();
+        File file = new File(dir, "query-metrics-" + timestamp + ".json");
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"started_at\":").append(STARTED_AT)
+            .append(",\"captured_at\":").append(System.currentTimeMillis())
+            .append(",\"queries\":{");
+        boolean first = true;
+        for (Map.Entry<String, QueryStats> entry : getStats().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            QueryStats s = entry.getValue();
+            ResultExporter.appendJsonString(json, entry.getKey());
+            json.append(":{");
+            appendHistogram(json, "execution_ns", s.executionNanos).append(',');
+            appendHistogram(json, "first_row_ns", s.firstRowNanos).append(',');
+            appendHistogram(json, "rows", s.rows).append(',');
+            appendHistogram(json, "bytes_formatted", s.bytesFormatted);
+            json.append(",\"failures\":").append(s.failures.sum());
+            json.append('}');
+        }
+        json.append("}}\n");
+
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(json.toString());
+        }
+        return file.getPath();
+    }
+
+    private static StringBuilder appendHistogram(StringBuilder json, String name, Histogram h) {
+        return json.append('"').append(name).append("\":{")
+                   .append("\"count\":").append(h.getCount())
+                   .append(",\"mean\":").append(String.format(Locale.ROOT, "%.1f", h.getMean()))
+                   .append(",\"p50\":").append(h.getPercentile(50))
+                   .append(",\"p95\":").append(h.getPercentile(95))
+                   .append(",\"p99\":").append(h.getPercentile(99))
+                   .append(",\"max\":").append(h.getMax())
+                   .append('}');
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Captures the actual execution plan and IO/CPU statistics of a query.
+ * Runs the query with SET STATISTICS XML/IO/TIME enabled and saves the results under
+ * plans/QUERY_NAME/ as TIMESTAMP.sqlplan (plan XML, opens in SSMS) and
+ * TIMESTAMP.properties (summary used by the menu), so plans can be diffed when latency regresses.
+ */
+public class QueryPlanCapture {
+    public static final String PLAN_DIR = "plans/";
+
+    private static final Pattern TABLE_IO = Pattern.compile(
+            "Table '([^']+)'\\. Scan count (\\d+), logical reads (\\d+), physical reads (\\d+)");
+    private static final Pattern CPU_TIME = Pattern.compile(
+            "CPU time = (\\d+) ms,\\s*elapsed time = (\\d+) ms");
+
+    /**
+     * Statistics collected for one execution
+     */
+    public static class PlanCapture {
+        public String queryName;
+        public String timestamp;
+        public long rows;
+        public long cpuMs;
+        public long elapsedMs;
+        public long compileCpuMs;
+        public long clientMs;
+        public String planXml;
+        public final Map<String, long[]> tableIo = new LinkedHashMap<>(); // table -> {scans, logical, physical}
+
+        public long getTotalLogicalReads() {
+            long total = 0;
+            for (long[] io : tableIo.values()) {
+                total += io[1];
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Runs a query with statistics enabled and saves the plan and summary
+     * @param queryName QueryManager constant name used for the directory
+     * @param sql Query to explain
+     * @param params Query parameters
+     * @return The captured statistics
+     */
+    public static PlanCapture capture(String queryName, String sql, Object... params)
+            throws SQLException, IOException {
+        PlanCapture capture = new PlanCapture();
+        capture.queryName = queryName;
+        capture.timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+
+        Connection conn = DatabaseConnection.getConnection();
+        try (Statement setStmt = conn.createStatement()) {
+            setStmt.execute("SET STATISTICS XML ON; SET STATISTICS IO ON; SET STATISTICS TIME ON");
+            setStmt.clearWarnings();
+
+            long startTime = System.currentTimeMillis();
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setQueryTimeout(QueryExecutor.getQueryTimeout(sql));
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+
+                boolean isResultSet = stmt.execute();
+                while (true) {
+                    if (isResultSet) {
+                        try (ResultSet rs = stmt.getResultSet()) {
+                            readResultSet(rs, capture);
+                        }
+                    } else if (stmt.getUpdateCount() == -1) {
+                        break;
+                    }
+                    collectMessages(stmt.getWarnings(), capture);
+                    stmt.clearWarnings();
+                    isResultSet = stmt.getMoreResults();
+                }
+                collectMessages(stmt.getWarnings(), capture);
+            }
+            capture.clientMs = System.currentTimeMillis() - startTime;
+        } finally {
+            try (Statement resetStmt = conn.createStatement()) {
+                resetStmt.execute("SET STATISTICS XML OFF; SET STATISTICS IO OFF; SET STATISTICS TIME OFF");
+            }
+        }
+
+        save(capture);
+        return capture;
+    }
+
+    /**
+     * Distinguishes the showplan result set from the query's own rows
+     */
+    private static void readResultSet(ResultSet rs, PlanCapture capture) throws SQLException {
+        String label = rs.getMetaData().getColumnLabel(1);
+        if (rs.getMetaData().getColumnCount() == 1 && label.contains("Showplan")) {
+            if (rs.next()) {
+                capture.planXml = rs.getString(1);
+            }
+            return;
+        }
+        while (rs.next()) {
+            capture.rows++;
+        }
+    }
+
+    /**
+     * Parses STATISTICS IO and STATISTICS TIME informational messages
+     */
+    private static void collectMessages(SQLWarning warning, PlanCapture capture) {
+        for (SQLWarning w = warning; w != null; w = w.getNextWarning()) {
+            String message = w.getMessage();
+            if (message == null) {
+                continue;
+            }
+
+            Matcher io = TABLE_IO.matcher(message);
+            while (io.find()) {
+                long[] totals = capture.tableIo.computeIfAbsent(io.group(1), k -> new long[3]);
+                totals[0] += Long.parseLong(io.group(2));
+                totals[1] += Long.parseLong(io.group(3));
+                totals[2] += Long.parseLong(io.group(4));
+            }
+
+            Matcher time = CPU_TIME.matcher(message);
+            while (time.find()) {
+                long cpu = Long.parseLong(time.group(1));
+                if (message.contains("parse and compile")) {
+                    capture.compileCpuMs += cpu;
+                } else {
+                    capture.cpuMs += cpu;
+                    capture.elapsedMs += Long.parseLong(time.group(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums the logical reads reported by STATISTICS IO messages
+     */
+    static long countLogicalReads(SQLWarning warning) {
+        long total = 0;
+        for (SQLWarning w = warning; w != null; w = w.getNextWarning()) {
+            String message = w.getMessage();
+            if (message == null) {
+                continue;
+            }
+            Matcher io = TABLE_IO.matcher(message);
+            while (io.find()) {
+                total += Long.parseLong(io.group(3));
+            }
+        }
+        return total;
+    }
+
+    private static void save(PlanCapture capture) throws IOException {
+        File dir = new File(PLAN_DIR + capture.queryName);
+        dir.mkdirs();
+
+        if (capture.planXml != null) {
+            try (Writer w = new OutputStreamWriter(
+                    new FileOutputStream(new File(dir, capture.timestamp + ".sqlplan")), StandardCharsets.UTF_8)) {
+                w.write(capture.planXml);
+            }
+        }
+
+        Properties summary = new Properties();
+        summary.setProperty("query", capture.queryName);
+        summary.setProperty("timestamp", capture.timestamp);
+        summary.setProperty("rows", String.valueOf(capture.rows));
+        summary.setProperty("cpu_ms", String.valueOf(capture.cpuMs));
+        summary.setProperty("elapsed_ms", String.valueOf(capture.elapsedMs));
+        summary.setProperty("compile_cpu_ms", String.valueOf(capture.compileCpuMs));
+        summary.setProperty("client_ms", String.valueOf(capture.clientMs));
+        summary.setProperty("logical_reads", String.valueOf(capture.getTotalLogicalReads()));
+        for (Map.Entry<String, long[]> entry : capture.tableIo.entrySet()) {
+            long[] io = entry.getValue();
+            summary.setProperty("table." + entry.getKey(), io[0] + "," + io[1] + "," + io[2]);
+        }
+
+        try (OutputStream out = new FileOutputStream(new File(dir, capture.timestamp + ".properties"))) {
+            summary.store(out, "Execution statistics for " + capture.queryName);
+        }
+    }
+
+    /**
+     * Loads the saved summaries for a query, oldest first
+     */
+    public static List<Properties> loadSummaries(String queryName) throws IOException {
+        List<Properties> summaries = new ArrayList<>();
+        File[] files = new File(PLAN_DIR + queryName).listFiles((d, name) -> name.endsWith(".properties"));
+        if (files == null) {
+            return summaries;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            Properties p = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                p.load(in);
+            }
+            summaries.add(p);
+        }
+        return summaries;
+    }
+
+    /**
+     * Prints the statistics of a single capture
+     */
+    public static void printCapture(PlanCapture capture) {
+        System.out.println("\n┌────────────────────────────────────────────────────────────────┐");
+        System.out.printf("│ %-62s │%n", "EXECUTION STATISTICS: " + capture.queryName);
+        System.out.println("├─────────────────────────────────┬──────────────────────────────┤");
+        System.out.printf("│ %-31s │ %,26d │%n", "Rows Returned", capture.rows);
+        System.out.printf("│ %-31s │ %,26d │%n", "Server CPU Time (ms)", capture.cpuMs);
+        System.out.printf("│ %-31s │ %,26d │%n", "Server Elapsed Time (ms)", capture.elapsedMs);
+        System.out.printf("│ %-31s │ %,26d │%n", "Compile CPU Time (ms)", capture.compileCpuMs);
+        System.out.printf("│ %-31s │ %,26d │%n", "Client Round Trip (ms)", capture.clientMs);
+        System.out.printf("│ %-31s │ %,26d │%n", "Total Logical Reads", capture.getTotalLogicalReads());
+        System.out.println("├─────────────────────────────────┼──────────────────────────────┤");
+        System.out.printf("│ %-31s │ %26s │%n", "Table", "Scans / Logical / Physical");
+        System.out.println("├─────────────────────────────────┼──────────────────────────────┤");
+        for (Map.Entry<String, long[]> entry : capture.tableIo.entrySet()) {
+            long[] io = entry.getValue();
+            System.out.printf("│ %-31s │ %26s │%n", entry.getKey(),
+                              String.format("%,d / %,d / %,d", io[0], io[1], io[2]));
+        }
+        System.out.println("└─────────────────────────────────┴──────────────────────────────┘");
+        if (capture.planXml != null) {
+            System.out.println("Plan saved to " + PLAN_DIR + capture.queryName + "/" + capture.timestamp + ".sqlplan");
+        } else {
+            System.out.println("WARNING: The server did not return an execution plan.");
+        }
+    }
+
+    /**
+     * Prints one line per saved capture for every query that has been explained
+     */
+    public static void printSummaryView() throws IOException {
+        System.out.println("\n╔════════════════════════════════════╦═════════════════╦═══════════╦═══════════╦═══════════════╗");
+        System.out.println("║ Query                              ║ Captured        ║ CPU (ms)  ║ Elap (ms) ║ Logical Reads ║");
+        System.out.println("╠════════════════════════════════════╬═════════════════╬═══════════╬═══════════╬═══════════════╣");
+
+        int captures = 0;
+        for (String queryName : QueryManager.getAllQueries().keySet()) {
+            for (Properties p : loadSummaries(queryName)) {
+                System.out.printf("║ %-34.34s ║ %-15s ║ %,9d ║ %,9d ║ %,13d ║%n",
+                                  queryName, p.getProperty("timestamp", "?"),
+                                  Long.parseLong(p.getProperty("cpu_ms", "0")),
+                                  Long.parseLong(p.getProperty("elapsed_ms", "0")),
+                                  Long.parseLong(p.getProperty("logical_reads", "0")));
+                captures++;
+            }
+        }
+
+        System.out.println("╚════════════════════════════════════╩═════════════════╩═══════════╩═══════════╩═══════════════╝");
+        if (captures == 0) {
+            System.out.println("No plans captured yet.");
+        } else {
+            System.out.println(captures + " capture(s) stored under " + PLAN_DIR);
+        }
+    }
+}
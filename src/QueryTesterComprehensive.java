@@ -1,6 +1,24 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Comprehensive query tester for all queries in QueryManager
@@ -8,6 +26,11 @@ import java.util.List;
  * - Whether it executes without errors
  * - How many rows it returns
  * - Sample of first row data
+ *
+ * With --bench it runs as a benchmark instead: every query and sample parameter set
+ * is warmed up and timed over N iterations, latency percentiles, rows and logical
+ * reads are written to benchmarks/, and queries that regress against a stored
+ * baseline beyond a threshold are flagged (exit code 1).
  */
 public class QueryTesterComprehensive {
 
@@ -32,6 +55,10 @@ public class QueryTesterComprehensive {
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--bench")) {
+            System.exit(runBenchmarks(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
         System.out.println("\n╔═════════════════════════════════════════════════════════════════╗");
         System.out.println("║        COMPREHENSIVE QUERY TESTING SUITE                       ║");
         System.out.println("╚═════════════════════════════════════════════════════════════════╝\n");
@@ -71,6 +98,12 @@ public class QueryTesterComprehensive {
         // Parameterized queries - test with sample values
         tests.add(new QueryTest("Revenue by State and Year (SP, 2017)", QueryManager.REVENUE_BY_STATE_AND_YEAR, "SP", "2017"));
         tests.add(new QueryTest("Sellers by Category (furniture)", QueryManager.SELLERS_BY_CATEGORY, "%furniture%"));
+        Object[] furniture = QueryManager.categoryParameters(Arrays.asList(
+                "moveis_decoracao", "moveis_escritorio", "moveis_quarto", "moveis_sala"));
+        tests.add(new QueryTest("Sellers in Categories (furniture)", QueryManager.SELLERS_IN_CATEGORIES,
+                                Arrays.copyOf(furniture, furniture.length, String[].class)));
+        tests.add(new QueryTest("Sellers by Category Name (moveis)", QueryManager.SELLERS_BY_CATEGORY_NAME,
+                                "%moveis%", "%moveis%"));
 
         int passed = 0;
         int failed = 0;
@@ -185,4 +218,366 @@ public class QueryTesterComprehensive {
 
         return rowCount;
     }
+
+    // ==================== BENCHMARK MODE ====================
+
+    private static final String BENCHMARK_DIR = "benchmarks/";
+    private static final Pattern BASELINE_ENTRY = Pattern.compile("^\\s*\"([^\"]+)\"\\s*:\\s*\\{(.*)\\}");
+    private static final Pattern BASELINE_FIELD = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.]+)");
+
+    /**
+     * Settings for a benchmark run, parsed from the command line
+     */
+    private static class BenchmarkOptions {
+        int warmup = 2;
+        int iterations = 10;
+        double thresholdPercent = 20.0;
+        double minDeltaMs = 5.0;
+        String baselineFile = BENCHMARK_DIR + "baseline.json";
+        boolean saveBaseline = false;
+        String queryFilter = null;
+    }
+
+    /**
+     * Measurements for one query with one parameter set
+     */
+    static class BenchmarkResult {
+        final String key;
+        final double[] latenciesMs;
+        long rows;
+        long logicalReads;
+
+        BenchmarkResult(String key, int iterations) {
+            this.key = key;
+            this.latenciesMs = new double[iterations];
+        }
+
+        /**
+         * Nearest-rank percentile of the measured latencies (sorted after the run)
+         */
+        double percentile(double p) {
+            int rank = (int) Math.ceil(p / 100.0 * latenciesMs.length);
+            return latenciesMs[Math.max(0, Math.min(rank, latenciesMs.length) - 1)];
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double latency : latenciesMs) {
+                sum += latency;
+            }
+            return sum / latenciesMs.length;
+        }
+    }
+
+    /**
+     * Runs every query as a benchmark and compares it against the stored baseline
+     * @return Process exit code: 0 if nothing regressed, 1 on regressions or errors, 2 on bad arguments
+     */
+    private static int runBenchmarks(String[] args) {
+        BenchmarkOptions options;
+        try {
+            options = parseBenchmarkOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: QueryTesterComprehensive --bench [--warmup N] [--iterations N]");
+            System.out.println("       [--threshold PERCENT] [--min-delta-ms MS] [--baseline FILE]");
+            System.out.println("       [--save-baseline] [--query NAME]");
+            return 2;
+        }
+
+        System.out.println("\n╔═════════════════════════════════════════════════════════════════╗");
+        System.out.println("║        QUERY BENCHMARK SUITE                                    ║");
+        System.out.println("╚═════════════════════════════════════════════════════════════════╝");
+        System.out.printf("Warmup: %d, measured iterations: %d, regression threshold: %.0f%%%n%n",
+                          options.warmup, options.iterations, options.thresholdPercent);
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        int failed = 0;
+
+        for (Map.Entry<String, String> query : QueryManager.getAllQueries().entrySet()) {
+            if (options.queryFilter != null && !query.getKey().equalsIgnoreCase(options.queryFilter)) {
+                continue;
+            }
+            for (Object[] params : QueryManager.getSampleParameterSets(query.getKey())) {
+                String key = benchmarkKey(query.getKey(), params);
+                System.out.printf("Benchmarking %-50s ", key + "...");
+                try {
+                    BenchmarkResult result = benchmarkQuery(key, query.getValue(), params,
+                                                            options.warmup, options.iterations);
+                    results.add(result);
+                    System.out.printf("p50 %.1f ms%n", result.percentile(50));
+                } catch (SQLException e) {
+                    System.out.println("FAILED");
+                    System.out.println("  Details: " + e.getMessage());
+                    failed++;
+                }
+            }
+        }
+
+        Map<String, Map<String, Double>> baseline = null;
+        File baselineFile = new File(options.baselineFile);
+        if (baselineFile.exists()) {
+            try {
+                baseline = loadBaseline(baselineFile);
+            } catch (IOException e) {
+                System.out.println("WARNING: Could not read baseline " + baselineFile + ": " + e.getMessage());
+            }
+        }
+
+        int regressions = printBenchmarkResults(results, baseline, options);
+
+        try {
+            String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            File resultsFile = new File(BENCHMARK_DIR + "results-" + timestamp + ".json");
+            writeBenchmarkJson(resultsFile, results, options);
+            System.out.println("Results written to " + resultsFile.getPath());
+            if (options.saveBaseline) {
+                writeBenchmarkJson(baselineFile, results, options);
+                System.out.println("Baseline saved to " + baselineFile.getPath());
+            } else if (baseline == null) {
+                System.out.println("No baseline at " + baselineFile.getPath() + "; rerun with --save-baseline to create one.");
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not write benchmark results.");
+            System.out.println("Details: " + e.getMessage());
+            return 1;
+        }
+
+        if (failed > 0 || regressions > 0) {
+            System.out.printf("%n%d regression(s), %d failed quer%s.%n",
+                              regressions, failed, failed == 1 ? "y" : "ies");
+            return 1;
+        }
+        System.out.println("\nNo regressions detected.");
+        return 0;
+    }
+
+    /**
+     * Name a query and parameter set are reported under, e.g. REVENUE_BY_STATE_AND_YEAR[SP,2017]
+     */
+    static String benchmarkKey(String queryName, Object[] params) {
+        return params.length == 0 ? queryName : queryName + Arrays.toString(params).replace(" ", "");
+    }
+
+    private static BenchmarkOptions parseBenchmarkOptions(String[] args) {
+        BenchmarkOptions options = new BenchmarkOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--save-baseline")) {
+                options.saveBaseline = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--warmup":
+                        options.warmup = Integer.parseInt(value);
+                        break;
+                    case "--iterations":
+                        options.iterations = Integer.parseInt(value);
+                        break;
+                    case "--threshold":
+                        options.thresholdPercent = Double.parseDouble(value);
+                        break;
+                    case "--min-delta-ms":
+                        options.minDeltaMs = Double.parseDouble(value);
+                        break;
+                    case "--baseline":
+                        options.baselineFile = value;
+                        break;
+                    case "--query":
+                        options.queryFilter = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for " + arg + ": " + value);
+            }
+        }
+        if (options.warmup < 0 || options.iterations < 1) {
+            throw new IllegalArgumentException("Warmup must be >= 0 and iterations >= 1");
+        }
+        return options;
+    }
+
+    /**
+     * Warms a query up, times the measured iterations, then runs it once more
+     * with STATISTICS IO on so the logical reads do not skew the timings
+     */
+    static BenchmarkResult benchmarkQuery(String key, String sql, Object[] params,
+                                          int warmup, int iterations) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        BenchmarkResult result = new BenchmarkResult(key, iterations);
+
+        for (int i = 0; i < warmup; i++) {
+            runOnce(conn, sql, params, null);
+        }
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            result.rows = runOnce(conn, sql, params, null);
+            result.latenciesMs[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(result.latenciesMs);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET STATISTICS IO ON");
+            try {
+                long[] logicalReads = new long[1];
+                runOnce(conn, sql, params, logicalReads);
+                result.logicalReads = logicalReads[0];
+            } finally {
+                stmt.execute("SET STATISTICS IO OFF");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Executes a query and reads every row
+     * @param logicalReads If not null, receives the logical reads reported by STATISTICS IO
+     * @return Number of rows returned
+     */
+    private static long runOnce(Connection conn, String sql, Object[] params, long[] logicalReads)
+            throws SQLException {
+        long rows = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setQueryTimeout(QueryExecutor.getQueryTimeout(sql));
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        rs.getObject(i);
+                    }
+                    rows++;
+                }
+            }
+            if (logicalReads != null) {
+                logicalReads[0] = QueryPlanCapture.countLogicalReads(pstmt.getWarnings());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Prints the results table with a comparison against the baseline
+     * @return Number of regressed queries
+     */
+    private static int printBenchmarkResults(List<BenchmarkResult> results,
+                                             Map<String, Map<String, Double>> baseline,
+                                             BenchmarkOptions options) {
+        double factor = 1 + options.thresholdPercent / 100.0;
+        int regressions = 0;
+
+        System.out.println("\n╔════════════════════════════════════════╦═════════╦═════════╦═════════╦═════════╦═════════╦═══════════╦════════════╗");
+        System.out.println("║ Query                                  ║ p50 ms  ║ p95 ms  ║ p99 ms  ║ max ms  ║ Rows    ║ Log Reads ║ vs Base    ║");
+        System.out.println("╠════════════════════════════════════════╬═════════╬═════════╬═════════╬═════════╬═════════╬═══════════╬════════════╣");
+
+        for (BenchmarkResult r : results) {
+            String status;
+            Map<String, Double> base = baseline == null ? null : baseline.get(r.key);
+            if (base == null) {
+                status = baseline == null ? "-" : "NEW";
+            } else {
+                double baseP50 = base.getOrDefault("p50_ms", 0.0);
+                double baseReads = base.getOrDefault("logical_reads", 0.0);
+                double p50 = r.percentile(50);
+                boolean slower = p50 > baseP50 * factor && p50 - baseP50 > options.minDeltaMs;
+                boolean moreReads = r.logicalReads > baseReads * factor;
+                if (slower || moreReads) {
+                    status = "REGRESSED";
+                    regressions++;
+                } else if (baseP50 > 0 && p50 < baseP50 / factor && baseP50 - p50 > options.minDeltaMs) {
+                    status = "faster";
+                } else {
+                    status = "ok";
+                }
+                if (baseP50 > 0) {
+                    status += String.format(" %+.0f%%", (p50 - baseP50) / baseP50 * 100);
+                }
+            }
+            System.out.printf("║ %-38.38s ║ %7.1f ║ %7.1f ║ %7.1f ║ %7.1f ║ %,7d ║ %,9d ║ %-10.10s ║%n",
+                              r.key, r.percentile(50), r.percentile(95), r.percentile(99),
+                              r.latenciesMs[r.latenciesMs.length - 1], r.rows, r.logicalReads, status);
+        }
+        System.out.println("╚════════════════════════════════════════╩═════════╩═════════╩═════════╩═════════╩═════════╩═══════════╩════════════╝");
+
+        if (baseline != null) {
+            for (BenchmarkResult r : results) {
+                Map<String, Double> base = baseline.get(r.key);
+                if (base != null && base.containsKey("rows") && base.get("rows").longValue() != r.rows) {
+                    System.out.printf("WARNING: %s returned %,d rows (baseline %,d); data may have changed.%n",
+                                      r.key, r.rows, base.get("rows").longValue());
+                }
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Writes results as JSON, one query per line so baselines diff cleanly
+     */
+    private static void writeBenchmarkJson(File file, List<BenchmarkResult> results,
+                                           BenchmarkOptions options) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"created_at\": \"")
+            .append(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date())).append("\",\n");
+        json.append("  \"warmup\": ").append(options.warmup).append(",\n");
+        json.append("  \"iterations\": ").append(options.iterations).append(",\n");
+        json.append("  \"queries\": {\n");
+        for (int i = 0; i < results.size(); i++) {
+            BenchmarkResult r = results.get(i);
+            json.append("    ");
+            ResultExporter.appendJsonString(json, r.key);
+            json.append(": {")
+                .append(String.format(Locale.ROOT,
+                        "\"p50_ms\":%.3f,\"p95_ms\":%.3f,\"p99_ms\":%.3f,\"max_ms\":%.3f,\"mean_ms\":%.3f",
+                        r.percentile(50), r.percentile(95), r.percentile(99),
+                        r.latenciesMs[r.latenciesMs.length - 1], r.mean()))
+                .append(",\"rows\":").append(r.rows)
+                .append(",\"logical_reads\":").append(r.logicalReads)
+                .append('}')
+                .append(i < results.size() - 1 ? ",\n" : "\n");
+        }
+        json.append("  }\n}\n");
+
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(json.toString());
+        }
+    }
+
+    /**
+     * Reads the per-query numbers from a file written by writeBenchmarkJson
+     */
+    private static Map<String, Map<String, Double>> loadBaseline(File file) throws IOException {
+        Map<String, Map<String, Double>> baseline = new LinkedHashMap<>();
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Matcher entry = BASELINE_ENTRY.matcher(line);
+                if (!entry.find()) {
+                    continue;
+                }
+                Map<String, Double> fields = new HashMap<>();
+                Matcher field = BASELINE_FIELD.matcher(entry.group(2));
+                while (field.find()) {
+                    fields.put(field.group(1), Double.parseDouble(field.group(2)));
+                }
+                baseline.put(entry.group(1), fields);
+            }
+        }
+        return baseline;
+    }
 }
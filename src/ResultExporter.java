@@ -0,0 +1,718 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams query results or whole tables to files for downstream jobs.
+ * Rows are read from a forward-only ResultSet and written as they arrive,
+ * so memory use stays constant regardless of result size.
+ *
+ * Formats:
+ * - CSV: RFC 4180 quoting, header row, timestamps in the Olist layout
+ * - JSONL: one JSON object per row
+ * - COLUMNAR: typed binary row groups (see writeColumnar for the layout)
+ *
+ * Optional gzip compression runs on its own thread.
+ *
+ * Usage: java ResultExporter QUERY_NAME|table:NAME csv|jsonl|columnar output-file [--gzip] [params...]
+ */
+public class ResultExporter {
+    public static final String[] TABLES = {
+        "STATES", "GEOLOCATION", "CATEGORIES", "CUSTOMERS", "SELLERS", "PRODUCTS",
+        "ORDERS", "ORDER_ITEMS", "ORDER_PAYMENTS", "ORDER_REVIEWS"
+    };
+    public static final String EXPORT_DIR = "exports/";
+
+    private static final int FETCH_SIZE = 2000;
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final int IO_BUFFER_SIZE = 256 * 1024;
+    private static final int ROW_GROUP_SIZE = 8192;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Column kinds, resolved once from metadata so rows are read without boxing
+    private static final byte KIND_INT = 1;
+    private static final byte KIND_LONG = 2;
+    private static final byte KIND_DOUBLE = 3;
+    private static final byte KIND_DECIMAL = 4;
+    private static final byte KIND_STRING = 5;
+    private static final byte KIND_TIMESTAMP = 6;
+    private static final byte KIND_BOOLEAN = 7;
+
+    private static final byte[] COLUMNAR_MAGIC = {'O', 'L', 'C', 'B'};
+    private static final int COLUMNAR_VERSION = 1;
+
+    public enum Format {
+        CSV("csv"), JSONL("jsonl"), COLUMNAR("olcb");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String name) {
+            for (Format f : values()) {
+                if (f.name().equalsIgnoreCase(name) || f.extension.equalsIgnoreCase(name)) {
+                    return f;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format: " + name);
+        }
+    }
+
+    /**
+     * Summary of a finished export
+     */
+    public static class ExportResult {
+        public final long rows;
+        public final long bytes;
+        public final double seconds;
+
+        ExportResult(long rows, long bytes, double seconds) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.seconds = seconds;
+        }
+
+        public double getRowsPerSecond() {
+            return seconds > 0 ? rows / seconds : rows;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java ResultExporter QUERY_NAME|table:NAME csv|jsonl|columnar output-file [--gzip] [params...]");
+            System.out.println("Queries: " + String.join(", ", QueryManager.getAllQueries().keySet()));
+            System.out.println("Tables:  " + String.join(", ", TABLES));
+            System.exit(1);
+        }
+
+        String source = args[0];
+        Format format = Format.parse(args[1]);
+        String file = args[2];
+        boolean gzip = false;
+        int firstParam = 3;
+        if (args.length > 3 && args[3].equals("--gzip")) {
+            gzip = true;
+            firstParam = 4;
+        }
+        Object[] params = Arrays.copyOfRange(args, firstParam, args.length);
+
+        try {
+            ExportResult result;
+            if (source.regionMatches(true, 0, "table:", 0, 6)) {
+                result = exportTable(source.substring(6), format, file, gzip);
+            } else {
+                String sql = QueryManager.getQuery(source);
+                if (sql == null) {
+                    System.out.println("ERROR: Unknown query '" + source + "'.");
+                    System.exit(1);
+                }
+                result = exportQuery(sql, format, file, gzip, params);
+            }
+            printSummary(result, file);
+        } catch (Exception e) {
+            System.out.println("ERROR: Export failed.");
+            System.out.println("Details: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            DatabaseConnection.closeConnection();
+        }
+    }
+
+    /**
+     * Exports every row of a table
+     * @param table One of {@link #TABLES}
+     */
+    public static ExportResult exportTable(String table, Format format, String file, boolean gzip)
+            throws SQLException, IOException {
+        String tableName = table.trim().toUpperCase();
+        if (!Arrays.asList(TABLES).contains(tableName)) {
+            throw new IllegalArgumentException("Unknown table: " + table);
+        }
+        return exportQuery("SELECT * FROM " + tableName, format, file, gzip);
+    }
+
+    /**
+     * Exports the results of a query
+     * @param sql Query to run (usually a QueryManager constant)
+     * @param format Output format
+     * @param file Output file path; parent directories are created
+     * @param gzip Whether to gzip the output on a background thread
+     * @param params Query parameters
+     */
+    public static ExportResult exportQuery(String sql, Format format, String file, boolean gzip, Object... params)
+            throws SQLException, IOException {
+        Connection conn = DatabaseConnection.getConnection();
+        File outFile = new File(file);
+        if (outFile.getParentFile() != null) {
+            outFile.getParentFile().mkdirs();
+        }
+
+        long startTime = System.currentTimeMillis();
+        CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(outFile));
+        OutputStream target = gzip ? new AsyncGzipOutputStream(counter) : counter;
+        long rows;
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                            ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            stmt.setQueryTimeout(QueryExecutor.getQueryTimeout(sql));
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery();
+                 OutputStream out = new BufferedOutputStream(target, IO_BUFFER_SIZE)) {
+                switch (format) {
+                    case CSV:
+                        rows = writeCsv(rs, out, startTime);
+                        break;
+                    case JSONL:
+                        rows = writeJsonLines(rs, out, startTime);
+                        break;
+                    default:
+                        rows = writeColumnar(rs, out, startTime);
+                        break;
+                }
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            try {
+                target.close();
+            } catch (IOException closeEx) {
+                e.addSuppressed(closeEx);
+            }
+            throw e;
+        }
+
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        return new ExportResult(rows, counter.getCount(), seconds);
+    }
+
+    /**
+     * Prints the row count, size and throughput of an export
+     */
+    public static void printSummary(ExportResult result, String file) {
+        System.out.println(String.format("\n[OK] Exported %,d rows to %s (%,d bytes) in %.2f seconds (%,.0f rows/s)",
+                                         result.rows, file, result.bytes, result.seconds,
+                                         result.getRowsPerSecond()));
+    }
+
+    // ==================== CSV ====================
+
+    private static long writeCsv(ResultSet rs, OutputStream out, long startTime) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        byte[] kinds = columnKinds(metaData);
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+
+        for (int i = 1; i <= columnCount; i++) {
+            if (i > 1) {
+                w.write(',');
+            }
+            writeCsvField(w, metaData.getColumnLabel(i));
+        }
+        w.write('\n');
+
+        long rows = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                if (i > 1) {
+                    w.write(',');
+                }
+                String value = readText(rs, i, kinds[i - 1]);
+                if (value != null) {
+                    if (kinds[i - 1] == KIND_STRING) {
+                        writeCsvField(w, value);
+                    } else {
+                        w.write(value);
+                    }
+                }
+            }
+            w.write('\n');
+            reportProgress(++rows, startTime);
+        }
+        w.flush();
+        return rows;
+    }
+
+    private static void writeCsvField(Writer w, String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                needsQuotes = true;
+                break;
+            }
+        }
+        if (!needsQuotes) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                w.write('"');
+            }
+            w.write(c);
+        }
+        w.write('"');
+    }
+
+    // ==================== JSON LINES ====================
+
+    private static long writeJsonLines(ResultSet rs, OutputStream out, long startTime) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        byte[] kinds = columnKinds(metaData);
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+
+        // Pre-render the "name": keys once
+        String[] keys = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(i == 0 ? "{" : ",");
+            appendJsonString(sb, metaData.getColumnLabel(i + 1));
+            keys[i] = sb.append(':').toString();
+        }
+
+        StringBuilder line = new StringBuilder(256);
+        long rows = 0;
+        while (rs.next()) {
+            line.setLength(0);
+            for (int i = 1; i <= columnCount; i++) {
+                line.append(keys[i - 1]);
+                byte kind = kinds[i - 1];
+                String value = readText(rs, i, kind);
+                if (value == null) {
+                    line.append("null");
+                } else if (kind == KIND_STRING || kind == KIND_TIMESTAMP) {
+                    appendJsonString(line, value);
+                } else {
+                    line.append(value);
+                }
+            }
+            line.append("}\n");
+            w.append(line);
+            reportProgress(++rows, startTime);
+        }
+        w.flush();
+        return rows;
+    }
+
+    static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    // ==================== COLUMNAR BINARY ====================
+
+    /**
+     * Writes the compact columnar format. All integers are big-endian.
+     *
+     * Header: "OLCB", int version, int columnCount, then per column:
+     *         UTF name, byte kind, byte scale (decimal places for DECIMAL columns)
+     * Row groups (up to 8192 rows each): int rowCount, then per column:
+     *         null bitmap ((rowCount + 7) / 8 bytes, bit set = null), followed by
+     *         INT: int[rowCount]; LONG, DECIMAL (unscaled), TIMESTAMP (epoch millis): long[rowCount];
+     *         DOUBLE: double[rowCount]; BOOLEAN: byte[rowCount];
+     *         STRING: int[rowCount] UTF-8 lengths, then the concatenated bytes
+     * Footer: int 0, long totalRows
+     */
+    private static long writeColumnar(ResultSet rs, OutputStream out, long startTime) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        byte[] kinds = columnKinds(metaData);
+        int[] scales = new int[columnCount];
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.write(COLUMNAR_MAGIC);
+        data.writeInt(COLUMNAR_VERSION);
+        data.writeInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            scales[i] = kinds[i] == KIND_DECIMAL ? Math.max(metaData.getScale(i + 1), 0) : 0;
+            data.writeUTF(metaData.getColumnLabel(i + 1));
+            data.writeByte(kinds[i]);
+            data.writeByte(scales[i]);
+        }
+
+        // One reusable buffer per column for the current row group
+        long[][] longValues = new long[columnCount][];
+        double[][] doubleValues = new double[columnCount][];
+        byte[][][] stringValues = new byte[columnCount][][];
+        boolean[][] nulls = new boolean[columnCount][ROW_GROUP_SIZE];
+        for (int i = 0; i < columnCount; i++) {
+            if (kinds[i] == KIND_DOUBLE) {
+                doubleValues[i] = new double[ROW_GROUP_SIZE];
+            } else if (kinds[i] == KIND_STRING) {
+                stringValues[i] = new byte[ROW_GROUP_SIZE][];
+            } else {
+                longValues[i] = new long[ROW_GROUP_SIZE];
+            }
+        }
+
+        long rows = 0;
+        int groupRows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                int col = i + 1;
+                switch (kinds[i]) {
+                    case KIND_INT:
+                    case KIND_LONG:
+                        longValues[i][groupRows] = rs.getLong(col);
+                        break;
+                    case KIND_BOOLEAN:
+                        longValues[i][groupRows] = rs.getBoolean(col) ? 1 : 0;
+                        break;
+                    case KIND_DOUBLE:
+                        doubleValues[i][groupRows] = rs.getDouble(col);
+                        break;
+                    case KIND_DECIMAL: {
+                        BigDecimal value = rs.getBigDecimal(col);
+                        longValues[i][groupRows] = value == null ? 0
+                                : value.setScale(scales[i], RoundingMode.HALF_UP).unscaledValue().longValueExact();
+                        break;
+                    }
+                    case KIND_TIMESTAMP: {
+                        Timestamp value = rs.getTimestamp(col);
+                        longValues[i][groupRows] = value == null ? 0 : value.getTime();
+                        break;
+                    }
+                    default: {
+                        String value = rs.getString(col);
+                        stringValues[i][groupRows] = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+                        break;
+                    }
+                }
+                nulls[i][groupRows] = rs.wasNull();
+            }
+
+            if (++groupRows == ROW_GROUP_SIZE) {
+                writeRowGroup(data, kinds, groupRows, nulls, longValues, doubleValues, stringValues);
+                groupRows = 0;
+            }
+            reportProgress(++rows, startTime);
+        }
+        if (groupRows > 0) {
+            writeRowGroup(data, kinds, groupRows, nulls, longValues, doubleValues, stringValues);
+        }
+
+        data.writeInt(0);
+        data.writeLong(rows);
+        data.flush();
+        return rows;
+    }
+
+    private static void writeRowGroup(DataOutputStream data, byte[] kinds, int rowCount, boolean[][] nulls,
+                                      long[][] longValues, double[][] doubleValues, byte[][][] stringValues)
+            throws IOException {
+        data.writeInt(rowCount);
+        byte[] bitmap = new byte[(rowCount + 7) / 8];
+
+        for (int c = 0; c < kinds.length; c++) {
+            Arrays.fill(bitmap, (byte) 0);
+            for (int r = 0; r < rowCount; r++) {
+                if (nulls[c][r]) {
+                    bitmap[r >> 3] |= (byte) (1 << (r & 7));
+                }
+            }
+            data.write(bitmap);
+
+            switch (kinds[c]) {
+                case KIND_INT:
+                    for (int r = 0; r < rowCount; r++) {
+                        data.writeInt((int) longValues[c][r]);
+                    }
+                    break;
+                case KIND_BOOLEAN:
+                    for (int r = 0; r < rowCount; r++) {
+                        data.writeByte((int) longValues[c][r]);
+                    }
+                    break;
+                case KIND_DOUBLE:
+                    for (int r = 0; r < rowCount; r++) {
+                        data.writeDouble(doubleValues[c][r]);
+                    }
+                    break;
+                case KIND_STRING:
+                    for (int r = 0; r < rowCount; r++) {
+                        byte[] value = stringValues[c][r];
+                        data.writeInt(value == null ? 0 : value.length);
+                    }
+                    for (int r = 0; r < rowCount; r++) {
+                        byte[] value = stringValues[c][r];
+                        if (value != null) {
+                            data.write(value);
+                        }
+                        stringValues[c][r] = null;
+                    }
+                    break;
+                default:
+                    for (int r = 0; r < rowCount; r++) {
+                        data.writeLong(longValues[c][r]);
+                    }
+                    break;
+            }
+        }
+    }
+
+    // ==================== SHARED HELPERS ====================
+
+    private static byte[] columnKinds(ResultSetMetaData metaData) throws SQLException {
+        byte[] kinds = new byte[metaData.getColumnCount()];
+        for (int i = 0; i < kinds.length; i++) {
+            switch (metaData.getColumnType(i + 1)) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    kinds[i] = KIND_INT;
+                    break;
+                case Types.BIGINT:
+                    kinds[i] = KIND_LONG;
+                    break;
+                case Types.FLOAT:
+                case Types.REAL:
+                case Types.DOUBLE:
+                    kinds[i] = KIND_DOUBLE;
+                    break;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    kinds[i] = KIND_DECIMAL;
+                    break;
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                    kinds[i] = KIND_TIMESTAMP;
+                    break;
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    kinds[i] = KIND_BOOLEAN;
+                    break;
+                default:
+                    kinds[i] = KIND_STRING;
+            }
+        }
+        return kinds;
+    }
+
+    /**
+     * Reads a column as text for the CSV and JSON writers
+     * @return The value, or null for SQL NULL and non-finite doubles
+     */
+    private static String readText(ResultSet rs, int column, byte kind) throws SQLException {
+        switch (kind) {
+            case KIND_INT:
+            case KIND_LONG: {
+                long value = rs.getLong(column);
+                return rs.wasNull() ? null : Long.toString(value);
+            }
+            case KIND_DOUBLE: {
+                // Plain digits rather than 1.0E7, and null for NaN or infinity, which JSON cannot hold
+                double value = rs.getDouble(column);
+                return rs.wasNull() || !Double.isFinite(value) ? null : BigDecimal.valueOf(value).toPlainString();
+            }
+            case KIND_DECIMAL: {
+                BigDecimal value = rs.getBigDecimal(column);
+                return value == null ? null : value.toPlainString();
+            }
+            case KIND_TIMESTAMP: {
+                Timestamp value = rs.getTimestamp(column);
+                return value == null ? null : value.toLocalDateTime().format(TIMESTAMP_FORMAT);
+            }
+            case KIND_BOOLEAN: {
+                boolean value = rs.getBoolean(column);
+                return rs.wasNull() ? null : Boolean.toString(value);
+            }
+            default:
+                return rs.getString(column);
+        }
+    }
+
+    private static void reportProgress(long rows, long startTime) {
+        if (rows % PROGRESS_INTERVAL == 0) {
+            long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+            System.out.print(String.format(" %,d (%.0f/s)", rows, rows / (elapsed / 1000.0)));
+        }
+    }
+
+    /**
+     * Counts bytes that reach the file
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Gzips on a background thread. Writers fill fixed-size chunks that are handed
+     * over through a small bounded queue, so compression overlaps with reading rows
+     * from the database without unbounded buffering.
+     */
+    static class AsyncGzipOutputStream extends OutputStream {
+        private static final int CHUNK_SIZE = 256 * 1024;
+        private static final int QUEUE_CHUNKS = 4;
+        private static final byte[] END = new byte[0];
+
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+        private final Thread compressor;
+        private volatile IOException failure;
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean closed;
+
+        AsyncGzipOutputStream(OutputStream target) {
+            compressor = new Thread(() -> {
+                try (GZIPOutputStream gzip = new GZIPOutputStream(target, CHUNK_SIZE)) {
+                    byte[] chunk;
+                    while ((chunk = queue.take()) != END) {
+                        gzip.write(chunk);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } catch (InterruptedException e) {
+                    failure = new IOException("Compression interrupted", e);
+                }
+            }, "export-gzip");
+            compressor.setDaemon(true);
+            compressor.start();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                handOff();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    handOff();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void handOff() throws IOException {
+            enqueue(count == buffer.length ? buffer : Arrays.copyOf(buffer, count));
+            buffer = new byte[CHUNK_SIZE];
+            count = 0;
+        }
+
+        private void enqueue(byte[] chunk) throws IOException {
+            try {
+                while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    if (failure != null || !compressor.isAlive()) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while compressing", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (count > 0) {
+                handOff();
+            }
+            enqueue(END);
+            try {
+                compressor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while compressing", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
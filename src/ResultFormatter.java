@@ -1,172 +1,537 @@
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Formats SQL query results as ASCII tables with proper alignment
+ * Formats SQL query results as ASCII tables with proper alignment.
+ * Rows are streamed a page at a time: column widths come from the result set
+ * metadata and the first page of rows, and output goes through one buffered writer.
  */
 public class ResultFormatter {
     private static final int MAX_COLUMN_WIDTH = 25;
-    private static final int ROWS_PER_PAGE = 25;
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#,##0.00");
-    private static final DecimalFormat INTEGER_FORMAT = new DecimalFormat("#,###");
+    public static final int ROWS_PER_PAGE = 25;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<DecimalFormat> DECIMAL_FORMAT =
+            ThreadLocal.withInitial(() -> new DecimalFormat("#,##0.00"));
+    private static final ThreadLocal<DecimalFormat> INTEGER_FORMAT =
+            ThreadLocal.withInitial(() -> new DecimalFormat("#,###"));
+
+    private static final char[] SPACES = new char[MAX_COLUMN_WIDTH];
+    private static final String SEPARATOR_LINE;
+
+    static {
+        Arrays.fill(SPACES, ' ');
+        char[] line = new char[80];
+        Arrays.fill(line, '=');
+        SEPARATOR_LINE = new String(line);
+    }
+
+    // Totals since startup, published over JMX
+    private static final LongAdder rowsRendered = new LongAdder();
+    private static final LongAdder resultsDisplayed = new LongAdder();
+    private static final LongAdder charactersFormatted = new LongAdder();
+
+    private static Scanner input;
+
+    /**
+     * A sampled estimate shown as "value +/- half-width" of its 95% confidence interval
+     */
+    public static final class Estimate {
+        public final double value;
+        public final double halfWidth;
+        public final boolean whole;
+
+        /**
+         * @param whole true to show the value without decimals, as for a count
+         */
+        public Estimate(double value, double halfWidth, boolean whole) {
+            this.value = value;
+            this.halfWidth = halfWidth;
+            this.whole = whole;
+        }
+
+        @Override
+        public String toString() {
+            // Cents are noise next to a wide interval, so wide intervals are shown in whole units
+            return format(value, whole) + " +/- " + format(halfWidth, whole || halfWidth >= 100);
+        }
+
+        private static String format(double number, boolean whole) {
+            if (!whole) {
+                return DECIMAL_FORMAT.get().format(number);
+            }
+            String formatted = INTEGER_FORMAT.get().format(Math.round(number));
+            return formatted.isEmpty() ? "0" : formatted;
+        }
+    }
+
+    /**
+     * Shares the menu's Scanner so pagination prompts read from the same buffer
+     */
+    public static void setInput(Scanner scanner) {
+        input = scanner;
+    }
+
+    private static Scanner getInput() {
+        if (input == null) {
+            input = ConsoleInput.scanner();
+        }
+        return input;
+    }
 
     /**
-     * Displays query results in a formatted ASCII table with pagination
+     * Displays query results in a formatted ASCII table with pagination.
+     * At most one page of rows is held in memory at a time.
      * @param rs ResultSet from query execution
      * @param queryTitle Title to display above the table
      * @return Number of rows displayed
      */
     public static int displayResults(ResultSet rs, String queryTitle) throws SQLException {
+        return displayResults(rs, queryTitle, null);
+    }
+
+    /**
+     * Displays query results and records time to first row, rows and bytes formatted
+     * @param sample Metrics sample to fill in, or null
+     */
+    public static int displayResults(ResultSet rs, String queryTitle, QueryMetrics.Sample sample)
+            throws SQLException {
         if (rs == null) {
             System.out.println("No results to display.");
             return 0;
         }
 
+        resultsDisplayed.increment();
+        PrintWriter out = newWriter();
         ResultSetMetaData metaData = rs.getMetaData();
         int columnCount = metaData.getColumnCount();
 
-        // Get column names and determine widths
+        // Get column names and the widths the metadata allows for
         String[] columnNames = new String[columnCount];
         int[] columnWidths = new int[columnCount];
 
         for (int i = 0; i < columnCount; i++) {
             columnNames[i] = metaData.getColumnLabel(i + 1);
-            columnWidths[i] = Math.min(columnNames[i].length(), MAX_COLUMN_WIDTH);
+            columnWidths[i] = Math.min(Math.max(columnNames[i].length(), metadataWidth(metaData, i + 1)),
+                                       MAX_COLUMN_WIDTH);
+        }
+
+        List<String[]> page = new ArrayList<>(ROWS_PER_PAGE);
+        boolean hasRow = rs.next();
+        if (hasRow && sample != null) {
+            sample.firstRow();
         }
 
-        // Read all data into memory to determine column widths and enable pagination
-        List<String[]> rows = new ArrayList<>();
-        while (rs.next()) {
-            String[] row = new String[columnCount];
-            for (int i = 0; i < columnCount; i++) {
-                Object value = rs.getObject(i + 1);
-                String strValue;
-
-                if (value == null) {
-                    strValue = "N/A";
-                } else if (value instanceof Double || value instanceof Float) {
-                    strValue = DECIMAL_FORMAT.format(value);
-                } else if (value instanceof Integer || value instanceof Long) {
-                    strValue = INTEGER_FORMAT.format(value);
-                } else {
-                    strValue = value.toString();
+        if (!hasRow) {
+            printNoRows(out, queryTitle);
+            out.flush();
+            return 0;
+        }
+
+        int shownRows = 0;
+        while (hasRow) {
+            // Read the next page; it doubles as the lookahead window for column widths
+            page.clear();
+            while (hasRow && page.size() < ROWS_PER_PAGE) {
+                String[] row = new String[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = formatValue(rs.getObject(i + 1));
                 }
+                page.add(row);
+                hasRow = rs.next();
+            }
+            long pageBytes = shownRows == 0 ? widenColumns(columnWidths, page) : formattedChars(page);
+            countRendered(page.size(), pageBytes);
+            if (sample != null) {
+                sample.addRows(page.size(), pageBytes);
+            }
 
-                row[i] = strValue;
-                columnWidths[i] = Math.max(columnWidths[i], Math.min(strValue.length(), MAX_COLUMN_WIDTH));
+            int startRow = shownRows;
+            shownRows += page.size();
+            printPageHeader(out, queryTitle, startRow, shownRows, hasRow);
+            printRows(out, columnNames, columnWidths, page);
+
+            if (hasRow && !promptNextPage(out, shownRows)) {
+                break;
             }
-            rows.add(row);
         }
 
-        if (rows.isEmpty()) {
-            printSeparator();
-            System.out.println("Query Results: " + queryTitle);
-            printSeparator();
-            System.out.println("No rows returned.");
-            printSeparator();
+        out.println();
+        if (hasRow) {
+            // Tell the server to stop sending the rows the analyst skipped
+            discardRemainingRows(rs);
+            out.println("Displayed " + shownRows + " row(s).");
+        } else {
+            out.println("Query returned " + shownRows + " row(s).");
+        }
+        out.flush();
+        return shownRows;
+    }
+
+    /**
+     * Displays results fetched from the server one page at a time.
+     * The next page is prefetched while the current one is on screen.
+     * @param paged Paged query to read from
+     * @param queryTitle Title to display above the table
+     * @return Number of rows displayed
+     */
+    public static int displayPagedResults(PagedQuery paged, String queryTitle) throws SQLException {
+        return displayPagedResults(paged, queryTitle, null);
+    }
+
+    /**
+     * Displays paged results and records time to first row, rows and bytes formatted
+     * @param sample Metrics sample to fill in, or null
+     */
+    public static int displayPagedResults(PagedQuery paged, String queryTitle, QueryMetrics.Sample sample)
+            throws SQLException {
+        resultsDisplayed.increment();
+        PrintWriter out = newWriter();
+        PagedQuery.Page page = paged.awaitPage(0);
+        if (sample != null) {
+            sample.executed();
+            sample.firstRow();
+        }
+
+        if (page.rows.isEmpty()) {
+            printNoRows(out, queryTitle);
+            out.flush();
             return 0;
         }
 
-        // Display results with pagination
-        int totalRows = rows.size();
-        int currentRow = 0;
+        String[] columnNames = paged.getColumnNames();
+        int[] columnWidths = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnWidths[i] = Math.min(columnNames[i].length(), MAX_COLUMN_WIDTH);
+        }
+        int shownRows = 0;
 
-        while (currentRow < totalRows) {
-            // Print header
-            printSeparator();
-            System.out.println("Query Results: " + queryTitle);
-            printSeparator();
+        while (true) {
+            if (page.hasMore) {
+                paged.prefetch(page.index + 1);
+            }
+            long pageBytes = shownRows == 0 ? widenColumns(columnWidths, page.rows) : formattedChars(page.rows);
+            countRendered(page.rows.size(), pageBytes);
+            if (sample != null) {
+                sample.addRows(page.rows.size(), pageBytes);
+            }
 
-            int endRow = Math.min(currentRow + ROWS_PER_PAGE, totalRows);
-            System.out.println("Showing rows " + (currentRow + 1) + "-" + endRow + " of " + totalRows + " total results");
-            System.out.println();
+            int startRow = shownRows;
+            shownRows += page.rows.size();
+            printPageHeader(out, queryTitle, startRow, shownRows, page.hasMore);
+            printRows(out, columnNames, columnWidths, page.rows);
 
-            // Print column headers
-            printRowSeparator(columnWidths);
-            System.out.print("|");
-            for (int i = 0; i < columnCount; i++) {
-                System.out.print(" " + padString(columnNames[i], columnWidths[i]) + " |");
+            if (!page.hasMore || !promptNextPage(out, shownRows)) {
+                break;
             }
-            System.out.println();
-            printRowSeparator(columnWidths);
 
-            // Print rows for this page
-            for (int r = currentRow; r < endRow; r++) {
-                String[] row = rows.get(r);
-                System.out.print("|");
-                for (int i = 0; i < columnCount; i++) {
-                    String value = row[i];
-                    if (value.length() > MAX_COLUMN_WIDTH) {
-                        value = value.substring(0, MAX_COLUMN_WIDTH - 3) + "...";
-                    }
-                    System.out.print(" " + padString(value, columnWidths[i]) + " |");
-                }
-                System.out.println();
-            }
-            printRowSeparator(columnWidths);
-
-            currentRow = endRow;
-
-            // Pagination prompt
-            if (currentRow < totalRows) {
-                System.out.println("\n[Enter] Next page (" + (currentRow + 1) + "-" +
-                                 Math.min(currentRow + ROWS_PER_PAGE, totalRows) + ") | [Q] Return to menu");
-                System.out.print("> ");
-                try {
-                    String input = new java.util.Scanner(System.in).nextLine().trim();
-                    if (input.equalsIgnoreCase("q") || input.equalsIgnoreCase("quit")) {
-                        break;
-                    }
-                } catch (Exception e) {
-                    break;
+            page = paged.awaitPage(page.index + 1);
+            if (page.rows.isEmpty()) {
+                break;
+            }
+        }
+
+        out.println();
+        out.println("Displayed " + shownRows + " row(s).");
+        out.flush();
+        return shownRows;
+    }
+
+    /**
+     * Displays rows already in memory, such as a local engine report, with the same
+     * table layout and pagination as a result set
+     * @param columnNames Column labels
+     * @param rows Row values, one array per row
+     * @param queryTitle Title to display above the table
+     * @param sample Metrics sample to fill in, or null
+     * @return Number of rows displayed
+     */
+    public static int displayRows(String[] columnNames, List<Object[]> rows, String queryTitle,
+                                  QueryMetrics.Sample sample) {
+        resultsDisplayed.increment();
+        PrintWriter out = newWriter();
+        if (sample != null) {
+            sample.executed();
+            if (!rows.isEmpty()) {
+                sample.firstRow();
+            }
+        }
+
+        if (rows.isEmpty()) {
+            printNoRows(out, queryTitle);
+            out.flush();
+            return 0;
+        }
+
+        int[] columnWidths = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnWidths[i] = Math.min(columnNames[i].length(), MAX_COLUMN_WIDTH);
+        }
+        // The rows are already in memory, so every page gets the widths the whole result needs
+        for (Object[] values : rows) {
+            for (int i = 0; i < columnNames.length; i++) {
+                int length = formatValue(values[i]).length();
+                columnWidths[i] = Math.max(columnWidths[i], Math.min(length, MAX_COLUMN_WIDTH));
+            }
+        }
+        List<String[]> page = new ArrayList<>(ROWS_PER_PAGE);
+        int shownRows = 0;
+
+        while (shownRows < rows.size()) {
+            page.clear();
+            for (Object[] values : rows.subList(shownRows, Math.min(shownRows + ROWS_PER_PAGE, rows.size()))) {
+                String[] row = new String[columnNames.length];
+                for (int i = 0; i < columnNames.length; i++) {
+                    row[i] = formatValue(values[i]);
                 }
+                page.add(row);
+            }
+            long pageBytes = formattedChars(page);
+            countRendered(page.size(), pageBytes);
+            if (sample != null) {
+                sample.addRows(page.size(), pageBytes);
+            }
+
+            int startRow = shownRows;
+            shownRows += page.size();
+            boolean hasMore = shownRows < rows.size();
+            printPageHeader(out, queryTitle, startRow, shownRows, hasMore);
+            printRows(out, columnNames, columnWidths, page);
+
+            if (hasMore && !promptNextPage(out, shownRows)) {
+                break;
             }
         }
 
-        System.out.println("\nQuery returned " + totalRows + " row(s).");
-        return totalRows;
+        out.println();
+        if (shownRows < rows.size()) {
+            out.println("Displayed " + shownRows + " row(s).");
+        } else {
+            out.println("Query returned " + shownRows + " row(s).");
+        }
+        out.flush();
+        return shownRows;
     }
 
     /**
-     * Pads a string to the specified width
+     * Formats a single column value for display
      */
-    private static String padString(String str, int width) {
-        if (str.length() >= width) {
-            return str.substring(0, width);
+    static String formatValue(Object value) {
+        if (value == null) {
+            return "N/A";
+        } else if (value instanceof Double || value instanceof Float) {
+            return DECIMAL_FORMAT.get().format(value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            return INTEGER_FORMAT.get().format(value);
+        } else {
+            return value.toString();
         }
-        StringBuilder sb = new StringBuilder(str);
-        while (sb.length() < width) {
-            sb.append(" ");
+    }
+
+    /**
+     * Width a column needs according to its metadata, or 0 if unknown.
+     * Numeric columns get room for the grouping separators added by formatValue.
+     */
+    private static int metadataWidth(ResultSetMetaData metaData, int column) throws SQLException {
+        int displaySize = metaData.getColumnDisplaySize(column);
+        if (displaySize <= 0) {
+            return 0;
+        }
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+                return displaySize + displaySize / 3;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                return displaySize;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Grows column widths to fit the first page of rows. Later pages keep these widths, truncating
+     * longer values, so every page of a result is printed as the same table.
+     * @return Total characters of formatted values on the page
+     */
+    private static long widenColumns(int[] columnWidths, List<String[]> rows) {
+        long formattedChars = 0;
+        for (String[] row : rows) {
+            for (int i = 0; i < columnWidths.length; i++) {
+                int length = row[i].length();
+                formattedChars += length;
+                columnWidths[i] = Math.max(columnWidths[i], Math.min(length, MAX_COLUMN_WIDTH));
+            }
+        }
+        return formattedChars;
+    }
+
+    private static long formattedChars(List<String[]> rows) {
+        long formattedChars = 0;
+        for (String[] row : rows) {
+            for (String value : row) {
+                formattedChars += value.length();
+            }
+        }
+        return formattedChars;
+    }
+
+    private static void countRendered(int rows, long characters) {
+        rowsRendered.add(rows);
+        charactersFormatted.add(characters);
+    }
+
+    public static long getRowsRendered() {
+        return rowsRendered.sum();
+    }
+
+    public static long getResultsDisplayed() {
+        return resultsDisplayed.sum();
+    }
+
+    public static long getCharactersFormatted() {
+        return charactersFormatted.sum();
+    }
+
+    private static void printPageHeader(PrintWriter out, String queryTitle,
+                                        int startRow, int endRow, boolean hasMore) {
+        out.println(SEPARATOR_LINE);
+        out.println("Query Results: " + queryTitle);
+        out.println(SEPARATOR_LINE);
+        if (hasMore) {
+            out.println("Showing rows " + (startRow + 1) + "-" + endRow + " (more results available)");
+        } else {
+            out.println("Showing rows " + (startRow + 1) + "-" + endRow + " of " + endRow + " total results");
+        }
+        out.println();
+    }
+
+    private static void printNoRows(PrintWriter out, String queryTitle) {
+        out.println(SEPARATOR_LINE);
+        out.println("Query Results: " + queryTitle);
+        out.println(SEPARATOR_LINE);
+        out.println("No rows returned.");
+        out.println(SEPARATOR_LINE);
+    }
+
+    /**
+     * Asks whether to show the next page
+     * @return false if the analyst chose to return to the menu
+     */
+    private static boolean promptNextPage(PrintWriter out, int shownRows) {
+        out.println();
+        out.println("[Enter] Next page (" + (shownRows + 1) + "-" +
+                    (shownRows + ROWS_PER_PAGE) + ") | [Q] Return to menu");
+        out.print("> ");
+        out.flush();
+        try {
+            String line = getInput().nextLine().trim();
+            return !(line.equalsIgnoreCase("q") || line.equalsIgnoreCase("quit"));
+        } catch (Exception e) {
+            return false;
         }
-        return sb.toString();
     }
 
     /**
-     * Prints a row separator line based on column widths
+     * Prints the column headers followed by a page of rows
      */
-    private static void printRowSeparator(int[] columnWidths) {
-        System.out.print("+");
+    private static void printRows(PrintWriter out, String[] columnNames, int[] columnWidths, List<String[]> rows) {
+        String rowSeparator = rowSeparator(columnWidths);
+
+        out.println(rowSeparator);
+        out.print('|');
+        for (int i = 0; i < columnNames.length; i++) {
+            writeCell(out, columnNames[i], columnWidths[i]);
+        }
+        out.println();
+        out.println(rowSeparator);
+
+        for (String[] row : rows) {
+            out.print('|');
+            for (int i = 0; i < columnNames.length; i++) {
+                writeCell(out, row[i], columnWidths[i]);
+            }
+            out.println();
+        }
+        out.println(rowSeparator);
+    }
+
+    /**
+     * Writes " value |" padded or truncated to the column width
+     */
+    private static void writeCell(PrintWriter out, String value, int width) {
+        out.print(' ');
+        if (value.length() > width) {
+            if (width > 3) {
+                out.write(value, 0, width - 3);
+                out.write("...");
+            } else {
+                out.write(value, 0, width);
+            }
+        } else {
+            out.write(value);
+            out.write(SPACES, 0, width - value.length());
+        }
+        out.write(" |");
+    }
+
+    /**
+     * Builds a row separator line based on column widths
+     */
+    private static String rowSeparator(int[] columnWidths) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('+');
         for (int width : columnWidths) {
             for (int i = 0; i < width + 2; i++) {
-                System.out.print("-");
+                sb.append('-');
             }
-            System.out.print("+");
+            sb.append('+');
         }
-        System.out.println();
+        return sb.toString();
+    }
+
+    private static void discardRemainingRows(ResultSet rs) {
+        try {
+            Statement stmt = rs.getStatement();
+            if (stmt != null) {
+                stmt.cancel();
+            }
+        } catch (SQLException e) {
+            // The rows are drained when the result set is closed instead
+        }
+    }
+
+    private static PrintWriter newWriter() {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, Charset.defaultCharset()), OUTPUT_BUFFER_SIZE), false);
     }
 
     /**
      * Prints a standard separator line
      */
     private static void printSeparator() {
-        for (int i = 0; i < 80; i++) {
-            System.out.print("=");
-        }
-        System.out.println();
+        System.out.println(SEPARATOR_LINE);
     }
 
     /**
@@ -174,7 +539,7 @@ public class ResultFormatter {
      */
     public static void displayCount(int count, String message) {
         printSeparator();
-        System.out.println(message + ": " + INTEGER_FORMAT.format(count));
+        System.out.println(message + ": " + INTEGER_FORMAT.get().format(count));
         printSeparator();
     }
 }
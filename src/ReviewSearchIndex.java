@@ -0,0 +1,866 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full-text search over the review titles and comments, without a LIKE '%term%' scan.
+ * Each review with any text becomes a document, numbered in load order. Its words are
+ * folded the way a Portuguese reader would match them: accents and the cedilla removed,
+ * lowercase, split on anything that is not a letter or digit. Each word keeps the documents
+ * it appears in as a compressed posting list of varint-encoded gaps between document
+ * numbers. A query is an OR of AND groups, answered by intersecting and merging the lists;
+ * the matches are ranked by review score or date from per-document columns.
+ *
+ * The index is filled from the rows the CSV loader commits to ORDER_REVIEWS and saved to a
+ * gzip file after the table, like the maintained aggregates.
+ */
+public class ReviewSearchIndex implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    public static final String DEFAULT_FILE = "search/reviews.idx.gz";
+    public static final int DEFAULT_LIMIT = 20;
+    private static final int MIN_TERM_LENGTH = 2;
+
+    public static final String[] COLUMNS = {
+        "rank", "review_id", "review_score", "review_date", "order_id", "purchase_date", "category_name_english",
+        "review_title", "comment_match"
+    };
+
+    /**
+     * How matching reviews are ordered
+     */
+    public enum Ranking {
+        BEST("highest score first, then newest"),
+        WORST("lowest score first, then newest"),
+        NEWEST("newest first, then highest score");
+
+        public final String description;
+
+        Ranking(String description) {
+            this.description = description;
+        }
+    }
+
+    private static volatile String file = DEFAULT_FILE;
+    private static volatile ReviewSearchIndex instance;
+
+    // Documents: ORDER_REVIEWS rows with a title or a comment
+    private int documents;
+    private String[] reviewIds = new String[1024];
+    private String[] orderIds = new String[1024];
+    private byte[] scores = new byte[1024];        // 0 for NULL
+    private int[] days = new int[1024];            // review_creation_date as epoch day, Integer.MIN_VALUE for NULL
+    private String[] titles = new String[1024];
+    private String[] comments = new String[1024];
+
+    private int records;
+    private final Map<String, Postings> terms = new HashMap<>();
+
+    /**
+     * Ascending document numbers for one term, as varint-encoded gaps
+     */
+    static final class Postings implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int last = -1;
+        private int count;
+
+        void add(int document) {
+            if (document == last) {
+                return;
+            }
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            int gap = document - last;
+            while ((gap & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+            last = document;
+            count++;
+        }
+
+        int[] decode() {
+            int[] result = new int[count];
+            int document = -1;
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                document += gap;
+                result[i] = document;
+            }
+            return result;
+        }
+
+        void trim() {
+            bytes = Arrays.copyOf(bytes, length);
+        }
+    }
+
+    /**
+     * Result of one search: the top documents and how many matched in all
+     */
+    public static final class Hits {
+        public final int[] documents;
+        public final int matches;
+        public final long nanos;
+        public final Set<String> terms;
+
+        Hits(int[] documents, int matches, long nanos, Set<String> terms) {
+            this.documents = documents;
+            this.matches = matches;
+            this.nanos = nanos;
+            this.terms = terms;
+        }
+    }
+
+    // ==================== NORMALISATION ====================
+
+    /**
+     * Splits text into folded terms: accents stripped, lowercase, letters and digits only
+     */
+    public static List<String> terms(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH) {
+                    result.add(folded.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes diacritics (so "não" and "nao", "serviço" and "servico" match) and lowercases
+     */
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // ==================== INDEXING ====================
+
+    /**
+     * Adds one ORDER_REVIEWS row; rows with neither a title nor a comment only count as records
+     */
+    public synchronized void add(String reviewId, String orderId, String score, String title, String comment,
+                                 String created) {
+        records++;
+        if (title == null && comment == null) {
+            return;
+        }
+        int document = documents;
+        if (document == reviewIds.length) {
+            int capacity = document * 2;
+            reviewIds = Arrays.copyOf(reviewIds, capacity);
+            orderIds = Arrays.copyOf(orderIds, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            days = Arrays.copyOf(days, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            comments = Arrays.copyOf(comments, capacity);
+        }
+        reviewIds[document] = reviewId;
+        orderIds[document] = orderId;
+        int parsedScore = ColumnStore.parseInt(score);
+        scores[document] = (byte) (parsedScore >= 0 && parsedScore <= 5 ? parsedScore : 0);
+        long createdAt = ColumnStore.parseTimestamp(created);
+        days[document] = createdAt == ColumnStore.NULL_LONG ? Integer.MIN_VALUE
+                                                            : (int) Math.floorDiv(createdAt, 86400L);
+        titles[document] = title;
+        comments[document] = comment;
+        documents++;
+        for (String text : new String[] {title, comment}) {
+            for (String term : terms(text)) {
+                terms.computeIfAbsent(term, t -> new Postings()).add(document);
+            }
+        }
+    }
+
+    /**
+     * Adds a row given as normalized ORDER_REVIEWS CSV values
+     */
+    void addRow(String[] v) {
+        add(v[0], v[1], v[2], v[3], v[4], v[5]);
+    }
+
+    public synchronized int documentCount() {
+        return documents;
+    }
+
+    public synchronized int recordCount() {
+        return records;
+    }
+
+    public synchronized int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Bytes held by the compressed posting lists
+     */
+    public synchronized long postingBytes() {
+        long bytes = 0;
+        for (Postings postings : terms.values()) {
+            bytes += postings.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of postings, i.e. (term, document) pairs
+     */
+    public synchronized long postingCount() {
+        long count = 0;
+        for (Postings postings : terms.values()) {
+            count += postings.count;
+        }
+        return count;
+    }
+
+    // ==================== SEARCHING ====================
+
+    /**
+     * Parses a query into OR-ed groups of AND-ed terms. Words are AND-ed; "OR" or "|" starts a new group.
+     * A word that folds into several terms ("pós-venda") requires all of them.
+     */
+    public static List<List<String>> parse(String query) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals("OR") || word.equals("|")) {
+                if (!group.isEmpty()) {
+                    groups.add(group);
+                }
+                group = new ArrayList<>();
+            } else {
+                for (String term : terms(word)) {
+                    if (!group.contains(term)) {
+                        group.add(term);
+                    }
+                }
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Finds the reviews matching a query and returns the top ones by the ranking
+     */
+    public synchronized Hits search(String query, Ranking ranking, int limit) {
+        long start = System.nanoTime();
+        List<List<String>> groups = parse(query);
+        Set<String> queried = new LinkedHashSet<>();
+        int[] matches = new int[0];
+        for (List<String> group : groups) {
+            queried.addAll(group);
+            matches = union(matches, matchAll(group));
+        }
+
+        // Sort keys: the ranking's fields in the high bits, the document number in the low 31
+        long[] keys = new long[matches.length];
+        for (int i = 0; i < matches.length; i++) {
+            int document = matches[i];
+            // A NULL score (0) ranks after every real score either way
+            long score = ranking == Ranking.WORST ? (scores[document] == 0 ? 7 : scores[document])
+                                                  : 7 - scores[document];
+            long day = days[document] == Integer.MIN_VALUE ? 0xFFFFF : 0xFFFFF - (days[document] & 0xFFFFF);
+            keys[i] = ranking == Ranking.NEWEST
+                      ? (day << 34) | (score << 31) | document
+                      : (score << 51) | (day << 31) | document;
+        }
+        Arrays.sort(keys);
+        int[] top = new int[Math.min(limit, keys.length)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = (int) (keys[i] & 0x7FFFFFFF);
+        }
+        return new Hits(top, matches.length, System.nanoTime() - start, queried);
+    }
+
+    /**
+     * Documents containing every term, rarest list first so the intersection shrinks fastest
+     */
+    private int[] matchAll(List<String> group) {
+        List<Postings> lists = new ArrayList<>(group.size());
+        for (String term : group) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                return new int[0];
+            }
+            lists.add(postings);
+        }
+        lists.sort((a, b) -> Integer.compare(a.count, b.count));
+        int[] result = lists.get(0).decode();
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the documents of a sorted array that are also in the posting list, decoding it as it goes
+     */
+    private static int[] intersect(int[] documents, Postings postings) {
+        int[] result = new int[documents.length];
+        int size = 0;
+        int next = 0;
+        int document = -1;
+        int position = 0;
+        for (int i = 0; i < postings.count && next < documents.length; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings.bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            document += gap;
+            while (next < documents.length && documents[next] < document) {
+                next++;
+            }
+            if (next < documents.length && documents[next] == document) {
+                result[size++] = document;
+                next++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] union(int[] left, int[] right) {
+        if (left.length == 0) {
+            return right;
+        }
+        int[] result = new int[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < left.length || j < right.length) {
+            if (j == right.length || (i < left.length && left[i] < right[j])) {
+                result[size++] = left[i++];
+            } else if (i == left.length || right[j] < left[i]) {
+                result[size++] = right[j++];
+            } else {
+                result[size++] = left[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // ==================== RESULTS ====================
+
+    /**
+     * Report rows for the hits, joined to each review's order and product categories
+     */
+    public List<Object[]> rows(Hits hits) throws IOException, SQLException {
+        String[] orders = new String[hits.documents.length];
+        synchronized (this) {
+            for (int i = 0; i < orders.length; i++) {
+                orders[i] = orderIds[hits.documents[i]];
+            }
+        }
+        Map<String, Object[]> joined = QueryExecutor.isLocalEngine()
+                ? joinLocal(LocalAnalyticsEngine.getStore(), orders)
+                : joinDatabase(orders);
+
+        List<Object[]> rows = new ArrayList<>(hits.documents.length);
+        synchronized (this) {
+            for (int i = 0; i < hits.documents.length; i++) {
+                int document = hits.documents[i];
+                Object[] order = joined.getOrDefault(orderIds[document], new Object[2]);
+                rows.add(new Object[] {
+                    i + 1, reviewIds[document], scores[document] == 0 ? null : (int) scores[document],
+                    days[document] == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(days[document]),
+                    orderIds[document], order[0], order[1], titles[document],
+                    snippet(comments[document], hits.terms)
+                });
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Purchase date and category names per order, from the local engine's columns
+     */
+    private static Map<String, Object[]> joinLocal(ColumnStore s, String[] orders) {
+        Map<String, Object[]> result = new HashMap<>();
+        ColumnStore.Index items = s.itemsByOrder();
+        for (String orderId : orders) {
+            int order = s.orderIds.lookup(orderId);
+            if (order < 0 || result.containsKey(orderId)) {
+                continue;
+            }
+            Set<String> categories = new LinkedHashSet<>();
+            for (int k = items.start[order]; k < items.start[order + 1]; k++) {
+                int product = s.itemProduct[items.rows[k]];
+                int category = product < 0 ? -1 : s.productCategory[product];
+                if (category >= 0) {
+                    int english = s.categoryEnglish[category];
+                    categories.add(english >= 0 ? s.englishNames.get(english) : s.categoryNames.get(category));
+                }
+            }
+            long purchase = s.orderPurchase[order];
+            result.put(orderId, new Object[] {
+                purchase == ColumnStore.NULL_LONG ? null : LocalDate.ofEpochDay(Math.floorDiv(purchase, 86400L)),
+                categoryList(categories)
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Purchase date and category names per order, in one query for all the hits
+     */
+    private static Map<String, Object[]> joinDatabase(String[] orders) throws SQLException {
+        Map<String, Object[]> result = new HashMap<>();
+        Set<String> distinct = new LinkedHashSet<>(Arrays.asList(orders));
+        distinct.remove(null);
+        if (distinct.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT o.order_id, CAST(o.order_purchase_timestamp AS DATE), "
+                     + "COALESCE(c.category_name_english, p.category_name_portuguese) FROM ORDERS o "
+                     + "LEFT JOIN ORDER_ITEMS oi ON oi.order_id = o.order_id "
+                     + "LEFT JOIN PRODUCTS p ON p.product_id = oi.product_id "
+                     + "LEFT JOIN CATEGORIES c ON p.category_name_portuguese = c.category_name_portuguese "
+                     + "WHERE o.order_id IN (" + String.join(", ", Collections.nCopies(distinct.size(), "?"))
+                     + ") ORDER BY o.order_id, oi.order_item_seq";
+        Map<String, Set<String>> categories = new HashMap<>();
+        Connection conn = DatabaseConnection.getConnection();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (String orderId : distinct) {
+                pstmt.setString(i++, orderId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String orderId = rs.getString(1);
+                    java.sql.Date purchase = rs.getDate(2);
+                    result.putIfAbsent(orderId, new Object[] {purchase == null ? null : purchase.toLocalDate(), null});
+                    String category = rs.getString(3);
+                    if (category != null) {
+                        categories.computeIfAbsent(orderId, k -> new LinkedHashSet<>()).add(category);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : categories.entrySet()) {
+            result.get(entry.getKey())[1] = categoryList(entry.getValue());
+        }
+        return result;
+    }
+
+    private static String categoryList(Set<String> categories) {
+        if (categories.isEmpty()) {
+            return null;
+        }
+        String first = categories.iterator().next();
+        return categories.size() == 1 ? first : first + " (+" + (categories.size() - 1) + ")";
+    }
+
+    /**
+     * The comment from the first word that matched, so the match shows inside a narrow column
+     */
+    static String snippet(String comment, Set<String> queried) {
+        if (comment == null) {
+            return null;
+        }
+        int start = -1;
+        for (int i = 0; i <= comment.length(); i++) {
+            boolean wordChar = i < comment.length() && Character.isLetterOrDigit(comment.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (queried.contains(fold(comment.substring(start, i)))) {
+                    return start == 0 ? comment : "..." + comment.substring(start);
+                }
+                start = -1;
+            }
+        }
+        return comment;
+    }
+
+    // ==================== LOADER HOOK ====================
+
+    /**
+     * Loader hook: indexes the ORDER_REVIEWS rows as their batches are committed and saves the index after the table
+     */
+    static CSVDataLoader.BatchListener listenerFor(String table) {
+        if (!table.equals("ORDER_REVIEWS")) {
+            return null;
+        }
+        return new BatchIndexer(currentFor(table), true);
+    }
+
+    /**
+     * Buffers the rows of the current batch and indexes them once the batch is committed
+     */
+    private static final class BatchIndexer implements CSVDataLoader.BatchListener {
+        private final ReviewSearchIndex target;
+        private final boolean save;
+        private final List<String[]> pending = new ArrayList<>(CSVDataLoader.BATCH_SIZE);
+
+        BatchIndexer(ReviewSearchIndex target, boolean save) {
+            this.target = target;
+            this.save = save;
+        }
+
+        @Override
+        public void accept(String[] values) {
+            String[] row = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                row[i] = values[i] == null ? null : CSVDataLoader.normalizeValue(values[i]);
+            }
+            pending.add(row);
+        }
+
+        @Override
+        public void commitBatch() {
+            synchronized (target) {
+                for (String[] row : pending) {
+                    target.addRow(row);
+                }
+            }
+            pending.clear();
+        }
+
+        @Override
+        public void finish() {
+            instance = target;
+            if (!save) {
+                return;
+            }
+            try {
+                target.save(new File(file));
+            } catch (IOException e) {
+                System.err.println("Failed to save the review search index: " + e.getMessage());
+            }
+        }
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    /**
+     * Returns the saved index, reading it on first use
+     * @return The index, or null if none has been built
+     */
+    public static ReviewSearchIndex get() throws IOException {
+        ReviewSearchIndex loaded = instance;
+        if (loaded == null) {
+            synchronized (ReviewSearchIndex.class) {
+                loaded = instance;
+                if (loaded == null && new File(file).exists()) {
+                    try {
+                        loaded = read(new File(file));
+                    } catch (InvalidClassException e) {
+                        System.err.println("Ignoring a review search index saved in an older format: " + file);
+                        return null;
+                    }
+                    instance = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the index, rebuilding it from the database, or from the CSVs on the local engine, if there is none
+     */
+    public static ReviewSearchIndex getOrBuild() throws IOException, SQLException {
+        ReviewSearchIndex loaded = get();
+        if (loaded == null) {
+            synchronized (ReviewSearchIndex.class) {
+                loaded = instance;
+                if (loaded == null) {
+                    loaded = QueryExecutor.isLocalEngine()
+                            ? rebuildFromCsv(CSVDataLoader.getDataDir())
+                            : rebuildFromDatabase();
+                    loaded.save(new File(file));
+                    instance = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Forgets the index and deletes the saved file, e.g. after the tables are cleared
+     */
+    public static synchronized void reset() {
+        instance = null;
+        new File(file).delete();
+    }
+
+    public static void setFile(String path) {
+        file = path;
+        instance = null;
+    }
+
+    /**
+     * The index the loader should add to: a saved index that holds reviews while ORDER_REVIEWS is
+     * empty was built from a table since recreated, so it is discarded instead of indexed into twice
+     */
+    private static synchronized ReviewSearchIndex currentFor(String table) {
+        ReviewSearchIndex index = loadedOrEmpty();
+        if (index.recordCount() > 0 && CSVDataLoader.isTableEmpty(table)) {
+            System.err.println("Discarding the review search index built from an earlier " + table + " table");
+            reset();
+            index = loadedOrEmpty();
+        }
+        return index;
+    }
+
+    private static synchronized ReviewSearchIndex loadedOrEmpty() {
+        try {
+            ReviewSearchIndex index = get();
+            if (index == null) {
+                index = new ReviewSearchIndex();
+                instance = index;
+            }
+            return index;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable review search index: " + e.getMessage());
+            instance = new ReviewSearchIndex();
+            return instance;
+        }
+    }
+
+    /**
+     * Writes the index, trimmed to size, to a gzip file
+     */
+    public synchronized void save(File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        for (Postings postings : terms.values()) {
+            postings.trim();
+        }
+        File temp = new File(target.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeObject(this);
+        }
+        if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target))) {
+            throw new IOException("Cannot replace " + target);
+        }
+    }
+
+    /**
+     * Reads a file written by save()
+     */
+    public static ReviewSearchIndex read(File source) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(source))))) {
+            return (ReviewSearchIndex) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(source + " does not hold a review search index");
+        }
+    }
+
+    /**
+     * Indexes olist_order_reviews_dataset.csv
+     */
+    public static ReviewSearchIndex rebuildFromCsv(String dataDir) throws IOException {
+        String dir = dataDir.endsWith("/") ? dataDir : dataDir + "/";
+        ReviewSearchIndex index = new ReviewSearchIndex();
+        try (BufferedReader br = new BufferedReader(new FileReader(dir + "olist_order_reviews_dataset.csv"))) {
+            String line = br.readLine(); // Skip header
+            while ((line = br.readLine()) != null) {
+                String[] values = CSVDataLoader.parseCSVLine(line);
+                if (values.length >= 7) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = CSVDataLoader.normalizeValue(values[i]);
+                    }
+                    index.addRow(values);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Indexes ORDER_REVIEWS in one pass, in load order
+     */
+    public static ReviewSearchIndex rebuildFromDatabase() throws SQLException {
+        ReviewSearchIndex index = new ReviewSearchIndex();
+        Connection conn = DatabaseConnection.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery("SELECT review_id, order_id, review_score, "
+                                                  + "review_comment_title, review_comment_message, "
+                                                  + "review_creation_date FROM ORDER_REVIEWS "
+                                                  + "ORDER BY review_record_id")) {
+                while (rs.next()) {
+                    index.add(rs.getString(1), rs.getString(2), rs.getString(3), normalized(rs.getString(4)),
+                              normalized(rs.getString(5)), rs.getString(6));
+                }
+            }
+        }
+        return index;
+    }
+
+    private static String normalized(String value) {
+        return value == null ? null : CSVDataLoader.normalizeValue(value);
+    }
+
+    // ==================== REPORT ====================
+
+    /**
+     * Searches the reviews and shows the top matches with their order and categories
+     */
+    public static void displaySearch(String query, Ranking ranking, int limit) {
+        try {
+            long start = System.nanoTime();
+            ReviewSearchIndex index = getOrBuild();
+            long loaded = System.nanoTime();
+            if (parse(query).isEmpty()) {
+                System.out.println("\nError: The query has no searchable words (at least " + MIN_TERM_LENGTH
+                                   + " letters or digits).");
+                return;
+            }
+            Hits hits = index.search(query, ranking, limit);
+            List<Object[]> rows = index.rows(hits);
+            ResultFormatter.displayRows(COLUMNS, rows, "Reviews Matching \"" + query + "\" ("
+                                        + ranking.description + ")", null);
+            System.out.println(String.format("%,d matching reviews, searched in %.2f ms. Index: %,d commented of "
+                                             + "%,d reviews, %,d terms, %,d KB of postings.",
+                                             hits.matches, hits.nanos / 1e6, index.documentCount(),
+                                             index.recordCount(), index.termCount(), index.postingBytes() / 1024));
+            if ((loaded - start) / 1_000_000 > 100) {
+                System.out.println(String.format("Index ready in %.1f s.", (loaded - start) / 1e9));
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not search the reviews.");
+            System.out.println("Details: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Searches from the command line:
+     *   java ReviewSearchIndex [--file F] [--rebuild DIR | --rebuild-db] [--data DIR] [--rank best|worst|newest]
+     *                          [--limit N] QUERY...
+     */
+    public static void main(String[] args) {
+        String rebuildDir = null;
+        boolean rebuildDatabase = false;
+        Ranking ranking = Ranking.BEST;
+        int limit = DEFAULT_LIMIT;
+        List<String> words = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--file":
+                        setFile(args[++i]);
+                        break;
+                    case "--rebuild":
+                        rebuildDir = args[++i];
+                        break;
+                    case "--rebuild-db":
+                        rebuildDatabase = true;
+                        break;
+                    case "--data":
+                        CSVDataLoader.setDataDir(args[++i]);
+                        QueryExecutor.setLocalEngine(true);
+                        break;
+                    case "--rank":
+                        ranking = Ranking.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                        break;
+                    case "--limit":
+                        limit = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        words.add(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: ReviewSearchIndex [--file F] [--rebuild DIR | --rebuild-db] [--data DIR] "
+                               + "[--rank best|worst|newest] [--limit N] QUERY...");
+            System.exit(1);
+        }
+
+        try {
+            if (rebuildDir != null || rebuildDatabase) {
+                long start = System.nanoTime();
+                ReviewSearchIndex index = rebuildDir != null ? rebuildFromCsv(rebuildDir) : rebuildFromDatabase();
+                index.save(new File(file));
+                instance = index;
+                System.out.println(String.format("Indexed %,d commented of %,d reviews into %s in %.1f s: %,d terms, "
+                                                 + "%,d postings in %,d KB.", index.documentCount(),
+                                                 index.recordCount(), file, (System.nanoTime() - start) / 1e9,
+                                                 index.termCount(), index.postingCount(),
+                                                 index.postingBytes() / 1024));
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not build the review search index.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        }
+        if (!words.isEmpty()) {
+            displaySearch(String.join(" ", words), ranking, limit);
+        }
+        DatabaseConnection.closeConnection();
+    }
+}
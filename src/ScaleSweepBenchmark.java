@@ -0,0 +1,349 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures how load time and report latency grow with data size.
+ * For each scale factor the schema is recreated with SchemaRunner, a synthetic data set
+ * (see SyntheticDataGenerator) is loaded with CSVDataLoader, and every QueryManager report
+ * is benchmarked. A log-log fit of latency and logical reads against loaded rows gives each
+ * query a growth exponent; anything above the threshold (default 1.2) grows super-linearly
+ * and is highlighted.
+ *
+ * WARNING: every table is dropped and reloaded for each scale factor.
+ */
+public class ScaleSweepBenchmark {
+    private static final String BENCHMARK_DIR = "benchmarks/";
+
+    /**
+     * Results for one scale factor
+     */
+    private static class ScalePoint {
+        final double scale;
+        final Map<String, long[]> load;
+        final Map<String, QueryTesterComprehensive.BenchmarkResult> queries = new LinkedHashMap<>();
+
+        ScalePoint(double scale, Map<String, long[]> load) {
+            this.scale = scale;
+            this.load = load;
+        }
+
+        long totalRows() {
+            long rows = 0;
+            for (long[] table : load.values()) {
+                rows += table[0];
+            }
+            return rows;
+        }
+
+        double loadSeconds() {
+            long nanos = 0;
+            for (long[] table : load.values()) {
+                nanos += table[1];
+            }
+            return nanos / 1e9;
+        }
+    }
+
+    /**
+     * Usage: ScaleSweepBenchmark --yes [--scales 0.1,0.5,1] [--seed N] [--threads N]
+     *        [--warmup N] [--iterations N] [--superlinear EXPONENT] [--regenerate]
+     */
+    public static void main(String[] args) {
+        List<Double> scales = new ArrayList<>();
+        long seed = 42;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int warmup = 1;
+        int iterations = 3;
+        double superLinear = 1.2;
+        boolean regenerate = false;
+        boolean confirmed = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--yes":
+                        confirmed = true;
+                        continue;
+                    case "--regenerate":
+                        regenerate = true;
+                        continue;
+                    default:
+                        break;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--scales":
+                        for (String s : value.split(",")) {
+                            scales.add(Double.parseDouble(s.trim()));
+                        }
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(value);
+                        break;
+                    case "--iterations":
+                        iterations = Integer.parseInt(value);
+                        break;
+                    case "--superlinear":
+                        superLinear = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+                }
+            }
+            if (scales.isEmpty()) {
+                scales.add(0.1);
+                scales.add(0.5);
+                scales.add(1.0);
+            }
+            if (scales.size() < 2) {
+                throw new IllegalArgumentException("At least two scale factors are needed to measure growth");
+            }
+            if (iterations < 1 || warmup < 0) {
+                throw new IllegalArgumentException("Iterations must be >= 1 and warmup >= 0");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: ScaleSweepBenchmark --yes [--scales 0.1,0.5,1] [--seed N] [--threads N]");
+            System.out.println("       [--warmup N] [--iterations N] [--superlinear EXPONENT] [--regenerate]");
+            System.exit(2);
+        }
+
+        if (!confirmed) {
+            System.out.println("ERROR: The sweep drops and reloads every table for each scale factor.");
+            System.out.println("Rerun with --yes to confirm.");
+            System.exit(2);
+        }
+
+        System.out.println("\n╔═════════════════════════════════════════════════════════════════╗");
+        System.out.println("║        SCALE-FACTOR SWEEP BENCHMARK                             ║");
+        System.out.println("╚═════════════════════════════════════════════════════════════════╝");
+
+        JmxMonitoring.register();
+        List<ScalePoint> points = new ArrayList<>();
+        try {
+            for (double scale : scales) {
+                points.add(runScale(scale, seed, threads, warmup, iterations, regenerate));
+            }
+        } catch (SQLException | IOException e) {
+            System.out.println("\nERROR: Scale sweep failed.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            CSVDataLoader.setDataDir(CSVDataLoader.DATA_DIR);
+        }
+
+        printLoadTable(points);
+        Map<String, double[]> growth = printQueryTable(points, superLinear);
+
+        try {
+            String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            File file = new File(BENCHMARK_DIR + "scale-sweep-" + timestamp + ".csv");
+            writeCsv(file, points, growth, superLinear);
+            System.out.println("\nResults written to " + file.getPath());
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not write sweep results.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static ScalePoint runScale(double scale, long seed, int threads, int warmup, int iterations,
+                                       boolean regenerate) throws SQLException, IOException {
+        System.out.printf("%n==================== SCALE FACTOR %s ====================%n", scale);
+
+        String dir = SyntheticDataGenerator.defaultOutputDir(scale);
+        if (regenerate || !new File(dir, "olist_orders_dataset.csv").exists()) {
+            SyntheticDataGenerator.generate(CSVDataLoader.DATA_DIR, dir, scale, seed, threads);
+        } else {
+            System.out.println("Reusing synthetic data in " + dir);
+        }
+
+        if (!SchemaRunner.runSchema()) {
+            throw new SQLException("Schema could not be recreated");
+        }
+
+        CSVDataLoader.setDataDir(dir);
+        System.out.println("\nLoading " + dir + "...");
+        ScalePoint point = new ScalePoint(scale, CSVDataLoader.loadAllTables());
+        System.out.printf("Loaded %,d rows in %.2f seconds.%n", point.totalRows(), point.loadSeconds());
+
+        for (Map.Entry<String, String> query : QueryManager.getAllQueries().entrySet()) {
+            for (Object[] params : QueryManager.getSampleParameterSets(query.getKey())) {
+                String key = QueryTesterComprehensive.benchmarkKey(query.getKey(), params);
+                System.out.printf("Benchmarking %-50s ", key + "...");
+                try {
+                    QueryTesterComprehensive.BenchmarkResult result = QueryTesterComprehensive.benchmarkQuery(
+                            key, query.getValue(), params, warmup, iterations);
+                    point.queries.put(key, result);
+                    System.out.printf("p50 %.1f ms%n", result.percentile(50));
+                } catch (SQLException e) {
+                    System.out.println("FAILED");
+                    System.out.println("  Details: " + e.getMessage());
+                }
+            }
+        }
+        return point;
+    }
+
+    private static void printLoadTable(List<ScalePoint> points) {
+        System.out.println("\n╔════════╦════════════════╦════════════╦══════════════╦════════════════════════════════╗");
+        System.out.println("║ Scale  ║ Rows Loaded    ║ Seconds    ║ Rows/s       ║ Slowest Table (rows/s)         ║");
+        System.out.println("╠════════╬════════════════╬════════════╬══════════════╬════════════════════════════════╣");
+        for (ScalePoint p : points) {
+            String slowest = "";
+            double slowestRate = Double.MAX_VALUE;
+            for (Map.Entry<String, long[]> table : p.load.entrySet()) {
+                double rate = rowsPerSecond(table.getValue());
+                // Tiny tables such as STATES are all fixed overhead
+                if (table.getValue()[0] >= 1000 && rate < slowestRate) {
+                    slowestRate = rate;
+                    slowest = String.format("%s (%,.0f)", table.getKey(), rate);
+                }
+            }
+            System.out.printf("║ %6s ║ %,14d ║ %10.2f ║ %,12.0f ║ %-30.30s ║%n", p.scale, p.totalRows(),
+                              p.loadSeconds(), p.totalRows() / Math.max(p.loadSeconds(), 0.001), slowest);
+        }
+        System.out.println("╚════════╩════════════════╩════════════╩══════════════╩════════════════════════════════╝");
+    }
+
+    /**
+     * Prints median latency per scale and the growth exponents
+     * @return Query key -> {latency exponent, logical reads exponent}
+     */
+    private static Map<String, double[]> printQueryTable(List<ScalePoint> points, double superLinear) {
+        Map<String, double[]> growth = new LinkedHashMap<>();
+
+        StringBuilder top = new StringBuilder("\n╔════════════════════════════════════════");
+        StringBuilder head = new StringBuilder("║ Query (p50 ms)                         ");
+        StringBuilder mid = new StringBuilder("╠════════════════════════════════════════");
+        StringBuilder bottom = new StringBuilder("╚════════════════════════════════════════");
+        for (ScalePoint p : points) {
+            top.append("╦══════════");
+            head.append(String.format("║ %8s ", "sf" + p.scale));
+            mid.append("╬══════════");
+            bottom.append("╩══════════");
+        }
+        top.append("╦════════╦════════╦════════════════╗");
+        head.append("║ Time^k ║ Reads^k║ Growth         ║");
+        mid.append("╬════════╬════════╬════════════════╣");
+        bottom.append("╩════════╩════════╩════════════════╝");
+        System.out.println(top);
+        System.out.println(head);
+        System.out.println(mid);
+
+        int flagged = 0;
+        for (String key : points.get(points.size() - 1).queries.keySet()) {
+            double[] sizes = new double[points.size()];
+            double[] latencies = new double[points.size()];
+            double[] reads = new double[points.size()];
+            StringBuilder row = new StringBuilder(String.format("║ %-38.38s ", key));
+            for (int i = 0; i < points.size(); i++) {
+                QueryTesterComprehensive.BenchmarkResult r = points.get(i).queries.get(key);
+                sizes[i] = points.get(i).totalRows();
+                latencies[i] = r == null ? Double.NaN : r.percentile(50);
+                reads[i] = r == null ? Double.NaN : r.logicalReads;
+                row.append(r == null ? String.format("║ %8s ", "-") : String.format("║ %8.1f ", latencies[i]));
+            }
+
+            double latencyExponent = growthExponent(sizes, latencies);
+            double readsExponent = growthExponent(sizes, reads);
+            growth.put(key, new double[] {latencyExponent, readsExponent});
+            boolean isSuperLinear = latencyExponent > superLinear || readsExponent > superLinear;
+            if (isSuperLinear) {
+                flagged++;
+            }
+            row.append(String.format("║ %6.2f ║ %6.2f ║ %-14s ║", latencyExponent, readsExponent,
+                                     isSuperLinear ? "▲ SUPER-LINEAR" : "ok"));
+            System.out.println(row);
+        }
+        System.out.println(bottom);
+        System.out.println("Growth exponent k: cost grows as (data size)^k; k = 1 is linear.");
+        if (flagged > 0) {
+            System.out.printf("%d %s faster than (data size)^%.1f.%n",
+                              flagged, flagged == 1 ? "query grows" : "queries grow", superLinear);
+        }
+        return growth;
+    }
+
+    /**
+     * Least-squares slope of log(cost) against log(size), ignoring missing or zero points
+     */
+    static double growthExponent(double[] sizes, double[] costs) {
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        int n = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] <= 0 || !(costs[i] > 0)) {
+                continue;
+            }
+            double x = Math.log(sizes[i]);
+            double y = Math.log(costs[i]);
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+            n++;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        if (n < 2 || denominator == 0) {
+            return Double.NaN;
+        }
+        return (n * sumXY - sumX * sumY) / denominator;
+    }
+
+    private static void writeCsv(File file, List<ScalePoint> points, Map<String, double[]> growth,
+                                 double superLinear) throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("scale,kind,name,rows,seconds,rows_per_second,p50_ms,p95_ms,logical_reads,"
+                        + "latency_exponent,reads_exponent,super_linear");
+            for (ScalePoint p : points) {
+                for (Map.Entry<String, long[]> table : p.load.entrySet()) {
+                    long[] t = table.getValue();
+                    out.println(String.format(Locale.ROOT, "%s,load,%s,%d,%.3f,%.1f,,,,,,",
+                                              p.scale, table.getKey(), t[0], t[1] / 1e9, rowsPerSecond(t)));
+                }
+                for (Map.Entry<String, QueryTesterComprehensive.BenchmarkResult> q : p.queries.entrySet()) {
+                    QueryTesterComprehensive.BenchmarkResult r = q.getValue();
+                    double[] g = growth.getOrDefault(q.getKey(), new double[] {Double.NaN, Double.NaN});
+                    boolean isSuperLinear = g[0] > superLinear || g[1] > superLinear;
+                    out.println(String.format(Locale.ROOT, "%s,query,%s,%d,,,%.3f,%.3f,%d,%.3f,%.3f,%b",
+                                              p.scale, csvName(q.getKey()), r.rows, r.percentile(50),
+                                              r.percentile(95), r.logicalReads, g[0], g[1], isSuperLinear));
+                }
+            }
+        }
+    }
+
+    private static String csvName(String key) {
+        return key.indexOf(',') >= 0 ? "\"" + key + "\"" : key;
+    }
+
+    private static double rowsPerSecond(long[] table) {
+        return table[0] / Math.max(table[1] / 1e9, 0.001);
+    }
+}
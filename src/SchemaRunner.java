@@ -8,6 +8,16 @@ import java.sql.Statement;
  */
 public class SchemaRunner {
     public static void main(String[] args) {
+        if (!runSchema()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Drops and recreates every table from schema.sql
+     * @return false if the schema could not be read or any CREATE or ALTER statement failed
+     */
+    public static boolean runSchema() {
         System.out.println("=== Database Schema Runner ===\n");
         System.out.println("Reading schema.sql...");
 
@@ -74,16 +84,23 @@ public class SchemaRunner {
                 }
             }
 
+            // The tables were dropped, so files built from their old rows no longer describe them
+            CSVDataLoader.resetDerivedData();
+
             System.out.println("\n=== Schema Execution Complete ===");
             System.out.println("Successful statements: " + successCount);
             if (errorCount > 0) {
-                System.out.println("Errors (may be ignorable): " + errorCount);
+                System.out.println("Failed statements: " + errorCount);
+                System.out.println("\nERROR: The schema was not fully created.");
+                return false;
             }
             System.out.println("\nDatabase schema is ready!");
+            return true;
 
         } catch (Exception e) {
             System.out.println("FATAL ERROR: " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
     }
 }
@@ -0,0 +1,703 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nearest sellers to a customer zip prefix, answered in memory.
+ * Each seller is placed at the centroid of its zip prefix from ZipGeography, and the sellers are
+ * bucketed into a uniform latitude/longitude grid. A k-nearest or radius query scans the grid in
+ * rings around the customer's cell and stops once no unscanned cell can hold a closer seller;
+ * distances are great-circle (haversine) kilometres. Each seller's orders are kept sorted by
+ * purchase time with running item and freight totals, so "orders in the last N days" is two
+ * binary searches. SQL Server would need SELLERS x GEOLOCATION for the same answer.
+ */
+public class SellerLocator {
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    public static final double DEFAULT_CELL_DEGREES = 0.25;
+    public static final int DEFAULT_NEIGHBORS = 10;
+    public static final int DEFAULT_RECENT_DAYS = 90;
+    private static final long SECONDS_PER_DAY = 86400;
+
+    public static final String[] COLUMNS = {
+        "rank", "seller_id", "seller_city", "seller_state", "distance_km", "recent_orders", "recent_items",
+        "avg_freight", "total_freight", "last_order"
+    };
+
+    private static volatile SellerLocator instance;
+
+    private final ZipGeography geography;
+    private final boolean local;
+
+    // Located sellers: those whose zip prefix has a GEOLOCATION centroid
+    private final String[] sellerIds;
+    private final int[] sellerSlot;
+    private final double[] sellerLat;     // radians
+    private final double[] sellerLng;     // radians
+    private final double[] sellerCosLat;
+    private final long[] sellerLast;      // newest purchase, epoch seconds, or ColumnStore.NULL_LONG
+
+    // Grid: cellStart[c] .. cellStart[c + 1] index cellSellers for cell c = row * cols + col
+    private final double minLat;
+    private final double minLng;
+    private final double cellDegrees;
+    private final int rows;
+    private final int cols;
+    private final int[] cellStart;
+    private final int[] cellSellers;
+    private final double maxAbsLat;
+
+    // Per seller, its orders by purchase time: orderStart[s] .. orderStart[s + 1] index the arrays below.
+    // The cumulative arrays have one more entry, so a range total is cum[to] - cum[from].
+    private final int[] orderStart;
+    private final long[] orderTime;
+    private final long[] cumItems;
+    private final long[] cumFreight;
+    private final long[] cumPriced;
+    private final long newestPurchase;
+
+    /**
+     * One seller found by a query
+     */
+    public static final class Neighbor {
+        public final int seller;
+        public final double distanceKm;
+
+        Neighbor(int seller, double distanceKm) {
+            this.seller = seller;
+            this.distanceKm = distanceKm;
+        }
+    }
+
+    /**
+     * Orders per seller as they are read: one entry per (seller, order) with a purchase time
+     */
+    private static final class OrderRows {
+        int size;
+        int[] seller = new int[1024];
+        long[] time = new long[1024];
+        int[] items = new int[1024];
+        int[] priced = new int[1024];
+        long[] freight = new long[1024];
+
+        void add(int s, long t, int itemCount, int pricedCount, long freightCents) {
+            if (size == seller.length) {
+                int capacity = size * 2;
+                seller = Arrays.copyOf(seller, capacity);
+                time = Arrays.copyOf(time, capacity);
+                items = Arrays.copyOf(items, capacity);
+                priced = Arrays.copyOf(priced, capacity);
+                freight = Arrays.copyOf(freight, capacity);
+            }
+            seller[size] = s;
+            time[size] = t;
+            items[size] = itemCount;
+            priced[size] = pricedCount;
+            freight[size] = freightCents;
+            size++;
+        }
+    }
+
+    private SellerLocator(ZipGeography geography, boolean local, String[] ids, int[] zipSlot, OrderRows orders,
+                          double cellDegrees) {
+        this.geography = geography;
+        this.local = local;
+        this.cellDegrees = cellDegrees;
+
+        // Keep the sellers with a centroid, and renumber the order rows to match
+        int[] located = new int[ids.length];
+        int count = 0;
+        for (int s = 0; s < ids.length; s++) {
+            int slot = zipSlot[s];
+            located[s] = slot >= 0 && slot < ZipGeography.SLOTS && geography.contains(slot)
+                         && !Float.isNaN(geography.latitude(slot)) ? count++ : -1;
+        }
+        sellerIds = new String[count];
+        sellerSlot = new int[count];
+        sellerLat = new double[count];
+        sellerLng = new double[count];
+        sellerCosLat = new double[count];
+        double south = Double.POSITIVE_INFINITY;
+        double north = Double.NEGATIVE_INFINITY;
+        double west = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        for (int s = 0; s < ids.length; s++) {
+            int index = located[s];
+            if (index < 0) {
+                continue;
+            }
+            int slot = zipSlot[s];
+            double lat = geography.latitude(slot);
+            double lng = geography.longitude(slot);
+            sellerIds[index] = ids[s];
+            sellerSlot[index] = slot;
+            sellerLat[index] = Math.toRadians(lat);
+            sellerLng[index] = Math.toRadians(lng);
+            sellerCosLat[index] = Math.cos(sellerLat[index]);
+            south = Math.min(south, lat);
+            north = Math.max(north, lat);
+            west = Math.min(west, lng);
+            east = Math.max(east, lng);
+        }
+        if (count == 0) {
+            south = north = west = east = 0;
+        }
+
+        minLat = south;
+        minLng = west;
+        rows = (int) Math.floor((north - south) / cellDegrees) + 1;
+        cols = (int) Math.floor((east - west) / cellDegrees) + 1;
+        maxAbsLat = Math.max(Math.abs(south), Math.abs(north));
+        cellStart = new int[rows * cols + 1];
+        int[] cellOf = new int[count];
+        for (int s = 0; s < count; s++) {
+            cellOf[s] = cell(row(geography.latitude(sellerSlot[s])), col(geography.longitude(sellerSlot[s])));
+            cellStart[cellOf[s] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellSellers = new int[count];
+        int[] next = Arrays.copyOf(cellStart, rows * cols);
+        for (int s = 0; s < count; s++) {
+            cellSellers[next[cellOf[s]]++] = s;
+        }
+
+        // Bucket the order rows by seller, then sort each bucket by purchase time
+        orderStart = new int[count + 1];
+        for (int r = 0; r < orders.size; r++) {
+            int s = located[orders.seller[r]];
+            if (s >= 0) {
+                orderStart[s + 1]++;
+            }
+        }
+        for (int s = 0; s < count; s++) {
+            orderStart[s + 1] += orderStart[s];
+        }
+        long[] keys = new long[orderStart[count]];
+        int[] fill = Arrays.copyOf(orderStart, count);
+        long oldest = Long.MAX_VALUE;
+        long newest = ColumnStore.NULL_LONG;
+        for (int r = 0; r < orders.size; r++) {
+            oldest = Math.min(oldest, orders.time[r]);
+            newest = Math.max(newest, orders.time[r]);
+        }
+        for (int r = 0; r < orders.size; r++) {
+            int s = located[orders.seller[r]];
+            if (s >= 0) {
+                // Purchase time relative to the oldest order in the high bits, the row in the low bits
+                keys[fill[s]++] = ((orders.time[r] - oldest) << 32) | r;
+            }
+        }
+        orderTime = new long[keys.length];
+        cumItems = new long[keys.length + 1];
+        cumFreight = new long[keys.length + 1];
+        cumPriced = new long[keys.length + 1];
+        sellerLast = new long[count];
+        for (int s = 0; s < count; s++) {
+            Arrays.sort(keys, orderStart[s], orderStart[s + 1]);
+            sellerLast[s] = ColumnStore.NULL_LONG;
+            for (int k = orderStart[s]; k < orderStart[s + 1]; k++) {
+                int r = (int) keys[k];
+                orderTime[k] = orders.time[r];
+                cumItems[k + 1] = cumItems[k] + orders.items[r];
+                cumFreight[k + 1] = cumFreight[k] + orders.freight[r];
+                cumPriced[k + 1] = cumPriced[k] + orders.priced[r];
+                sellerLast[s] = orders.time[r];
+            }
+        }
+        newestPurchase = newest;
+    }
+
+    // ==================== BUILDING ====================
+
+    /**
+     * Returns the index, building it on first use from the local engine's tables or the database,
+     * whichever the queries currently run on
+     */
+    public static SellerLocator get() throws IOException, SQLException {
+        SellerLocator locator = instance;
+        if (locator == null || locator.local != QueryExecutor.isLocalEngine()) {
+            synchronized (SellerLocator.class) {
+                locator = instance;
+                if (locator == null || locator.local != QueryExecutor.isLocalEngine()) {
+                    locator = QueryExecutor.isLocalEngine()
+                            ? fromColumnStore(LocalAnalyticsEngine.getStore())
+                            : fromDatabase();
+                    instance = locator;
+                }
+            }
+        }
+        return locator;
+    }
+
+    /**
+     * Forgets the index so the next query rebuilds it, e.g. after the tables are cleared or reloaded
+     */
+    public static void invalidate() {
+        instance = null;
+    }
+
+    /**
+     * Builds the index from the columns the local engine has loaded
+     */
+    public static SellerLocator fromColumnStore(ColumnStore s) {
+        int sellerCount = s.sellerIds.size();
+        String[] ids = new String[sellerCount];
+        for (int seller = 0; seller < sellerCount; seller++) {
+            ids[seller] = s.sellerIds.get(seller);
+        }
+
+        // Group the items by seller, then by order within each seller
+        int[] start = new int[sellerCount + 1];
+        for (int item = 0; item < s.itemSeller.length; item++) {
+            if (s.itemSeller[item] >= 0) {
+                start[s.itemSeller[item] + 1]++;
+            }
+        }
+        for (int seller = 0; seller < sellerCount; seller++) {
+            start[seller + 1] += start[seller];
+        }
+        long[] keys = new long[start[sellerCount]];
+        int[] fill = Arrays.copyOf(start, sellerCount);
+        for (int item = 0; item < s.itemSeller.length; item++) {
+            if (s.itemSeller[item] >= 0) {
+                keys[fill[s.itemSeller[item]]++] = ((long) s.itemOrder[item] << 32) | item;
+            }
+        }
+
+        OrderRows orders = new OrderRows();
+        for (int seller = 0; seller < sellerCount; seller++) {
+            Arrays.sort(keys, start[seller], start[seller + 1]);
+            int k = start[seller];
+            while (k < start[seller + 1]) {
+                int order = (int) (keys[k] >>> 32);
+                int items = 0;
+                int priced = 0;
+                long freight = 0;
+                for (; k < start[seller + 1] && (int) (keys[k] >>> 32) == order; k++) {
+                    long value = s.itemFreight[(int) keys[k]];
+                    items++;
+                    if (value != ColumnStore.NULL_LONG) {
+                        priced++;
+                        freight += value;
+                    }
+                }
+                long purchase = s.orderPurchase[order];
+                if (purchase != ColumnStore.NULL_LONG) {
+                    orders.add(seller, purchase, items, priced, freight);
+                }
+            }
+        }
+        return new SellerLocator(s.geography, true, ids, s.sellerZip, orders, DEFAULT_CELL_DEGREES);
+    }
+
+    /**
+     * Builds the index from SELLERS and one grouped pass over ORDER_ITEMS joined to ORDERS
+     */
+    public static SellerLocator fromDatabase() throws IOException, SQLException {
+        ZipGeography geography = ZipGeography.getOrBuild();
+        Connection conn = DatabaseConnection.getConnection();
+        List<String> ids = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        Map<String, Integer> sellers = new HashMap<>();
+        OrderRows orders = new OrderRows();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT seller_id, seller_zip_code_prefix FROM SELLERS")) {
+                while (rs.next()) {
+                    sellers.put(rs.getString(1), ids.size());
+                    ids.add(rs.getString(1));
+                    slots.add(geography.resolve(rs.getString(2)));
+                }
+            }
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT oi.seller_id, o.order_purchase_timestamp, COUNT(*), COUNT(oi.freight_value), "
+                    + "SUM(oi.freight_value) FROM ORDER_ITEMS oi JOIN ORDERS o ON o.order_id = oi.order_id "
+                    + "WHERE o.order_purchase_timestamp IS NOT NULL "
+                    + "GROUP BY oi.seller_id, oi.order_id, o.order_purchase_timestamp")) {
+                while (rs.next()) {
+                    Integer seller = sellers.get(rs.getString(1));
+                    if (seller == null) {
+                        continue;
+                    }
+                    long freight = ColumnStore.parseCents(rs.getString(5));
+                    orders.add(seller, ColumnStore.parseTimestamp(rs.getString(2)), rs.getInt(3), rs.getInt(4),
+                               freight == ColumnStore.NULL_LONG ? 0 : freight);
+                }
+            }
+        }
+        int[] zipSlot = new int[ids.size()];
+        for (int seller = 0; seller < zipSlot.length; seller++) {
+            zipSlot[seller] = slots.get(seller);
+        }
+        return new SellerLocator(geography, false, ids.toArray(new String[0]), zipSlot, orders,
+                                 DEFAULT_CELL_DEGREES);
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * The k sellers nearest to a point, closest first
+     * @param since Only sellers with an order at or after this epoch second; ColumnStore.NULL_LONG for any
+     */
+    public List<Neighbor> nearest(double lat, double lng, int k, long since) {
+        return search(lat, lng, k, Double.POSITIVE_INFINITY, since);
+    }
+
+    /**
+     * Every seller within a radius of a point, closest first
+     */
+    public List<Neighbor> within(double lat, double lng, double radiusKm, long since) {
+        return search(lat, lng, Integer.MAX_VALUE, radiusKm, since);
+    }
+
+    /**
+     * Ring search over the grid: up to k sellers within the radius, closest first, ties by seller id
+     */
+    public List<Neighbor> search(double lat, double lng, int k, double radiusKm, long since) {
+        Heap heap = new Heap(k);
+        if (sellerIds.length == 0 || k <= 0) {
+            return heap.sorted();
+        }
+        double latRad = Math.toRadians(lat);
+        double lngRad = Math.toRadians(lng);
+        double cosLat = Math.cos(latRad);
+        int centerRow = Math.max(0, Math.min(rows - 1, row(lat)));
+        int centerCol = Math.max(0, Math.min(cols - 1, col(lng)));
+        // Longitude gaps shrink towards the poles; bound them by the widest latitude either point can have
+        double cosMax = Math.cos(Math.toRadians(Math.min(90, Math.max(maxAbsLat, Math.abs(lat)))));
+
+        for (int ring = 0; ; ring++) {
+            int top = centerRow - ring;
+            int bottom = centerRow + ring;
+            int left = centerCol - ring;
+            int right = centerCol + ring;
+            for (int r = Math.max(0, top); r <= Math.min(rows - 1, bottom); r++) {
+                boolean edgeRow = r == top || r == bottom;
+                for (int c = Math.max(0, left); c <= Math.min(cols - 1, right); c++) {
+                    if (!edgeRow && c != left && c != right) {
+                        c = right - 1; // interior cells were scanned by earlier rings
+                        continue;
+                    }
+                    int cell = cell(r, c);
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int s = cellSellers[i];
+                        if (since != ColumnStore.NULL_LONG && sellerLast[s] < since) {
+                            continue;
+                        }
+                        double distance = haversine(latRad, lngRad, cosLat, s);
+                        if (distance <= radiusKm) {
+                            heap.offer(s, distance);
+                        }
+                    }
+                }
+            }
+
+            // Nearest any unscanned cell can be: the gap to each side of the scanned box that still has cells
+            double bound = Double.POSITIVE_INFINITY;
+            if (top > 0) {
+                bound = Math.min(bound, latitudeGap(lat - (minLat + top * cellDegrees)));
+            }
+            if (bottom < rows - 1) {
+                bound = Math.min(bound, latitudeGap(minLat + (bottom + 1) * cellDegrees - lat));
+            }
+            if (left > 0) {
+                bound = Math.min(bound, longitudeGap(lng - (minLng + left * cellDegrees), cosMax));
+            }
+            if (right < cols - 1) {
+                bound = Math.min(bound, longitudeGap(minLng + (right + 1) * cellDegrees - lng, cosMax));
+            }
+            if (bound == Double.POSITIVE_INFINITY || bound > radiusKm || (heap.full() && bound > heap.worst())) {
+                break;
+            }
+        }
+        return heap.sorted();
+    }
+
+    private double haversine(double latRad, double lngRad, double cosLat, int s) {
+        double dLat = Math.sin((sellerLat[s] - latRad) / 2);
+        double dLng = Math.sin((sellerLng[s] - lngRad) / 2);
+        double h = dLat * dLat + cosLat * sellerCosLat[s] * dLng * dLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /**
+     * Great-circle distance between two points in degrees
+     */
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double dLng = Math.sin(Math.toRadians(lng2 - lng1) / 2);
+        double h = dLat * dLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * dLng * dLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    private static double latitudeGap(double degrees) {
+        return degrees <= 0 ? 0 : EARTH_RADIUS_KM * Math.toRadians(degrees);
+    }
+
+    private static double longitudeGap(double degrees, double cosMax) {
+        if (degrees <= 0) {
+            return 0;
+        }
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, cosMax * Math.sin(Math.toRadians(Math.min(degrees, 180)) / 2)));
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat - minLat) / cellDegrees);
+    }
+
+    private int col(double lng) {
+        return (int) Math.floor((lng - minLng) / cellDegrees);
+    }
+
+    private int cell(int row, int col) {
+        return row * cols + col;
+    }
+
+    /**
+     * Bounded max-heap on distance, so the worst of the k best is at the top
+     */
+    private final class Heap {
+        private final int capacity;
+        private int size;
+        private int[] seller = new int[16];
+        private double[] distance = new double[16];
+
+        Heap(int capacity) {
+            this.capacity = capacity;
+        }
+
+        boolean full() {
+            return size == capacity;
+        }
+
+        double worst() {
+            return distance[0];
+        }
+
+        void offer(int s, double d) {
+            if (size == capacity) {
+                if (!closer(s, d, seller[0], distance[0])) {
+                    return;
+                }
+                seller[0] = s;
+                distance[0] = d;
+                siftDown(0);
+                return;
+            }
+            if (size == seller.length) {
+                seller = Arrays.copyOf(seller, size * 2);
+                distance = Arrays.copyOf(distance, size * 2);
+            }
+            int i = size++;
+            seller[i] = s;
+            distance[i] = d;
+            while (i > 0 && closer(seller[(i - 1) / 2], distance[(i - 1) / 2], seller[i], distance[i])) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (closer(seller[worst], distance[worst], seller[child], distance[child])) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private boolean closer(int a, double da, int b, double db) {
+            return da < db || (da == db && sellerIds[a].compareTo(sellerIds[b]) < 0);
+        }
+
+        private void swap(int i, int j) {
+            int s = seller[i];
+            seller[i] = seller[j];
+            seller[j] = s;
+            double d = distance[i];
+            distance[i] = distance[j];
+            distance[j] = d;
+        }
+
+        List<Neighbor> sorted() {
+            List<Neighbor> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(new Neighbor(seller[i], distance[i]));
+            }
+            result.sort((a, b) -> closer(a.seller, a.distanceKm, b.seller, b.distanceKm) ? -1
+                                  : closer(b.seller, b.distanceKm, a.seller, a.distanceKm) ? 1 : 0);
+            return result;
+        }
+    }
+
+    // ==================== REPORT ====================
+
+    /**
+     * Cut-off for "recent": the given number of days before the newest purchase in the data
+     * @return Epoch seconds, or ColumnStore.NULL_LONG for days <= 0 (any time)
+     */
+    public long recentSince(int days) {
+        if (days <= 0 || newestPurchase == ColumnStore.NULL_LONG) {
+            return ColumnStore.NULL_LONG;
+        }
+        return newestPurchase - days * SECONDS_PER_DAY;
+    }
+
+    /**
+     * Report rows for the sellers found: orders, items and freight since the cut-off
+     */
+    public List<Object[]> rows(List<Neighbor> neighbors, long since) {
+        List<Object[]> result = new ArrayList<>(neighbors.size());
+        int rank = 0;
+        for (Neighbor neighbor : neighbors) {
+            int s = neighbor.seller;
+            int to = orderStart[s + 1];
+            int from = since == ColumnStore.NULL_LONG ? orderStart[s] : firstAtOrAfter(s, since);
+            long items = cumItems[to] - cumItems[from];
+            long priced = cumPriced[to] - cumPriced[from];
+            long freight = cumFreight[to] - cumFreight[from];
+            result.add(new Object[] {
+                ++rank, sellerIds[s], geography.city(sellerSlot[s]), geography.state(sellerSlot[s]),
+                Math.round(neighbor.distanceKm * 10) / 10.0, to - from, items,
+                priced == 0 ? null : BigDecimal.valueOf(freight, 2).divide(BigDecimal.valueOf(priced), 2,
+                                                                         java.math.RoundingMode.HALF_UP),
+                priced == 0 ? null : BigDecimal.valueOf(freight, 2),
+                sellerLast[s] == ColumnStore.NULL_LONG ? null : date(sellerLast[s])
+            });
+        }
+        return result;
+    }
+
+    private int firstAtOrAfter(int s, long since) {
+        int low = orderStart[s];
+        int high = orderStart[s + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (orderTime[mid] < since) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static LocalDate date(long epochSeconds) {
+        return LocalDate.ofEpochDay(Math.floorDiv(epochSeconds, SECONDS_PER_DAY));
+    }
+
+    public int sellerCount() {
+        return sellerIds.length;
+    }
+
+    public int cellCount() {
+        return rows * cols;
+    }
+
+    /**
+     * Shows the nearest sellers to a customer zip prefix
+     * @param radiusKm Only sellers within this distance; Double.POSITIVE_INFINITY for no limit
+     */
+    public static void displayNearest(String prefix, int k, int recentDays, double radiusKm) {
+        SellerLocator locator;
+        try {
+            locator = get();
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not build the seller location index.");
+            System.out.println("Details: " + e.getMessage());
+            return;
+        }
+        int slot = locator.geography.resolve(prefix);
+        if (slot < 0 || Float.isNaN(locator.geography.latitude(slot))) {
+            System.out.println("\nError: No GEOLOCATION coordinates for zip prefix " + prefix + ".");
+            return;
+        }
+        double lat = locator.geography.latitude(slot);
+        double lng = locator.geography.longitude(slot);
+        long since = locator.recentSince(recentDays);
+
+        long start = System.nanoTime();
+        List<Neighbor> found = locator.search(lat, lng, k, radiusKm, since);
+        long searched = System.nanoTime();
+        List<Object[]> rows = locator.rows(found, since);
+
+        String title = "Nearest Sellers to " + prefix + " (" + locator.geography.city(slot) + ", "
+                       + locator.geography.state(slot) + ")";
+        ResultFormatter.displayRows(COLUMNS, rows, title, null);
+        System.out.println(String.format("Customer prefix centroid %.5f, %.5f. %s", lat, lng,
+                                         since == ColumnStore.NULL_LONG
+                                                 ? "Orders counted over all time."
+                                                 : "Recent orders since " + date(since) + " (" + recentDays
+                                                   + " days before the newest order)."));
+        System.out.println(String.format("Searched %,d located sellers in a %,d-cell grid (%s) in %.3f ms.",
+                                         locator.sellerCount(), locator.cellCount(), locator.local ? "local engine" : "database",
+                                         (searched - start) / 1e6));
+    }
+
+    /**
+     * Nearest sellers from the command line:
+     *   java SellerLocator [--data DIR] [--days N] [--radius KM] PREFIX [K]
+     */
+    public static void main(String[] args) {
+        String dataDir = null;
+        int days = DEFAULT_RECENT_DAYS;
+        double radius = Double.POSITIVE_INFINITY;
+        String prefix = null;
+        int k = DEFAULT_NEIGHBORS;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data":
+                        dataDir = args[++i];
+                        break;
+                    case "--days":
+                        days = Integer.parseInt(args[++i]);
+                        break;
+                    case "--radius":
+                        radius = Double.parseDouble(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        } else if (prefix == null) {
+                            prefix = args[i];
+                        } else {
+                            k = Integer.parseInt(args[i]);
+                        }
+                }
+            }
+            if (prefix == null) {
+                throw new IllegalArgumentException("A customer zip prefix is required");
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: SellerLocator [--data DIR] [--days N] [--radius KM] PREFIX [K]");
+            System.exit(1);
+        }
+
+        if (dataDir != null) {
+            CSVDataLoader.setDataDir(dataDir);
+            QueryExecutor.setLocalEngine(true);
+        }
+        displayNearest(prefix, k, days, radius);
+        DatabaseConnection.closeConnection();
+    }
+}
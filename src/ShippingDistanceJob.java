@@ -0,0 +1,517 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch job giving every ORDER_ITEMS row the great-circle distance between its seller's and its
+ * customer's zip prefix centroids, written to ORDER_ITEM_DISTANCES. The items are read once into
+ * primitive columns; ParallelAggregator then splits them into ranges that each compute their
+ * distances and, in the same loop, sum items, metres and freight per (seller state, customer state)
+ * pair and per seller. The freight-per-km reports come straight from those sums. States are the
+ * ones ZipGeography gives each prefix, so both ends of a pair are placed the same way.
+ */
+public class ShippingDistanceJob {
+    public static final int DEFAULT_SELLER_LIMIT = 20;
+    public static final int MIN_SELLER_ITEMS = 20;
+
+    static final String CREATE_TABLE =
+            "IF OBJECT_ID('ORDER_ITEM_DISTANCES', 'U') IS NULL BEGIN "
+            + "CREATE TABLE ORDER_ITEM_DISTANCES ("
+            + "order_id VARCHAR(50) NOT NULL, order_item_seq INT NOT NULL, distance_km DECIMAL(8, 2) NOT NULL, "
+            + "PRIMARY KEY (order_id, order_item_seq), "
+            + "FOREIGN KEY (order_id, order_item_seq) REFERENCES ORDER_ITEMS(order_id, order_item_seq)); "
+            + "CREATE INDEX idx_item_distance ON ORDER_ITEM_DISTANCES(distance_km); END";
+    static final String CLEAR_TABLE =
+            "IF OBJECT_ID('ORDER_ITEM_DISTANCES', 'U') IS NOT NULL DELETE FROM ORDER_ITEM_DISTANCES";
+    private static final String INSERT_DISTANCE =
+            "INSERT INTO ORDER_ITEM_DISTANCES (order_id, order_item_seq, distance_km) VALUES (?, ?, ?)";
+    private static final String READ_ITEMS =
+            "SELECT oi.order_id, oi.order_item_seq, oi.seller_id, s.seller_zip_code_prefix, "
+            + "c.customer_zip_code_prefix, oi.freight_value FROM ORDER_ITEMS oi "
+            + "JOIN ORDERS o ON o.order_id = oi.order_id "
+            + "LEFT JOIN CUSTOMERS c ON c.customer_id = o.customer_id "
+            + "LEFT JOIN SELLERS s ON s.seller_id = oi.seller_id";
+
+    public static final String[] STATE_PAIR_COLUMNS = {
+        "seller_state", "customer_state", "items", "avg_distance_km", "avg_freight", "freight_per_100km"
+    };
+    public static final String[] SELLER_COLUMNS = {
+        "seller_id", "seller_state", "items", "avg_distance_km", "avg_freight", "freight_per_100km"
+    };
+
+    private static volatile Result last;
+
+    /**
+     * The order items, one entry per row, with prefixes already resolved to ZipGeography slots (-1 if unknown)
+     */
+    static final class Items {
+        final int count;
+        final String[] orderIds;   // null when there is nothing to write back
+        final int[] sequence;
+        final int[] seller;        // index into sellerIds, -1 for none
+        final int[] sellerSlot;
+        final int[] customerSlot;
+        final long[] freight;      // cents, ColumnStore.NULL_LONG for NULL
+        final List<String> sellerIds;
+
+        Items(int count, String[] orderIds, int[] sequence, int[] seller, int[] sellerSlot, int[] customerSlot,
+              long[] freight, List<String> sellerIds) {
+            this.count = count;
+            this.orderIds = orderIds;
+            this.sequence = sequence;
+            this.seller = seller;
+            this.sellerSlot = sellerSlot;
+            this.customerSlot = customerSlot;
+            this.freight = freight;
+            this.sellerIds = sellerIds;
+        }
+    }
+
+    /**
+     * Sums for one range of items, in dense arrays: pairs are indexed by sellerState * states + customerState
+     * over state codes shifted up by one so a NULL state (-1) has a place, sellers by their index
+     */
+    static final class Partial {
+        final int states;
+        final long[] pairItems;
+        final long[] pairMetres;
+        final long[] pairFreight;
+        final long[] sellerItems;
+        final long[] sellerMetres;
+        final long[] sellerFreight;
+        long located;
+
+        Partial(int states, int sellers) {
+            this.states = states;
+            pairItems = new long[states * states];
+            pairMetres = new long[states * states];
+            pairFreight = new long[states * states];
+            sellerItems = new long[sellers];
+            sellerMetres = new long[sellers];
+            sellerFreight = new long[sellers];
+        }
+
+        Partial merge(Partial other) {
+            add(pairItems, other.pairItems);
+            add(pairMetres, other.pairMetres);
+            add(pairFreight, other.pairFreight);
+            add(sellerItems, other.sellerItems);
+            add(sellerMetres, other.sellerMetres);
+            add(sellerFreight, other.sellerFreight);
+            located += other.located;
+            return this;
+        }
+
+        private static void add(long[] target, long[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+
+    /**
+     * What one run produced: a distance per item (NaN if either end has no centroid) and the report sums
+     */
+    public static final class Result {
+        final Items items;
+        final ZipGeography geography;
+        final float[] distanceKm;
+        final Partial totals;
+        final boolean local;
+        final long readNanos;
+        final long computeNanos;
+        long writeNanos = -1;
+        int written;
+
+        Result(Items items, ZipGeography geography, float[] distanceKm, Partial totals, boolean local,
+               long readNanos, long computeNanos) {
+            this.items = items;
+            this.geography = geography;
+            this.distanceKm = distanceKm;
+            this.totals = totals;
+            this.local = local;
+            this.readNanos = readNanos;
+            this.computeNanos = computeNanos;
+        }
+    }
+
+    // ==================== READING ====================
+
+    /**
+     * Reads the items with their seller and customer prefixes in one query
+     */
+    static Items readFromDatabase(ZipGeography geography) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        List<String> orderIds = new ArrayList<>();
+        ColumnStore.IntColumn sequence = new ColumnStore.IntColumn();
+        ColumnStore.IntColumn seller = new ColumnStore.IntColumn();
+        ColumnStore.IntColumn sellerSlot = new ColumnStore.IntColumn();
+        ColumnStore.IntColumn customerSlot = new ColumnStore.IntColumn();
+        ColumnStore.LongColumn freight = new ColumnStore.LongColumn();
+        List<String> sellerIds = new ArrayList<>();
+        Map<String, Integer> sellerIndex = new HashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery(READ_ITEMS)) {
+                while (rs.next()) {
+                    orderIds.add(rs.getString(1));
+                    sequence.add(rs.getInt(2));
+                    String sellerId = rs.getString(3);
+                    seller.add(sellerId == null ? -1 : sellerIndex.computeIfAbsent(sellerId, id -> {
+                        sellerIds.add(id);
+                        return sellerIds.size() - 1;
+                    }));
+                    sellerSlot.add(geography.resolve(rs.getString(4)));
+                    customerSlot.add(geography.resolve(rs.getString(5)));
+                    freight.add(ColumnStore.parseCents(rs.getString(6)));
+                }
+            }
+        }
+        return new Items(orderIds.size(), orderIds.toArray(new String[0]), sequence.toArray(), seller.toArray(),
+                         sellerSlot.toArray(), customerSlot.toArray(), freight.toArray(), sellerIds);
+    }
+
+    /**
+     * Takes the items from the local engine's columns; there is nothing to write back to
+     */
+    static Items readFromColumnStore(ColumnStore s) {
+        int count = s.itemOrder.length;
+        int[] sellerSlot = new int[count];
+        int[] customerSlot = new int[count];
+        for (int item = 0; item < count; item++) {
+            int seller = s.itemSeller[item];
+            int customer = s.orderCustomer[s.itemOrder[item]];
+            sellerSlot[item] = seller < 0 ? -1 : located(s.geography, s.sellerZip[seller]);
+            customerSlot[item] = customer < 0 ? -1 : located(s.geography, s.customerZip[customer]);
+        }
+        List<String> sellerIds = new ArrayList<>(s.sellerIds.size());
+        for (int seller = 0; seller < s.sellerIds.size(); seller++) {
+            sellerIds.add(s.sellerIds.get(seller));
+        }
+        return new Items(count, null, null, s.itemSeller, sellerSlot, customerSlot, s.itemFreight, sellerIds);
+    }
+
+    private static int located(ZipGeography geography, int zip) {
+        return zip >= 0 && zip < ZipGeography.SLOTS && geography.contains(zip) ? zip : -1;
+    }
+
+    // ==================== COMPUTING ====================
+
+    /**
+     * Computes every item's distance and the report sums in one parallel pass
+     */
+    static Partial compute(Items items, ZipGeography geography, float[] distanceKm) {
+        // Centroids in radians, so the inner loop is a handful of multiplications and one asin
+        double[] latRad = new double[ZipGeography.SLOTS];
+        double[] lngRad = new double[ZipGeography.SLOTS];
+        double[] cosLat = new double[ZipGeography.SLOTS];
+        for (int slot = 0; slot < ZipGeography.SLOTS; slot++) {
+            latRad[slot] = Math.toRadians(geography.latitude(slot));
+            lngRad[slot] = Math.toRadians(geography.longitude(slot));
+            cosLat[slot] = Math.cos(latRad[slot]);
+        }
+
+        int states = geography.getStates().size() + 1;
+        int sellers = items.sellerIds.size();
+        // Each partial holds a few arrays per seller, so keep the leaves to a few per thread
+        int leaf = items.count / (ParallelAggregator.getParallelism() * 4) + 1;
+        return ParallelAggregator.aggregate(items.count, leaf, new ParallelAggregator.Aggregation<Partial>() {
+            @Override
+            public Partial newPartial() {
+                return new Partial(states, sellers);
+            }
+
+            @Override
+            public void accumulate(Partial partial, int item) {
+                int from = items.sellerSlot[item];
+                int to = items.customerSlot[item];
+                if (from < 0 || to < 0 || Double.isNaN(latRad[from]) || Double.isNaN(latRad[to])) {
+                    distanceKm[item] = Float.NaN;
+                    return;
+                }
+                double dLat = Math.sin((latRad[to] - latRad[from]) / 2);
+                double dLng = Math.sin((lngRad[to] - lngRad[from]) / 2);
+                double h = dLat * dLat + cosLat[from] * cosLat[to] * dLng * dLng;
+                double km = 2 * SellerLocator.EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+                distanceKm[item] = (float) km;
+                partial.located++;
+
+                long freight = items.freight[item];
+                if (freight == ColumnStore.NULL_LONG) {
+                    return;
+                }
+                long metres = Math.round(km * 1000);
+                int pair = (geography.stateCode(from) + 1) * states + geography.stateCode(to) + 1;
+                partial.pairItems[pair]++;
+                partial.pairMetres[pair] += metres;
+                partial.pairFreight[pair] += freight;
+                int seller = items.seller[item];
+                if (seller >= 0) {
+                    partial.sellerItems[seller]++;
+                    partial.sellerMetres[seller] += metres;
+                    partial.sellerFreight[seller] += freight;
+                }
+            }
+
+            @Override
+            public Partial merge(Partial left, Partial right) {
+                return left.merge(right);
+            }
+        });
+    }
+
+    // ==================== WRITING ====================
+
+    /**
+     * Replaces the contents of ORDER_ITEM_DISTANCES with the located items, in one transaction
+     * @return Rows written
+     */
+    static int write(Items items, float[] distanceKm) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        boolean originalAutoCommit = conn.getAutoCommit();
+        int written = 0;
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_DISTANCE)) {
+            stmt.executeUpdate(CREATE_TABLE);
+            conn.setAutoCommit(false);
+            stmt.executeUpdate(CLEAR_TABLE);
+            for (int item = 0; item < items.count; item++) {
+                if (Float.isNaN(distanceKm[item])) {
+                    continue;
+                }
+                pstmt.setString(1, items.orderIds[item]);
+                pstmt.setInt(2, items.sequence[item]);
+                pstmt.setBigDecimal(3, BigDecimal.valueOf(distanceKm[item]).setScale(2, RoundingMode.HALF_UP));
+                pstmt.addBatch();
+                if (++written % CSVDataLoader.BATCH_SIZE == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(originalAutoCommit);
+        }
+        return written;
+    }
+
+    // ==================== RUNNING ====================
+
+    /**
+     * Runs the job on the local engine's tables, or on the database with the distances written back
+     */
+    public static Result run(boolean write) throws IOException, SQLException {
+        boolean local = QueryExecutor.isLocalEngine();
+        long start = System.nanoTime();
+        ZipGeography geography;
+        Items items;
+        if (local) {
+            ColumnStore store = LocalAnalyticsEngine.getStore();
+            geography = store.geography;
+            items = readFromColumnStore(store);
+        } else {
+            geography = ZipGeography.getOrBuild();
+            items = readFromDatabase(geography);
+        }
+        long read = System.nanoTime();
+        float[] distanceKm = new float[items.count];
+        Partial totals = compute(items, geography, distanceKm);
+        long computed = System.nanoTime();
+        Result result = new Result(items, geography, distanceKm, totals, local, read - start, computed - read);
+        if (write && items.orderIds != null) {
+            result.written = write(items, distanceKm);
+            result.writeNanos = System.nanoTime() - computed;
+        }
+        last = result;
+        return result;
+    }
+
+    /**
+     * The last run's result if it was on the engine the queries use now, otherwise a new run
+     */
+    public static Result latest() throws IOException, SQLException {
+        Result result = last;
+        if (result == null || result.local != QueryExecutor.isLocalEngine()) {
+            result = run(!QueryExecutor.isLocalEngine());
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the last run, e.g. after the tables are cleared or reloaded
+     */
+    public static void invalidate() {
+        last = null;
+    }
+
+    // ==================== REPORTS ====================
+
+    /**
+     * Freight per km for each (seller state, customer state) pair, busiest pairs first
+     */
+    public static List<Object[]> statePairRows(Result result) {
+        List<Object[]> rows = new ArrayList<>();
+        Partial totals = result.totals;
+        ColumnStore.Dictionary states = result.geography.getStates();
+        for (int pair = 0; pair < totals.pairItems.length; pair++) {
+            if (totals.pairItems[pair] > 0) {
+                rows.add(row(states.get(pair / totals.states - 1), states.get(pair % totals.states - 1),
+                             totals.pairItems[pair], totals.pairMetres[pair], totals.pairFreight[pair]));
+            }
+        }
+        rows.sort((a, b) -> {
+            int byItems = Long.compare((Long) b[2], (Long) a[2]);
+            if (byItems != 0) {
+                return byItems;
+            }
+            int bySeller = String.valueOf(a[0]).compareTo(String.valueOf(b[0]));
+            return bySeller != 0 ? bySeller : String.valueOf(a[1]).compareTo(String.valueOf(b[1]));
+        });
+        return rows;
+    }
+
+    /**
+     * Sellers with the highest freight per km, among those with enough items to compare
+     */
+    public static List<Object[]> sellerRows(Result result, int limit) {
+        List<Object[]> rows = new ArrayList<>();
+        Partial totals = result.totals;
+        Map<Integer, String> sellerState = new HashMap<>();
+        for (int item = 0; item < result.items.count; item++) {
+            int seller = result.items.seller[item];
+            if (seller >= 0 && result.items.sellerSlot[item] >= 0) {
+                sellerState.putIfAbsent(seller, result.geography.state(result.items.sellerSlot[item]));
+            }
+        }
+        for (int seller = 0; seller < totals.sellerItems.length; seller++) {
+            long items = totals.sellerItems[seller];
+            long metres = totals.sellerMetres[seller];
+            if (items >= MIN_SELLER_ITEMS && metres > 0) {
+                rows.add(row(result.items.sellerIds.get(seller), sellerState.get(seller), items, metres,
+                             totals.sellerFreight[seller]));
+            }
+        }
+        rows.sort((a, b) -> {
+            int byRate = ((BigDecimal) b[5]).compareTo((BigDecimal) a[5]);
+            return byRate != 0 ? byRate : ((String) a[0]).compareTo((String) b[0]);
+        });
+        return rows.subList(0, Math.min(limit, rows.size()));
+    }
+
+    private static Object[] row(String first, String second, long items, long metres, long freightCents) {
+        return new Object[] {
+            first, second, items,
+            Math.round(metres / (double) items / 10) / 100.0,
+            BigDecimal.valueOf(freightCents, 2).divide(BigDecimal.valueOf(items), 2, RoundingMode.HALF_UP),
+            // (cents / 100) per (metres / 100,000)
+            metres == 0 ? null : BigDecimal.valueOf(freightCents * 1000).divide(BigDecimal.valueOf(metres), 2,
+                                                                                   RoundingMode.HALF_UP)
+        };
+    }
+
+    /**
+     * Shows one of the reports: "pairs" or "sellers"
+     */
+    public static void displayReport(String report, int limit, boolean rerun) {
+        Result result;
+        try {
+            result = rerun ? run(!QueryExecutor.isLocalEngine()) : latest();
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not compute the shipping distances.");
+            System.out.println("Details: " + e.getMessage());
+            return;
+        }
+        if (report.equals("sellers")) {
+            ResultFormatter.displayRows(SELLER_COLUMNS, sellerRows(result, limit),
+                                        "Freight per 100 km by Seller (at least " + MIN_SELLER_ITEMS
+                                        + " located items, top " + limit + ")", null);
+        } else {
+            ResultFormatter.displayRows(STATE_PAIR_COLUMNS, statePairRows(result),
+                                        "Freight per 100 km by Seller State and Customer State", null);
+        }
+        printSummary(result);
+    }
+
+    private static void printSummary(Result result) {
+        System.out.println(String.format("%,d of %,d order items located (%s). Read %.1f ms, distances and sums "
+                                         + "%.1f ms on %d thread(s).", result.totals.located, result.items.count,
+                                         result.local ? "local engine" : "database", result.readNanos / 1e6,
+                                         result.computeNanos / 1e6, ParallelAggregator.getParallelism()));
+        if (result.writeNanos >= 0) {
+            System.out.println(String.format("Wrote %,d rows to ORDER_ITEM_DISTANCES in %.1f s.", result.written,
+                                             result.writeNanos / 1e9));
+        } else if (result.local) {
+            System.out.println("ORDER_ITEM_DISTANCES is only written when the job runs on the database.");
+        }
+    }
+
+    /**
+     * Runs the job and shows a report:
+     *   java ShippingDistanceJob [--data DIR] [--no-write] [--threads N] [pairs | sellers [N]]
+     */
+    public static void main(String[] args) {
+        String report = "pairs";
+        int limit = DEFAULT_SELLER_LIMIT;
+        boolean write = true;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data":
+                        CSVDataLoader.setDataDir(args[++i]);
+                        QueryExecutor.setLocalEngine(true);
+                        break;
+                    case "--no-write":
+                        write = false;
+                        break;
+                    case "--threads":
+                        ParallelAggregator.setParallelism(Integer.parseInt(args[++i]));
+                        break;
+                    case "sellers":
+                        report = args[i];
+                        if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                            limit = Integer.parseInt(args[++i]);
+                        }
+                        break;
+                    case "pairs":
+                        report = args[i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: ShippingDistanceJob [--data DIR] [--no-write] [--threads N] "
+                               + "[pairs | sellers [N]]");
+            System.exit(1);
+        }
+
+        try {
+            run(write && !QueryExecutor.isLocalEngine());
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Shipping distance job failed.");
+            System.out.println("Details: " + e.getMessage());
+            DatabaseConnection.closeConnection();
+            System.exit(1);
+        }
+        displayReport(report, limit, false);
+        DatabaseConnection.closeConnection();
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends an entry to logs/slow-queries.jsonl for every query slower than a threshold.
+ * Each line holds the query name, bound parameters, rows, elapsed time and outcome,
+ * plus the cached plan handle and plan XML from the DMVs when plan capture is on.
+ * The query thread only enqueues on a lock-free queue; a daemon writer thread
+ * formats, fetches plans and writes, so fast queries pay a single comparison.
+ */
+public class SlowQueryLog {
+    public static final String LOG_FILE = "logs/slow-queries.jsonl";
+    public static final long DEFAULT_THRESHOLD_MILLIS = 2000;
+    private static final int MAX_PENDING = 10_000;
+    private static final int PLAN_PROBE_LENGTH = 200;
+
+    // Most recent cached plan whose statement text contains the probe
+    private static final String PLAN_LOOKUP =
+        "SELECT TOP 1 CONVERT(VARCHAR(130), qs.plan_handle, 1) AS plan_handle, qp.query_plan " +
+        "FROM sys.dm_exec_query_stats qs " +
+        "CROSS APPLY sys.dm_exec_sql_text(qs.sql_handle) st " +
+        "CROSS APPLY sys.dm_exec_query_plan(qs.plan_handle) qp " +
+        "WHERE CHARINDEX(?, st.text) > 0 AND st.text NOT LIKE '%dm_exec_query_stats%' " +
+        "ORDER BY qs.last_execution_time DESC";
+
+    private static volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+    private static volatile boolean capturePlans;
+
+    private static final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pendingCount = new AtomicInteger();
+    private static final AtomicLong loggedCount = new AtomicLong();
+    private static final AtomicLong droppedCount = new AtomicLong();
+    private static volatile Thread writerThread;
+    private static volatile boolean shuttingDown;
+
+    /**
+     * One slow execution waiting to be written
+     */
+    private static class Entry {
+        final long timestamp = System.currentTimeMillis();
+        final String threadName = Thread.currentThread().getName();
+        final String sql;
+        final String operation;
+        final String outcome;
+        final Object[] params;
+        final long rows;
+        final long elapsedNanos;
+        final long thresholdNanos;
+
+        Entry(String sql, String operation, String outcome, Object[] params,
+              long rows, long elapsedNanos, long thresholdNanos) {
+            this.sql = sql;
+            this.operation = operation;
+            this.outcome = outcome;
+            this.params = params.clone();
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+            this.thresholdNanos = thresholdNanos;
+        }
+    }
+
+    /**
+     * Logs the execution if it took longer than the threshold
+     * @param sql SQL as executed (a QueryManager constant for reports)
+     * @param operation query, update or display
+     * @param outcome ok, timeout, cancelled or error
+     * @param params Bound parameters
+     * @param rows Rows returned or affected, or -1 if unknown
+     * @param elapsedNanos Time until the server returned results
+     */
+    public static void record(String sql, String operation, String outcome, Object[] params,
+                              long rows, long elapsedNanos) {
+        long threshold = thresholdNanos;
+        if (threshold <= 0 || elapsedNanos < threshold) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            // The writer has fallen far behind; never let the queue grow without bound
+            pendingCount.decrementAndGet();
+            droppedCount.incrementAndGet();
+            return;
+        }
+        pending.add(new Entry(sql, operation, outcome, params, rows, elapsedNanos, threshold));
+        LockSupport.unpark(writer());
+    }
+
+    /**
+     * Sets the threshold in milliseconds; 0 turns the log off
+     */
+    public static void setThresholdMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative: " + millis);
+        }
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public static long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /**
+     * Enables fetching the cached plan handle and plan XML for each slow query.
+     * Needs VIEW SERVER STATE; without it entries record the error instead.
+     */
+    public static void setCapturePlans(boolean enabled) {
+        capturePlans = enabled;
+    }
+
+    public static boolean isCapturePlans() {
+        return capturePlans;
+    }
+
+    public static long getLoggedCount() {
+        return loggedCount.get();
+    }
+
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private static Thread writer() {
+        Thread thread = writerThread;
+        if (thread == null) {
+            synchronized (SlowQueryLog.class) {
+                thread = writerThread;
+                if (thread == null) {
+                    thread = new Thread(SlowQueryLog::writeLoop, "slow-query-log");
+                    thread.setDaemon(true);
+                    thread.start();
+                    Thread started = thread;
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> drainOnExit(started)));
+                    writerThread = thread;
+                }
+            }
+        }
+        return thread;
+    }
+
+    /**
+     * Gives the writer a moment to flush entries still queued when the application exits
+     */
+    private static void drainOnExit(Thread thread) {
+        shuttingDown = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeLoop() {
+        Connection planConnection = null;
+        Writer out = null;
+        try {
+            while (true) {
+                Entry entry = pending.poll();
+                if (entry == null) {
+                    if (out != null) {
+                        out.flush();
+                    }
+                    if (shuttingDown) {
+                        return;
+                    }
+                    LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+                    continue;
+                }
+                pendingCount.decrementAndGet();
+
+                String[] plan = null;
+                if (capturePlans && !shuttingDown) {
+                    try {
+                        if (planConnection == null || planConnection.isClosed()) {
+                            planConnection = DatabaseConnection.openConnection();
+                        }
+                        plan = fetchPlan(planConnection, entry.sql);
+                    } catch (SQLException e) {
+                        plan = new String[] {null, null, e.getMessage()};
+                    }
+                }
+
+                if (out == null) {
+                    File file = new File(LOG_FILE);
+                    file.getAbsoluteFile().getParentFile().mkdirs();
+                    out = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(file, true), StandardCharsets.UTF_8));
+                }
+                out.write(toJson(entry, plan));
+                out.write('\n');
+                loggedCount.incrementAndGet();
+            }
+        } catch (IOException e) {
+            System.err.println("Slow-query log disabled: " + e.getMessage());
+            thresholdNanos = 0;
+        } finally {
+            closeQuietly(out, planConnection);
+        }
+    }
+
+    /**
+     * Looks up the most recent cached plan for the statement
+     * @return {plan handle, plan XML, error}, any of which may be null
+     */
+    private static String[] fetchPlan(Connection conn, String sql) throws SQLException {
+        String probe = sql.trim();
+        int firstParam = probe.indexOf('?');
+        if (firstParam >= 0) {
+            probe = probe.substring(0, firstParam);
+        }
+        if (probe.length() > PLAN_PROBE_LENGTH) {
+            probe = probe.substring(0, PLAN_PROBE_LENGTH);
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(PLAN_LOOKUP)) {
+            stmt.setQueryTimeout(30);
+            stmt.setString(1, probe);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new String[] {rs.getString(1), rs.getString(2), null};
+                }
+            }
+        }
+        return new String[] {null, null, "plan no longer cached"};
+    }
+
+    private static String toJson(Entry entry, String[] plan) {
+        StringBuilder json = new StringBuilder(256);
+        String name = QueryManager.getQueryName(entry.sql);
+
+        json.append("{\"timestamp\":");
+        ResultExporter.appendJsonString(json,
+                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(entry.timestamp)));
+        json.append(",\"query\":");
+        ResultExporter.appendJsonString(json, name != null ? name : entry.sql.trim());
+        json.append(",\"operation\":");
+        ResultExporter.appendJsonString(json, entry.operation);
+        json.append(",\"outcome\":");
+        ResultExporter.appendJsonString(json, entry.outcome);
+        json.append(",\"params\":[");
+        for (int i = 0; i < entry.params.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Object param = entry.params[i];
+            if (param == null) {
+                json.append("null");
+            } else if (param instanceof Number) {
+                json.append(param);
+            } else {
+                ResultExporter.appendJsonString(json, param.toString());
+            }
+        }
+        json.append("],\"rows\":").append(entry.rows)
+            .append(",\"elapsed_ms\":").append(String.format(Locale.ROOT, "%.1f", entry.elapsedNanos / 1e6))
+            .append(",\"threshold_ms\":").append(TimeUnit.NANOSECONDS.toMillis(entry.thresholdNanos))
+            .append(",\"thread\":");
+        ResultExporter.appendJsonString(json, entry.threadName);
+        if (plan != null) {
+            appendOptional(json, "plan_handle", plan[0]);
+            appendOptional(json, "plan_xml", plan[1]);
+            appendOptional(json, "plan_error", plan[2]);
+        }
+        json.append('}');
+        return json.toString();
+    }
+
+    private static void appendOptional(StringBuilder json, String key, String value) {
+        if (value != null) {
+            json.append(",\"").append(key).append("\":");
+            ResultExporter.appendJsonString(json, value);
+        }
+    }
+
+    private static void closeQuietly(Writer out, Connection conn) {
+        try {
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to close slow-query log: " + e.getMessage());
+        }
+        try {
+            if (conn != null) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            // Connection already broken; nothing to release
+        }
+    }
+}
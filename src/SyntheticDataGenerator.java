@@ -0,0 +1,1202 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates synthetic Olist CSV files at a chosen scale factor for load and query testing.
+ * Distributions (state mix, orders per customer, items per order, payment types,
+ * review scores, delivery delays, product attributes) are learned from whichever Olist
+ * CSVs are present in data/; anything missing falls back to figures taken from the
+ * public Olist dataset. Scale factor 1 reproduces the original row counts.
+ *
+ * Output is deterministic for a given seed and scale regardless of the thread count:
+ * rows are generated in fixed-size chunks, each with its own random stream, and chunks
+ * are written in order. Every foreign key refers to a row that is generated as well.
+ */
+public class SyntheticDataGenerator {
+    public static final String OUTPUT_DIR = "data/synthetic/";
+
+    private static final int CHUNK_ROWS = 10_000;
+    private static final long DAY = 86_400L;
+
+    // Row counts of the original Olist dataset (scale factor 1)
+    private static final long BASE_CUSTOMERS = 99_441;
+    private static final long BASE_SELLERS = 3_095;
+    private static final long BASE_PRODUCTS = 32_951;
+    private static final long BASE_GEOLOCATION = 1_000_163;
+
+    // Salts keep the random streams and ids of different tables independent
+    private static final int SALT_CUSTOMER = 1;
+    private static final int SALT_UNIQUE = 2;
+    private static final int SALT_SELLER = 3;
+    private static final int SALT_PRODUCT = 4;
+    private static final int SALT_ORDER = 5;
+    private static final int SALT_REVIEW = 6;
+    private static final int SALT_GEOLOCATION = 7;
+    private static final int SALT_PRODUCT_ROW = 8;
+    private static final int SALT_PRODUCT_SELLER = 9;
+    private static final int SALT_PRODUCT_PRICE = 10;
+    private static final int SALT_GROUPS = 11;
+
+    private static final String CUSTOMERS_FILE = "olist_customers_dataset.csv";
+    private static final String GEOLOCATION_FILE = "olist_geolocation_dataset.csv";
+    private static final String ORDER_ITEMS_FILE = "olist_order_items_dataset.csv";
+    private static final String ORDER_PAYMENTS_FILE = "olist_order_payments_dataset.csv";
+    private static final String ORDER_REVIEWS_FILE = "olist_order_reviews_dataset.csv";
+    private static final String ORDERS_FILE = "olist_orders_dataset.csv";
+    private static final String PRODUCTS_FILE = "olist_products_dataset.csv";
+    private static final String SELLERS_FILE = "olist_sellers_dataset.csv";
+    private static final String CATEGORIES_FILE = "product_category_name_translation.csv";
+
+    private static final String CUSTOMERS_HEADER =
+            "\"customer_id\",\"customer_unique_id\",\"customer_zip_code_prefix\",\"customer_city\",\"customer_state\"";
+    private static final String GEOLOCATION_HEADER =
+            "\"geolocation_zip_code_prefix\",\"geolocation_lat\",\"geolocation_lng\",\"geolocation_city\",\"geolocation_state\"";
+    private static final String ORDER_ITEMS_HEADER =
+            "\"order_id\",\"order_item_id\",\"product_id\",\"seller_id\",\"shipping_limit_date\",\"price\",\"freight_value\"";
+    private static final String ORDER_PAYMENTS_HEADER =
+            "\"order_id\",\"payment_sequential\",\"payment_type\",\"payment_installments\",\"payment_value\"";
+    private static final String ORDER_REVIEWS_HEADER =
+            "\"review_id\",\"order_id\",\"review_score\",\"review_comment_title\",\"review_comment_message\"," +
+            "\"review_creation_date\",\"review_answer_timestamp\"";
+    private static final String ORDERS_HEADER =
+            "\"order_id\",\"customer_id\",\"order_status\",\"order_purchase_timestamp\",\"order_approved_at\"," +
+            "\"order_delivered_carrier_date\",\"order_delivered_customer_date\",\"order_estimated_delivery_date\"";
+    private static final String PRODUCTS_HEADER =
+            "\"product_id\",\"product_category_name\",\"product_name_lenght\",\"product_description_lenght\"," +
+            "\"product_photos_qty\",\"product_weight_g\",\"product_length_cm\",\"product_height_cm\",\"product_width_cm\"";
+    private static final String SELLERS_HEADER =
+            "\"seller_id\",\"seller_zip_code_prefix\",\"seller_city\",\"seller_state\"";
+
+    // Capital of each state: zip prefix, city, latitude, longitude. Used when no known place exists for a state.
+    private static final String[][] STATE_CAPITALS = {
+        {"AC", "69900", "rio branco", "-9.97", "-67.81"},
+        {"AL", "57000", "maceio", "-9.65", "-35.73"},
+        {"AP", "68900", "macapa", "0.03", "-51.05"},
+        {"AM", "69000", "manaus", "-3.12", "-60.02"},
+        {"BA", "40000", "salvador", "-12.97", "-38.50"},
+        {"CE", "60000", "fortaleza", "-3.72", "-38.54"},
+        {"DF", "70000", "brasilia", "-15.79", "-47.88"},
+        {"ES", "29000", "vitoria", "-20.32", "-40.34"},
+        {"GO", "74000", "goiania", "-16.68", "-49.25"},
+        {"MA", "65000", "sao luis", "-2.53", "-44.30"},
+        {"MT", "78000", "cuiaba", "-15.60", "-56.10"},
+        {"MS", "79000", "campo grande", "-20.44", "-54.65"},
+        {"MG", "30000", "belo horizonte", "-19.92", "-43.94"},
+        {"PA", "66000", "belem", "-1.46", "-48.50"},
+        {"PB", "58000", "joao pessoa", "-7.12", "-34.86"},
+        {"PR", "80000", "curitiba", "-25.43", "-49.27"},
+        {"PE", "50000", "recife", "-8.05", "-34.90"},
+        {"PI", "64000", "teresina", "-5.09", "-42.80"},
+        {"RJ", "20000", "rio de janeiro", "-22.91", "-43.17"},
+        {"RN", "59000", "natal", "-5.79", "-35.21"},
+        {"RS", "90000", "porto alegre", "-30.03", "-51.23"},
+        {"RO", "76800", "porto velho", "-8.76", "-63.90"},
+        {"RR", "69300", "boa vista", "2.82", "-60.67"},
+        {"SC", "88000", "florianopolis", "-27.59", "-48.55"},
+        {"SP", "01000", "sao paulo", "-23.55", "-46.63"},
+        {"SE", "49000", "aracaju", "-10.91", "-37.07"},
+        {"TO", "77000", "palmas", "-10.18", "-48.33"}
+    };
+
+    private static final String[] DEFAULT_COMMENTS = {
+        "Produto entregue antes do prazo, ótima qualidade.",
+        "Recebi tudo certinho, recomendo a loja.",
+        "Chegou rápido e bem embalado.",
+        "Produto de boa qualidade, mas a entrega atrasou.",
+        "Ainda não recebi o produto.",
+        "Veio com defeito, estou aguardando a troca.",
+        "Muito bom, exatamente como na descrição.",
+        "Não gostei, o material é fraco.",
+        "Entrega super rápida, parabéns!",
+        "Comprei dois e só chegou um."
+    };
+    private static final String[] DEFAULT_TITLES = {
+        "Recomendo", "Ótimo", "Bom", "Excelente", "Não recebi", "Péssimo"
+    };
+
+    /**
+     * Weighted choice over a fixed set of values
+     */
+    static class Distribution<T> {
+        private final List<T> values = new ArrayList<>();
+        private double[] cumulative = new double[0];
+        private double total;
+
+        void add(T value, double weight) {
+            if (weight <= 0) {
+                return;
+            }
+            values.add(value);
+            total += weight;
+            double[] grown = new double[values.size()];
+            System.arraycopy(cumulative, 0, grown, 0, cumulative.length);
+            grown[grown.length - 1] = total;
+            cumulative = grown;
+        }
+
+        static <T> Distribution<T> of(Map<T, ? extends Number> counts) {
+            Distribution<T> d = new Distribution<>();
+            for (Map.Entry<T, ? extends Number> entry : counts.entrySet()) {
+                d.add(entry.getKey(), entry.getValue().doubleValue());
+            }
+            return d;
+        }
+
+        boolean isEmpty() {
+            return values.isEmpty();
+        }
+
+        T sample(double u) {
+            double target = u * total;
+            int lo = 0;
+            int hi = cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] <= target) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return values.get(lo);
+        }
+
+        T sample(SplittableRandom rnd) {
+            return sample(rnd.nextDouble());
+        }
+    }
+
+    /**
+     * A zip code prefix with its location
+     */
+    static class Place {
+        final String zip;
+        final String city;
+        final String state;
+        final double lat;
+        final double lng;
+
+        Place(String zip, String city, String state, double lat, double lng) {
+            this.zip = zip;
+            this.city = city;
+            this.state = state;
+            this.lat = lat;
+            this.lng = lng;
+        }
+    }
+
+    /**
+     * Everything learned from the source CSVs
+     */
+    static class Profile {
+        final List<String> sources = new ArrayList<>();
+        long customers = BASE_CUSTOMERS;
+        long sellers = BASE_SELLERS;
+        long products = BASE_PRODUCTS;
+        long geolocationRows = BASE_GEOLOCATION;
+
+        final Map<String, Place> placesByZip = new LinkedHashMap<>();
+        final Map<String, List<Place>> placesByState = new HashMap<>();
+        Distribution<String> customerStates = new Distribution<>();
+        Distribution<String> sellerStates = new Distribution<>();
+        Distribution<Integer> ordersPerCustomer = new Distribution<>();
+
+        final List<String[]> productRows = new ArrayList<>(); // category + 7 attributes
+
+        Distribution<String> orderStatus = new Distribution<>();
+        Distribution<String> purchaseMonth = new Distribution<>();
+        long[] deliveryDays = {};
+        long[] estimateSlackDays = {};
+        long[] approvalMinutes = {};
+        long[] carrierDays = {};
+
+        Distribution<Integer> itemsPerOrder = new Distribution<>();
+        long[] priceCents = {};
+        long[] freightCents = {};
+
+        Distribution<String> paymentTypes = new Distribution<>();
+        Distribution<Integer> installments = new Distribution<>();
+        double splitPaymentRate = 0.03;
+
+        Distribution<Integer> reviewScores = new Distribution<>();
+        double reviewRate = 0.99;
+        double commentRate = 0.41;
+        double titleRate = 0.12;
+        final List<String> comments = new ArrayList<>();
+        final List<String> titles = new ArrayList<>();
+
+        List<Place> placesIn(String state) {
+            List<Place> places = placesByState.get(state);
+            return places != null ? places : placesByState.get("SP");
+        }
+    }
+
+    private final long seed;
+    private final double scale;
+    private final int threads;
+    private final File outputDir;
+    private final Profile profile;
+
+    private final long customers;
+    private final long sellers;
+    private final long products;
+    private final long geolocationRows;
+    private final Place[] placeList;
+    private int[] uniqueCustomer;
+
+    public SyntheticDataGenerator(Profile profile, double scale, long seed, int threads, File outputDir) {
+        this.profile = profile;
+        this.scale = scale;
+        this.seed = seed;
+        this.threads = threads;
+        this.outputDir = outputDir;
+        this.customers = scaled(profile.customers);
+        this.sellers = scaled(profile.sellers);
+        this.products = scaled(profile.products);
+        this.placeList = profile.placesByZip.values().toArray(new Place[0]);
+        this.geolocationRows = Math.max(scaled(profile.geolocationRows), placeList.length);
+    }
+
+    /**
+     * Usage: SyntheticDataGenerator [--scale F] [--seed N] [--threads N] [--source DIR] [--out DIR]
+     */
+    public static void main(String[] args) {
+        double scale = 1.0;
+        long seed = 42;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String sourceDir = CSVDataLoader.DATA_DIR;
+        String outDir = null;
+
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch (args[i]) {
+                    case "--scale":
+                        scale = Double.parseDouble(args[i + 1]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[i + 1]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--source":
+                        sourceDir = args[i + 1];
+                        break;
+                    case "--out":
+                        outDir = args[i + 1];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (scale <= 0 || threads < 1) {
+                throw new IllegalArgumentException("Scale must be positive and threads at least 1");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: SyntheticDataGenerator [--scale F] [--seed N] [--threads N] " +
+                               "[--source DIR] [--out DIR]");
+            System.exit(2);
+        }
+
+        if (outDir == null) {
+            outDir = defaultOutputDir(scale);
+        }
+
+        try {
+            generate(sourceDir, outDir, scale, seed, threads);
+        } catch (IOException e) {
+            System.out.println("ERROR: Failed to generate synthetic data.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Output directory used when none is given, e.g. data/synthetic/sf10/
+     */
+    public static String defaultOutputDir(double scale) {
+        String label = scale == Math.rint(scale) ? String.valueOf((long) scale) : String.valueOf(scale);
+        return OUTPUT_DIR + "sf" + label + "/";
+    }
+
+    /**
+     * Learns from the CSVs in sourceDir and writes a complete data set to outputDir
+     * @return Rows written per file
+     */
+    public static Map<String, Long> generate(String sourceDir, String outputDir, double scale,
+                                             long seed, int threads) throws IOException {
+        System.out.println("\nLearning distributions from " + sourceDir + "...");
+        Profile profile = learn(sourceDir);
+        System.out.println("Learned from: " + (profile.sources.isEmpty() ? "(built-in defaults only)"
+                                                                       : String.join(", ", profile.sources)));
+
+        File dir = new File(outputDir);
+        dir.mkdirs();
+        System.out.printf("Generating scale factor %s with seed %d on %d thread(s) into %s%n",
+                          scale, seed, threads, dir.getPath());
+
+        long startTime = System.currentTimeMillis();
+        Map<String, Long> counts = new SyntheticDataGenerator(profile, scale, seed, threads, dir).run(sourceDir);
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+        long total = 0;
+        System.out.println("\n┌────────────────────────────────────────┬────────────────┐");
+        System.out.printf("│ %-38s │ %14s │%n", "File", "Rows");
+        System.out.println("├────────────────────────────────────────┼────────────────┤");
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            System.out.printf("│ %-38s │ %,14d │%n", entry.getKey(), entry.getValue());
+            total += entry.getValue();
+        }
+        System.out.println("└────────────────────────────────────────┴────────────────┘");
+        System.out.printf("[SUCCESS] Generated %,d rows in %.2f seconds (%,.0f rows/s).%n",
+                          total, seconds, total / Math.max(seconds, 0.001));
+        return counts;
+    }
+
+    private Map<String, Long> run(String sourceDir) throws IOException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "data-generator");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            copyCategories(sourceDir, counts);
+            assignUniqueCustomers();
+
+            writeTable(pool, counts, new String[] {GEOLOCATION_FILE}, new String[] {GEOLOCATION_HEADER},
+                       geolocationRows, SALT_GEOLOCATION, this::geolocationChunk);
+            writeTable(pool, counts, new String[] {CUSTOMERS_FILE}, new String[] {CUSTOMERS_HEADER},
+                       customers, SALT_CUSTOMER, this::customerChunk);
+            writeTable(pool, counts, new String[] {SELLERS_FILE}, new String[] {SELLERS_HEADER},
+                       sellers, SALT_SELLER, this::sellerChunk);
+            writeTable(pool, counts, new String[] {PRODUCTS_FILE}, new String[] {PRODUCTS_HEADER},
+                       products, SALT_PRODUCT, this::productChunk);
+            // Olist has exactly one customer_id per order
+            writeTable(pool, counts,
+                       new String[] {ORDERS_FILE, ORDER_ITEMS_FILE, ORDER_PAYMENTS_FILE, ORDER_REVIEWS_FILE},
+                       new String[] {ORDERS_HEADER, ORDER_ITEMS_HEADER, ORDER_PAYMENTS_HEADER, ORDER_REVIEWS_HEADER},
+                       customers, SALT_ORDER, this::orderChunk);
+        } finally {
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+
+    // ==================== LEARNING ====================
+
+    /**
+     * Builds a profile from the Olist CSVs found in dir
+     */
+    static Profile learn(String dir) throws IOException {
+        Profile p = new Profile();
+        Map<String, Integer> customerStates = new HashMap<>();
+        Map<String, Integer> sellerStates = new HashMap<>();
+
+        File geolocation = new File(dir, GEOLOCATION_FILE);
+        if (geolocation.exists()) {
+            p.sources.add(GEOLOCATION_FILE);
+            p.geolocationRows = forEachRow(geolocation, 5, v -> {
+                if (!p.placesByZip.containsKey(v[0])) {
+                    addPlace(p, new Place(v[0], v[3], v[4], parseDouble(v[1]), parseDouble(v[2])));
+                }
+            });
+        }
+
+        File sellersFile = new File(dir, SELLERS_FILE);
+        if (sellersFile.exists()) {
+            p.sources.add(SELLERS_FILE);
+            p.sellers = forEachRow(sellersFile, 4, v -> {
+                sellerStates.merge(v[3], 1, Integer::sum);
+                addKnownPlace(p, v[1], v[2], v[3]);
+            });
+        }
+
+        File customersFile = new File(dir, CUSTOMERS_FILE);
+        if (customersFile.exists()) {
+            p.sources.add(CUSTOMERS_FILE);
+            Map<String, Integer> ordersByUnique = new HashMap<>();
+            p.customers = forEachRow(customersFile, 5, v -> {
+                customerStates.merge(v[4], 1, Integer::sum);
+                ordersByUnique.merge(v[1], 1, Integer::sum);
+                addKnownPlace(p, v[2], v[3], v[4]);
+            });
+            Map<Integer, Integer> perCustomer = new HashMap<>();
+            for (int orders : ordersByUnique.values()) {
+                perCustomer.merge(orders, 1, Integer::sum);
+            }
+            p.ordersPerCustomer = Distribution.of(perCustomer);
+        }
+
+        // Every state can be drawn, so make sure each has at least its capital
+        for (String[] capital : STATE_CAPITALS) {
+            if (!p.placesByState.containsKey(capital[0])) {
+                addPlace(p, new Place(capital[1], capital[2], capital[0],
+                                      Double.parseDouble(capital[3]), Double.parseDouble(capital[4])));
+            }
+        }
+
+        File productsFile = new File(dir, PRODUCTS_FILE);
+        if (productsFile.exists()) {
+            p.sources.add(PRODUCTS_FILE);
+            p.products = forEachRow(productsFile, 9, v -> {
+                String[] row = new String[8];
+                for (int i = 0; i < 8; i++) {
+                    row[i] = v[i + 1].trim();
+                }
+                p.productRows.add(row);
+            });
+        }
+
+        learnOrders(p, dir);
+        learnOrderItems(p, dir);
+        learnPayments(p, dir);
+        learnReviews(p, dir);
+
+        p.customerStates = customerStates.isEmpty() ? defaultCustomerStates() : Distribution.of(customerStates);
+        p.sellerStates = sellerStates.isEmpty() ? p.customerStates : Distribution.of(sellerStates);
+        applyDefaults(p);
+        return p;
+    }
+
+    private static void learnOrders(Profile p, String dir) throws IOException {
+        File file = new File(dir, ORDERS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        p.sources.add(ORDERS_FILE);
+        Map<String, Integer> status = new HashMap<>();
+        Map<String, Integer> months = new HashMap<>();
+        List<Long> delivery = new ArrayList<>();
+        List<Long> slack = new ArrayList<>();
+        List<Long> approval = new ArrayList<>();
+        List<Long> carrier = new ArrayList<>();
+
+        forEachRow(file, 8, v -> {
+            status.merge(v[2], 1, Integer::sum);
+            long purchase = parseTimestamp(v[3]);
+            if (purchase < 0) {
+                return;
+            }
+            months.merge(v[3].substring(0, 7), 1, Integer::sum);
+            long approved = parseTimestamp(v[4]);
+            long carrierDate = parseTimestamp(v[5]);
+            long delivered = parseTimestamp(v[6]);
+            long estimated = parseTimestamp(v[7]);
+            if (approved >= purchase) {
+                approval.add((approved - purchase) / 60);
+            }
+            if (carrierDate >= approved && approved >= 0) {
+                carrier.add((carrierDate - approved) / DAY);
+            }
+            if (delivered >= purchase) {
+                delivery.add((delivered - purchase) / DAY);
+                if (estimated >= 0) {
+                    slack.add((estimated - delivered) / DAY);
+                }
+            }
+        });
+        p.orderStatus = Distribution.of(status);
+        p.purchaseMonth = Distribution.of(months);
+        p.deliveryDays = toArray(delivery);
+        p.estimateSlackDays = toArray(slack);
+        p.approvalMinutes = toArray(approval);
+        p.carrierDays = toArray(carrier);
+    }
+
+    private static void learnOrderItems(Profile p, String dir) throws IOException {
+        File file = new File(dir, ORDER_ITEMS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        p.sources.add(ORDER_ITEMS_FILE);
+        Map<String, Integer> itemsByOrder = new HashMap<>();
+        List<Long> prices = new ArrayList<>();
+        List<Long> freights = new ArrayList<>();
+        forEachRow(file, 7, v -> {
+            itemsByOrder.merge(v[0], 1, Integer::sum);
+            prices.add(Math.round(parseDouble(v[5]) * 100));
+            freights.add(Math.round(parseDouble(v[6]) * 100));
+        });
+        Map<Integer, Integer> perOrder = new HashMap<>();
+        for (int items : itemsByOrder.values()) {
+            perOrder.merge(items, 1, Integer::sum);
+        }
+        p.itemsPerOrder = Distribution.of(perOrder);
+        p.priceCents = toArray(prices);
+        p.freightCents = toArray(freights);
+    }
+
+    private static void learnPayments(Profile p, String dir) throws IOException {
+        File file = new File(dir, ORDER_PAYMENTS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        p.sources.add(ORDER_PAYMENTS_FILE);
+        Map<String, Integer> types = new HashMap<>();
+        Map<Integer, Integer> installments = new HashMap<>();
+        Map<String, Integer> paymentsByOrder = new HashMap<>();
+        forEachRow(file, 5, v -> {
+            types.merge(v[2], 1, Integer::sum);
+            paymentsByOrder.merge(v[0], 1, Integer::sum);
+            if (v[2].equals("credit_card")) {
+                installments.merge((int) parseDouble(v[3]), 1, Integer::sum);
+            }
+        });
+        long split = paymentsByOrder.values().stream().filter(n -> n > 1).count();
+        p.paymentTypes = Distribution.of(types);
+        p.installments = Distribution.of(installments);
+        p.splitPaymentRate = paymentsByOrder.isEmpty() ? p.splitPaymentRate
+                                                       : (double) split / paymentsByOrder.size();
+    }
+
+    private static void learnReviews(Profile p, String dir) throws IOException {
+        File file = new File(dir, ORDER_REVIEWS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        p.sources.add(ORDER_REVIEWS_FILE);
+        Map<Integer, Integer> scores = new HashMap<>();
+        long[] withComment = new long[2]; // comments, titles
+        long reviews = forEachRow(file, 7, v -> {
+            scores.merge((int) parseDouble(v[2]), 1, Integer::sum);
+            if (!v[4].trim().isEmpty()) {
+                withComment[0]++;
+                if (p.comments.size() < 5000) {
+                    p.comments.add(v[4].trim());
+                }
+            }
+            if (!v[3].trim().isEmpty()) {
+                withComment[1]++;
+                if (p.titles.size() < 1000) {
+                    p.titles.add(v[3].trim());
+                }
+            }
+        });
+        p.reviewScores = Distribution.of(scores);
+        if (reviews > 0) {
+            p.commentRate = (double) withComment[0] / reviews;
+            p.titleRate = (double) withComment[1] / reviews;
+            if (p.customers > 0) {
+                p.reviewRate = Math.min(1.0, (double) reviews / p.customers);
+            }
+        }
+    }
+
+    /**
+     * Fills in anything the source CSVs did not provide with figures from the public Olist dataset
+     */
+    private static void applyDefaults(Profile p) {
+        if (p.ordersPerCustomer.isEmpty()) {
+            p.ordersPerCustomer.add(1, 93_099);
+            p.ordersPerCustomer.add(2, 2_745);
+            p.ordersPerCustomer.add(3, 203);
+            p.ordersPerCustomer.add(4, 30);
+            p.ordersPerCustomer.add(5, 19);
+        }
+        if (p.orderStatus.isEmpty()) {
+            p.orderStatus.add("delivered", 96_478);
+            p.orderStatus.add("shipped", 1_107);
+            p.orderStatus.add("canceled", 625);
+            p.orderStatus.add("unavailable", 609);
+            p.orderStatus.add("invoiced", 314);
+            p.orderStatus.add("processing", 301);
+            p.orderStatus.add("created", 5);
+            p.orderStatus.add("approved", 2);
+        }
+        if (p.purchaseMonth.isEmpty()) {
+            String[] months = {"2016-10", "2016-12", "2017-01", "2017-02", "2017-03", "2017-04", "2017-05",
+                               "2017-06", "2017-07", "2017-08", "2017-09", "2017-10", "2017-11", "2017-12",
+                               "2018-01", "2018-02", "2018-03", "2018-04", "2018-05", "2018-06", "2018-07",
+                               "2018-08"};
+            int[] orders = {324, 1, 800, 1780, 2682, 2404, 3700, 3245, 4026, 4331, 4285, 4631, 7544, 5673,
+                            7269, 6728, 7211, 6939, 6873, 6167, 6292, 6512};
+            for (int i = 0; i < months.length; i++) {
+                p.purchaseMonth.add(months[i], orders[i]);
+            }
+        }
+        if (p.itemsPerOrder.isEmpty()) {
+            p.itemsPerOrder.add(1, 88_863);
+            p.itemsPerOrder.add(2, 7_516);
+            p.itemsPerOrder.add(3, 1_322);
+            p.itemsPerOrder.add(4, 505);
+            p.itemsPerOrder.add(5, 204);
+            p.itemsPerOrder.add(6, 198);
+            p.itemsPerOrder.add(7, 22);
+        }
+        if (p.paymentTypes.isEmpty()) {
+            p.paymentTypes.add("credit_card", 76_795);
+            p.paymentTypes.add("boleto", 19_784);
+            p.paymentTypes.add("voucher", 5_775);
+            p.paymentTypes.add("debit_card", 1_529);
+        }
+        if (p.installments.isEmpty()) {
+            int[] counts = {25_455, 12_413, 10_461, 7_098, 5_239, 3_920, 1_626, 4_268, 644, 5_328};
+            for (int i = 0; i < counts.length; i++) {
+                p.installments.add(i + 1, counts[i]);
+            }
+        }
+        if (p.reviewScores.isEmpty()) {
+            p.reviewScores.add(5, 57_328);
+            p.reviewScores.add(4, 19_142);
+            p.reviewScores.add(3, 8_179);
+            p.reviewScores.add(2, 3_151);
+            p.reviewScores.add(1, 11_424);
+        }
+        if (p.comments.isEmpty()) {
+            p.comments.addAll(Arrays.asList(DEFAULT_COMMENTS));
+        }
+        if (p.titles.isEmpty()) {
+            p.titles.addAll(Arrays.asList(DEFAULT_TITLES));
+        }
+    }
+
+    private static Distribution<String> defaultCustomerStates() {
+        Distribution<String> d = new Distribution<>();
+        String[] states = {"SP", "RJ", "MG", "RS", "PR", "SC", "BA", "DF", "ES", "GO", "PE", "CE", "PA",
+                           "MT", "MA", "MS", "PB", "PI", "RN", "AL", "SE", "TO", "RO", "AM", "AC", "AP", "RR"};
+        int[] customers = {41_746, 12_852, 11_635, 5_466, 5_045, 3_637, 3_380, 2_140, 2_033, 2_020, 1_652,
+                           1_336, 975, 907, 747, 715, 536, 495, 485, 413, 350, 280, 253, 148, 81, 68, 46};
+        for (int i = 0; i < states.length; i++) {
+            d.add(states[i], customers[i]);
+        }
+        return d;
+    }
+
+    /**
+     * Adds a place known only by zip, city and state, placed near its state capital
+     */
+    private static void addKnownPlace(Profile p, String zip, String city, String state) {
+        String z = zip.trim();
+        if (z.isEmpty() || p.placesByZip.containsKey(z)) {
+            return;
+        }
+        double lat = -15.8;
+        double lng = -47.9;
+        for (String[] capital : STATE_CAPITALS) {
+            if (capital[0].equals(state)) {
+                lat = Double.parseDouble(capital[3]);
+                lng = Double.parseDouble(capital[4]);
+            }
+        }
+        long h = mix64(z.hashCode());
+        lat += ((h & 0xFFFF) / 65535.0 - 0.5) * 0.6;
+        lng += (((h >>> 16) & 0xFFFF) / 65535.0 - 0.5) * 0.6;
+        addPlace(p, new Place(z, city.trim(), state.trim(), lat, lng));
+    }
+
+    private static void addPlace(Profile p, Place place) {
+        p.placesByZip.put(place.zip, place);
+        p.placesByState.computeIfAbsent(place.state, k -> new ArrayList<>()).add(place);
+    }
+
+    private interface RowHandler {
+        void accept(String[] values);
+    }
+
+    /**
+     * Calls handler for each data row with at least columnCount values
+     * @return Number of rows read
+     */
+    private static long forEachRow(File file, int columnCount, RowHandler handler) throws IOException {
+        long rows = 0;
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = br.readLine(); // Skip header
+            while ((line = br.readLine()) != null) {
+                String[] values = CSVDataLoader.parseCSVLine(line);
+                if (values.length >= columnCount) {
+                    handler.accept(values);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // ==================== GENERATION ====================
+
+    private interface ChunkGenerator {
+        void generate(long from, long to, SplittableRandom rnd, StringBuilder[] out, int[] rows);
+    }
+
+    /**
+     * Generates a table in chunks on the pool and writes the chunks in order.
+     * At most two chunks per thread are held in memory at once.
+     */
+    private void writeTable(ExecutorService pool, Map<String, Long> counts, String[] files, String[] headers,
+                            long rows, int salt, ChunkGenerator generator) throws IOException {
+        Writer[] writers = new Writer[files.length];
+        long[] written = new long[files.length];
+        long chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        Deque<Future<Object[]>> pending = new ArrayDeque<>();
+
+        try {
+            for (int f = 0; f < files.length; f++) {
+                writers[f] = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(new File(outputDir, files[f])), StandardCharsets.UTF_8), 1 << 16);
+                writers[f].write(headers[f]);
+                writers[f].write('\n');
+            }
+
+            for (long c = 0; c < chunks || !pending.isEmpty(); ) {
+                while (c < chunks && pending.size() < threads * 2) {
+                    long from = c * CHUNK_ROWS;
+                    long to = Math.min(rows, from + CHUNK_ROWS);
+                    long chunkSeed = mix64(seed ^ mix64(salt * 0x9E3779B97F4A7C15L + c));
+                    pending.add(pool.submit(() -> {
+                        StringBuilder[] out = new StringBuilder[files.length];
+                        for (int f = 0; f < out.length; f++) {
+                            out[f] = new StringBuilder(1 << 16);
+                        }
+                        int[] chunkRows = new int[files.length];
+                        generator.generate(from, to, new SplittableRandom(chunkSeed), out, chunkRows);
+                        return new Object[] {out, chunkRows};
+                    }));
+                    c++;
+                }
+
+                Object[] chunk = pending.poll().get();
+                StringBuilder[] out = (StringBuilder[]) chunk[0];
+                int[] chunkRows = (int[]) chunk[1];
+                for (int f = 0; f < files.length; f++) {
+                    writers[f].append(out[f]);
+                    written[f] += chunkRows[f];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Generation failed: " + e.getCause(), e.getCause());
+        } finally {
+            for (Writer w : writers) {
+                if (w != null) {
+                    w.close();
+                }
+            }
+        }
+
+        for (int f = 0; f < files.length; f++) {
+            counts.put(files[f], written[f]);
+            System.out.printf("[OK] %-38s %,d rows%n", files[f], written[f]);
+        }
+    }
+
+    /**
+     * Categories do not scale; the source file is copied as is when present
+     */
+    private void copyCategories(String sourceDir, Map<String, Long> counts) throws IOException {
+        File source = new File(sourceDir, CATEGORIES_FILE);
+        File target = new File(outputDir, CATEGORIES_FILE);
+        long rows = 0;
+        if (source.exists()) {
+            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            rows = forEachRow(source, 2, v -> { });
+        } else {
+            Map<String, Boolean> categories = new LinkedHashMap<>();
+            for (String[] row : profile.productRows) {
+                if (!row[0].isEmpty()) {
+                    categories.put(row[0], Boolean.TRUE);
+                }
+            }
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8)) {
+                w.write("product_category_name,product_category_name_english\n");
+                for (String category : categories.keySet()) {
+                    w.write(category + "," + category + "\n");
+                    rows++;
+                }
+            }
+        }
+        counts.put(CATEGORIES_FILE, rows);
+        System.out.printf("[OK] %-38s %,d rows%n", CATEGORIES_FILE, rows);
+    }
+
+    /**
+     * Groups consecutive customer rows under one customer_unique_id, following the
+     * learned orders-per-customer distribution
+     */
+    private void assignUniqueCustomers() {
+        uniqueCustomer = new int[(int) customers];
+        SplittableRandom rnd = new SplittableRandom(mix64(seed ^ SALT_GROUPS));
+        int unique = 0;
+        int i = 0;
+        while (i < customers) {
+            int group = profile.ordersPerCustomer.sample(rnd);
+            for (int g = 0; g < group && i < customers; g++) {
+                uniqueCustomer[i++] = unique;
+            }
+            unique++;
+        }
+    }
+
+    private void geolocationChunk(long from, long to, SplittableRandom rnd, StringBuilder[] out, int[] rows) {
+        StringBuilder sb = out[0];
+        for (long r = from; r < to; r++) {
+            // The first pass covers every known zip so all customer and seller zips resolve
+            Place place = r < placeList.length ? placeList[(int) r] : placeList[rnd.nextInt(placeList.length)];
+            sb.append(place.zip).append(',');
+            appendFixed(sb, place.lat + (rnd.nextDouble() - 0.5) * 0.02, 8).append(',');
+            appendFixed(sb, place.lng + (rnd.nextDouble() - 0.5) * 0.02, 8).append(',');
+            sb.append(place.city).append(',').append(place.state).append('\n');
+            rows[0]++;
+        }
+    }
+
+    private void customerChunk(long from, long to, SplittableRandom rnd, StringBuilder[] out, int[] rows) {
+        StringBuilder sb = out[0];
+        for (long i = from; i < to; i++) {
+            int unique = uniqueCustomer[(int) i];
+            // A returning customer keeps the same address
+            double u = unit(mix64(seed ^ mix64(SALT_UNIQUE * 0x632BE59BD9B4E019L + unique)));
+            String state = profile.customerStates.sample(u);
+            List<Place> places = profile.placesIn(state);
+            Place place = places.get((int) (unit(mix64(unique * 31L + seed)) * places.size()));
+
+            sb.append(hexId(SALT_CUSTOMER, i)).append(',')
+              .append(hexId(SALT_UNIQUE, unique)).append(',')
+              .append(place.zip).append(',')
+              .append(place.city).append(',')
+              .append(place.state).append('\n');
+            rows[0]++;
+        }
+    }
+
+    private void sellerChunk(long from, long to, SplittableRandom rnd, StringBuilder[] out, int[] rows) {
+        StringBuilder sb = out[0];
+        for (long i = from; i < to; i++) {
+            List<Place> places = profile.placesIn(profile.sellerStates.sample(rnd));
+            Place place = places.get(rnd.nextInt(places.size()));
+            sb.append(hexId(SALT_SELLER, i)).append(',')
+              .append(place.zip).append(',')
+              .append(place.city).append(',')
+              .append(place.state).append('\n');
+            rows[0]++;
+        }
+    }
+
+    private void productChunk(long from, long to, SplittableRandom rnd, StringBuilder[] out, int[] rows) {
+        StringBuilder sb = out[0];
+        for (long i = from; i < to; i++) {
+            String[] template = productTemplate(i);
+            sb.append(hexId(SALT_PRODUCT, i));
+            if (template == null) {
+                sb.append(",,,,,,,,\n");
+            } else {
+                for (String value : template) {
+                    sb.append(',').append(value);
+                }
+                sb.append('\n');
+            }
+            rows[0]++;
+        }
+    }
+
+    /**
+     * Category and attributes of a product, resampled from a real product row
+     */
+    private String[] productTemplate(long product) {
+        if (profile.productRows.isEmpty()) {
+            return null;
+        }
+        double u = unit(mix64(seed ^ mix64(SALT_PRODUCT_ROW * 0x9E3779B97F4A7C15L + product)));
+        return profile.productRows.get((int) (u * profile.productRows.size()));
+    }
+
+    private void orderChunk(long from, long to, SplittableRandom rnd, StringBuilder[] out, int[] rows) {
+        StringBuilder orders = out[0];
+        StringBuilder items = out[1];
+        StringBuilder payments = out[2];
+        StringBuilder reviews = out[3];
+
+        for (long i = from; i < to; i++) {
+            String orderId = hexId(SALT_ORDER, i);
+            String status = profile.orderStatus.sample(rnd);
+            boolean delivered = status.equals("delivered");
+            boolean shipped = delivered || status.equals("shipped");
+
+            long purchase = purchaseTime(rnd);
+            long approved = status.equals("created") ? -1 : purchase + 60 * pick(rnd, profile.approvalMinutes, 20);
+            long carrier = shipped ? Math.max(approved, purchase) + DAY * pick(rnd, profile.carrierDays, 2)
+                                     + rnd.nextInt(86_400) : -1;
+            long deliveryDays = Math.max(1, pick(rnd, profile.deliveryDays, -1));
+            long deliveredAt = delivered ? Math.max(carrier + 3600, purchase + DAY * deliveryDays
+                                                                     + rnd.nextInt(86_400)) : -1;
+            long estimated = (delivered ? deliveredAt : purchase + DAY * deliveryDays)
+                             + DAY * pick(rnd, profile.estimateSlackDays, 11);
+            estimated -= estimated % DAY;
+
+            orders.append(orderId).append(',').append(hexId(SALT_CUSTOMER, i)).append(',')
+                  .append(status).append(',');
+            appendTimestamp(orders, purchase).append(',');
+            appendTimestamp(orders, approved).append(',');
+            appendTimestamp(orders, carrier).append(',');
+            appendTimestamp(orders, deliveredAt).append(',');
+            appendTimestamp(orders, estimated).append('\n');
+            rows[0]++;
+
+            // Items
+            long totalCents = 0;
+            if (!status.equals("unavailable") && !status.equals("created")) {
+                int itemCount = profile.itemsPerOrder.sample(rnd);
+                long shippingLimit = Math.max(approved, purchase) + DAY * 6;
+                for (int seq = 1; seq <= itemCount; seq++) {
+                    long product = (long) (products * Math.pow(rnd.nextDouble(), 2));
+                    long price = productPrice(product);
+                    long freight = freight(rnd, product);
+                    totalCents += price + freight;
+
+                    items.append(orderId).append(',').append(seq).append(',')
+                         .append(hexId(SALT_PRODUCT, product)).append(',')
+                         .append(hexId(SALT_SELLER, productSeller(product))).append(',');
+                    appendTimestamp(items, shippingLimit).append(',');
+                    appendMoney(items, price).append(',');
+                    appendMoney(items, freight).append('\n');
+                    rows[1]++;
+                }
+            } else {
+                totalCents = productPrice((long) (products * rnd.nextDouble())) + 1500;
+            }
+
+            // Payments
+            long remaining = totalCents;
+            int sequential = 1;
+            if (rnd.nextDouble() < profile.splitPaymentRate && totalCents > 200) {
+                long voucher = 100 + rnd.nextLong(totalCents / 2);
+                appendPayment(payments, orderId, sequential++, "voucher", 1, voucher);
+                remaining -= voucher;
+                rows[2]++;
+            }
+            String type = profile.paymentTypes.sample(rnd);
+            int installments = type.equals("credit_card") ? profile.installments.sample(rnd) : 1;
+            appendPayment(payments, orderId, sequential, type, installments, remaining);
+            rows[2]++;
+
+            // Review
+            if (rnd.nextDouble() < profile.reviewRate) {
+                int score = profile.reviewScores.sample(rnd);
+                long created = (delivered ? deliveredAt : estimated) + DAY;
+                created -= created % DAY;
+                long answered = created + DAY * (1 + rnd.nextInt(3)) + rnd.nextInt(86_400);
+
+                reviews.append(hexId(SALT_REVIEW, i)).append(',').append(orderId).append(',')
+                       .append(score).append(',');
+                if (rnd.nextDouble() < profile.titleRate) {
+                    appendText(reviews, profile.titles.get(rnd.nextInt(profile.titles.size())));
+                }
+                reviews.append(',');
+                if (rnd.nextDouble() < profile.commentRate) {
+                    appendText(reviews, profile.comments.get(rnd.nextInt(profile.comments.size())));
+                }
+                reviews.append(',');
+                appendTimestamp(reviews, created).append(',');
+                appendTimestamp(reviews, answered).append('\n');
+                rows[3]++;
+            }
+        }
+    }
+
+    private long purchaseTime(SplittableRandom rnd) {
+        String month = profile.purchaseMonth.sample(rnd);
+        LocalDateTime start = LocalDateTime.of(Integer.parseInt(month.substring(0, 4)),
+                                               Integer.parseInt(month.substring(5, 7)), 1, 0, 0);
+        long first = start.toEpochSecond(ZoneOffset.UTC);
+        long days = start.toLocalDate().lengthOfMonth();
+        return first + rnd.nextLong(days * DAY);
+    }
+
+    /**
+     * Each product has one price, drawn from the learned prices or a log-normal around R$75
+     */
+    private long productPrice(long product) {
+        long h = mix64(seed ^ mix64(SALT_PRODUCT_PRICE * 0x9E3779B97F4A7C15L + product));
+        if (profile.priceCents.length > 0) {
+            return profile.priceCents[(int) (unit(h) * profile.priceCents.length)];
+        }
+        double u1 = Math.max(unit(h), 1e-9);
+        double u2 = unit(mix64(h));
+        double gaussian = Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+        return Math.max(85, Math.min(673_500, Math.round(Math.exp(Math.log(7_500) + 0.9 * gaussian))));
+    }
+
+    /**
+     * Freight from the learned values, otherwise R$8 plus R$2.50 per kg of product weight
+     */
+    private long freight(SplittableRandom rnd, long product) {
+        if (profile.freightCents.length > 0) {
+            return profile.freightCents[rnd.nextInt(profile.freightCents.length)];
+        }
+        String[] template = productTemplate(product);
+        double weightKg = template == null ? 1.0 : parseDouble(template[4]) / 1000.0;
+        return 800 + Math.round(weightKg * 250) + rnd.nextInt(700);
+    }
+
+    /**
+     * Products are sold by one seller each, skewed so that some sellers carry many products
+     */
+    private long productSeller(long product) {
+        double u = unit(mix64(seed ^ mix64(SALT_PRODUCT_SELLER * 0x9E3779B97F4A7C15L + product)));
+        return (long) (sellers * Math.pow(u, 1.5));
+    }
+
+    private static void appendPayment(StringBuilder sb, String orderId, int sequential, String type,
+                                      int installments, long cents) {
+        sb.append(orderId).append(',').append(sequential).append(',').append(type).append(',')
+          .append(installments).append(',');
+        appendMoney(sb, cents).append('\n');
+    }
+
+    // ==================== FORMATTING HELPERS ====================
+
+    /**
+     * Deterministic 32-character hex id, like the Olist MD5 ids
+     */
+    private String hexId(int salt, long index) {
+        long a = mix64(seed ^ mix64(salt * 0x9E3779B97F4A7C15L + index));
+        long b = mix64(a ^ 0xD1B54A32D192ED03L);
+        char[] buf = new char[32];
+        for (int i = 0; i < 16; i++) {
+            buf[i] = Character.forDigit((int) ((a >>> (60 - 4 * i)) & 0xF), 16);
+            buf[16 + i] = Character.forDigit((int) ((b >>> (60 - 4 * i)) & 0xF), 16);
+        }
+        return new String(buf);
+    }
+
+    private static StringBuilder appendTimestamp(StringBuilder sb, long epochSeconds) {
+        if (epochSeconds < 0) {
+            return sb;
+        }
+        LocalDateTime t = LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC);
+        sb.append(t.getYear()).append('-');
+        pad2(sb, t.getMonthValue()).append('-');
+        pad2(sb, t.getDayOfMonth()).append(' ');
+        pad2(sb, t.getHour()).append(':');
+        pad2(sb, t.getMinute()).append(':');
+        return pad2(sb, t.getSecond());
+    }
+
+    private static StringBuilder pad2(StringBuilder sb, int value) {
+        if (value < 10) {
+            sb.append('0');
+        }
+        return sb.append(value);
+    }
+
+    private static StringBuilder appendMoney(StringBuilder sb, long cents) {
+        sb.append(cents / 100).append('.');
+        return pad2(sb, (int) (cents % 100));
+    }
+
+    private static StringBuilder appendFixed(StringBuilder sb, double value, int decimals) {
+        long factor = 1;
+        for (int i = 0; i < decimals; i++) {
+            factor *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * factor);
+        if (value < 0 && scaled != 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / factor).append('.');
+        String fraction = Long.toString(scaled % factor);
+        for (int i = fraction.length(); i < decimals; i++) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /**
+     * Appends free text, quoted, on one line; parseCSVLine does not support embedded quotes or newlines
+     */
+    private static void appendText(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            sb.append(c == '"' ? '\'' : (c == '\n' || c == '\r') ? ' ' : c);
+        }
+        sb.append('"');
+    }
+
+    private static long pick(SplittableRandom rnd, long[] samples, long fallback) {
+        if (samples.length > 0) {
+            return samples[rnd.nextInt(samples.length)];
+        }
+        if (fallback >= 0) {
+            return fallback + rnd.nextInt((int) fallback + 1) - fallback / 2;
+        }
+        // Log-normal delivery time with a median of 10 days, like Olist
+        double u1 = Math.max(rnd.nextDouble(), 1e-9);
+        double gaussian = Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * rnd.nextDouble());
+        return Math.round(Math.exp(Math.log(10) + 0.6 * gaussian));
+    }
+
+    private long scaled(long base) {
+        return Math.max(1, Math.round(base * scale));
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double unit(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    private static long parseTimestamp(String value) {
+        String v = value.trim();
+        if (v.length() < 19) {
+            return -1;
+        }
+        try {
+            return LocalDateTime.parse(v.substring(0, 10) + "T" + v.substring(11, 19)).toEpochSecond(ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
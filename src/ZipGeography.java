@@ -0,0 +1,538 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Direct-indexed lookup from a five-digit zip prefix to its place, held off-heap.
+ * Brazilian prefixes run from 00000 to 99999, so the prefix itself is the slot number
+ * and resolving one is an array access: no hashing, no boxing and no allocation.
+ * Each of the 100,000 slots takes 16 bytes of a direct buffer (1.6 MB in all):
+ *
+ *   offset  0  float  mean latitude of the prefix's GEOLOCATION rows (NaN if none had one)
+ *   offset  4  float  mean longitude
+ *   offset  8  int    city code of the prefix's most common (state, city) pair
+ *   offset 12  short  state code of that pair
+ *   offset 14  short  distinct (state, city) pairs, 0 for a prefix with no GEOLOCATION rows
+ *
+ * City and state names live in two small dictionaries on the heap. State codes below 27
+ * follow CSVDataLoader.BRAZILIAN_STATES, as in ColumnStore. The table is built once from
+ * olist_geolocation_dataset.csv or the GEOLOCATION table, saved to a file and memory-mapped
+ * from there on later runs.
+ */
+public class ZipGeography {
+    public static final int SLOTS = 100_000;
+    public static final String DEFAULT_FILE = "geo/zip-prefixes.bin";
+
+    private static final int SLOT_BYTES = 16;
+    private static final int MAGIC = 0x4F5A4950; // "OZIP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    private static volatile String file = DEFAULT_FILE;
+    private static volatile ZipGeography instance;
+
+    private final ByteBuffer slots;
+    private final ColumnStore.Dictionary states;
+    private final ColumnStore.Dictionary cities;
+    private final int prefixCount;
+
+    private ZipGeography(ByteBuffer slots, ColumnStore.Dictionary states, ColumnStore.Dictionary cities) {
+        this.slots = slots;
+        this.states = states;
+        this.cities = cities;
+        int count = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (slots.getShort(slot * SLOT_BYTES + 14) != 0) {
+                count++;
+            }
+        }
+        this.prefixCount = count;
+    }
+
+    /**
+     * Slot of a zip prefix: its value if it is exactly five ASCII digits, otherwise -1.
+     * VARCHAR(5) prefixes compare as text, so "1037" is not "01037" and resolves to nothing.
+     */
+    public static int slot(CharSequence prefix) {
+        if (prefix == null || prefix.length() != 5) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            char c = prefix.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Slot of a prefix that has GEOLOCATION rows, or -1
+     */
+    public int resolve(CharSequence prefix) {
+        int slot = slot(prefix);
+        return slot >= 0 && contains(slot) ? slot : -1;
+    }
+
+    public boolean contains(int slot) {
+        return slots.getShort(slot * SLOT_BYTES + 14) != 0;
+    }
+
+    public float latitude(int slot) {
+        return slots.getFloat(slot * SLOT_BYTES);
+    }
+
+    public float longitude(int slot) {
+        return slots.getFloat(slot * SLOT_BYTES + 4);
+    }
+
+    public int cityCode(int slot) {
+        return slots.getInt(slot * SLOT_BYTES + 8);
+    }
+
+    public int stateCode(int slot) {
+        return slots.getShort(slot * SLOT_BYTES + 12);
+    }
+
+    /**
+     * Number of distinct (state, city) pairs the prefix's GEOLOCATION rows name
+     */
+    public int places(int slot) {
+        return slots.getShort(slot * SLOT_BYTES + 14) & 0xFFFF;
+    }
+
+    public String city(int slot) {
+        return cities.get(cityCode(slot));
+    }
+
+    public String state(int slot) {
+        return states.get(stateCode(slot));
+    }
+
+    public ColumnStore.Dictionary getStates() {
+        return states;
+    }
+
+    public ColumnStore.Dictionary getCities() {
+        return cities;
+    }
+
+    /**
+     * Number of prefixes with GEOLOCATION rows
+     */
+    public int prefixCount() {
+        return prefixCount;
+    }
+
+    /**
+     * Off-heap bytes held by the slots
+     */
+    public int sizeInBytes() {
+        return slots.capacity();
+    }
+
+    // ==================== BUILDING ====================
+
+    /**
+     * Accumulates GEOLOCATION rows; build() turns them into the off-heap table
+     */
+    public static final class Builder {
+        private final ColumnStore.Dictionary states;
+        private final ColumnStore.Dictionary cities;
+        private final double[] latSum = new double[SLOTS];
+        private final double[] lngSum = new double[SLOTS];
+        private final int[] located = new int[SLOTS];
+        // slot -> (state << 32 | city) -> rows, in first-seen order
+        private final Map<Integer, Map<Long, Integer>> places = new HashMap<>();
+
+        /**
+         * Builds with new dictionaries, state codes seeded from CSVDataLoader.BRAZILIAN_STATES
+         */
+        public Builder() {
+            this(seededStates(), new ColumnStore.Dictionary());
+        }
+
+        /**
+         * Builds against existing dictionaries, so codes match the ids a ColumnStore uses
+         */
+        public Builder(ColumnStore.Dictionary states, ColumnStore.Dictionary cities) {
+            this.states = states;
+            this.cities = cities;
+        }
+
+        /**
+         * Adds one GEOLOCATION row, given as normalized values; rows with no usable prefix are skipped
+         */
+        public void add(String prefix, String lat, String lng, String city, String state) {
+            int slot = slot(prefix);
+            if (slot < 0) {
+                return;
+            }
+            long key = ((long) states.intern(state) << 32) | (cities.intern(city) & 0xffffffffL);
+            places.computeIfAbsent(slot, s -> new LinkedHashMap<>(4)).merge(key, 1, Integer::sum);
+            double latitude = parseCoordinate(lat);
+            double longitude = parseCoordinate(lng);
+            if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                latSum[slot] += latitude;
+                lngSum[slot] += longitude;
+                located[slot]++;
+            }
+        }
+
+        public ZipGeography build() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SLOTS * SLOT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (Map.Entry<Integer, Map<Long, Integer>> entry : places.entrySet()) {
+                int slot = entry.getKey();
+                long best = 0;
+                int bestRows = 0;
+                for (Map.Entry<Long, Integer> place : entry.getValue().entrySet()) {
+                    if (place.getValue() > bestRows) {
+                        best = place.getKey();
+                        bestRows = place.getValue();
+                    }
+                }
+                int base = slot * SLOT_BYTES;
+                boolean hasPosition = located[slot] > 0;
+                buffer.putFloat(base, hasPosition ? (float) (latSum[slot] / located[slot]) : Float.NaN);
+                buffer.putFloat(base + 4, hasPosition ? (float) (lngSum[slot] / located[slot]) : Float.NaN);
+                buffer.putInt(base + 8, (int) best);
+                buffer.putShort(base + 12, (short) (best >> 32));
+                buffer.putShort(base + 14, (short) Math.min(entry.getValue().size(), 0xFFFF));
+            }
+            return new ZipGeography(buffer, states, cities);
+        }
+    }
+
+    private static ColumnStore.Dictionary seededStates() {
+        ColumnStore.Dictionary states = new ColumnStore.Dictionary();
+        for (String[] state : CSVDataLoader.BRAZILIAN_STATES) {
+            states.intern(state[0]);
+        }
+        return states;
+    }
+
+    private static double parseCoordinate(String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Builds the table from a directory of Olist CSVs
+     */
+    public static ZipGeography buildFromCsv(String dataDir) throws IOException {
+        String dir = dataDir.endsWith("/") ? dataDir : dataDir + "/";
+        Builder builder = new Builder();
+        try (BufferedReader br = new BufferedReader(new FileReader(dir + "olist_geolocation_dataset.csv"))) {
+            String line = br.readLine(); // Skip header
+            while ((line = br.readLine()) != null) {
+                String[] v = CSVDataLoader.parseCSVLine(line);
+                if (v.length >= 5) {
+                    builder.add(CSVDataLoader.normalizeValue(v[0]), CSVDataLoader.normalizeValue(v[1]),
+                                CSVDataLoader.normalizeValue(v[2]), CSVDataLoader.normalizeValue(v[3]),
+                                CSVDataLoader.normalizeValue(v[4]));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the table by streaming GEOLOCATION from the database once
+     */
+    public static ZipGeography buildFromDatabase() throws SQLException {
+        Builder builder = new Builder();
+        Connection conn = DatabaseConnection.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery("SELECT zip_code_prefix, geolocation_lat, geolocation_lng, "
+                                                  + "geolocation_city, geolocation_state FROM GEOLOCATION")) {
+                while (rs.next()) {
+                    builder.add(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Loader hook: builds the table from the GEOLOCATION rows as they are committed and saves it
+     */
+    static CSVDataLoader.BatchListener listenerFor(String table) {
+        if (!table.equals("GEOLOCATION")) {
+            return null;
+        }
+        synchronized (ZipGeography.class) {
+            if ((instance != null || new File(file).exists()) && CSVDataLoader.isTableEmpty(table)) {
+                System.err.println("Discarding the zip prefix table built from an earlier " + table + " table");
+                reset();
+                invalidateUsers();
+            }
+        }
+        return new CSVDataLoader.BatchListener() {
+            private final Builder builder = new Builder();
+            private final List<String[]> pending = new ArrayList<>(CSVDataLoader.BATCH_SIZE);
+
+            @Override
+            public void accept(String[] values) {
+                pending.add(values);
+            }
+
+            @Override
+            public void commitBatch() {
+                for (String[] v : pending) {
+                    builder.add(CSVDataLoader.normalizeValue(v[0]), CSVDataLoader.normalizeValue(v[1]),
+                                CSVDataLoader.normalizeValue(v[2]), CSVDataLoader.normalizeValue(v[3]),
+                                CSVDataLoader.normalizeValue(v[4]));
+                }
+                pending.clear();
+            }
+
+            @Override
+            public void finish() {
+                ZipGeography built = builder.build();
+                instance = built;
+                invalidateUsers();
+                try {
+                    built.save(new File(file));
+                } catch (IOException e) {
+                    System.err.println("Failed to save the zip prefix table: " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    /**
+     * Drops what was resolved with the previous table, so it is rebuilt with the new one
+     */
+    private static void invalidateUsers() {
+        SellerLocator.invalidate();
+        ShippingDistanceJob.invalidate();
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    /**
+     * Returns the saved table, mapping the file on first use
+     * @return The table, or null if it has not been built yet
+     */
+    public static ZipGeography get() throws IOException {
+        ZipGeography loaded = instance;
+        if (loaded == null) {
+            synchronized (ZipGeography.class) {
+                loaded = instance;
+                if (loaded == null && new File(file).exists()) {
+                    loaded = read(new File(file));
+                    instance = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the saved table, building it from the GEOLOCATION table and saving it if there is none
+     */
+    public static ZipGeography getOrBuild() throws IOException, SQLException {
+        ZipGeography loaded = get();
+        if (loaded == null) {
+            synchronized (ZipGeography.class) {
+                loaded = instance;
+                if (loaded == null) {
+                    loaded = buildFromDatabase();
+                    loaded.save(new File(file));
+                    instance = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Forgets the table and deletes the saved file, e.g. after the tables are cleared
+     */
+    public static synchronized void reset() {
+        instance = null;
+        new File(file).delete();
+    }
+
+    public static void setFile(String path) {
+        file = path;
+        instance = null;
+    }
+
+    /**
+     * Writes the header, the slots and then the state and city dictionaries. The file is written
+     * beside the target and renamed over it, since the old one may still be mapped.
+     */
+    public void save(File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File temp = new File(target.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(SLOTS);
+            byte[] bytes = new byte[SLOTS * SLOT_BYTES];
+            slots.duplicate().position(0).get(bytes);
+            out.write(bytes);
+            writeDictionary(out, states);
+            writeDictionary(out, cities);
+        }
+        if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target))) {
+            throw new IOException("Cannot replace " + target);
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, ColumnStore.Dictionary dictionary) throws IOException {
+        out.writeInt(dictionary.size());
+        for (int id = 0; id < dictionary.size(); id++) {
+            out.writeUTF(dictionary.get(id));
+        }
+    }
+
+    /**
+     * Maps the slots of a saved table read-only, so they stay off-heap and are paged in on demand
+     */
+    public static ZipGeography read(File source) throws IOException {
+        ByteBuffer mapped;
+        try (RandomAccessFile raf = new RandomAccessFile(source, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_BYTES + (long) SLOTS * SLOT_BYTES) {
+                throw new IOException(source + " is not a zip prefix table");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != SLOTS) {
+                throw new IOException(source + " is not a zip prefix table");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) SLOTS * SLOT_BYTES)
+                            .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        try (FileInputStream fileIn = new FileInputStream(source)) {
+            fileIn.getChannel().position(HEADER_BYTES + (long) SLOTS * SLOT_BYTES);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn));
+            ColumnStore.Dictionary states = readDictionary(in);
+            ColumnStore.Dictionary cities = readDictionary(in);
+            return new ZipGeography(mapped, states, cities);
+        }
+    }
+
+    private static ColumnStore.Dictionary readDictionary(DataInputStream in) throws IOException {
+        ColumnStore.Dictionary dictionary = new ColumnStore.Dictionary();
+        int size = in.readInt();
+        for (int id = 0; id < size; id++) {
+            dictionary.intern(in.readUTF());
+        }
+        return dictionary;
+    }
+
+    /**
+     * Builds the saved table, or resolves prefixes with it:
+     *   java ZipGeography [--file F] [--rebuild DIR | --rebuild-db] [PREFIX...]
+     */
+    public static void main(String[] args) {
+        String rebuildDir = null;
+        boolean rebuildDatabase = false;
+        List<String> prefixes = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--file":
+                        setFile(args[++i]);
+                        break;
+                    case "--rebuild":
+                        rebuildDir = args[++i];
+                        break;
+                    case "--rebuild-db":
+                        rebuildDatabase = true;
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        prefixes.add(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("ERROR: " + e.getMessage());
+            System.out.println("Usage: ZipGeography [--file F] [--rebuild DIR | --rebuild-db] [PREFIX...]");
+            System.exit(1);
+        }
+
+        ZipGeography geography;
+        try {
+            if (rebuildDir != null || rebuildDatabase) {
+                long start = System.nanoTime();
+                geography = rebuildDir != null ? buildFromCsv(rebuildDir) : buildFromDatabase();
+                geography.save(new File(file));
+                instance = geography;
+                System.out.println(String.format("Built %s in %.2f s from %s.", file, (System.nanoTime() - start) / 1e9,
+                                                 rebuildDir != null ? rebuildDir : "the database"));
+            } else {
+                geography = get();
+                if (geography == null) {
+                    System.out.println("ERROR: No zip prefix table in " + file + ".");
+                    System.out.println("Details: Load GEOLOCATION from the menu, or build it with --rebuild DIR.");
+                    System.exit(1);
+                    return;
+                }
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("ERROR: Could not build the zip prefix table.");
+            System.out.println("Details: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        System.out.println(String.format("%,d of %,d prefixes located, %,d KB off-heap, %,d cities, %,d states.",
+                                         geography.prefixCount(), SLOTS, geography.sizeInBytes() / 1024,
+                                         geography.cities.size(), geography.states.size()));
+        if (prefixes.isEmpty()) {
+            return;
+        }
+        System.out.println("\n+--------+--------------+--------------+--------------------------------+-------+--------+");
+        System.out.println("| Prefix |     Latitude |    Longitude | City                           | State | Places |");
+        System.out.println("+--------+--------------+--------------+--------------------------------+-------+--------+");
+        for (String prefix : prefixes) {
+            int slot = geography.resolve(prefix);
+            if (slot < 0) {
+                System.out.println(String.format("| %-6s | %12s | %12s | %-30s | %-5s | %6d |", prefix, "N/A", "N/A",
+                                                 "(not found)", "", 0));
+            } else {
+                System.out.println(String.format("| %-6s | %12.6f | %12.6f | %-30.30s | %-5s | %6d |", prefix,
+                                                 geography.latitude(slot), geography.longitude(slot),
+                                                 geography.city(slot), geography.state(slot), geography.places(slot)));
+            }
+        }
+        System.out.println("+--------+--------------+--------------+--------------------------------+-------+--------+");
+    }
+}